@@ -0,0 +1,65 @@
+package com.jonathanfoucher.rediscacheexample.benchmarks;
+
+import com.jonathanfoucher.rediscacheexample.data.dto.MovieDto;
+import com.jonathanfoucher.rediscacheexample.services.MovieService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class CacheHitBenchmark {
+    private static final long ID = 15L;
+    private static final String MOVIE_CACHE_NAME = "movies";
+
+    @Param({"false", "true"})
+    private boolean nearCache;
+
+    private RedisStandIn redis;
+    private ConfigurableApplicationContext context;
+    private MovieService movieService;
+    private Cache cache;
+
+    @Setup
+    public void setup() throws IOException {
+        redis = RedisStandIn.start();
+        context = redis.startApplication("movie-cache.near-cache.enabled=" + nearCache);
+        movieService = context.getBean(MovieService.class);
+        cache = context.getBean(CacheManager.class).getCache(MOVIE_CACHE_NAME);
+        movieService.clearCache();
+        movieService.findById(ID);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        context.close();
+        redis.close();
+    }
+
+    // hit through the @Cacheable proxy
+    @Benchmark
+    public MovieDto findByIdHit() {
+        return movieService.findById(ID);
+    }
+
+    // hit on the cache itself, without the caching interceptor
+    @Benchmark
+    public Cache.ValueWrapper cacheGetHit() {
+        return cache.get(ID);
+    }
+
+    // evict then load from FakeService and write back
+    @Benchmark
+    public MovieDto findByIdMiss() {
+        movieService.cleanCacheById(ID);
+        return movieService.findById(ID);
+    }
+}
@@ -0,0 +1,52 @@
+package com.jonathanfoucher.rediscacheexample.benchmarks;
+
+import com.jonathanfoucher.rediscacheexample.data.dto.MovieDto;
+import com.jonathanfoucher.rediscacheexample.services.MovieService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+// concurrent hits through the @Cacheable proxy on the single multiplexed connection or on a pool of as many
+// connections as threads. the in-process stand-in answers almost immediately, run against a real Redis
+// (-Dredis.host) for the network round trips that the multiplexed connection serializes
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(16)
+public class ConnectionModeBenchmark {
+    private static final long ID = 15L;
+
+    @Param({"multiplexed", "pooled"})
+    private String mode;
+
+    private RedisStandIn redis;
+    private ConfigurableApplicationContext context;
+    private MovieService movieService;
+
+    @Setup
+    public void setup() throws IOException {
+        redis = RedisStandIn.start();
+        context = redis.startApplication("movie-cache.connection.mode=" + mode,
+                "spring.data.redis.lettuce.pool.max-active=16",
+                "spring.data.redis.lettuce.pool.max-idle=16");
+        movieService = context.getBean(MovieService.class);
+        movieService.clearCache();
+        movieService.findById(ID);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        context.close();
+        redis.close();
+    }
+
+    @Benchmark
+    public MovieDto findByIdHit() {
+        return movieService.findById(ID);
+    }
+}
@@ -0,0 +1,58 @@
+package com.jonathanfoucher.rediscacheexample.benchmarks;
+
+import com.jonathanfoucher.rediscacheexample.data.dto.MovieDto;
+import com.jonathanfoucher.rediscacheexample.services.MovieService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class FindAllCachedBenchmark {
+    @Param({"100", "1000", "10000"})
+    private int cacheSize;
+
+    private RedisStandIn redis;
+    private ConfigurableApplicationContext context;
+    private MovieService movieService;
+
+    @Setup
+    public void setup() throws IOException {
+        redis = RedisStandIn.start();
+        context = redis.startApplication();
+        movieService = context.getBean(MovieService.class);
+        movieService.clearCache();
+        for (long id = 0; id < cacheSize; id++) {
+            movieService.addMovieToCache(Movies.movie(id));
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        context.close();
+        redis.close();
+    }
+
+    // single read of the aggregate
+    @Benchmark
+    public List<MovieDto> findAllCached() {
+        return movieService.findAllCached();
+    }
+
+    // SCAN + MGET over the movies keyspace
+    @Benchmark
+    public void streamAllCached(Blackhole blackhole) {
+        try (Stream<MovieDto> movies = movieService.streamAllCached()) {
+            movies.forEach(blackhole::consume);
+        }
+    }
+}
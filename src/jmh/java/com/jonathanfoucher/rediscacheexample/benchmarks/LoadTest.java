@@ -0,0 +1,244 @@
+package com.jonathanfoucher.rediscacheexample.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.search.Search;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+// closed loop load test of the movie endpoints: each client sends its next request as soon as the previous one is
+// answered, reading GET /movies/{id} or writing POST /movies for zipfian ids, with its own seeded random so that two
+// runs send the same requests. only the requests sent after the warm-up are measured.
+//   mvn -Pbenchmark -DskipTests test-compile exec:exec@load-test -Dload.args="load.clients=32 movie-cache.fake-backend.latency-median=5ms"
+// the load.* arguments configure the load test, the others are properties of the application
+public class LoadTest {
+    private static final Map<String, String> DEFAULT_OPTIONS = Map.of(
+            "load.stack", "servlet",
+            "load.clients", "64",
+            "load.warm-up", "30s",
+            "load.duration", "60s",
+            "load.movies", "100000",
+            "load.zipf-exponent", "0.99",
+            "load.read-ratio", "0.95",
+            "load.seed", "42"
+    );
+
+    private static final String READ = "read";
+    private static final String WRITE = "write";
+    // latencies are recorded in microseconds, up to a minute with 3 significant digits
+    private static final long HIGHEST_LATENCY = TimeUnit.MINUTES.toMicros(1);
+
+    private final Map<String, String> options;
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    private LoadTest(Map<String, String> options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new TreeMap<>(DEFAULT_OPTIONS);
+        List<String> properties = new ArrayList<>(List.of("server.port=0"));
+        for (String arg : args) {
+            if (arg.startsWith("load.")) {
+                String[] keyValue = arg.split("=", 2);
+                options.put(keyValue[0], keyValue[1]);
+            } else {
+                properties.add(arg);
+            }
+        }
+
+        new LoadTest(options).run(properties);
+        System.exit(0);
+    }
+
+    private void run(List<String> properties) throws Exception {
+        WebApplicationType stack = WebApplicationType.valueOf(option("load.stack").toUpperCase(Locale.ROOT));
+        int clients = Integer.parseInt(option("load.clients"));
+        Duration warmUp = DurationStyle.detectAndParse(option("load.warm-up"));
+        Duration duration = DurationStyle.detectAndParse(option("load.duration"));
+        ZipfianIds ids = new ZipfianIds(Integer.parseInt(option("load.movies")), Double.parseDouble(option("load.zipf-exponent")));
+        double readRatio = Double.parseDouble(option("load.read-ratio"));
+        long seed = Long.parseLong(option("load.seed"));
+
+        try (RedisStandIn redis = RedisStandIn.start();
+             ConfigurableApplicationContext context = redis.startApplication(stack, properties.toArray(String[]::new));
+             HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+             ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            URI movies = URI.create("http://localhost:" + context.getEnvironment().getProperty("local.server.port")
+                    + "/redis-cache-example/movies");
+            client.send(HttpRequest.newBuilder(URI.create(movies + "/cache")).DELETE().build(), HttpResponse.BodyHandlers.discarding());
+
+            Instant measureStart = Instant.now().plus(warmUp);
+            Instant end = measureStart.plus(duration);
+            List<Future<ClientStats>> futures = new ArrayList<>();
+            for (int i = 0; i < clients; i++) {
+                SplittableRandom random = new SplittableRandom(seed + i);
+                futures.add(executor.submit(() -> runClient(client, movies, ids, readRatio, random, measureStart, end)));
+            }
+
+            MeterRegistry meterRegistry = context.getBean(MeterRegistry.class);
+            Thread.sleep(Duration.between(Instant.now(), measureStart));
+            Map<String, Double> countersBefore = counters(meterRegistry);
+            Thread.sleep(Duration.between(Instant.now(), end));
+            Map<String, Double> countersAfter = counters(meterRegistry);
+
+            ClientStats stats = new ClientStats();
+            for (Future<ClientStats> future : futures) {
+                stats.add(future.get());
+            }
+            report(stats, duration, countersBefore, countersAfter, properties);
+        }
+    }
+
+    private ClientStats runClient(HttpClient client, URI movies, ZipfianIds ids, double readRatio,
+                                  SplittableRandom random, Instant measureStart, Instant end) throws Exception {
+        ClientStats stats = new ClientStats();
+        long measureStartNanos = System.nanoTime() + Duration.between(Instant.now(), measureStart).toNanos();
+        long endNanos = System.nanoTime() + Duration.between(Instant.now(), end).toNanos();
+        while (true) {
+            long start = System.nanoTime();
+            if (start >= endNanos) {
+                return stats;
+            }
+
+            long id = ids.next(random);
+            boolean read = random.nextDouble() < readRatio;
+            HttpRequest request = read
+                    ? HttpRequest.newBuilder(URI.create(movies + "/" + id)).GET().build()
+                    : HttpRequest.newBuilder(movies)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(Movies.movie(id))))
+                    .build();
+            int status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+            if (start >= measureStartNanos) {
+                stats.record(read ? READ : WRITE, status, System.nanoTime() - start);
+            }
+        }
+    }
+
+    private void report(ClientStats stats, Duration duration, Map<String, Double> countersBefore,
+                        Map<String, Double> countersAfter, List<String> properties) throws IOException {
+        Function<String, Double> delta = name -> countersAfter.get(name) - countersBefore.get(name);
+        double seconds = duration.toNanos() / 1e9;
+        long reads = stats.count(READ);
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("time", Instant.now().toString());
+        result.put("options", options);
+        result.put("properties", properties);
+        Map<String, Object> operations = new LinkedHashMap<>();
+        for (String operation : List.of(READ, WRITE)) {
+            Histogram latencies = stats.latencies.get(operation);
+            if (latencies == null) {
+                continue;
+            }
+            Map<String, Object> operationResult = new LinkedHashMap<>();
+            operationResult.put("throughput", latencies.getTotalCount() / seconds);
+            operationResult.put("statuses", stats.statuses.get(operation));
+            Map<String, Double> latencyPercentiles = new LinkedHashMap<>();
+            latencyPercentiles.put("p50", percentile(latencies, 50));
+            latencyPercentiles.put("p90", percentile(latencies, 90));
+            latencyPercentiles.put("p99", percentile(latencies, 99));
+            latencyPercentiles.put("p999", percentile(latencies, 99.9));
+            latencyPercentiles.put("max", latencies.getMaxValue() / 1000.0);
+            operationResult.put("latency_ms", latencyPercentiles);
+            operations.put(operation, operationResult);
+        }
+        result.put("operations", operations);
+
+        double hits = delta.apply("hits");
+        double misses = delta.apply("misses");
+        double backendCalls = delta.apply("backend_calls");
+        Map<String, Object> cache = new LinkedHashMap<>();
+        // the reactive stack reads through its own repository and does not count the cache gets
+        cache.put("hit_ratio", hits + misses > 0 ? hits / (hits + misses) : null);
+        cache.put("near_cache_hits", delta.apply("near_hits"));
+        cache.put("backend_calls", backendCalls);
+        // share of the reads served without calling the backend, concurrent misses sharing a load included
+        cache.put("offload_ratio", reads > 0 ? 1 - backendCalls / reads : null);
+        result.put("cache", cache);
+
+        String json = objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(result);
+        System.out.println(json);
+        String resultFile = options.get("load.result-file");
+        if (resultFile != null) {
+            // one line per run, to compare the runs of several cache configurations
+            Files.writeString(Path.of(resultFile), objectMapper.writeValueAsString(result) + System.lineSeparator(),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        }
+    }
+
+    private String option(String name) {
+        return options.get(name);
+    }
+
+    private static Map<String, Double> counters(MeterRegistry meterRegistry) {
+        Map<String, Double> counters = new HashMap<>();
+        counters.put("hits", count(meterRegistry.find("cache.gets").tags("cache", "movies", "result", "hit")));
+        counters.put("misses", count(meterRegistry.find("cache.gets").tags("cache", "movies", "result", "miss")));
+        counters.put("near_hits", count(meterRegistry.find("cache.near.gets").tags("cache", "movies", "result", "hit")));
+        counters.put("backend_calls", meterRegistry.find("movie.backend.calls").timers()
+                .stream()
+                .mapToDouble(timer -> timer.count())
+                .sum());
+        return counters;
+    }
+
+    private static double count(Search search) {
+        return search.functionCounters().stream().mapToDouble(counter -> counter.count()).sum()
+                + search.counters().stream().mapToDouble(counter -> counter.count()).sum();
+    }
+
+    private static double percentile(Histogram latencies, double percentile) {
+        return latencies.getValueAtPercentile(percentile) / 1000.0;
+    }
+
+    // only used by its own client thread, then merged
+    private static class ClientStats {
+        private final Map<String, Histogram> latencies = new HashMap<>();
+        private final Map<String, Map<Integer, Long>> statuses = new HashMap<>();
+
+        void record(String operation, int status, long latencyNanos) {
+            latencies.computeIfAbsent(operation, key -> new Histogram(HIGHEST_LATENCY, 3))
+                    .recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(latencyNanos), HIGHEST_LATENCY));
+            statuses.computeIfAbsent(operation, key -> new TreeMap<>())
+                    .merge(status, 1L, Long::sum);
+        }
+
+        long count(String operation) {
+            Histogram histogram = latencies.get(operation);
+            return histogram != null ? histogram.getTotalCount() : 0;
+        }
+
+        void add(ClientStats other) {
+            other.latencies.forEach((operation, histogram) ->
+                    latencies.computeIfAbsent(operation, key -> new Histogram(HIGHEST_LATENCY, 3)).add(histogram));
+            other.statuses.forEach((operation, counts) ->
+                    counts.forEach((status, count) ->
+                            statuses.computeIfAbsent(operation, key -> new TreeMap<>()).merge(status, count, Long::sum)));
+        }
+    }
+}
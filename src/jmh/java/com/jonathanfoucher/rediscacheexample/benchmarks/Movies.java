@@ -0,0 +1,34 @@
+package com.jonathanfoucher.rediscacheexample.benchmarks;
+
+import com.jonathanfoucher.rediscacheexample.data.dto.MovieDto;
+
+import java.time.LocalDate;
+import java.util.Random;
+
+final class Movies {
+    private static final String[] WORDS = {"the", "a", "of", "and", "movie", "story", "young", "man", "woman", "city",
+            "war", "love", "family", "secret", "journey", "world", "night", "last", "first", "friends", "house", "road"};
+
+    private Movies() {
+    }
+
+    static MovieDto movie(long id) {
+        MovieDto movie = new MovieDto();
+        movie.setId(id);
+        movie.setTitle("Some movie " + id);
+        movie.setReleaseDate(LocalDate.of(2022, 7, 19).plusDays(id % 3650));
+        return movie;
+    }
+
+    // made of words picked from a small vocabulary, which compresses about as well as real text
+    static MovieDto movie(long id, int titleLength) {
+        MovieDto movie = movie(id);
+        StringBuilder title = new StringBuilder(movie.getTitle());
+        Random random = new Random(id);
+        while (title.length() < titleLength) {
+            title.append(' ').append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        movie.setTitle(title.substring(0, titleLength));
+        return movie;
+    }
+}
@@ -0,0 +1,55 @@
+package com.jonathanfoucher.rediscacheexample.benchmarks;
+
+import com.jonathanfoucher.rediscacheexample.data.dto.MovieDto;
+import com.jonathanfoucher.rediscacheexample.services.MovieService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+// pipelined bulk write of a batch of movies, its commands written to the socket one by one, by buffers of 100
+// or all at once
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class PipeliningFlushBenchmark {
+    @Param({"each-command", "buffered", "on-close"})
+    private String pipeliningFlush;
+
+    @Param({"500"})
+    private int batchSize;
+
+    private RedisStandIn redis;
+    private ConfigurableApplicationContext context;
+    private MovieService movieService;
+    private List<MovieDto> movies;
+
+    @Setup
+    public void setup() throws IOException {
+        redis = RedisStandIn.start();
+        context = redis.startApplication("movie-cache.connection.pipelining-flush=" + pipeliningFlush,
+                "movie-cache.connection.pipelining-flush-buffer-size=100");
+        movieService = context.getBean(MovieService.class);
+        movieService.clearCache();
+        movies = LongStream.rangeClosed(1, batchSize)
+                .mapToObj(Movies::movie)
+                .toList();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        context.close();
+        redis.close();
+    }
+
+    @Benchmark
+    public void addMoviesToCache() {
+        movieService.addMoviesToCache(movies);
+    }
+}
@@ -0,0 +1,71 @@
+package com.jonathanfoucher.rediscacheexample.benchmarks;
+
+import com.github.fppt.jedismock.RedisServer;
+import com.jonathanfoucher.rediscacheexample.RedisCacheExampleApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+// in-process Redis compatible server, run with -Dredis.host=<host> [-Dredis.port=<port>] to target a real Redis instead
+public class RedisStandIn implements AutoCloseable {
+    private final RedisServer server;
+    private final String host;
+    private final int port;
+
+    private RedisStandIn(RedisServer server, String host, int port) {
+        this.server = server;
+        this.host = host;
+        this.port = port;
+    }
+
+    public static RedisStandIn start() throws IOException {
+        String host = System.getProperty("redis.host");
+        if (host != null) {
+            return new RedisStandIn(null, host, Integer.getInteger("redis.port", 6379));
+        }
+
+        RedisServer server = RedisServer.newRedisServer();
+        server.start();
+        return new RedisStandIn(server, server.getHost(), server.getBindPort());
+    }
+
+    public ConfigurableApplicationContext startApplication(String... properties) {
+        return startApplication(WebApplicationType.NONE, properties);
+    }
+
+    public ConfigurableApplicationContext startApplication(WebApplicationType webApplicationType, String... properties) {
+        Map<String, String> allProperties = new LinkedHashMap<>();
+        allProperties.put("spring.data.redis.host", host);
+        allProperties.put("spring.data.redis.port", String.valueOf(port));
+        // application.yml sets the servlet stack, which would otherwise take precedence over the builder
+        allProperties.put("spring.main.web-application-type", webApplicationType.name().toLowerCase(Locale.ROOT));
+        allProperties.put("movie-cache.near-cache.enabled", "false");
+        allProperties.put("logging.level.com.jonathanfoucher.rediscacheexample", "WARN");
+        for (String property : properties) {
+            String[] keyValue = property.split("=", 2);
+            allProperties.put(keyValue[0], keyValue[1]);
+        }
+
+        // passed as command line arguments to take precedence over application.yml
+        String[] arguments = allProperties.entrySet()
+                .stream()
+                .map(entry -> "--" + entry.getKey() + "=" + entry.getValue())
+                .toArray(String[]::new);
+
+        return new SpringApplicationBuilder(RedisCacheExampleApplication.class)
+                .web(webApplicationType)
+                .run(arguments);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (server != null) {
+            server.stop();
+        }
+    }
+}
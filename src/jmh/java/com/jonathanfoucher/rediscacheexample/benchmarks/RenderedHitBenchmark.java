@@ -0,0 +1,114 @@
+package com.jonathanfoucher.rediscacheexample.benchmarks;
+
+import com.jonathanfoucher.rediscacheexample.controllers.MovieController;
+import com.jonathanfoucher.rediscacheexample.serializers.MovieJsonRedisSerializer;
+import com.jonathanfoucher.rediscacheexample.services.MovieService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.http.HttpMessageConverters;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.ResolvableType;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.HttpMessageConverter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+
+// GET /movies/{id} hit as the controller answers it, then written to the response by the converter the application
+// picks, for the movies cached as objects and as rendered JSON. run with -prof gc to get the allocation rate per hit.
+// the in-process stand-in allocates far more than the application on each command, which the gc profiler counts as
+// well: run against a real Redis (-Dredis.host) for the full hit, or compare the rendering of the value read from redis
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class RenderedHitBenchmark {
+    private static final long ID = 15L;
+
+    @Param({"binary", "json"})
+    private String serialization;
+
+    private RedisStandIn redis;
+    private ConfigurableApplicationContext context;
+    private MovieController movieController;
+    private List<HttpMessageConverter<?>> converters;
+    private RedisSerializer<Object> valueSerializer;
+    private byte[] cachedValue;
+    private final DiscardedResponse response = new DiscardedResponse();
+
+    @Setup
+    public void setup() throws IOException {
+        redis = RedisStandIn.start();
+        context = redis.startApplication(WebApplicationType.SERVLET,
+                "server.port=0",
+                "movie-cache.serialization=" + serialization);
+        movieController = context.getBean(MovieController.class);
+        converters = context.getBean(HttpMessageConverters.class).getConverters();
+        MovieService movieService = context.getBean(MovieService.class);
+        movieService.clearCache();
+        movieService.findById(ID);
+        valueSerializer = context.<RedisSerializer<Object>>getBeanProvider(
+                ResolvableType.forClassWithGenerics(RedisSerializer.class, Object.class)).getObject();
+        cachedValue = valueSerializer.serialize(Movies.movie(ID));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        context.close();
+        redis.close();
+    }
+
+    @Benchmark
+    public void findByIdHit() throws IOException {
+        write(movieController.findById(ID).getBody());
+    }
+
+    // what follows the redis read on a hit: the rendered value is sent as it is, the others are read then rendered
+    @Benchmark
+    public void renderCachedValue() throws IOException {
+        write(MovieJsonRedisSerializer.isRendered(cachedValue) ? cachedValue : valueSerializer.deserialize(cachedValue));
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private void write(Object body) throws IOException {
+        for (HttpMessageConverter converter : converters) {
+            if (converter.canWrite(body.getClass(), APPLICATION_JSON)) {
+                converter.write(body, APPLICATION_JSON, response);
+                return;
+            }
+        }
+        throw new IllegalStateException("No converter for " + body.getClass());
+    }
+
+    // the headers are kept from one hit to the next, the body is dropped
+    private static class DiscardedResponse implements HttpOutputMessage {
+        private final HttpHeaders headers = new HttpHeaders();
+        private final OutputStream body = new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        };
+
+        @Override
+        public OutputStream getBody() {
+            return body;
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return headers;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.jonathanfoucher.rediscacheexample.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.jonathanfoucher.rediscacheexample.configs.MovieCacheProperties;
+import com.jonathanfoucher.rediscacheexample.configs.RedisConfig;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.util.concurrent.TimeUnit;
+
+// run with -prof gc to get the allocation rate per operation
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class SerializerBenchmark {
+    @Param({"JDK", "BINARY", "JSON"})
+    private MovieCacheProperties.SerializationFormat format;
+    @Param({"NONE", "DEFLATE", "ZSTD"})
+    private String compression;
+    // the real values are much larger than the example ones, the title stands for the rest of their fields
+    @Param({"20", "2000"})
+    private int titleLength;
+
+    private RedisSerializer<Object> serializer;
+    private Object movie;
+    private byte[] bytes;
+
+    @Setup
+    public void setup() {
+        MovieCacheProperties properties = new MovieCacheProperties();
+        properties.setSerialization(format);
+        if (!"NONE".equals(compression)) {
+            properties.getCompression().setEnabled(true);
+            properties.getCompression().setCodec(MovieCacheProperties.CompressionAlgorithm.valueOf(compression));
+        }
+        // an empty composite registry turns the payload size recording into a no-op
+        // configured as the one of the application
+        ObjectMapper objectMapper = JsonMapper.builder()
+                .addModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+        serializer = new RedisConfig().cacheValueSerializer(properties, objectMapper, new CompositeMeterRegistry());
+        movie = Movies.movie(15, titleLength);
+        bytes = serializer.serialize(movie);
+        System.out.printf("%n%s %s serialized size: %d bytes%n", format, compression, bytes.length);
+    }
+
+    @Benchmark
+    public byte[] serialize() {
+        return serializer.serialize(movie);
+    }
+
+    @Benchmark
+    public Object deserialize() {
+        return serializer.deserialize(bytes);
+    }
+}
@@ -0,0 +1,69 @@
+package com.jonathanfoucher.rediscacheexample.benchmarks;
+
+import com.jonathanfoucher.rediscacheexample.services.MovieService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.TimeUnit;
+
+// concurrent GET /movies/{id} hits against a platform thread pool smaller than the number of clients, or virtual threads.
+// the in-process stand-in answers almost immediately, run against a real Redis (-Dredis.host) for the network round trips
+// that leave the platform threads blocked. pinned virtual threads are reported on the standard output
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Djdk.tracePinnedThreads=short")
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(64)
+public class VirtualThreadsBenchmark {
+    private static final long ID = 15L;
+    private static final int TOMCAT_MAX_THREADS = 8;
+
+    @Param({"false", "true"})
+    private boolean virtualThreads;
+
+    private RedisStandIn redis;
+    private ConfigurableApplicationContext context;
+    private HttpClient client;
+    private HttpRequest request;
+
+    @Setup
+    public void setup() throws IOException {
+        redis = RedisStandIn.start();
+        context = redis.startApplication(WebApplicationType.SERVLET,
+                "spring.threads.virtual.enabled=" + virtualThreads,
+                "server.port=0",
+                "server.tomcat.threads.max=" + TOMCAT_MAX_THREADS,
+                "server.tomcat.threads.min-spare=" + TOMCAT_MAX_THREADS);
+        MovieService movieService = context.getBean(MovieService.class);
+        movieService.clearCache();
+        movieService.findById(ID);
+
+        String port = context.getEnvironment().getProperty("local.server.port");
+        client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .build();
+        request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/redis-cache-example/movies/" + ID))
+                .GET()
+                .build();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        client.close();
+        context.close();
+        redis.close();
+    }
+
+    @Benchmark
+    public byte[] findById() throws IOException, InterruptedException {
+        return client.send(request, HttpResponse.BodyHandlers.ofByteArray()).body();
+    }
+}
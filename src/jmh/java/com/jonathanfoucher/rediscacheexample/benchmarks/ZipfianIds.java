@@ -0,0 +1,32 @@
+package com.jonathanfoucher.rediscacheexample.benchmarks;
+
+import java.util.Arrays;
+import java.util.random.RandomGenerator;
+
+// ids from 1 to count, id k being picked with a probability proportional to 1 / k^exponent.
+// an exponent of 0 picks them uniformly, around 1 a few hundred ids take most of the picks
+final class ZipfianIds {
+    private final double[] cumulativeProbabilities;
+
+    ZipfianIds(int count, double exponent) {
+        if (count < 1 || exponent < 0) {
+            throw new IllegalArgumentException("Expected at least one id and a positive exponent");
+        }
+        cumulativeProbabilities = new double[count];
+        double sum = 0;
+        for (int k = 1; k <= count; k++) {
+            sum += 1 / Math.pow(k, exponent);
+            cumulativeProbabilities[k - 1] = sum;
+        }
+        for (int k = 0; k < count; k++) {
+            cumulativeProbabilities[k] /= sum;
+        }
+    }
+
+    long next(RandomGenerator random) {
+        int index = Arrays.binarySearch(cumulativeProbabilities, random.nextDouble());
+        // the insertion point when not found, which is the first id whose cumulative probability is above
+        int rank = index >= 0 ? index : -index - 1;
+        return Math.min(rank, cumulativeProbabilities.length - 1) + 1L;
+    }
+}
@@ -0,0 +1,179 @@
+package com.jonathanfoucher.rediscacheexample.caches;
+
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.redis.cache.CacheStatistics;
+import org.springframework.data.redis.cache.CacheStatisticsCollector;
+import org.springframework.data.redis.cache.RedisCacheWriter;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+// counts the reads of each key of the given caches in a count-min sketch, halved at the end of every window, and writes
+// each entry with a time to live between the minimum for a key not read lately and the maximum for a key read hot-reads
+// times per window, growing geometrically with the reads in between. the jitter of the time to live given by the cache
+// is kept, as a ratio of the time to live of the cache. the time to live applied to each entry written is published
+public class AdaptiveTimeToLiveCacheWriter implements RedisCacheWriter {
+    private final RedisCacheWriter delegate;
+    private final Set<String> cacheNames;
+    private final Duration timeToLive;
+    private final Duration minTimeToLive;
+    private final Duration maxTimeToLive;
+    private final long hotReads;
+    private final long windowNanos;
+    private final CountMinSketch reads;
+    private final AtomicLong nextDecay;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public AdaptiveTimeToLiveCacheWriter(RedisCacheWriter delegate, Set<String> cacheNames, Duration timeToLive,
+                                         Duration minTimeToLive, Duration maxTimeToLive, long hotReads, Duration window,
+                                         int sketchWidth, int sketchDepth, ApplicationEventPublisher eventPublisher) {
+        this(delegate, cacheNames, timeToLive, minTimeToLive, maxTimeToLive, hotReads, window.toNanos(),
+                new CountMinSketch(sketchWidth, sketchDepth), new AtomicLong(System.nanoTime() + window.toNanos()), eventPublisher);
+        if (timeToLive.isNegative() || timeToLive.isZero() || minTimeToLive.isNegative() || minTimeToLive.isZero()) {
+            throw new IllegalArgumentException("Times to live must be positive: " + timeToLive + ", " + minTimeToLive);
+        }
+        if (maxTimeToLive.compareTo(minTimeToLive) < 0) {
+            throw new IllegalArgumentException("Maximum time to live must be at least the minimum: " + maxTimeToLive);
+        }
+        if (hotReads < 1) {
+            throw new IllegalArgumentException("Hot reads must be positive: " + hotReads);
+        }
+    }
+
+    private AdaptiveTimeToLiveCacheWriter(RedisCacheWriter delegate, Set<String> cacheNames, Duration timeToLive,
+                                          Duration minTimeToLive, Duration maxTimeToLive, long hotReads, long windowNanos,
+                                          CountMinSketch reads, AtomicLong nextDecay, ApplicationEventPublisher eventPublisher) {
+        this.delegate = delegate;
+        this.cacheNames = cacheNames;
+        this.timeToLive = timeToLive;
+        this.minTimeToLive = minTimeToLive;
+        this.maxTimeToLive = maxTimeToLive;
+        this.hotReads = hotReads;
+        this.windowNanos = windowNanos;
+        this.reads = reads;
+        this.nextDecay = nextDecay;
+        this.eventPublisher = eventPublisher;
+    }
+
+    @Override
+    public byte[] get(String name, byte[] key) {
+        recordRead(name, key);
+        return delegate.get(name, key);
+    }
+
+    @Override
+    public byte[] get(String name, byte[] key, Duration ttl) {
+        recordRead(name, key);
+        return delegate.get(name, key, ttl);
+    }
+
+    @Override
+    public byte[] get(String name, byte[] key, Supplier<byte[]> valueLoader, Duration ttl, boolean timeToIdleEnabled) {
+        recordRead(name, key);
+        return delegate.get(name, key, valueLoader, timeToLive(name, key, ttl), timeToIdleEnabled);
+    }
+
+    @Override
+    public boolean supportsAsyncRetrieve() {
+        return delegate.supportsAsyncRetrieve();
+    }
+
+    @Override
+    public CompletableFuture<byte[]> retrieve(String name, byte[] key, Duration ttl) {
+        recordRead(name, key);
+        return delegate.retrieve(name, key, ttl);
+    }
+
+    @Override
+    public void put(String name, byte[] key, byte[] value, Duration ttl) {
+        Duration adaptedTtl = timeToLive(name, key, ttl);
+        delegate.put(name, key, value, adaptedTtl);
+        publishTimeToLive(name, key, ttl, adaptedTtl);
+    }
+
+    // published once the write is sent, not once it completes, so that the listeners do not run on the redis client threads
+    @Override
+    public CompletableFuture<Void> store(String name, byte[] key, byte[] value, Duration ttl) {
+        Duration adaptedTtl = timeToLive(name, key, ttl);
+        CompletableFuture<Void> stored = delegate.store(name, key, value, adaptedTtl);
+        publishTimeToLive(name, key, ttl, adaptedTtl);
+        return stored;
+    }
+
+    @Override
+    public byte[] putIfAbsent(String name, byte[] key, byte[] value, Duration ttl) {
+        Duration adaptedTtl = timeToLive(name, key, ttl);
+        byte[] existingValue = delegate.putIfAbsent(name, key, value, adaptedTtl);
+        if (existingValue == null) {
+            publishTimeToLive(name, key, ttl, adaptedTtl);
+        }
+        return existingValue;
+    }
+
+    @Override
+    public void remove(String name, byte[] key) {
+        delegate.remove(name, key);
+    }
+
+    @Override
+    public void clean(String name, byte[] pattern) {
+        delegate.clean(name, pattern);
+    }
+
+    @Override
+    public void clearStatistics(String name) {
+        delegate.clearStatistics(name);
+    }
+
+    @Override
+    public RedisCacheWriter withStatisticsCollector(CacheStatisticsCollector cacheStatisticsCollector) {
+        return new AdaptiveTimeToLiveCacheWriter(delegate.withStatisticsCollector(cacheStatisticsCollector), cacheNames,
+                timeToLive, minTimeToLive, maxTimeToLive, hotReads, windowNanos, reads, nextDecay, eventPublisher);
+    }
+
+    @Override
+    public CacheStatistics getCacheStatistics(String cacheName) {
+        return delegate.getCacheStatistics(cacheName);
+    }
+
+    // ages the counts, the reads racing it may be halved or not
+    void decay() {
+        reads.halve();
+    }
+
+    private void recordRead(String name, byte[] key) {
+        if (!cacheNames.contains(name)) {
+            return;
+        }
+
+        long due = nextDecay.get();
+        long now = System.nanoTime();
+        if (now - due >= 0 && nextDecay.compareAndSet(due, now + windowNanos)) {
+            decay();
+        }
+        reads.add(CountMinSketch.hash(key));
+    }
+
+    // the time to live kept as given is the same instance
+    private void publishTimeToLive(String name, byte[] key, Duration ttl, Duration adaptedTtl) {
+        if (adaptedTtl != ttl) {
+            eventPublisher.publishEvent(new CacheTimeToLiveAdapted(name, new String(key, StandardCharsets.UTF_8), adaptedTtl));
+        }
+    }
+
+    // the entries written without expiration keep it
+    private Duration timeToLive(String name, byte[] key, Duration ttl) {
+        if (!cacheNames.contains(name) || ttl == null || ttl.isZero() || ttl.isNegative()) {
+            return ttl;
+        }
+
+        long keyReads = reads.estimate(CountMinSketch.hash(key));
+        double heat = Math.min(1, Math.log1p(keyReads) / Math.log1p(hotReads));
+        double adaptedMillis = minTimeToLive.toMillis() * Math.pow((double) maxTimeToLive.toMillis() / minTimeToLive.toMillis(), heat);
+        return Duration.ofMillis(Math.max(1, Math.round(adaptedMillis * ttl.toMillis() / timeToLive.toMillis())));
+    }
+}
@@ -0,0 +1,87 @@
+package com.jonathanfoucher.rediscacheexample.caches;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// set of long ids which can tell for sure that an id was never added, while an id it might contain
+// was not added with at most the expected false positive probability once the expected insertions are reached.
+// sized as m = -n ln(p) / ln(2)^2 bits and k = m / n ln(2) hashes, derived from two 64 bit hashes by double hashing
+public class BloomFilter {
+    private final AtomicLongArray words;
+    private final long bitCount;
+    private final int hashCount;
+
+    static final long GOLDEN_RATIO = 0x9e3779b97f4a7c15L;
+
+    public BloomFilter(long expectedInsertions, double falsePositiveProbability) {
+        if (expectedInsertions <= 0) {
+            throw new IllegalArgumentException("Expected insertions must be positive: " + expectedInsertions);
+        }
+        if (falsePositiveProbability <= 0 || falsePositiveProbability >= 1) {
+            throw new IllegalArgumentException("False positive probability must be between 0 and 1: " + falsePositiveProbability);
+        }
+
+        long bits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveProbability) / (Math.log(2) * Math.log(2)));
+        int wordCount = Math.toIntExact(Math.max(1, (bits + Long.SIZE - 1) / Long.SIZE));
+        this.words = new AtomicLongArray(wordCount);
+        this.bitCount = (long) wordCount * Long.SIZE;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedInsertions * Math.log(2)));
+    }
+
+    // safe to call concurrently with other puts and reads, a read racing a put may miss the id being added
+    public void put(long id) {
+        long hash1 = mix(id);
+        long hash2 = mix(id ^ GOLDEN_RATIO);
+        for (int i = 1; i <= hashCount; i++) {
+            setBit(bitIndex(hash1 + i * hash2));
+        }
+    }
+
+    public boolean mightContain(long id) {
+        long hash1 = mix(id);
+        long hash2 = mix(id ^ GOLDEN_RATIO);
+        for (int i = 1; i <= hashCount; i++) {
+            if (!getBit(bitIndex(hash1 + i * hash2))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public long bitCount() {
+        return bitCount;
+    }
+
+    public int hashCount() {
+        return hashCount;
+    }
+
+    private long bitIndex(long combinedHash) {
+        return (combinedHash & Long.MAX_VALUE) % bitCount;
+    }
+
+    private void setBit(long index) {
+        int word = (int) (index >>> 6);
+        long mask = 1L << index;
+        long current;
+        do {
+            current = words.get(word);
+            if ((current & mask) != 0) {
+                return;
+            }
+        } while (!words.compareAndSet(word, current, current | mask));
+    }
+
+    private boolean getBit(long index) {
+        return (words.get((int) (index >>> 6)) & (1L << index)) != 0;
+    }
+
+    // finalizer of murmur3, consecutive ids end up far apart
+    static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb93e7f3a3bd5L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
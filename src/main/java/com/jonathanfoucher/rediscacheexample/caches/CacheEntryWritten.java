@@ -0,0 +1,5 @@
+package com.jonathanfoucher.rediscacheexample.caches;
+
+// published when a found value, not a null, is written to a cache, the key is the redis key of the entry
+public record CacheEntryWritten(String cacheName, String key) {
+}
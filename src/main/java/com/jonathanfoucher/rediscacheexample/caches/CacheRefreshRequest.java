@@ -0,0 +1,6 @@
+package com.jonathanfoucher.rediscacheexample.caches;
+
+// published when a cache hit is close enough to its expiration to be reloaded ahead of time,
+// the key is the cache key without the redis prefix
+public record CacheRefreshRequest(String cacheName, String key) {
+}
@@ -0,0 +1,8 @@
+package com.jonathanfoucher.rediscacheexample.caches;
+
+import java.time.Duration;
+
+// published when an entry is written with the time to live given by the adaptive time to live rather than by the cache,
+// the key is the redis key of the entry
+public record CacheTimeToLiveAdapted(String cacheName, String key, Duration timeToLive) {
+}
@@ -0,0 +1,197 @@
+package com.jonathanfoucher.rediscacheexample.caches;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.cache.CacheStatistics;
+import org.springframework.data.redis.cache.CacheStatisticsCollector;
+import org.springframework.data.redis.cache.RedisCacheWriter;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+// goes to redis through the circuit breaker. while redis is bypassed, or when a call fails, the entries of the given caches
+// are read from and written to a local cache instead, so that a miss is loaded from the backend and served from memory
+// until redis is back, the reads of the other caches are misses and their writes are dropped. the local entries are only
+// read while redis is not answering, their time to live bounds how stale they are at the next outage. the evictions are
+// applied to the local entries and fail when they could not reach redis, at once while it is bypassed, since the redis
+// entries would otherwise be kept
+public class CircuitBreakerCacheWriter implements RedisCacheWriter {
+    private final RedisCacheWriter delegate;
+    private final Set<String> cacheNames;
+    private final RedisCircuitBreaker circuitBreaker;
+    private final Cache<ByteBuffer, byte[]> fallbackValues;
+
+    public CircuitBreakerCacheWriter(RedisCacheWriter delegate, Set<String> cacheNames, RedisCircuitBreaker circuitBreaker,
+                                     long fallbackMaximumSize, Duration fallbackTimeToLive) {
+        this(delegate, cacheNames, circuitBreaker, Caffeine.newBuilder()
+                .expireAfterWrite(fallbackTimeToLive)
+                .maximumSize(fallbackMaximumSize)
+                .build());
+    }
+
+    private CircuitBreakerCacheWriter(RedisCacheWriter delegate, Set<String> cacheNames, RedisCircuitBreaker circuitBreaker,
+                                      Cache<ByteBuffer, byte[]> fallbackValues) {
+        this.delegate = delegate;
+        this.cacheNames = cacheNames;
+        this.circuitBreaker = circuitBreaker;
+        this.fallbackValues = fallbackValues;
+    }
+
+    @Override
+    public byte[] get(String name, byte[] key) {
+        return circuitBreaker.call(() -> delegate.get(name, key), () -> fallbackValue(name, key));
+    }
+
+    @Override
+    public byte[] get(String name, byte[] key, Duration ttl) {
+        return circuitBreaker.call(() -> delegate.get(name, key, ttl), () -> fallbackValue(name, key));
+    }
+
+    // the load of a missing value is not counted in the duration of the redis call, and a value loaded before the write
+    // to redis failed is not loaded again
+    @Override
+    public byte[] get(String name, byte[] key, Supplier<byte[]> valueLoader, Duration ttl, boolean timeToIdleEnabled) {
+        if (!circuitBreaker.isEnabled()) {
+            return delegate.get(name, key, valueLoader, ttl, timeToIdleEnabled);
+        }
+        if (!circuitBreaker.tryAcquire()) {
+            return fallbackValue(name, key, valueLoader);
+        }
+
+        AtomicLong loadNanos = new AtomicLong();
+        AtomicReference<byte[]> loadedValue = new AtomicReference<>();
+        Supplier<byte[]> timedValueLoader = () -> {
+            long loadStart = System.nanoTime();
+            try {
+                loadedValue.set(valueLoader.get());
+                return loadedValue.get();
+            } finally {
+                loadNanos.set(System.nanoTime() - loadStart);
+            }
+        };
+        long start = System.nanoTime();
+        boolean failed = false;
+        try {
+            return delegate.get(name, key, timedValueLoader, ttl, timeToIdleEnabled);
+        } catch (DataAccessException e) {
+            failed = true;
+            return fallbackValue(name, key, loadedValue.get() != null ? loadedValue::get : valueLoader);
+        } finally {
+            circuitBreaker.onResult(System.nanoTime() - start - loadNanos.get(), failed);
+        }
+    }
+
+    @Override
+    public boolean supportsAsyncRetrieve() {
+        return delegate.supportsAsyncRetrieve();
+    }
+
+    @Override
+    public CompletableFuture<byte[]> retrieve(String name, byte[] key, Duration ttl) {
+        return callAsync(() -> delegate.retrieve(name, key, ttl), () -> fallbackValue(name, key));
+    }
+
+    @Override
+    public void put(String name, byte[] key, byte[] value, Duration ttl) {
+        circuitBreaker.call(() -> {
+            delegate.put(name, key, value, ttl);
+            return null;
+        }, () -> putFallbackValue(name, key, value));
+    }
+
+    @Override
+    public CompletableFuture<Void> store(String name, byte[] key, byte[] value, Duration ttl) {
+        return callAsync(() -> delegate.store(name, key, value, ttl), () -> putFallbackValue(name, key, value));
+    }
+
+    @Override
+    public byte[] putIfAbsent(String name, byte[] key, byte[] value, Duration ttl) {
+        return circuitBreaker.call(() -> delegate.putIfAbsent(name, key, value, ttl), () -> cacheNames.contains(name)
+                ? fallbackValues.asMap().putIfAbsent(ByteBuffer.wrap(key), value)
+                : null);
+    }
+
+    @Override
+    public void remove(String name, byte[] key) {
+        if (cacheNames.contains(name)) {
+            fallbackValues.invalidate(ByteBuffer.wrap(key));
+        }
+        circuitBreaker.runOrFail(() -> delegate.remove(name, key));
+    }
+
+    @Override
+    public void clean(String name, byte[] pattern) {
+        if (cacheNames.contains(name)) {
+            fallbackValues.invalidateAll();
+        }
+        circuitBreaker.runOrFail(() -> delegate.clean(name, pattern));
+    }
+
+    @Override
+    public void clearStatistics(String name) {
+        delegate.clearStatistics(name);
+    }
+
+    @Override
+    public RedisCacheWriter withStatisticsCollector(CacheStatisticsCollector cacheStatisticsCollector) {
+        return new CircuitBreakerCacheWriter(delegate.withStatisticsCollector(cacheStatisticsCollector), cacheNames, circuitBreaker,
+                fallbackValues);
+    }
+
+    @Override
+    public CacheStatistics getCacheStatistics(String cacheName) {
+        return delegate.getCacheStatistics(cacheName);
+    }
+
+    private byte[] fallbackValue(String name, byte[] key) {
+        return cacheNames.contains(name) ? fallbackValues.getIfPresent(ByteBuffer.wrap(key)) : null;
+    }
+
+    private byte[] fallbackValue(String name, byte[] key, Supplier<byte[]> valueLoader) {
+        return cacheNames.contains(name) ? fallbackValues.get(ByteBuffer.wrap(key), k -> valueLoader.get()) : valueLoader.get();
+    }
+
+    private Void putFallbackValue(String name, byte[] key, byte[] value) {
+        if (cacheNames.contains(name)) {
+            fallbackValues.put(ByteBuffer.wrap(key), value);
+        }
+        return null;
+    }
+
+    // the failures of the redis call are recorded once it completes
+    private <T> CompletableFuture<T> callAsync(Supplier<CompletableFuture<T>> redisCall, Supplier<T> fallback) {
+        if (!circuitBreaker.isEnabled()) {
+            return redisCall.get();
+        }
+        if (!circuitBreaker.tryAcquire()) {
+            return CompletableFuture.completedFuture(fallback.get());
+        }
+
+        long start = System.nanoTime();
+        CompletableFuture<T> future;
+        try {
+            future = redisCall.get();
+        } catch (RuntimeException e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        return future.handle((value, e) -> {
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            boolean failed = cause instanceof DataAccessException;
+            circuitBreaker.onResult(System.nanoTime() - start, failed);
+            if (failed) {
+                return fallback.get();
+            }
+            if (cause != null) {
+                throw cause instanceof RuntimeException runtimeException ? runtimeException : new CompletionException(cause);
+            }
+            return value;
+        });
+    }
+}
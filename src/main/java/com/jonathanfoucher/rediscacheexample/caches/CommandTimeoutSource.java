@@ -0,0 +1,38 @@
+package com.jonathanfoucher.rediscacheexample.caches;
+
+import io.lettuce.core.TimeoutOptions;
+import io.lettuce.core.protocol.CommandType;
+import io.lettuce.core.protocol.RedisCommand;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// timeout of each redis command by its type, the default timeout for the types not listed.
+// it bounds both the wait of the blocking calls and the expiry of the queued commands
+public class CommandTimeoutSource extends TimeoutOptions.TimeoutSource {
+    private final Map<CommandType, Long> timeouts = new EnumMap<>(CommandType.class);
+    private final long defaultTimeout;
+
+    // the command names are case insensitive, an unknown one is rejected
+    public CommandTimeoutSource(Map<String, Duration> timeouts, Duration defaultTimeout) {
+        timeouts.forEach((command, timeout) ->
+                this.timeouts.put(CommandType.valueOf(command.toUpperCase(Locale.ROOT)), timeout.toNanos()));
+        this.defaultTimeout = defaultTimeout.toNanos();
+    }
+
+    @Override
+    public long getTimeout(RedisCommand<?, ?, ?> command) {
+        if (command.getType() instanceof CommandType type) {
+            return timeouts.getOrDefault(type, defaultTimeout);
+        }
+        return defaultTimeout;
+    }
+
+    @Override
+    public TimeUnit getTimeUnit() {
+        return TimeUnit.NANOSECONDS;
+    }
+}
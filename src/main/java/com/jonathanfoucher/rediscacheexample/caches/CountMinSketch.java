@@ -0,0 +1,66 @@
+package com.jonathanfoucher.rediscacheexample.caches;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// approximate counts of 64 bit hashes in depth rows of width counters, each hash adding to one counter per row.
+// the estimate of a hash is its smallest counter, never below its real count and above it by the counts of the
+// hashes it collides with, which wider rows make rarer. rows are picked by double hashing as in the bloom filter
+public class CountMinSketch {
+    private final AtomicLongArray counters;
+    private final int width;
+    private final int depth;
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    public CountMinSketch(int width, int depth) {
+        if (width < 1 || depth < 1) {
+            throw new IllegalArgumentException("Sketch width and depth must be positive: " + width + "x" + depth);
+        }
+        this.counters = new AtomicLongArray(Math.multiplyExact(width, depth));
+        this.width = width;
+        this.depth = depth;
+    }
+
+    // returns the estimate of the hash once added
+    public long add(long hash) {
+        long hash1 = BloomFilter.mix(hash);
+        long hash2 = BloomFilter.mix(hash ^ BloomFilter.GOLDEN_RATIO);
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counters.incrementAndGet(index(row, hash1, hash2)));
+        }
+        return estimate;
+    }
+
+    public long estimate(long hash) {
+        long hash1 = BloomFilter.mix(hash);
+        long hash2 = BloomFilter.mix(hash ^ BloomFilter.GOLDEN_RATIO);
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counters.get(index(row, hash1, hash2)));
+        }
+        return estimate;
+    }
+
+    // ages the counts so that the estimates follow the recent adds, the adds racing it may be halved or not
+    public void halve() {
+        for (int i = 0; i < counters.length(); i++) {
+            counters.getAndUpdate(i, count -> count >>> 1);
+        }
+    }
+
+    // 64 bit FNV-1a of a key, spread further by the sketch
+    public static long hash(byte[] key) {
+        long hash = FNV_OFFSET_BASIS;
+        for (byte b : key) {
+            hash ^= b & 0xff;
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+
+    private int index(int row, long hash1, long hash2) {
+        return row * width + (int) (((hash1 + (row + 1) * hash2) & Long.MAX_VALUE) % width);
+    }
+}
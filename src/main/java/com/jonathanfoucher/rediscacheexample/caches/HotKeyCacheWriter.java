@@ -0,0 +1,163 @@
+package com.jonathanfoucher.rediscacheexample.caches;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.data.redis.cache.CacheStatistics;
+import org.springframework.data.redis.cache.CacheStatisticsCollector;
+import org.springframework.data.redis.cache.RedisCacheWriter;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+// keeps in memory the values of the hot keys of the given caches for a short time, so that their hits no longer reach
+// redis, nor in cluster mode the single node holding each of them. the writes of this node drop the value kept, the ones
+// of the other nodes are seen once it expires. a hit served from memory is counted as a hit of the cache, but does not
+// ask for a refresh ahead, which the first read after it expires may do
+public class HotKeyCacheWriter implements RedisCacheWriter {
+    private final RedisCacheWriter delegate;
+    private final Set<String> cacheNames;
+    private final HotKeyTracker tracker;
+    private final Cache<ByteBuffer, byte[]> pinnedValues;
+    private final CacheStatisticsCollector statistics;
+
+    public HotKeyCacheWriter(RedisCacheWriter delegate, Set<String> cacheNames, HotKeyTracker tracker, Duration timeToLive,
+                             long maximumSize) {
+        this(delegate, cacheNames, tracker, Caffeine.newBuilder()
+                .expireAfterWrite(timeToLive)
+                .maximumSize(maximumSize)
+                .build(), CacheStatisticsCollector.none());
+    }
+
+    private HotKeyCacheWriter(RedisCacheWriter delegate, Set<String> cacheNames, HotKeyTracker tracker,
+                              Cache<ByteBuffer, byte[]> pinnedValues, CacheStatisticsCollector statistics) {
+        this.delegate = delegate;
+        this.cacheNames = cacheNames;
+        this.tracker = tracker;
+        this.pinnedValues = pinnedValues;
+        this.statistics = statistics;
+    }
+
+    @Override
+    public byte[] get(String name, byte[] key) {
+        return get(name, key, () -> delegate.get(name, key));
+    }
+
+    @Override
+    public byte[] get(String name, byte[] key, Duration ttl) {
+        return get(name, key, () -> delegate.get(name, key, ttl));
+    }
+
+    @Override
+    public byte[] get(String name, byte[] key, Supplier<byte[]> valueLoader, Duration ttl, boolean timeToIdleEnabled) {
+        return get(name, key, () -> delegate.get(name, key, valueLoader, ttl, timeToIdleEnabled));
+    }
+
+    @Override
+    public boolean supportsAsyncRetrieve() {
+        return delegate.supportsAsyncRetrieve();
+    }
+
+    @Override
+    public CompletableFuture<byte[]> retrieve(String name, byte[] key, Duration ttl) {
+        if (!cacheNames.contains(name)) {
+            return delegate.retrieve(name, key, ttl);
+        }
+
+        boolean hot = tracker.record(key);
+        byte[] value = pinnedValue(name, key);
+        if (value != null) {
+            return CompletableFuture.completedFuture(value);
+        }
+        return delegate.retrieve(name, key, ttl)
+                .thenApply(retrieved -> pin(key, retrieved, hot));
+    }
+
+    @Override
+    public void put(String name, byte[] key, byte[] value, Duration ttl) {
+        delegate.put(name, key, value, ttl);
+        unpin(name, key);
+    }
+
+    @Override
+    public CompletableFuture<Void> store(String name, byte[] key, byte[] value, Duration ttl) {
+        return delegate.store(name, key, value, ttl)
+                .whenComplete((result, e) -> unpin(name, key));
+    }
+
+    @Override
+    public byte[] putIfAbsent(String name, byte[] key, byte[] value, Duration ttl) {
+        byte[] previous = delegate.putIfAbsent(name, key, value, ttl);
+        unpin(name, key);
+        return previous;
+    }
+
+    @Override
+    public void remove(String name, byte[] key) {
+        delegate.remove(name, key);
+        unpin(name, key);
+    }
+
+    @Override
+    public void clean(String name, byte[] pattern) {
+        delegate.clean(name, pattern);
+        if (cacheNames.contains(name)) {
+            pinnedValues.invalidateAll();
+        }
+    }
+
+    @Override
+    public void clearStatistics(String name) {
+        delegate.clearStatistics(name);
+    }
+
+    @Override
+    public RedisCacheWriter withStatisticsCollector(CacheStatisticsCollector cacheStatisticsCollector) {
+        return new HotKeyCacheWriter(delegate.withStatisticsCollector(cacheStatisticsCollector), cacheNames, tracker,
+                pinnedValues, cacheStatisticsCollector);
+    }
+
+    @Override
+    public CacheStatistics getCacheStatistics(String cacheName) {
+        return delegate.getCacheStatistics(cacheName);
+    }
+
+    private byte[] get(String name, byte[] key, Supplier<byte[]> delegateGet) {
+        if (!cacheNames.contains(name)) {
+            return delegateGet.get();
+        }
+
+        boolean hot = tracker.record(key);
+        byte[] value = pinnedValue(name, key);
+        if (value != null) {
+            return value;
+        }
+        return pin(key, delegateGet.get(), hot);
+    }
+
+    // the gets served from memory never reach the delegate, so they are counted here on the collector shared with it
+    private byte[] pinnedValue(String name, byte[] key) {
+        byte[] value = pinnedValues.getIfPresent(ByteBuffer.wrap(key));
+        if (value != null) {
+            statistics.incGets(name);
+            statistics.incHits(name);
+            tracker.recordLocalHit(key);
+        }
+        return value;
+    }
+
+    private byte[] pin(byte[] key, byte[] value, boolean hot) {
+        if (hot && value != null) {
+            pinnedValues.put(ByteBuffer.wrap(key), value);
+        }
+        return value;
+    }
+
+    private void unpin(String name, byte[] key) {
+        if (cacheNames.contains(name)) {
+            pinnedValues.invalidate(ByteBuffer.wrap(key));
+        }
+    }
+}
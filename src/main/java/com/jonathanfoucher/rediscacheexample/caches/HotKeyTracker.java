@@ -0,0 +1,125 @@
+package com.jonathanfoucher.rediscacheexample.caches;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// flags the keys read the most lately: a sample of the reads is counted in a count-min sketch, and a key whose estimate
+// reaches the threshold becomes hot, up to the maximum number of hot keys where it takes the place of the least read one.
+// the counts are halved at the end of every window, so a key stays hot while read about min-reads times per window
+public class HotKeyTracker {
+    private final CountMinSketch sketch;
+    private final double sampleRate;
+    private final long minSampledReads;
+    private final int maximumSize;
+    private final long windowNanos;
+    private final AtomicLong nextDecay;
+    // the keys wrap the byte arrays of the cache, which are created for each call and never modified
+    private final ConcurrentMap<ByteBuffer, HotKeyCounts> hotKeys = new ConcurrentHashMap<>();
+
+    public HotKeyTracker(double sampleRate, long minReads, int maximumSize, Duration window, int sketchWidth, int sketchDepth) {
+        if (sampleRate <= 0 || sampleRate > 1) {
+            throw new IllegalArgumentException("Sample rate must be above 0 and at most 1: " + sampleRate);
+        }
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException("Maximum number of hot keys must be positive: " + maximumSize);
+        }
+        this.sketch = new CountMinSketch(sketchWidth, sketchDepth);
+        this.sampleRate = sampleRate;
+        this.minSampledReads = Math.max(1, Math.round(minReads * sampleRate));
+        this.maximumSize = maximumSize;
+        this.windowNanos = window.toNanos();
+        this.nextDecay = new AtomicLong(System.nanoTime() + windowNanos);
+    }
+
+    // counts the read if sampled, and tells whether the key is hot
+    public boolean record(byte[] key) {
+        ByteBuffer hotKey = ByteBuffer.wrap(key);
+        if (ThreadLocalRandom.current().nextDouble() < sampleRate) {
+            decayIfDue();
+            long sampledReads = sketch.add(CountMinSketch.hash(key));
+            if (sampledReads >= minSampledReads) {
+                promote(hotKey, sampledReads);
+            }
+        }
+        return hotKeys.containsKey(hotKey);
+    }
+
+    // a read of the key served from memory rather than from redis
+    public void recordLocalHit(byte[] key) {
+        HotKeyCounts counts = hotKeys.get(ByteBuffer.wrap(key));
+        if (counts != null) {
+            counts.localHits.increment();
+        }
+    }
+
+    // the most read first, the reads being estimated from the sampled ones
+    public List<HotKey> hotKeys() {
+        return hotKeys.entrySet()
+                .stream()
+                .sorted(Comparator.comparingLong((Map.Entry<ByteBuffer, HotKeyCounts> entry) -> entry.getValue().sampledReads).reversed())
+                .map(entry -> new HotKey(new String(entry.getKey().array(), StandardCharsets.UTF_8),
+                        Math.round(entry.getValue().sampledReads / sampleRate),
+                        entry.getValue().localHits.sum()))
+                .toList();
+    }
+
+    void decay() {
+        sketch.halve();
+        hotKeys.entrySet().removeIf(entry -> {
+            long sampledReads = sketch.estimate(CountMinSketch.hash(entry.getKey().array()));
+            entry.getValue().sampledReads = sampledReads;
+            return sampledReads < minSampledReads;
+        });
+    }
+
+    private void decayIfDue() {
+        long due = nextDecay.get();
+        long now = System.nanoTime();
+        if (now - due >= 0 && nextDecay.compareAndSet(due, now + windowNanos)) {
+            decay();
+        }
+    }
+
+    private void promote(ByteBuffer key, long sampledReads) {
+        HotKeyCounts counts = hotKeys.get(key);
+        if (counts != null) {
+            counts.sampledReads = sampledReads;
+            return;
+        }
+
+        synchronized (hotKeys) {
+            if (hotKeys.size() >= maximumSize) {
+                Map.Entry<ByteBuffer, HotKeyCounts> coldest = hotKeys.entrySet()
+                        .stream()
+                        .min(Comparator.comparingLong(entry -> entry.getValue().sampledReads))
+                        .orElseThrow();
+                if (coldest.getValue().sampledReads >= sampledReads) {
+                    return;
+                }
+                hotKeys.remove(coldest.getKey());
+            }
+            hotKeys.putIfAbsent(key, new HotKeyCounts(sampledReads));
+        }
+    }
+
+    private static class HotKeyCounts {
+        private volatile long sampledReads;
+        private final LongAdder localHits = new LongAdder();
+
+        private HotKeyCounts(long sampledReads) {
+            this.sampledReads = sampledReads;
+        }
+    }
+
+    public record HotKey(String key, long estimatedReads, long localHits) {
+    }
+}
@@ -0,0 +1,25 @@
+package com.jonathanfoucher.rediscacheexample.caches;
+
+import org.springframework.data.redis.cache.RedisCacheWriter;
+
+import java.time.Duration;
+import java.util.Objects;
+
+// picks the time to live of each key between timeToLive - jitter and timeToLive from a hash of the key, so that entries
+// written together do not all expire together, while the copies of an entry written elsewhere, such as the movies of the
+// aggregate, can be given the time to live of the entry itself
+public record JitteredTimeToLive(Duration timeToLive, Duration jitter) implements RedisCacheWriter.TtlFunction {
+    // the key as the cache is given it, the movie id for the movies cache
+    public Duration forKey(Object key) {
+        long jitterMillis = Math.min(jitter.toMillis(), timeToLive.toMillis() - 1);
+        if (jitterMillis <= 0) {
+            return timeToLive;
+        }
+        return timeToLive.minusMillis(Math.floorMod(BloomFilter.mix(Objects.hashCode(key)), jitterMillis + 1));
+    }
+
+    @Override
+    public Duration getTimeToLive(Object key, Object value) {
+        return forKey(key);
+    }
+}
@@ -0,0 +1,56 @@
+package com.jonathanfoucher.rediscacheexample.caches;
+
+// layout of the movies keys, movies::<id> by default. with key buckets the ids are spread over that many hash tags,
+// movies::{<bucket>}<id>, the keys of a bucket then share a cluster slot and a shard and can be read with a single MGET.
+// the bucket count must be the same on every node and changing it orphans the existing entries until they expire
+public class MovieCacheKeys {
+    private final int buckets;
+
+    public static final String MOVIE_CACHE_NAME = "movies";
+    public static final String MOVIE_KEY_PREFIX = MOVIE_CACHE_NAME + "::";
+    public static final String MOVIE_KEY_PATTERN = MOVIE_KEY_PREFIX + "*";
+
+    public MovieCacheKeys(int buckets) {
+        this.buckets = buckets;
+    }
+
+    public String key(Long id) {
+        return MOVIE_KEY_PREFIX + cacheKey(id);
+    }
+
+    // key of the entry within the movies cache, without the cache prefix
+    public String cacheKey(Long id) {
+        if (buckets <= 0) {
+            return String.valueOf(id);
+        }
+        return "{" + Math.floorMod(id, buckets) + "}" + id;
+    }
+
+    // id of the movie of a movies key, with or without key buckets
+    public static Long id(String key) {
+        return Long.valueOf(stripHashTag(key.substring(MOVIE_KEY_PREFIX.length())));
+    }
+
+    // hash tag of a key as a cluster reads it, empty when there is none
+    public static String hashTag(String key) {
+        int start = key.indexOf('{');
+        if (start >= 0) {
+            int end = key.indexOf('}', start + 1);
+            if (end > start + 1) {
+                return key.substring(start + 1, end);
+            }
+        }
+        return "";
+    }
+
+    // the other way around, the hash tag is dropped from the key if there is one
+    public static String stripHashTag(String cacheKey) {
+        if (cacheKey.startsWith("{")) {
+            int end = cacheKey.indexOf('}');
+            if (end > 0) {
+                return cacheKey.substring(end + 1);
+            }
+        }
+        return cacheKey;
+    }
+}
@@ -0,0 +1,95 @@
+package com.jonathanfoucher.rediscacheexample.caches;
+
+import com.jonathanfoucher.rediscacheexample.data.dto.MovieDto;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.function.Function;
+
+// secondary indexes of the all_movies aggregate, sorted sets whose members all have a score of 0 so that they are
+// ordered by their bytes and a page is read with ZRANGEBYLEX from the last member of the previous one.
+// a member is the sort key of the movie, a 0 byte, the id as 16 hex digits so that equal sort keys are ordered by id,
+// a colon and the decimal id, which is the field of the movie in the aggregate
+public enum MovieIndex {
+    ID("{all_movies}:by_id", "id", movie -> ""),
+    RELEASE_DATE("{all_movies}:by_release_date", "releaseDate",
+            movie -> movie.getReleaseDate() != null ? sortable(movie.getReleaseDate().toEpochDay()) : ""),
+    // case insensitive, so are the prefix filters
+    TITLE("{all_movies}:by_title", "title",
+            movie -> movie.getTitle() != null ? movie.getTitle().toLowerCase(Locale.ROOT) : "");
+
+    private final String key;
+    private final String sortName;
+    private final Function<MovieDto, String> sortKey;
+
+    private static final byte SEPARATOR = 0;
+    private static final byte[] MIN = {'-'};
+    private static final byte[] MAX = {'+'};
+
+    MovieIndex(String key, String sortName, Function<MovieDto, String> sortKey) {
+        this.key = key;
+        this.sortName = sortName;
+        this.sortKey = sortKey;
+    }
+
+    public String key() {
+        return key;
+    }
+
+    public static MovieIndex fromSortName(String sortName) {
+        return Arrays.stream(values())
+                .filter(index -> index.sortName.equals(sortName))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown sort: " + sortName));
+    }
+
+    public byte[] member(MovieDto movie) {
+        ByteArrayOutputStream member = new ByteArrayOutputStream();
+        member.writeBytes(sortKey.apply(movie).getBytes(StandardCharsets.UTF_8));
+        member.write(SEPARATOR);
+        member.writeBytes((sortable(movie.getId()) + ":" + movie.getId()).getBytes(StandardCharsets.UTF_8));
+        return member.toByteArray();
+    }
+
+    // inclusive lower bound of the members whose sort key starts with the prefix, the whole index without one
+    public static byte[] min(String prefix) {
+        if (prefix == null) {
+            return MIN;
+        }
+        return concat((byte) '[', prefixBytes(prefix));
+    }
+
+    // exclusive upper bound of the members whose sort key starts with the prefix, the whole index without one.
+    // the prefix with its last byte incremented, which never overflows since 0xFF does not occur in UTF-8
+    public static byte[] max(String prefix) {
+        if (prefix == null || prefix.isEmpty()) {
+            return MAX;
+        }
+        byte[] max = concat((byte) '(', prefixBytes(prefix));
+        max[max.length - 1]++;
+        return max;
+    }
+
+    // exclusive bound right after or right before the given member, depending on the direction of the read
+    public static byte[] after(byte[] member) {
+        return concat((byte) '(', member);
+    }
+
+    private static byte[] prefixBytes(String prefix) {
+        return prefix.toLowerCase(Locale.ROOT).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] concat(byte first, byte[] bytes) {
+        byte[] result = new byte[bytes.length + 1];
+        result[0] = first;
+        System.arraycopy(bytes, 0, result, 1, bytes.length);
+        return result;
+    }
+
+    // flipping the sign bit orders the hex digits of the negative numbers before the positive ones
+    private static String sortable(long value) {
+        return String.format("%016x", value ^ Long.MIN_VALUE);
+    }
+}
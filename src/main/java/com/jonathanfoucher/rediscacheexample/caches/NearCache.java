@@ -0,0 +1,176 @@
+package com.jonathanfoucher.rediscacheexample.caches;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// local L1 cache in front of a remote L2 cache, writes are applied to both levels and broadcast
+// so that the other nodes drop their local copy, the local TTL bounds the staleness if a message is lost
+public class NearCache implements Cache {
+    private final Cache delegate;
+    private final com.github.benmanes.caffeine.cache.Cache<String, ValueWrapper> localCache;
+    private final NearCacheInvalidationBroker broker;
+    // bumped by the changes of the keys of each stripe, and of all of them by the clears, so that a value read from the
+    // delegate is only kept locally if no write nor invalidation of its key raced with the read
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+    private final AtomicLong clears = new AtomicLong();
+
+    private static final int GENERATION_STRIPES = 1024;
+
+    public NearCache(Cache delegate, com.github.benmanes.caffeine.cache.Cache<String, ValueWrapper> localCache,
+                     NearCacheInvalidationBroker broker) {
+        this.delegate = delegate;
+        this.localCache = localCache;
+        this.broker = broker;
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return delegate.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        String localKey = toLocalKey(key);
+        ValueWrapper wrapper = localCache.getIfPresent(localKey);
+        if (wrapper != null) {
+            return wrapper;
+        }
+
+        long generation = generation(localKey);
+        wrapper = delegate.get(key);
+        if (wrapper != null) {
+            putLocal(localKey, wrapper, generation);
+        }
+        return wrapper;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Class<T> type) {
+        ValueWrapper wrapper = get(key);
+        Object value = wrapper != null ? wrapper.get() : null;
+        if (value != null && type != null && !type.isInstance(value)) {
+            throw new IllegalStateException(String.format("Cached value is not of required type [%s]: %s", type.getName(), value));
+        }
+        return (T) value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        ValueWrapper wrapper = get(key);
+        if (wrapper != null) {
+            return (T) wrapper.get();
+        }
+
+        String localKey = toLocalKey(key);
+        long generation = generation(localKey);
+        T value = delegate.get(key, valueLoader);
+        putLocal(localKey, new SimpleValueWrapper(value), generation);
+        return value;
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        String localKey = toLocalKey(key);
+        delegate.put(key, value);
+        changed(localKey);
+        localCache.put(localKey, new SimpleValueWrapper(value));
+        broker.publish(getName(), List.of(localKey));
+    }
+
+    @Override
+    public void evict(Object key) {
+        String localKey = toLocalKey(key);
+        delegate.evict(key);
+        changed(localKey);
+        localCache.invalidate(localKey);
+        broker.publish(getName(), List.of(localKey));
+    }
+
+    @Override
+    public boolean evictIfPresent(Object key) {
+        String localKey = toLocalKey(key);
+        boolean evicted = delegate.evictIfPresent(key);
+        changed(localKey);
+        localCache.invalidate(localKey);
+        broker.publish(getName(), List.of(localKey));
+        return evicted;
+    }
+
+    @Override
+    public void clear() {
+        delegate.clear();
+        clears.incrementAndGet();
+        localCache.invalidateAll();
+        broker.publish(getName(), null);
+    }
+
+    @Override
+    public boolean invalidate() {
+        boolean invalidated = delegate.invalidate();
+        clears.incrementAndGet();
+        localCache.invalidateAll();
+        broker.publish(getName(), null);
+        return invalidated;
+    }
+
+    // the remote cache, for the callers reading its entries as they are stored
+    public Cache getDelegate() {
+        return delegate;
+    }
+
+    // whether the key is served from memory by the next get
+    public boolean isHeldLocally(Object key) {
+        return localCache.getIfPresent(toLocalKey(key)) != null;
+    }
+
+    com.github.benmanes.caffeine.cache.Cache<String, ValueWrapper> getLocalCache() {
+        return localCache;
+    }
+
+    void evictLocal(List<String> localKeys) {
+        if (localKeys == null) {
+            clears.incrementAndGet();
+            localCache.invalidateAll();
+        } else {
+            localKeys.forEach(this::changed);
+            localCache.invalidateAll(localKeys);
+        }
+    }
+
+    // under the lock of the key, so that an invalidation bumps the generation either before the check or removes the value
+    // after it was put
+    private void putLocal(String localKey, ValueWrapper wrapper, long generation) {
+        localCache.asMap().compute(localKey, (k, current) -> generation(localKey) == generation ? wrapper : current);
+    }
+
+    // both counters only grow, so their sum changes whenever one of them does
+    private long generation(String localKey) {
+        return clears.get() + generations.get(stripe(localKey));
+    }
+
+    private void changed(String localKey) {
+        generations.incrementAndGet(stripe(localKey));
+    }
+
+    private static int stripe(String localKey) {
+        int hash = localKey.hashCode();
+        return (hash ^ (hash >>> 16)) & (GENERATION_STRIPES - 1);
+    }
+
+    // keys are shared with the other nodes through the invalidation messages, the Redis cache converts them to String as well
+    static String toLocalKey(Object key) {
+        return String.valueOf(key);
+    }
+}
@@ -0,0 +1,7 @@
+package com.jonathanfoucher.rediscacheexample.caches;
+
+import java.util.List;
+
+// null keys mean that the whole cache has been cleared
+public record NearCacheInvalidation(String origin, String cacheName, List<String> keys) {
+}
@@ -0,0 +1,72 @@
+package com.jonathanfoucher.rediscacheexample.caches;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+@Slf4j
+public class NearCacheInvalidationBroker implements MessageListener {
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+    @Getter
+    private final String channel;
+    private final RedisCircuitBreaker circuitBreaker;
+    private final String nodeId = UUID.randomUUID().toString();
+    private final List<Consumer<NearCacheInvalidation>> listeners = new CopyOnWriteArrayList<>();
+
+    public NearCacheInvalidationBroker(StringRedisTemplate redisTemplate, ObjectMapper objectMapper, String channel,
+                                       RedisCircuitBreaker circuitBreaker) {
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+        this.channel = channel;
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    public void addListener(Consumer<NearCacheInvalidation> listener) {
+        listeners.add(listener);
+    }
+
+    // notifies the other nodes, the local near cache is expected to be already up to date
+    public void publish(String cacheName, List<String> keys) {
+        NearCacheInvalidation invalidation = new NearCacheInvalidation(nodeId, cacheName, keys);
+        try {
+            // not sent while redis is bypassed, the near caches of the other nodes then expire their copy
+            String message = objectMapper.writeValueAsString(invalidation);
+            circuitBreaker.run(() -> redisTemplate.convertAndSend(channel, message));
+        } catch (JsonProcessingException e) {
+            log.error("Failed to publish near cache invalidation {}", invalidation, e);
+        }
+    }
+
+    // notifies the local listeners as well as the other nodes
+    public void invalidate(String cacheName, List<String> keys) {
+        NearCacheInvalidation invalidation = new NearCacheInvalidation(nodeId, cacheName, keys);
+        listeners.forEach(listener -> listener.accept(invalidation));
+        publish(cacheName, keys);
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        NearCacheInvalidation invalidation;
+        try {
+            invalidation = objectMapper.readValue(message.getBody(), NearCacheInvalidation.class);
+        } catch (IOException e) {
+            log.error("Failed to read near cache invalidation", e);
+            return;
+        }
+
+        if (!nodeId.equals(invalidation.origin())) {
+            listeners.forEach(listener -> listener.accept(invalidation));
+        }
+    }
+}
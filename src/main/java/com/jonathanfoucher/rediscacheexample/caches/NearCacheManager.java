@@ -0,0 +1,56 @@
+package com.jonathanfoucher.rediscacheexample.caches;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class NearCacheManager implements CacheManager {
+    private final CacheManager delegate;
+    private final long maximumSize;
+    private final Duration timeToLive;
+    private final NearCacheInvalidationBroker broker;
+    private final Map<String, NearCache> caches = new ConcurrentHashMap<>();
+
+    public NearCacheManager(CacheManager delegate, long maximumSize, Duration timeToLive, NearCacheInvalidationBroker broker) {
+        this.delegate = delegate;
+        this.maximumSize = maximumSize;
+        this.timeToLive = timeToLive;
+        this.broker = broker;
+        broker.addListener(this::invalidateLocal);
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        NearCache cache = caches.get(name);
+        if (cache != null) {
+            return cache;
+        }
+
+        Cache remoteCache = delegate.getCache(name);
+        if (remoteCache == null) {
+            return null;
+        }
+        return caches.computeIfAbsent(name, key -> new NearCache(remoteCache, Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(timeToLive)
+                .recordStats()
+                .build(), broker));
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return delegate.getCacheNames();
+    }
+
+    private void invalidateLocal(NearCacheInvalidation invalidation) {
+        NearCache cache = caches.get(invalidation.cacheName());
+        if (cache != null) {
+            cache.evictLocal(invalidation.keys());
+        }
+    }
+}
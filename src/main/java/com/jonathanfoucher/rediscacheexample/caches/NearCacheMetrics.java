@@ -0,0 +1,88 @@
+package com.jonathanfoucher.rediscacheexample.caches;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.binder.cache.CacheMeterBinder;
+import org.springframework.data.redis.cache.CacheStatistics;
+import org.springframework.data.redis.cache.RedisCache;
+
+import java.util.function.ToLongFunction;
+
+// the standard cache metrics of a near cache count the hits of both levels, a local hit never reaches Redis,
+// so the misses and puts are the ones of the Redis cache. the local level is also reported on its own as cache.near.*
+public class NearCacheMetrics extends CacheMeterBinder<NearCache> {
+    private final NearCache cache;
+
+    public NearCacheMetrics(NearCache cache, Iterable<Tag> tags) {
+        super(cache, cache.getName(), tags);
+        this.cache = cache;
+    }
+
+    @Override
+    protected Long size() {
+        // the size of the Redis keyspace is reported separately, counting it needs a full SCAN
+        return null;
+    }
+
+    @Override
+    protected long hitCount() {
+        return localStats().hitCount() + remoteStatistic(CacheStatistics::getHits);
+    }
+
+    @Override
+    protected Long missCount() {
+        return remoteStatistic(CacheStatistics::getMisses);
+    }
+
+    @Override
+    protected Long evictionCount() {
+        return null;
+    }
+
+    @Override
+    protected long putCount() {
+        return remoteStatistic(CacheStatistics::getPuts);
+    }
+
+    @Override
+    protected void bindImplementationSpecificMetrics(MeterRegistry registry) {
+        FunctionCounter.builder("cache.removals", cache, c -> remoteStatistic(CacheStatistics::getDeletes))
+                .tags(getTagsWithCacheName())
+                .description("Cache removals")
+                .register(registry);
+
+        FunctionCounter.builder("cache.near.gets", cache, c -> localStats().hitCount())
+                .tags(getTagsWithCacheName())
+                .tag("result", "hit")
+                .description("The number of times cache lookup methods have returned a value from the local cache")
+                .register(registry);
+        FunctionCounter.builder("cache.near.gets", cache, c -> localStats().missCount())
+                .tags(getTagsWithCacheName())
+                .tag("result", "miss")
+                .description("The number of times cache lookup methods have fallen back to Redis")
+                .register(registry);
+        FunctionCounter.builder("cache.near.evictions", cache, c -> localStats().evictionCount())
+                .tags(getTagsWithCacheName())
+                .description("Entries evicted from the local cache because of its maximum size")
+                .register(registry);
+        Gauge.builder("cache.near.size", cache, c -> c.getLocalCache().estimatedSize())
+                .tags(getTagsWithCacheName())
+                .description("The approximate number of entries in the local cache")
+                .register(registry);
+    }
+
+    private CacheStats localStats() {
+        return cache.getLocalCache().stats();
+    }
+
+    // zero when the statistics are disabled on the Redis cache manager
+    private long remoteStatistic(ToLongFunction<CacheStatistics> statistic) {
+        if (cache.getDelegate() instanceof RedisCache redisCache) {
+            return statistic.applyAsLong(redisCache.getStatistics());
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,149 @@
+package com.jonathanfoucher.rediscacheexample.caches;
+
+import org.springframework.cache.support.NullValue;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.redis.cache.CacheStatistics;
+import org.springframework.data.redis.cache.CacheStatisticsCollector;
+import org.springframework.data.redis.cache.RedisCacheWriter;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+// caches the null results of the given caches as an empty value with their own, shorter, time to live.
+// the redis cache writes a null as a jdk serialized NullValue of about a hundred bytes, with the time to live of the
+// found entries, which the movie serializers and the repositories cannot read. the empty value is read back as a null
+// by both serializers, so the repositories see a negative entry as missing while the cache reports a cached null.
+// without a time to live, the null results are not written at all. the writes of the found values are published
+public class NegativeCacheWriter implements RedisCacheWriter {
+    private final RedisCacheWriter delegate;
+    private final Set<String> cacheNames;
+    private final Duration timeToLive;
+    private final ApplicationEventPublisher eventPublisher;
+
+    static final byte[] NEGATIVE_VALUE = new byte[0];
+    // what the redis cache writes and expects back for a null
+    static final byte[] NULL_VALUE = RedisSerializer.java().serialize(NullValue.INSTANCE);
+
+    public NegativeCacheWriter(RedisCacheWriter delegate, Set<String> cacheNames, Duration timeToLive,
+                               ApplicationEventPublisher eventPublisher) {
+        this.delegate = delegate;
+        this.cacheNames = cacheNames;
+        this.timeToLive = timeToLive;
+        this.eventPublisher = eventPublisher;
+    }
+
+    @Override
+    public byte[] get(String name, byte[] key) {
+        return fromStored(name, delegate.get(name, key));
+    }
+
+    @Override
+    public byte[] get(String name, byte[] key, Duration ttl) {
+        return fromStored(name, delegate.get(name, key, ttl));
+    }
+
+    // a null loaded here is written by the delegate with the time to live of the found entries
+    @Override
+    public byte[] get(String name, byte[] key, Supplier<byte[]> valueLoader, Duration ttl, boolean timeToIdleEnabled) {
+        return fromStored(name, delegate.get(name, key, valueLoader, ttl, timeToIdleEnabled));
+    }
+
+    @Override
+    public boolean supportsAsyncRetrieve() {
+        return delegate.supportsAsyncRetrieve();
+    }
+
+    @Override
+    public CompletableFuture<byte[]> retrieve(String name, byte[] key, Duration ttl) {
+        return delegate.retrieve(name, key, ttl)
+                .thenApply(value -> fromStored(name, value));
+    }
+
+    @Override
+    public void put(String name, byte[] key, byte[] value, Duration ttl) {
+        if (!isNegative(name, value)) {
+            delegate.put(name, key, value, ttl);
+            publishWrite(name, key);
+        } else if (isEnabled()) {
+            delegate.put(name, key, NEGATIVE_VALUE, timeToLive);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> store(String name, byte[] key, byte[] value, Duration ttl) {
+        if (!isNegative(name, value)) {
+            CompletableFuture<Void> stored = delegate.store(name, key, value, ttl);
+            publishWrite(name, key);
+            return stored;
+        } else if (isEnabled()) {
+            return delegate.store(name, key, NEGATIVE_VALUE, timeToLive);
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public byte[] putIfAbsent(String name, byte[] key, byte[] value, Duration ttl) {
+        if (!isNegative(name, value)) {
+            byte[] existingValue = delegate.putIfAbsent(name, key, value, ttl);
+            if (existingValue == null) {
+                publishWrite(name, key);
+            }
+            return fromStored(name, existingValue);
+        } else if (isEnabled()) {
+            return fromStored(name, delegate.putIfAbsent(name, key, NEGATIVE_VALUE, timeToLive));
+        }
+        return get(name, key);
+    }
+
+    @Override
+    public void remove(String name, byte[] key) {
+        delegate.remove(name, key);
+    }
+
+    @Override
+    public void clean(String name, byte[] pattern) {
+        delegate.clean(name, pattern);
+    }
+
+    @Override
+    public void clearStatistics(String name) {
+        delegate.clearStatistics(name);
+    }
+
+    @Override
+    public RedisCacheWriter withStatisticsCollector(CacheStatisticsCollector cacheStatisticsCollector) {
+        return new NegativeCacheWriter(delegate.withStatisticsCollector(cacheStatisticsCollector), cacheNames, timeToLive,
+                eventPublisher);
+    }
+
+    @Override
+    public CacheStatistics getCacheStatistics(String cacheName) {
+        return delegate.getCacheStatistics(cacheName);
+    }
+
+    private boolean isEnabled() {
+        return timeToLive != null && timeToLive.isPositive();
+    }
+
+    private void publishWrite(String name, byte[] key) {
+        if (cacheNames.contains(name)) {
+            eventPublisher.publishEvent(new CacheEntryWritten(name, new String(key, StandardCharsets.UTF_8)));
+        }
+    }
+
+    private boolean isNegative(String name, byte[] value) {
+        return cacheNames.contains(name) && Arrays.equals(NULL_VALUE, value);
+    }
+
+    private byte[] fromStored(String name, byte[] value) {
+        if (value != null && value.length == 0 && cacheNames.contains(name)) {
+            return NULL_VALUE;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,240 @@
+package com.jonathanfoucher.rediscacheexample.caches;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.RedisConnectionFailureException;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+// bypasses redis once too many of the last calls failed or went over the slow call duration: open, the calls are answered
+// by their fallback at once, until the wait duration is over. then a few trial calls go to redis again, closing the breaker
+// when all of them succeed in time and opening it again otherwise. only the redis failures, the data access exceptions,
+// are counted, the other exceptions are rethrown as they are. disabled, every call goes to redis and its failures are thrown
+@Slf4j
+public class RedisCircuitBreaker {
+    private final boolean enabled;
+    private final double failureRateThreshold;
+    private final double slowCallRateThreshold;
+    private final long slowCallNanos;
+    private final int minimumCalls;
+    private final long waitNanos;
+    private final int permittedCallsInHalfOpenState;
+    private final LongSupplier nanoClock;
+
+    // outcomes of the last calls while closed, as a ring
+    private final byte[] outcomes;
+    private int nextOutcome;
+    private int calls;
+    private int failures;
+    private int slowCalls;
+
+    private volatile State state = State.CLOSED;
+    private long openUntil;
+    private int halfOpenPermits;
+    private int halfOpenSuccesses;
+
+    private static final byte FAILED = 1;
+    private static final byte SLOW = 2;
+
+    public RedisCircuitBreaker(boolean enabled, double failureRateThreshold, double slowCallRateThreshold, Duration slowCallDuration,
+                               int windowSize, int minimumCalls, Duration waitDurationInOpenState, int permittedCallsInHalfOpenState) {
+        this(enabled, failureRateThreshold, slowCallRateThreshold, slowCallDuration, windowSize, minimumCalls, waitDurationInOpenState,
+                permittedCallsInHalfOpenState, System::nanoTime);
+    }
+
+    RedisCircuitBreaker(boolean enabled, double failureRateThreshold, double slowCallRateThreshold, Duration slowCallDuration,
+                        int windowSize, int minimumCalls, Duration waitDurationInOpenState, int permittedCallsInHalfOpenState,
+                        LongSupplier nanoClock) {
+        if (failureRateThreshold <= 0 || failureRateThreshold > 100 || slowCallRateThreshold <= 0 || slowCallRateThreshold > 100) {
+            throw new IllegalArgumentException("Rate thresholds must be between 0 excluded and 100: " + failureRateThreshold + ", "
+                    + slowCallRateThreshold);
+        }
+        if (windowSize < 1 || minimumCalls < 1 || minimumCalls > windowSize) {
+            throw new IllegalArgumentException("Minimum calls must be between 1 and the window size: " + minimumCalls + ", " + windowSize);
+        }
+        if (permittedCallsInHalfOpenState < 1) {
+            throw new IllegalArgumentException("Permitted calls in half open state must be positive: " + permittedCallsInHalfOpenState);
+        }
+        this.enabled = enabled;
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.slowCallNanos = slowCallDuration.toNanos();
+        this.outcomes = new byte[windowSize];
+        this.minimumCalls = minimumCalls;
+        this.waitNanos = waitDurationInOpenState.toNanos();
+        this.permittedCallsInHalfOpenState = permittedCallsInHalfOpenState;
+        this.nanoClock = nanoClock;
+    }
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    // the redis call, or the fallback when redis is bypassed or the call failed
+    public <T> T call(Supplier<T> redisCall, Supplier<T> fallback) {
+        if (!enabled) {
+            return redisCall.get();
+        }
+        if (!tryAcquire()) {
+            return fallback.get();
+        }
+
+        long start = nanoClock.getAsLong();
+        boolean failed = false;
+        try {
+            return redisCall.get();
+        } catch (DataAccessException e) {
+            failed = true;
+            log.debug("Redis call failed, answered by its fallback", e);
+            return fallback.get();
+        } finally {
+            onResult(nanoClock.getAsLong() - start, failed);
+        }
+    }
+
+    // the redis call, skipped when redis is bypassed and ignored when it failed
+    public void run(Runnable redisCall) {
+        call(() -> {
+            redisCall.run();
+            return null;
+        }, () -> null);
+    }
+
+    // the redis call, failing at once when redis is bypassed, for the calls that have no fallback
+    public <T> T callOrFail(Supplier<T> redisCall) {
+        if (!tryAcquire()) {
+            throw new RedisConnectionFailureException("Redis is bypassed by the circuit breaker");
+        }
+
+        long start = nanoClock.getAsLong();
+        boolean failed = false;
+        try {
+            return redisCall.get();
+        } catch (DataAccessException e) {
+            failed = true;
+            throw e;
+        } finally {
+            onResult(nanoClock.getAsLong() - start, failed);
+        }
+    }
+
+    public void runOrFail(Runnable redisCall) {
+        callOrFail(() -> {
+            redisCall.run();
+            return null;
+        });
+    }
+
+    // whether a call may go to redis, each call let through must then be followed by its result
+    public boolean tryAcquire() {
+        if (!enabled || state == State.CLOSED) {
+            return true;
+        }
+
+        synchronized (this) {
+            if (state == State.OPEN) {
+                if (nanoClock.getAsLong() - openUntil < 0) {
+                    return false;
+                }
+                transitionTo(State.HALF_OPEN);
+                halfOpenPermits = permittedCallsInHalfOpenState;
+                halfOpenSuccesses = 0;
+            }
+            if (state == State.HALF_OPEN) {
+                if (halfOpenPermits == 0) {
+                    return false;
+                }
+                halfOpenPermits--;
+            }
+            return true;
+        }
+    }
+
+    // the duration is the one of the redis call alone
+    public synchronized void onResult(long durationNanos, boolean failed) {
+        if (!enabled) {
+            return;
+        }
+
+        byte outcome = (byte) ((failed ? FAILED : 0) | (durationNanos >= slowCallNanos ? SLOW : 0));
+        switch (state) {
+            case CLOSED -> {
+                record(outcome);
+                if (calls >= minimumCalls && (getFailureRate() >= failureRateThreshold || getSlowCallRate() >= slowCallRateThreshold)) {
+                    log.warn("Bypassing redis, {}% of the last {} calls failed and {}% were slow", getFailureRate(), calls,
+                            getSlowCallRate());
+                    open();
+                }
+            }
+            case HALF_OPEN -> {
+                if (outcome != 0) {
+                    log.warn("Bypassing redis again, a trial call {}", failed ? "failed" : "was slow");
+                    open();
+                } else if (++halfOpenSuccesses == permittedCallsInHalfOpenState) {
+                    transitionTo(State.CLOSED);
+                }
+            }
+            // the calls let through before the breaker opened
+            case OPEN -> {
+            }
+        }
+    }
+
+    // in percent of the calls recorded since the breaker last closed, 0 until the minimum calls are recorded
+    public synchronized double getFailureRate() {
+        return calls >= minimumCalls ? 100.0 * failures / calls : 0;
+    }
+
+    public synchronized double getSlowCallRate() {
+        return calls >= minimumCalls ? 100.0 * slowCalls / calls : 0;
+    }
+
+    public synchronized int getBufferedCalls() {
+        return calls;
+    }
+
+    private void record(byte outcome) {
+        if (calls == outcomes.length) {
+            byte evicted = outcomes[nextOutcome];
+            failures -= evicted & FAILED;
+            slowCalls -= (evicted & SLOW) >> 1;
+        } else {
+            calls++;
+        }
+        outcomes[nextOutcome] = outcome;
+        failures += outcome & FAILED;
+        slowCalls += (outcome & SLOW) >> 1;
+        nextOutcome = (nextOutcome + 1) % outcomes.length;
+    }
+
+    private void open() {
+        openUntil = nanoClock.getAsLong() + waitNanos;
+        transitionTo(State.OPEN);
+    }
+
+    private void transitionTo(State newState) {
+        if (newState != State.OPEN) {
+            log.info("Redis circuit breaker {}", newState == State.CLOSED ? "closed" : "half open");
+        }
+        if (newState == State.CLOSED) {
+            // each closed period is judged on its own calls, the rates that opened the breaker are kept until then
+            calls = 0;
+            failures = 0;
+            slowCalls = 0;
+            nextOutcome = 0;
+        }
+        state = newState;
+    }
+}
@@ -0,0 +1,107 @@
+package com.jonathanfoucher.rediscacheexample.caches;
+
+import org.springframework.beans.factory.DisposableBean;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.function.Function;
+
+// redis nodes the keys are spread over with client side consistent hashing, ketama style: each node is placed at
+// several points of a ring and a key goes to the first node clockwise of its hash, so adding or removing a node only
+// moves the keys of its neighbours. as on a cluster, only the hash tag of a key is hashed when it has one,
+// which keeps the keys of a same tag on the same node
+public class RedisShards<T> implements AutoCloseable {
+    private final Map<String, T> nodes;
+    private final NavigableMap<Long, T> ring;
+    // the nodes are only closed by the shards that created them
+    private final boolean ownsNodes;
+
+    private static final int POINTS_PER_DIGEST = 4;
+
+    private RedisShards(Map<String, T> nodes, NavigableMap<Long, T> ring, boolean ownsNodes) {
+        this.nodes = nodes;
+        this.ring = ring;
+        this.ownsNodes = ownsNodes;
+    }
+
+    public static <T> RedisShards<T> single(T node) {
+        return new RedisShards<>(Map.of("", node), new TreeMap<>(Map.of(0L, node)), false);
+    }
+
+    // the nodes are closed along with the shards, the names place them on the ring and must be the same on every client
+    public static <T> RedisShards<T> of(Map<String, T> nodes, int virtualNodes) {
+        if (nodes.isEmpty()) {
+            throw new IllegalArgumentException("At least one node is required");
+        }
+
+        NavigableMap<Long, T> ring = new TreeMap<>();
+        for (Map.Entry<String, T> node : nodes.entrySet()) {
+            for (int i = 0; i < Math.max(1, virtualNodes / POINTS_PER_DIGEST); i++) {
+                byte[] digest = md5(node.getKey() + "-" + i);
+                for (int point = 0; point < POINTS_PER_DIGEST; point++) {
+                    ring.put(point(digest, point), node.getValue());
+                }
+            }
+        }
+        return new RedisShards<>(new LinkedHashMap<>(nodes), ring, true);
+    }
+
+    public T forKey(String key) {
+        if (ring.size() == 1) {
+            return ring.firstEntry().getValue();
+        }
+
+        String hashTag = MovieCacheKeys.hashTag(key);
+        Map.Entry<Long, T> node = ring.ceilingEntry(point(md5(hashTag.isEmpty() ? key : hashTag), 0));
+        return node != null ? node.getValue() : ring.firstEntry().getValue();
+    }
+
+    public Collection<T> all() {
+        return Collections.unmodifiableCollection(nodes.values());
+    }
+
+    public boolean isSharded() {
+        return nodes.size() > 1;
+    }
+
+    // same nodes and same ring with a value derived from each node, e.g. a template per connection factory
+    public <U> RedisShards<U> map(Function<T, U> mapper) {
+        Map<T, U> mapped = new IdentityHashMap<>();
+        Map<String, U> mappedNodes = new LinkedHashMap<>();
+        nodes.forEach((name, node) -> mappedNodes.put(name, mapped.computeIfAbsent(node, mapper)));
+        NavigableMap<Long, U> mappedRing = new TreeMap<>();
+        ring.forEach((point, node) -> mappedRing.put(point, mapped.get(node)));
+        return new RedisShards<>(mappedNodes, mappedRing, false);
+    }
+
+    @Override
+    public void close() throws Exception {
+        if (!ownsNodes) {
+            return;
+        }
+        for (T node : nodes.values()) {
+            if (node instanceof DisposableBean disposableNode) {
+                disposableNode.destroy();
+            } else if (node instanceof AutoCloseable closeableNode) {
+                closeableNode.close();
+            }
+        }
+    }
+
+    private static long point(byte[] digest, int point) {
+        return ((long) (digest[3 + point * 4] & 0xFF) << 24)
+                | ((long) (digest[2 + point * 4] & 0xFF) << 16)
+                | ((long) (digest[1 + point * 4] & 0xFF) << 8)
+                | (digest[point * 4] & 0xFF);
+    }
+
+    private static byte[] md5(String value) {
+        try {
+            return MessageDigest.getInstance("MD5").digest(value.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.jonathanfoucher.rediscacheexample.caches;
+
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.cache.CacheStatistics;
+import org.springframework.data.redis.cache.CacheStatisticsCollector;
+import org.springframework.data.redis.cache.RedisCacheWriter;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+// reads the entries of the refreshed caches along with their remaining time to live, in a single round trip,
+// and asks for a refresh of the hits close to expiration while they are still served from the cache.
+// with beta at 0 every hit within the window is refreshed, otherwise the refresh happens with a probability of
+// exp(-remaining / (beta * window)) as in XFetch, which makes the hottest entries refresh first
+public class RefreshAheadCacheWriter implements RedisCacheWriter {
+    private final RedisCacheWriter delegate;
+    private final RedisShards<RedisTemplate<byte[], byte[]>> redisTemplates;
+    private final Set<String> cacheNames;
+    private final Function<String, String> keyPrefix;
+    private final Duration window;
+    private final double beta;
+    private final ApplicationEventPublisher eventPublisher;
+    private final CacheStatisticsCollector statistics;
+
+    private static final RedisScript<List> GET_WITH_TTL_SCRIPT = RedisScript.of(new ClassPathResource("scripts/get_with_ttl.lua"), List.class);
+
+    public RefreshAheadCacheWriter(RedisCacheWriter delegate, RedisShards<RedisTemplate<byte[], byte[]>> redisTemplates, Set<String> cacheNames,
+                                   Function<String, String> keyPrefix, Duration window, double beta,
+                                   ApplicationEventPublisher eventPublisher) {
+        this(delegate, redisTemplates, cacheNames, keyPrefix, window, beta, eventPublisher, CacheStatisticsCollector.none());
+    }
+
+    private RefreshAheadCacheWriter(RedisCacheWriter delegate, RedisShards<RedisTemplate<byte[], byte[]>> redisTemplates, Set<String> cacheNames,
+                                    Function<String, String> keyPrefix, Duration window, double beta,
+                                    ApplicationEventPublisher eventPublisher, CacheStatisticsCollector statistics) {
+        this.delegate = delegate;
+        this.redisTemplates = redisTemplates;
+        this.cacheNames = cacheNames;
+        this.keyPrefix = keyPrefix;
+        this.window = window;
+        this.beta = beta;
+        this.eventPublisher = eventPublisher;
+        this.statistics = statistics;
+    }
+
+    // the script bypasses the delegate, so the gets are counted here on the collector shared with it
+    @Override
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public byte[] get(String name, byte[] key) {
+        if (!cacheNames.contains(name)) {
+            return delegate.get(name, key);
+        }
+
+        // list results of a script are deserialized element by element
+        RedisSerializer valueSerializer = RedisSerializer.byteArray();
+        List<Object> result = redisTemplates.forKey(new String(key, StandardCharsets.UTF_8)).execute(GET_WITH_TTL_SCRIPT, RedisSerializer.byteArray(), valueSerializer, List.of(key));
+        statistics.incGets(name);
+        if (result == null || result.size() < 2) {
+            statistics.incMisses(name);
+            return null;
+        }
+        statistics.incHits(name);
+
+        byte[] value = (byte[]) result.get(0);
+        // a negative time to live means that the entry does not expire
+        long remainingMillis = (Long) result.get(1);
+        // negative entries are empty and short lived, they expire rather than being refreshed
+        if (value.length > 0 && remainingMillis >= 0 && shouldRefresh(remainingMillis)) {
+            eventPublisher.publishEvent(new CacheRefreshRequest(name, cacheKey(name, key)));
+        }
+        return value;
+    }
+
+    @Override
+    public byte[] get(String name, byte[] key, Duration ttl) {
+        return delegate.get(name, key, ttl);
+    }
+
+    @Override
+    public byte[] get(String name, byte[] key, Supplier<byte[]> valueLoader, Duration ttl, boolean timeToIdleEnabled) {
+        return delegate.get(name, key, valueLoader, ttl, timeToIdleEnabled);
+    }
+
+    @Override
+    public boolean supportsAsyncRetrieve() {
+        return delegate.supportsAsyncRetrieve();
+    }
+
+    @Override
+    public CompletableFuture<byte[]> retrieve(String name, byte[] key, Duration ttl) {
+        return delegate.retrieve(name, key, ttl);
+    }
+
+    @Override
+    public void put(String name, byte[] key, byte[] value, Duration ttl) {
+        delegate.put(name, key, value, ttl);
+    }
+
+    @Override
+    public CompletableFuture<Void> store(String name, byte[] key, byte[] value, Duration ttl) {
+        return delegate.store(name, key, value, ttl);
+    }
+
+    @Override
+    public byte[] putIfAbsent(String name, byte[] key, byte[] value, Duration ttl) {
+        return delegate.putIfAbsent(name, key, value, ttl);
+    }
+
+    @Override
+    public void remove(String name, byte[] key) {
+        delegate.remove(name, key);
+    }
+
+    @Override
+    public void clean(String name, byte[] pattern) {
+        delegate.clean(name, pattern);
+    }
+
+    @Override
+    public void clearStatistics(String name) {
+        delegate.clearStatistics(name);
+    }
+
+    @Override
+    public RedisCacheWriter withStatisticsCollector(CacheStatisticsCollector cacheStatisticsCollector) {
+        return new RefreshAheadCacheWriter(delegate.withStatisticsCollector(cacheStatisticsCollector), redisTemplates, cacheNames,
+                keyPrefix, window, beta, eventPublisher, cacheStatisticsCollector);
+    }
+
+    @Override
+    public CacheStatistics getCacheStatistics(String cacheName) {
+        return delegate.getCacheStatistics(cacheName);
+    }
+
+    boolean shouldRefresh(long remainingMillis) {
+        long windowMillis = window.toMillis();
+        if (beta <= 0) {
+            return remainingMillis <= windowMillis;
+        }
+        double random = ThreadLocalRandom.current().nextDouble();
+        return -Math.log(random) * beta * windowMillis >= remainingMillis;
+    }
+
+    // without the hash tag of the key layout, the refresh is asked for the cache key as the application knows it
+    private String cacheKey(String name, byte[] key) {
+        String redisKey = new String(key, StandardCharsets.UTF_8);
+        String prefix = keyPrefix.apply(name);
+        return MovieCacheKeys.stripHashTag(redisKey.startsWith(prefix) ? redisKey.substring(prefix.length()) : redisKey);
+    }
+}
@@ -0,0 +1,89 @@
+package com.jonathanfoucher.rediscacheexample.caches;
+
+import org.springframework.data.redis.cache.CacheStatistics;
+import org.springframework.data.redis.cache.CacheStatisticsCollector;
+import org.springframework.data.redis.cache.RedisCacheWriter;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+// routes each cache entry to the writer of its shard, the cache clears go to every shard
+public class ShardedRedisCacheWriter implements RedisCacheWriter {
+    private final RedisShards<RedisCacheWriter> shards;
+
+    public ShardedRedisCacheWriter(RedisShards<RedisCacheWriter> shards) {
+        this.shards = shards;
+    }
+
+    @Override
+    public byte[] get(String name, byte[] key) {
+        return shard(key).get(name, key);
+    }
+
+    @Override
+    public byte[] get(String name, byte[] key, Duration ttl) {
+        return shard(key).get(name, key, ttl);
+    }
+
+    @Override
+    public byte[] get(String name, byte[] key, Supplier<byte[]> valueLoader, Duration ttl, boolean timeToIdleEnabled) {
+        return shard(key).get(name, key, valueLoader, ttl, timeToIdleEnabled);
+    }
+
+    @Override
+    public boolean supportsAsyncRetrieve() {
+        return shards.all().stream().allMatch(RedisCacheWriter::supportsAsyncRetrieve);
+    }
+
+    @Override
+    public CompletableFuture<byte[]> retrieve(String name, byte[] key, Duration ttl) {
+        return shard(key).retrieve(name, key, ttl);
+    }
+
+    @Override
+    public void put(String name, byte[] key, byte[] value, Duration ttl) {
+        shard(key).put(name, key, value, ttl);
+    }
+
+    @Override
+    public CompletableFuture<Void> store(String name, byte[] key, byte[] value, Duration ttl) {
+        return shard(key).store(name, key, value, ttl);
+    }
+
+    @Override
+    public byte[] putIfAbsent(String name, byte[] key, byte[] value, Duration ttl) {
+        return shard(key).putIfAbsent(name, key, value, ttl);
+    }
+
+    @Override
+    public void remove(String name, byte[] key) {
+        shard(key).remove(name, key);
+    }
+
+    @Override
+    public void clean(String name, byte[] pattern) {
+        shards.all().forEach(shard -> shard.clean(name, pattern));
+    }
+
+    @Override
+    public void clearStatistics(String name) {
+        shards.all().forEach(shard -> shard.clearStatistics(name));
+    }
+
+    // the collector is shared by the shards, so any of them reports the statistics of the whole cache
+    @Override
+    public RedisCacheWriter withStatisticsCollector(CacheStatisticsCollector cacheStatisticsCollector) {
+        return new ShardedRedisCacheWriter(shards.map(shard -> shard.withStatisticsCollector(cacheStatisticsCollector)));
+    }
+
+    @Override
+    public CacheStatistics getCacheStatistics(String cacheName) {
+        return shards.all().iterator().next().getCacheStatistics(cacheName);
+    }
+
+    private RedisCacheWriter shard(byte[] key) {
+        return shards.forKey(new String(key, StandardCharsets.UTF_8));
+    }
+}
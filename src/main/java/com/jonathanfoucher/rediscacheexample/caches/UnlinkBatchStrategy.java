@@ -0,0 +1,84 @@
+package com.jonathanfoucher.rediscacheexample.caches;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.LongTaskTimer;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.data.redis.cache.BatchStrategy;
+import org.springframework.data.redis.connection.RedisClusterConnection;
+import org.springframework.data.redis.connection.RedisClusterNode;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ScanOptions;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// clears a cache with SCAN and one UNLINK per batch of keys, rather than the KEYS and DEL of the default strategy,
+// so that Redis never blocks on the whole keyspace and frees the values in the background. the other commands run
+// between the batches, the readers miss the keys as they go. the clears in progress are reported by the
+// movie.cache.clear long task timer, the keys unlinked so far by movie.cache.clear.keys
+public class UnlinkBatchStrategy implements BatchStrategy {
+    private final int batchSize;
+    private final MeterRegistry meterRegistry;
+
+    private static final String CLEAR_METRIC = "movie.cache.clear";
+    private static final String CLEARED_KEYS_METRIC = "movie.cache.clear.keys";
+
+    public UnlinkBatchStrategy(int batchSize, MeterRegistry meterRegistry) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        this.batchSize = batchSize;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public long cleanCache(RedisConnection connection, String name, byte[] pattern) {
+        ScanOptions options = ScanOptions.scanOptions()
+                .match(pattern)
+                .count(batchSize)
+                .build();
+        Counter clearedKeys = Counter.builder(CLEARED_KEYS_METRIC)
+                .description("Keys unlinked by the cache clears")
+                .tag("cache", name)
+                .register(meterRegistry);
+
+        return LongTaskTimer.builder(CLEAR_METRIC)
+                .description("Cache clears in progress")
+                .tag("cache", name)
+                .register(meterRegistry)
+                .record(() -> {
+                    // the cluster wide SCAN of the client is not supported, each master is scanned on its own
+                    if (connection instanceof RedisClusterConnection clusterConnection) {
+                        long count = 0;
+                        for (RedisClusterNode node : clusterConnection.clusterGetNodes()) {
+                            if (node.isMaster()) {
+                                count += unlinkAll(connection, clusterConnection.scan(node, options), clearedKeys);
+                            }
+                        }
+                        return count;
+                    }
+                    return unlinkAll(connection, connection.keyCommands().scan(options), clearedKeys);
+                });
+    }
+
+    private long unlinkAll(RedisConnection connection, Cursor<byte[]> cursor, Counter clearedKeys) {
+        long count = 0;
+        try (cursor) {
+            List<byte[]> keys = new ArrayList<>(batchSize);
+            while (cursor.hasNext()) {
+                keys.add(cursor.next());
+                if (keys.size() == batchSize || !cursor.hasNext()) {
+                    // the keys expired since the SCAN are not counted
+                    Long unlinked = connection.keyCommands().unlink(keys.toArray(byte[][]::new));
+                    if (unlinked != null) {
+                        count += unlinked;
+                        clearedKeys.increment(unlinked);
+                    }
+                    keys.clear();
+                }
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,219 @@
+package com.jonathanfoucher.rediscacheexample.configs;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jonathanfoucher.rediscacheexample.caches.AdaptiveTimeToLiveCacheWriter;
+import com.jonathanfoucher.rediscacheexample.caches.CircuitBreakerCacheWriter;
+import com.jonathanfoucher.rediscacheexample.caches.HotKeyCacheWriter;
+import com.jonathanfoucher.rediscacheexample.caches.HotKeyTracker;
+import com.jonathanfoucher.rediscacheexample.caches.JitteredTimeToLive;
+import com.jonathanfoucher.rediscacheexample.caches.MovieCacheKeys;
+import com.jonathanfoucher.rediscacheexample.caches.NearCacheInvalidationBroker;
+import com.jonathanfoucher.rediscacheexample.caches.NearCache;
+import com.jonathanfoucher.rediscacheexample.caches.NearCacheManager;
+import com.jonathanfoucher.rediscacheexample.caches.NearCacheMetrics;
+import com.jonathanfoucher.rediscacheexample.caches.NegativeCacheWriter;
+import com.jonathanfoucher.rediscacheexample.caches.RedisCircuitBreaker;
+import com.jonathanfoucher.rediscacheexample.caches.RedisShards;
+import com.jonathanfoucher.rediscacheexample.caches.RefreshAheadCacheWriter;
+import com.jonathanfoucher.rediscacheexample.caches.ShardedRedisCacheWriter;
+import com.jonathanfoucher.rediscacheexample.caches.UnlinkBatchStrategy;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.actuate.metrics.cache.CacheMeterBinderProvider;
+import org.springframework.boot.autoconfigure.cache.CacheProperties;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.format.support.DefaultFormattingConversionService;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.cache.RedisCacheWriter;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.time.Duration;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+@Configuration
+@EnableConfigurationProperties(CacheProperties.class)
+public class CacheConfig {
+    private static final String MOVIE_CACHE_NAME = MovieCacheKeys.MOVIE_CACHE_NAME;
+
+    @Bean
+    public CacheManager cacheManager(RedisShards<RedisConnectionFactory> connectionFactories, CacheProperties cacheProperties,
+                                     MovieCacheProperties movieCacheProperties, RedisSerializer<Object> cacheValueSerializer,
+                                     ObjectProvider<NearCacheInvalidationBroker> nearCacheInvalidationBroker,
+                                     ObjectProvider<HotKeyTracker> hotKeyTracker, RedisCircuitBreaker redisCircuitBreaker,
+                                     ApplicationEventPublisher eventPublisher, MeterRegistry meterRegistry) {
+        CacheManager cacheManager = redisCacheManager(connectionFactories, cacheProperties, movieCacheProperties, cacheValueSerializer,
+                hotKeyTracker.getIfAvailable(), redisCircuitBreaker, eventPublisher, meterRegistry);
+
+        NearCacheInvalidationBroker broker = nearCacheInvalidationBroker.getIfAvailable();
+        if (broker != null) {
+            MovieCacheProperties.NearCache nearCache = movieCacheProperties.getNearCache();
+            cacheManager = new NearCacheManager(cacheManager, nearCache.getMaximumSize(), nearCache.getTimeToLive(), broker);
+        }
+        return cacheManager;
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "movie-cache.hot-keys", name = "enabled", havingValue = "true")
+    public HotKeyTracker hotKeyTracker(MovieCacheProperties movieCacheProperties) {
+        MovieCacheProperties.HotKeys hotKeys = movieCacheProperties.getHotKeys();
+        return new HotKeyTracker(hotKeys.getSampleRate(), hotKeys.getMinReads(), hotKeys.getMaximumSize(), hotKeys.getWindow(),
+                hotKeys.getSketchWidth(), hotKeys.getSketchDepth());
+    }
+
+    // disabled, every call goes to redis as before
+    @Bean
+    public RedisCircuitBreaker redisCircuitBreaker(MovieCacheProperties movieCacheProperties) {
+        MovieCacheProperties.CircuitBreaker circuitBreaker = movieCacheProperties.getCircuitBreaker();
+        return new RedisCircuitBreaker(circuitBreaker.isEnabled(), circuitBreaker.getFailureRateThreshold(),
+                circuitBreaker.getSlowCallRateThreshold(), circuitBreaker.getSlowCallDuration(), circuitBreaker.getWindowSize(),
+                circuitBreaker.getMinimumCalls(), circuitBreaker.getWaitDurationInOpenState(),
+                circuitBreaker.getPermittedCallsInHalfOpenState());
+    }
+
+    // picked up by the actuator cache metrics, which only know the caches of the standard cache managers
+    @Bean
+    @ConditionalOnProperty(prefix = "movie-cache.near-cache", name = "enabled", havingValue = "true")
+    public CacheMeterBinderProvider<NearCache> nearCacheMeterBinderProvider() {
+        return NearCacheMetrics::new;
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "movie-cache.near-cache", name = "enabled", havingValue = "true")
+    public NearCacheInvalidationBroker nearCacheInvalidationBroker(StringRedisTemplate redisTemplate, ObjectMapper objectMapper,
+                                                                   MovieCacheProperties movieCacheProperties,
+                                                                   RedisCircuitBreaker redisCircuitBreaker) {
+        return new NearCacheInvalidationBroker(redisTemplate, objectMapper, movieCacheProperties.getNearCache().getInvalidationChannel(),
+                redisCircuitBreaker);
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "movie-cache.near-cache", name = "enabled", havingValue = "true")
+    public RedisMessageListenerContainer nearCacheInvalidationListenerContainer(RedisConnectionFactory connectionFactory,
+                                                                                NearCacheInvalidationBroker broker,
+                                                                                Environment environment) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        if (Threading.VIRTUAL.isActive(environment)) {
+            container.setTaskExecutor(new VirtualThreadTaskExecutor("near-cache-invalidation-"));
+        }
+        container.addMessageListener(broker, new ChannelTopic(broker.getChannel()));
+        return container;
+    }
+
+    // same as the Spring Boot auto-configuration, which backs off since we define our own cache manager,
+    // plus the time to live jitter, the refresh ahead, the negative entries, the circuit breaker, the hot keys, the time to
+    // live and key layout of the movies cache, the sharding of the entries and the clears by batches
+    private RedisCacheManager redisCacheManager(RedisShards<RedisConnectionFactory> connectionFactories, CacheProperties cacheProperties,
+                                                MovieCacheProperties movieCacheProperties, RedisSerializer<Object> valueSerializer,
+                                                HotKeyTracker hotKeyTracker, RedisCircuitBreaker redisCircuitBreaker,
+                                                ApplicationEventPublisher eventPublisher, MeterRegistry meterRegistry) {
+        CacheProperties.Redis redisProperties = cacheProperties.getRedis();
+        RedisCacheConfiguration configuration = RedisCacheConfiguration.defaultCacheConfig()
+                .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(valueSerializer));
+        if (redisProperties.getTimeToLive() != null) {
+            configuration = configuration.entryTtl(new JitteredTimeToLive(redisProperties.getTimeToLive(),
+                    movieCacheProperties.getTimeToLiveJitter()));
+        }
+        Duration movieTimeToLive = movieCacheProperties.timeToLive(MOVIE_CACHE_NAME, redisProperties.getTimeToLive());
+        if (redisProperties.getKeyPrefix() != null) {
+            configuration = configuration.prefixCacheNameWith(redisProperties.getKeyPrefix());
+        }
+        if (!redisProperties.isCacheNullValues()) {
+            configuration = configuration.disableCachingNullValues();
+        }
+        if (!redisProperties.isUseKeyPrefix()) {
+            configuration = configuration.disableKeyPrefix();
+        }
+
+        UnlinkBatchStrategy batchStrategy = new UnlinkBatchStrategy(movieCacheProperties.getScanBatchSize(), meterRegistry);
+        RedisShards<RedisCacheWriter> cacheWriters = connectionFactories.map(connectionFactory ->
+                RedisCacheWriter.nonLockingRedisCacheWriter(connectionFactory, batchStrategy));
+        RedisCacheWriter cacheWriter = cacheWriters.isSharded() ? new ShardedRedisCacheWriter(cacheWriters) : cacheWriters.forKey(MOVIE_CACHE_NAME);
+        MovieCacheProperties.RefreshAhead refreshAhead = movieCacheProperties.getRefreshAhead();
+        if (refreshAhead.isEnabled()) {
+            RedisCacheConfiguration keyConfiguration = configuration;
+            cacheWriter = new RefreshAheadCacheWriter(cacheWriter, connectionFactories.map(CacheConfig::rawRedisTemplate), Set.of(MOVIE_CACHE_NAME),
+                    name -> keyConfiguration.usePrefix() ? keyConfiguration.getKeyPrefixFor(name) : "",
+                    refreshAhead.getWindow(), refreshAhead.getBeta(), eventPublisher);
+        }
+        MovieCacheProperties.NegativeCache negativeCache = movieCacheProperties.getNegativeCache();
+        cacheWriter = new NegativeCacheWriter(cacheWriter, Set.of(MOVIE_CACHE_NAME),
+                negativeCache.isEnabled() ? negativeCache.getTimeToLive() : null, eventPublisher);
+        MovieCacheProperties.CircuitBreaker circuitBreaker = movieCacheProperties.getCircuitBreaker();
+        if (circuitBreaker.isEnabled()) {
+            // around all the writers reaching redis, the refresh ahead included
+            cacheWriter = new CircuitBreakerCacheWriter(cacheWriter, Set.of(MOVIE_CACHE_NAME), redisCircuitBreaker,
+                    circuitBreaker.getFallbackMaximumSize(), circuitBreaker.getFallbackTimeToLive());
+        }
+        if (hotKeyTracker != null) {
+            // outside the writers reaching redis, so that the hits served from memory skip them
+            MovieCacheProperties.HotKeys hotKeys = movieCacheProperties.getHotKeys();
+            cacheWriter = new HotKeyCacheWriter(cacheWriter, Set.of(MOVIE_CACHE_NAME), hotKeyTracker, hotKeys.getTimeToLive(),
+                    hotKeys.getMaximumSize());
+        }
+        MovieCacheProperties.AdaptiveTimeToLive adaptiveTimeToLive = movieCacheProperties.getAdaptiveTimeToLive();
+        if (adaptiveTimeToLive.isEnabled() && movieTimeToLive != null) {
+            // outermost, so that the reads served from memory are counted as well
+            cacheWriter = new AdaptiveTimeToLiveCacheWriter(cacheWriter, Set.of(MOVIE_CACHE_NAME), movieTimeToLive,
+                    adaptiveTimeToLive.getMinTimeToLive(), adaptiveTimeToLive.getMaxTimeToLive(), adaptiveTimeToLive.getHotReads(),
+                    adaptiveTimeToLive.getWindow(), adaptiveTimeToLive.getSketchWidth(), adaptiveTimeToLive.getSketchDepth(),
+                    eventPublisher);
+        }
+
+        RedisCacheManager.RedisCacheManagerBuilder builder = RedisCacheManager.builder(cacheWriter)
+                .cacheDefaults(configuration);
+        if (redisProperties.isEnableStatistics()) {
+            builder.enableStatistics();
+        }
+        if (!cacheProperties.getCacheNames().isEmpty()) {
+            builder.initialCacheNames(new LinkedHashSet<>(cacheProperties.getCacheNames()));
+        }
+        // after the initial cache names, which would override it with the defaults
+        RedisCacheConfiguration movieConfiguration = configuration;
+        if (movieTimeToLive != null) {
+            movieConfiguration = movieConfiguration.entryTtl(new JitteredTimeToLive(movieTimeToLive,
+                    movieCacheProperties.getTimeToLiveJitter()));
+        }
+        int keyBuckets = movieCacheProperties.getSharding().getKeyBuckets();
+        if (keyBuckets > 0) {
+            movieConfiguration = movieConfiguration.withConversionService(movieKeyConversionService(new MovieCacheKeys(keyBuckets)));
+        }
+        builder.withCacheConfiguration(MOVIE_CACHE_NAME, movieConfiguration);
+
+        RedisCacheManager cacheManager = builder.build();
+        cacheManager.initializeCaches();
+        return cacheManager;
+    }
+
+    // the movie ids are turned into their hash tagged keys, the other keys are converted as by default
+    private static DefaultFormattingConversionService movieKeyConversionService(MovieCacheKeys movieCacheKeys) {
+        DefaultFormattingConversionService conversionService = new DefaultFormattingConversionService();
+        RedisCacheConfiguration.registerDefaultConverters(conversionService);
+        conversionService.addConverter(Long.class, String.class, movieCacheKeys::cacheKey);
+        return conversionService;
+    }
+
+    private static RedisTemplate<byte[], byte[]> rawRedisTemplate(RedisConnectionFactory connectionFactory) {
+        RedisTemplate<byte[], byte[]> redisTemplate = new RedisTemplate<>();
+        redisTemplate.setConnectionFactory(connectionFactory);
+        redisTemplate.setEnableDefaultSerializer(false);
+        redisTemplate.afterPropertiesSet();
+        return redisTemplate;
+    }
+}
@@ -0,0 +1,293 @@
+package com.jonathanfoucher.rediscacheexample.configs;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.core.io.Resource;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "movie-cache")
+public class MovieCacheProperties {
+    // number of keys requested per SCAN call and fetched per MGET or unlinked per UNLINK
+    private int scanBatchSize = 500;
+    // binary can still read the values written with jdk, json the values written with both, but not the other way around.
+    // json stores the movies as the web layer renders them, only then GET /movies/{id} sends the hits without reading them
+    private SerializationFormat serialization = SerializationFormat.JDK;
+    // the time to live of each movie entry is picked between spring.cache.redis.time-to-live minus the jitter and the time to live,
+    // from a hash of its id
+    private Duration timeToLiveJitter = Duration.ZERO;
+    // time to live of each cache, spring.cache.redis.time-to-live when not set. the movies of the all_movies aggregate
+    // expire with their entry in the movies cache
+    private Map<String, Duration> cacheTimeToLive = new LinkedHashMap<>();
+    private final Connection connection = new Connection();
+    private final Compression compression = new Compression();
+    private final NearCache nearCache = new NearCache();
+    private final HotKeys hotKeys = new HotKeys();
+    private final AdaptiveTimeToLive adaptiveTimeToLive = new AdaptiveTimeToLive();
+    private final MemoryBudget memoryBudget = new MemoryBudget();
+    private final CircuitBreaker circuitBreaker = new CircuitBreaker();
+    private final LoadLease loadLease = new LoadLease();
+    private final RefreshAhead refreshAhead = new RefreshAhead();
+    private final Metrics metrics = new Metrics();
+    private final Sharding sharding = new Sharding();
+    private final AccessStats accessStats = new AccessStats();
+    private final WarmUp warmUp = new WarmUp();
+    private final NegativeCache negativeCache = new NegativeCache();
+    private final WriteBehind writeBehind = new WriteBehind();
+    private final FakeBackend fakeBackend = new FakeBackend();
+
+    public Duration timeToLive(String cacheName, Duration defaultTimeToLive) {
+        return cacheTimeToLive.getOrDefault(cacheName, defaultTimeToLive);
+    }
+
+    public enum SerializationFormat {
+        JDK,
+        BINARY,
+        JSON
+    }
+
+    public enum CompressionAlgorithm {
+        DEFLATE,
+        ZSTD
+    }
+
+    public enum ConnectionMode {
+        MULTIPLEXED,
+        POOLED
+    }
+
+    public enum PipeliningFlush {
+        EACH_COMMAND,
+        BUFFERED,
+        ON_CLOSE
+    }
+
+    // how the commands reach redis, applied to the spring.data.redis connection and to the sharding nodes.
+    // multiplexed shares a single connection between all the threads, pooled gives each command its own connection
+    // of spring.data.redis.lettuce.pool, so that a slow command or a large reply does not delay the others
+    @Getter
+    @Setter
+    public static class Connection {
+        private ConnectionMode mode = ConnectionMode.MULTIPLEXED;
+        // when the commands of the pipelined bulk reads and writes are written to the socket: one by one,
+        // by buffers of pipelining-flush-buffer-size commands, or all at once when the pipeline is closed
+        private PipeliningFlush pipeliningFlush = PipeliningFlush.EACH_COMMAND;
+        private int pipeliningFlushBufferSize = 100;
+        // lettuce ReadFrom setting (replicaPreferred, nearest, any...), the reads go to the master when not set.
+        // replicas lag behind the master, a movie read right after being written may be missed and loaded again
+        private String readFrom;
+        // timeouts of specific commands (get, mget, evalsha...), spring.data.redis.timeout applies to the others
+        private Map<String, Duration> commandTimeouts = new LinkedHashMap<>();
+    }
+
+    // serialized values of at least the threshold size are compressed, the compressed values are read back
+    // whatever the codec and even once disabled
+    @Getter
+    @Setter
+    public static class Compression {
+        private boolean enabled = false;
+        private CompressionAlgorithm codec = CompressionAlgorithm.ZSTD;
+        private DataSize threshold = DataSize.ofBytes(512);
+        // default level of the codec when not set, 1 to 9 for deflate and 1 to 22 for zstd
+        private Integer level;
+    }
+
+    @Getter
+    @Setter
+    public static class NearCache {
+        private boolean enabled = false;
+        private long maximumSize = 10_000;
+        private Duration timeToLive = Duration.ofMinutes(1);
+        private String invalidationChannel = "movie-cache:near-cache-invalidation";
+    }
+
+    // the most read movies, found from a sample of the reads, are kept in memory for a short time so that their hits
+    // no longer reach redis. the writes of this node drop them at once, those of the other nodes once they expire
+    @Getter
+    @Setter
+    public static class HotKeys {
+        private boolean enabled = false;
+        // share of the reads counted, between 0 and 1
+        private double sampleRate = 0.1;
+        // a movie is hot while read about that many times per window
+        private long minReads = 1000;
+        private Duration window = Duration.ofSeconds(10);
+        // hot movies at most, the least read one gives way to a movie read more
+        private int maximumSize = 100;
+        private Duration timeToLive = Duration.ofSeconds(1);
+        // counters per row and rows of the count-min sketch, wider rows overestimate the reads less
+        private int sketchWidth = 4096;
+        private int sketchDepth = 4;
+    }
+
+    // the time to live of each movie written through the cache goes from the minimum for a movie not read lately to the
+    // maximum for a movie read hot-reads times per window, the reads being counted on this node. the bulk writes keep the
+    // time to live of the cache. the minimum should stay above the refresh ahead window
+    @Getter
+    @Setter
+    public static class AdaptiveTimeToLive {
+        private boolean enabled = false;
+        private Duration minTimeToLive = Duration.ofHours(4);
+        private Duration maxTimeToLive = Duration.ofDays(7);
+        private long hotReads = 100;
+        private Duration window = Duration.ofHours(1);
+        // counters per row and rows of the count-min sketch, wider rows overestimate the reads less
+        private int sketchWidth = 65_536;
+        private int sketchDepth = 4;
+    }
+
+    // once the movies keyspace goes over the maximum size, the movies closest to their expiration are deleted until it
+    // fits again, before redis reaches its maxmemory and evicts keys of its own choosing. the size is the one of the keys
+    // and values, without the overhead of redis per key. a single node checks it per interval
+    @Getter
+    @Setter
+    public static class MemoryBudget {
+        private boolean enabled = false;
+        private DataSize maximumSize = DataSize.ofMegabytes(512);
+        private Duration checkInterval = Duration.ofMinutes(5);
+    }
+
+    // redis is bypassed once too many of the last calls failed or were slow, the movies being loaded from the backend and kept
+    // in memory until trial calls succeed again. the command timeouts of the connection bound how long a failing call takes
+    @Getter
+    @Setter
+    public static class CircuitBreaker {
+        private boolean enabled = false;
+        // in percent of the last window-size calls, once at least minimum-calls are recorded
+        private double failureRateThreshold = 50;
+        private double slowCallRateThreshold = 50;
+        private Duration slowCallDuration = Duration.ofMillis(100);
+        private int windowSize = 100;
+        private int minimumCalls = 20;
+        private Duration waitDurationInOpenState = Duration.ofSeconds(10);
+        private int permittedCallsInHalfOpenState = 5;
+        // movies kept in memory while redis is bypassed, only read until it is back
+        private long fallbackMaximumSize = 10_000;
+        private Duration fallbackTimeToLive = Duration.ofMinutes(1);
+    }
+
+    // lease taken in redis by the node loading a missing movie, the other nodes wait for the cache entry instead of loading it too
+    @Getter
+    @Setter
+    public static class LoadLease {
+        private boolean enabled = false;
+        private Duration timeToLive = Duration.ofSeconds(5);
+        private Duration pollInterval = Duration.ofMillis(50);
+    }
+
+    // movies hit close to their expiration are reloaded in the background while the cached value is still served,
+    // beta at 0 refreshes every hit within the window, above 0 refreshes XFetch style with exp(-remaining / (beta * window))
+    @Getter
+    @Setter
+    public static class RefreshAhead {
+        private boolean enabled = false;
+        private Duration window = Duration.ofHours(1);
+        private double beta = 1.0;
+        private int threads = 2;
+        private int queueCapacity = 1000;
+    }
+
+    @Getter
+    @Setter
+    public static class Metrics {
+        // counting the movies keyspace takes a full SCAN, so the size gauges are refreshed in the background once per interval
+        private Duration keyspaceSizeRefreshInterval = Duration.ofMinutes(1);
+    }
+
+    // on a cluster, set spring.data.redis.cluster.nodes instead of the nodes here
+    @Getter
+    @Setter
+    public static class Sharding {
+        // spreads the movie ids over that many hash tags, 0 keeps the plain movies::<id> keys
+        private int keyBuckets = 0;
+        // standalone redis uris the keys are spread over with consistent hashing, spring.data.redis is used when empty
+        private List<String> nodes = new ArrayList<>();
+        // points of each node on the hash ring, more points spread the keys more evenly
+        private int virtualNodes = 160;
+    }
+
+    // read counts of the movies, kept in redis for the warm-up of the next starts
+    @Getter
+    @Setter
+    public static class AccessStats {
+        private boolean enabled = false;
+        // the counts are summed locally and added to redis at this interval
+        private Duration flushInterval = Duration.ofSeconds(10);
+        // only the most read movies are kept
+        private int maximumSize = 100_000;
+    }
+
+    // buffers the movies posted one by one and writes them in pipelined batches, the last post of a movie wins.
+    // a posted movie is only readable once flushed, and the buffered movies are lost if the node dies
+    @Getter
+    @Setter
+    public static class WriteBehind {
+        private boolean enabled = false;
+        // distinct movies buffered at most
+        private int queueCapacity = 10_000;
+        private int batchSize = 500;
+        // a batch is written as soon as it is full, and at this interval otherwise
+        private Duration flushInterval = Duration.ofMillis(100);
+        // how long a post waits for room in a full queue before being rejected, zero rejects it at once
+        private Duration enqueueTimeout = Duration.ZERO;
+    }
+
+    // loads the hot movies before the application reports ready, the ids of the file come first,
+    // then the most read movies of the access stats when they are enabled
+    @Getter
+    @Setter
+    public static class WarmUp {
+        private boolean enabled = false;
+        // one id per line, lines starting with # are ignored
+        private Resource hotIdsFile;
+        private int maximumMovies = 10_000;
+        private int batchSize = 500;
+        private int parallelism = 4;
+        // movies warmed up per second, 0 for no limit
+        private int moviesPerSecond = 5_000;
+        // the application reports ready after this delay even if the warm-up is not done
+        private Duration timeout = Duration.ofSeconds(30);
+    }
+
+    // latency and failures of the calls to the fake backend, to observe the cache under a realistic load.
+    // the latency of a call is log-normal, fitted on the median and the 99th percentile, and fixed at the median
+    // when the 99th percentile is not above it. a bulk call is a single query and takes a single latency
+    @Getter
+    @Setter
+    public static class FakeBackend {
+        private Duration latencyMedian = Duration.ZERO;
+        private Duration latencyP99 = Duration.ZERO;
+        // probability for a call to fail, between 0 and 1
+        private double errorRate = 0;
+    }
+
+    // ids found missing are cached as an empty value for a shorter time, so that their lookups stop reaching the backend.
+    // a movie added to the backend stays reported missing until its negative entry expires
+    @Getter
+    @Setter
+    public static class NegativeCache {
+        private boolean enabled = false;
+        private Duration timeToLive = Duration.ofMinutes(1);
+        private final BloomFilter bloomFilter = new BloomFilter();
+    }
+
+    // local filter of the ids of the backend, the ids it does not contain are read from the cache only and reported missing
+    // without a backend call. it is rebuilt from the backend at every interval and learns in between the ids written to
+    // the cache, by this node and, through the near cache invalidations, by the other nodes
+    @Getter
+    @Setter
+    public static class BloomFilter {
+        private boolean enabled = false;
+        private long expectedInsertions = 1_000_000;
+        private double falsePositiveProbability = 0.01;
+        private Duration rebuildInterval = Duration.ofMinutes(10);
+    }
+}
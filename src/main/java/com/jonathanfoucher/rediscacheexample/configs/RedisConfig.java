@@ -1,19 +1,250 @@
 package com.jonathanfoucher.rediscacheexample.configs;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.luben.zstd.Zstd;
+import com.jonathanfoucher.rediscacheexample.caches.CommandTimeoutSource;
+import com.jonathanfoucher.rediscacheexample.caches.RedisShards;
 import com.jonathanfoucher.rediscacheexample.data.dto.MovieDto;
+import com.jonathanfoucher.rediscacheexample.serializers.CompressingRedisSerializer;
+import com.jonathanfoucher.rediscacheexample.serializers.CompressionCodec;
+import com.jonathanfoucher.rediscacheexample.serializers.DeflateCompressionCodec;
+import com.jonathanfoucher.rediscacheexample.serializers.MeteredRedisSerializer;
+import com.jonathanfoucher.rediscacheexample.serializers.MovieBinaryRedisSerializer;
+import com.jonathanfoucher.rediscacheexample.serializers.MovieJsonRedisSerializer;
+import com.jonathanfoucher.rediscacheexample.serializers.ZstdCompressionCodec;
+import io.lettuce.core.ClientOptions;
+import io.lettuce.core.ReadFrom;
+import io.lettuce.core.RedisURI;
+import io.lettuce.core.TimeoutOptions;
+import io.lettuce.core.resource.ClientResources;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.data.redis.LettuceClientConfigurationBuilderCustomizer;
+import org.springframework.boot.autoconfigure.data.redis.LettuceClientOptionsBuilderCustomizer;
+import org.springframework.boot.autoconfigure.data.redis.RedisProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnection;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.connection.lettuce.LettucePoolingClientConfiguration;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+
 @Configuration
+@EnableConfigurationProperties(MovieCacheProperties.class)
 public class RedisConfig {
     @Bean
-    public RedisTemplate<String, MovieDto> redisTemplate(RedisConnectionFactory connectionFactory) {
+    public RedisTemplate<String, MovieDto> redisTemplate(RedisConnectionFactory connectionFactory,
+                                                         RedisSerializer<Object> cacheValueSerializer) {
+        return movieRedisTemplate(connectionFactory, cacheValueSerializer);
+    }
+
+    @Bean
+    public ReactiveRedisTemplate<String, MovieDto> reactiveRedisTemplate(ReactiveRedisConnectionFactory connectionFactory,
+                                                                         RedisSerializer<Object> cacheValueSerializer) {
+        return reactiveMovieRedisTemplate(connectionFactory, cacheValueSerializer);
+    }
+
+    // the nodes of movie-cache.sharding.nodes, or only the spring.data.redis connection, which may be a cluster
+    @Bean
+    public RedisShards<RedisConnectionFactory> redisConnectionFactoryShards(RedisConnectionFactory connectionFactory,
+                                                                            MovieCacheProperties movieCacheProperties,
+                                                                            RedisProperties redisProperties,
+                                                                            ObjectProvider<ClientResources> clientResources,
+                                                                            ObjectProvider<LettuceClientConfigurationBuilderCustomizer> clientConfigurationCustomizers,
+                                                                            ObjectProvider<LettuceClientOptionsBuilderCustomizer> clientOptionsCustomizers) {
+        MovieCacheProperties.Sharding sharding = movieCacheProperties.getSharding();
+        if (sharding.getNodes().isEmpty()) {
+            return RedisShards.single(connectionFactory);
+        }
+
+        // the client resources are shared with the main connection, along with their event loops and command metrics
+        MovieCacheProperties.Connection connection = movieCacheProperties.getConnection();
+        LettuceClientConfiguration.LettuceClientConfigurationBuilder clientConfiguration = connection.getMode() == MovieCacheProperties.ConnectionMode.POOLED
+                ? LettucePoolingClientConfiguration.builder().poolConfig(poolConfig(redisProperties.getLettuce().getPool()))
+                : LettuceClientConfiguration.builder();
+        clientResources.ifAvailable(clientConfiguration::clientResources);
+        if (redisProperties.getTimeout() != null) {
+            clientConfiguration.commandTimeout(redisProperties.getTimeout());
+        }
+        // the same client options as the main connection, boot enables the command timeouts as well
+        ClientOptions.Builder clientOptions = ClientOptions.builder()
+                .timeoutOptions(TimeoutOptions.enabled());
+        clientOptionsCustomizers.orderedStream().forEach(customizer -> customizer.customize(clientOptions));
+        clientConfiguration.clientOptions(clientOptions.build());
+        clientConfigurationCustomizers.orderedStream().forEach(customizer -> customizer.customize(clientConfiguration));
+
+        Map<String, RedisConnectionFactory> nodes = new LinkedHashMap<>();
+        for (String node : sharding.getNodes()) {
+            LettuceConnectionFactory nodeConnectionFactory = new LettuceConnectionFactory(
+                    LettuceConnectionFactory.createRedisConfiguration(node), clientConfiguration.build());
+            configureConnectionFactory(nodeConnectionFactory, connection);
+            nodeConnectionFactory.afterPropertiesSet();
+            nodes.put(node, nodeConnectionFactory);
+        }
+        return RedisShards.of(nodes, sharding.getVirtualNodes());
+    }
+
+    // boot does not expose the lettuce ReadFrom setting
+    @Bean
+    public LettuceClientConfigurationBuilderCustomizer readFromCustomizer(MovieCacheProperties movieCacheProperties) {
+        return clientConfiguration -> {
+            String readFrom = movieCacheProperties.getConnection().getReadFrom();
+            if (readFrom != null) {
+                clientConfiguration.readFrom(ReadFrom.valueOf(readFrom));
+            }
+        };
+    }
+
+    // replaces the single command timeout of spring.data.redis.timeout when some commands have their own
+    @Bean
+    public LettuceClientOptionsBuilderCustomizer commandTimeoutsCustomizer(MovieCacheProperties movieCacheProperties,
+                                                                           RedisProperties redisProperties) {
+        return clientOptions -> {
+            Map<String, Duration> commandTimeouts = movieCacheProperties.getConnection().getCommandTimeouts();
+            if (commandTimeouts.isEmpty()) {
+                return;
+            }
+            Duration defaultTimeout = redisProperties.getTimeout() != null ? redisProperties.getTimeout() : RedisURI.DEFAULT_TIMEOUT_DURATION;
+            clientOptions.timeoutOptions(TimeoutOptions.builder()
+                    .timeoutSource(new CommandTimeoutSource(commandTimeouts, defaultTimeout))
+                    .build());
+        };
+    }
+
+    // the connection mode and the pipelining flush policy are set on the connection factory built by boot,
+    // they are not part of its client configuration
+    @Bean
+    public static BeanPostProcessor lettuceConnectionFactoryPostProcessor(ObjectProvider<MovieCacheProperties> movieCacheProperties) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (bean instanceof LettuceConnectionFactory connectionFactory) {
+                    configureConnectionFactory(connectionFactory, movieCacheProperties.getObject().getConnection());
+                }
+                return bean;
+            }
+        };
+    }
+
+    @Bean
+    public RedisShards<RedisTemplate<String, MovieDto>> movieRedisTemplates(RedisShards<RedisConnectionFactory> connectionFactories,
+                                                                           RedisTemplate<String, MovieDto> redisTemplate,
+                                                                           RedisSerializer<Object> cacheValueSerializer) {
+        if (!connectionFactories.isSharded()) {
+            return RedisShards.single(redisTemplate);
+        }
+        return connectionFactories.map(connectionFactory -> {
+            RedisTemplate<String, MovieDto> template = movieRedisTemplate(connectionFactory, cacheValueSerializer);
+            template.afterPropertiesSet();
+            return template;
+        });
+    }
+
+    @Bean
+    public RedisShards<ReactiveRedisTemplate<String, MovieDto>> reactiveMovieRedisTemplates(RedisShards<RedisConnectionFactory> connectionFactories,
+                                                                                           ReactiveRedisTemplate<String, MovieDto> reactiveRedisTemplate,
+                                                                                           RedisSerializer<Object> cacheValueSerializer) {
+        if (!connectionFactories.isSharded()) {
+            return RedisShards.single(reactiveRedisTemplate);
+        }
+        // the node connection factories are lettuce ones, which are reactive as well
+        return connectionFactories.map(connectionFactory -> reactiveMovieRedisTemplate(
+                (ReactiveRedisConnectionFactory) connectionFactory, cacheValueSerializer));
+    }
+
+    // shared by the templates and the cache manager so that both read and write the same format
+    @Bean
+    public RedisSerializer<Object> cacheValueSerializer(MovieCacheProperties movieCacheProperties, ObjectMapper objectMapper,
+                                                        MeterRegistry meterRegistry) {
+        RedisSerializer<Object> serializer = switch (movieCacheProperties.getSerialization()) {
+            case JDK -> new JdkSerializationRedisSerializer();
+            case BINARY -> new MovieBinaryRedisSerializer();
+            case JSON -> new MovieJsonRedisSerializer(objectMapper);
+        };
+        // always there so that the compressed values stay readable once the compression is disabled
+        MovieCacheProperties.Compression compression = movieCacheProperties.getCompression();
+        serializer = new CompressingRedisSerializer<>(serializer,
+                compression.isEnabled() ? compressionCodec(compression.getCodec(), compression.getLevel()) : null,
+                (int) compression.getThreshold().toBytes(),
+                List.of(compressionCodec(MovieCacheProperties.CompressionAlgorithm.DEFLATE, null),
+                        compressionCodec(MovieCacheProperties.CompressionAlgorithm.ZSTD, null)),
+                meterRegistry);
+        // after the compression, so that the payload sizes are the ones sent to redis
+        return new MeteredRedisSerializer<>(serializer, meterRegistry);
+    }
+
+    // a pooled connection factory only hands out its pooled connections once it no longer shares a single one
+    static void configureConnectionFactory(LettuceConnectionFactory connectionFactory, MovieCacheProperties.Connection connection) {
+        if (connection.getMode() == MovieCacheProperties.ConnectionMode.POOLED) {
+            if (!(connectionFactory.getClientConfiguration() instanceof LettucePoolingClientConfiguration)) {
+                throw new IllegalStateException("The pooled connection mode requires spring.data.redis.lettuce.pool.enabled");
+            }
+            connectionFactory.setShareNativeConnection(false);
+        }
+        connectionFactory.setPipeliningFlushPolicy(switch (connection.getPipeliningFlush()) {
+            case EACH_COMMAND -> LettuceConnection.PipeliningFlushPolicy.flushEachCommand();
+            case BUFFERED -> LettuceConnection.PipeliningFlushPolicy.buffered(connection.getPipeliningFlushBufferSize());
+            case ON_CLOSE -> LettuceConnection.PipeliningFlushPolicy.flushOnClose();
+        });
+    }
+
+    private static GenericObjectPoolConfig<?> poolConfig(RedisProperties.Pool pool) {
+        GenericObjectPoolConfig<?> poolConfig = new GenericObjectPoolConfig<>();
+        poolConfig.setMaxTotal(pool.getMaxActive());
+        poolConfig.setMaxIdle(pool.getMaxIdle());
+        poolConfig.setMinIdle(pool.getMinIdle());
+        if (pool.getMaxWait() != null) {
+            poolConfig.setMaxWait(pool.getMaxWait());
+        }
+        if (pool.getTimeBetweenEvictionRuns() != null) {
+            poolConfig.setTimeBetweenEvictionRuns(pool.getTimeBetweenEvictionRuns());
+        }
+        return poolConfig;
+    }
+
+    private static CompressionCodec compressionCodec(MovieCacheProperties.CompressionAlgorithm algorithm, Integer level) {
+        return switch (algorithm) {
+            case DEFLATE -> new DeflateCompressionCodec(level != null ? level : Deflater.DEFAULT_COMPRESSION);
+            case ZSTD -> new ZstdCompressionCodec(level != null ? level : Zstd.defaultCompressionLevel());
+        };
+    }
+
+    private static RedisTemplate<String, MovieDto> movieRedisTemplate(RedisConnectionFactory connectionFactory,
+                                                                      RedisSerializer<Object> cacheValueSerializer) {
         RedisTemplate<String, MovieDto> template = new RedisTemplate<>();
         template.setConnectionFactory(connectionFactory);
         template.setKeySerializer(new StringRedisSerializer());
+        template.setValueSerializer(cacheValueSerializer);
+        template.setHashValueSerializer(cacheValueSerializer);
         return template;
     }
+
+    @SuppressWarnings("unchecked")
+    private static ReactiveRedisTemplate<String, MovieDto> reactiveMovieRedisTemplate(ReactiveRedisConnectionFactory connectionFactory,
+                                                                                      RedisSerializer<Object> cacheValueSerializer) {
+        RedisSerializer<MovieDto> valueSerializer = (RedisSerializer<MovieDto>) (RedisSerializer<?>) cacheValueSerializer;
+        RedisSerializationContext<String, MovieDto> serializationContext = RedisSerializationContext
+                .<String, MovieDto>newSerializationContext(new StringRedisSerializer())
+                .value(valueSerializer)
+                .hashValue(valueSerializer)
+                .build();
+        return new ReactiveRedisTemplate<>(connectionFactory, serializationContext);
+    }
 }
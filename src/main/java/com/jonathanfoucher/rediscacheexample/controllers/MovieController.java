@@ -1,31 +1,130 @@
 package com.jonathanfoucher.rediscacheexample.controllers;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.jonathanfoucher.rediscacheexample.caches.MovieIndex;
 import com.jonathanfoucher.rediscacheexample.data.dto.MovieDto;
+import com.jonathanfoucher.rediscacheexample.data.dto.MoviePage;
+import com.jonathanfoucher.rediscacheexample.services.MovieAccessStats;
 import com.jonathanfoucher.rediscacheexample.services.MovieService;
+import com.jonathanfoucher.rediscacheexample.services.MovieWriteBehind;
 import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.util.Iterator;
 import java.util.List;
+import java.util.stream.Stream;
 
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.http.MediaType.APPLICATION_NDJSON;
+import static org.springframework.http.MediaType.APPLICATION_NDJSON_VALUE;
+
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @RequiredArgsConstructor
 @RestController
 @RequestMapping("/movies")
 public class MovieController {
     private final MovieService movieService;
+    private final MovieAccessStats movieAccessStats;
+    private final MovieWriteBehind movieWriteBehind;
+    private final ObjectMapper objectMapper;
+
+    private static final char NDJSON_SEPARATOR = '\n';
+    private static final String RETRY_AFTER_SECONDS = "1";
 
     @GetMapping
     public List<MovieDto> findAllCached() {
         return movieService.findAllCached();
     }
 
+    // one page of the cached movies sorted by id, releaseDate or title, the next one is read with the returned cursor.
+    // the title prefix filter sorts by title
+    @GetMapping("/page")
+    public MoviePage findPageCached(@RequestParam(required = false) String sort,
+                                    @RequestParam(defaultValue = "asc") String direction,
+                                    @RequestParam(required = false) String titlePrefix,
+                                    @RequestParam(required = false) String cursor,
+                                    @RequestParam(defaultValue = "20") int size) {
+        try {
+            MovieIndex index = sort != null ? MovieIndex.fromSortName(sort) : titlePrefix != null ? MovieIndex.TITLE : MovieIndex.ID;
+            return movieService.findPageCached(index, Sort.Direction.fromString(direction).isDescending(), titlePrefix, cursor, size);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        }
+    }
+
+    // writes the movies one per line as they come off the Redis scan, blocking writes on the response
+    // slow down the scan so the memory usage does not depend on the cache size
+    @GetMapping(produces = APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllCached() {
+        ObjectWriter writer = objectMapper.writerFor(MovieDto.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+        StreamingResponseBody body = outputStream -> {
+            try (Stream<MovieDto> movies = movieService.streamAllCached();
+                 JsonGenerator generator = objectMapper.createGenerator(outputStream)) {
+                generator.setRootValueSeparator(null);
+                Iterator<MovieDto> iterator = movies.iterator();
+                while (iterator.hasNext()) {
+                    writer.writeValue(generator, iterator.next());
+                    generator.writeRaw(NDJSON_SEPARATOR);
+                }
+            }
+        };
+
+        return ResponseEntity.ok()
+                .contentType(APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    // with the json serialization the hits are sent as read from redis, the other lookups go through the cache as usual
     @GetMapping("/{id}")
-    public MovieDto findById(@PathVariable Long id) {
-        return movieService.findById(id);
+    public ResponseEntity<Object> findById(@PathVariable Long id) {
+        // counted here since the cache hits never reach the service
+        movieAccessStats.record(id);
+        byte[] renderedMovie = movieService.findRenderedById(id);
+        if (renderedMovie != null) {
+            return ResponseEntity.ok()
+                    .contentType(APPLICATION_JSON)
+                    .body(renderedMovie);
+        }
+        return ResponseEntity.ok(movieService.findById(id));
+    }
+
+    @PostMapping("/batch-get")
+    public List<MovieDto> findByIds(@RequestBody List<Long> ids) {
+        movieAccessStats.record(ids);
+        return movieService.findByIds(ids);
     }
 
+    // with the write-behind the movie is only queued, accepted once queued and rejected while the queue stays full
     @PostMapping
-    public void addMovieToCache(@RequestBody MovieDto movie) {
-        movieService.addMovieToCache(movie);
+    public ResponseEntity<Void> addMovieToCache(@RequestBody MovieDto movie) {
+        if (!movieWriteBehind.isEnabled()) {
+            movieService.addMovieToCache(movie);
+            return ResponseEntity.ok().build();
+        }
+        if (!movieWriteBehind.submit(movie)) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS)
+                    .build();
+        }
+        return ResponseEntity.accepted().build();
+    }
+
+    @PostMapping("/batch")
+    public void addMoviesToCache(@RequestBody List<MovieDto> movies) {
+        movieService.addMoviesToCache(movies);
     }
 
     @DeleteMapping("/cache")
@@ -37,4 +136,12 @@ public class MovieController {
     public void cleanCacheById(@PathVariable Long id) {
         movieService.cleanCacheById(id);
     }
+
+    // redis bypassed by the circuit breaker or not reachable, for the calls that cannot be answered from memory
+    @ExceptionHandler(RedisConnectionFailureException.class)
+    public ResponseEntity<Void> handleRedisConnectionFailure() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS)
+                .build();
+    }
 }
@@ -0,0 +1,110 @@
+package com.jonathanfoucher.rediscacheexample.controllers;
+
+import com.jonathanfoucher.rediscacheexample.caches.MovieIndex;
+import com.jonathanfoucher.rediscacheexample.data.dto.MovieDto;
+import com.jonathanfoucher.rediscacheexample.data.dto.MoviePage;
+import com.jonathanfoucher.rediscacheexample.services.MovieAccessStats;
+import com.jonathanfoucher.rediscacheexample.services.MovieWriteBehind;
+import com.jonathanfoucher.rediscacheexample.services.ReactiveMovieService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.List;
+
+import static org.springframework.http.MediaType.APPLICATION_NDJSON_VALUE;
+
+// same endpoints as MovieController, served by WebFlux when spring.main.web-application-type is set to reactive
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@RequiredArgsConstructor
+@RestController
+@RequestMapping("/movies")
+public class ReactiveMovieController {
+    private final ReactiveMovieService movieService;
+    private final MovieAccessStats movieAccessStats;
+    private final MovieWriteBehind movieWriteBehind;
+
+    private static final String RETRY_AFTER_SECONDS = "1";
+
+    @GetMapping
+    public Flux<MovieDto> findAllCached() {
+        return movieService.findAllCached();
+    }
+
+    // one page of the cached movies sorted by id, releaseDate or title, the next one is read with the returned cursor.
+    // the title prefix filter sorts by title
+    @GetMapping("/page")
+    public Mono<MoviePage> findPageCached(@RequestParam(required = false) String sort,
+                                          @RequestParam(defaultValue = "asc") String direction,
+                                          @RequestParam(required = false) String titlePrefix,
+                                          @RequestParam(required = false) String cursor,
+                                          @RequestParam(defaultValue = "20") int size) {
+        try {
+            MovieIndex index = sort != null ? MovieIndex.fromSortName(sort) : titlePrefix != null ? MovieIndex.TITLE : MovieIndex.ID;
+            return movieService.findPageCached(index, Sort.Direction.fromString(direction).isDescending(), titlePrefix, cursor, size);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        }
+    }
+
+    // WebFlux writes each movie on its own line as soon as it is emitted, and only requests the next
+    // batch of keys once the response has caught up
+    @GetMapping(produces = APPLICATION_NDJSON_VALUE)
+    public Flux<MovieDto> streamAllCached() {
+        return movieService.streamAllCached();
+    }
+
+    @GetMapping("/{id}")
+    public Mono<MovieDto> findById(@PathVariable Long id) {
+        // only counted in memory, the counts are flushed to redis in the background
+        movieAccessStats.record(id);
+        return movieService.findById(id);
+    }
+
+    @PostMapping("/batch-get")
+    public Flux<MovieDto> findByIds(@RequestBody List<Long> ids) {
+        movieAccessStats.record(ids);
+        return movieService.findByIds(ids);
+    }
+
+    // same as MovieController.addMovieToCache, the wait for room in the write-behind queue is off the event loop
+    @PostMapping
+    public Mono<ResponseEntity<Void>> addMovieToCache(@RequestBody MovieDto movie) {
+        if (!movieWriteBehind.isEnabled()) {
+            return movieService.addMovieToCache(movie)
+                    .thenReturn(ResponseEntity.ok().build());
+        }
+        return Mono.fromCallable(() -> movieWriteBehind.submit(movie))
+                .subscribeOn(Schedulers.boundedElastic())
+                .map(queued -> queued ? ResponseEntity.accepted().build() : tooManyRequests());
+    }
+
+    @PostMapping("/batch")
+    public Mono<Void> addMoviesToCache(@RequestBody List<MovieDto> movies) {
+        return movieService.addMoviesToCache(movies);
+    }
+
+    @DeleteMapping("/cache")
+    public Mono<Void> clearCache() {
+        return movieService.clearCache();
+    }
+
+    @DeleteMapping("/{id}/cache")
+    public Mono<Void> cleanCacheById(@PathVariable Long id) {
+        return movieService.cleanCacheById(id);
+    }
+
+    private static ResponseEntity<Void> tooManyRequests() {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS)
+                .build();
+    }
+}
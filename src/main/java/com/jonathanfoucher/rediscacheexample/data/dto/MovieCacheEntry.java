@@ -0,0 +1,6 @@
+package com.jonathanfoucher.rediscacheexample.data.dto;
+
+// a movie entry of the cache, its size in bytes being the one of its key and value plus the copy of the value in the
+// all_movies aggregate, and its expiration a timestamp in milliseconds, Long.MAX_VALUE when it does not expire
+public record MovieCacheEntry(Long id, String key, long size, long expiresAt) {
+}
@@ -0,0 +1,11 @@
+package com.jonathanfoucher.rediscacheexample.data.dto;
+
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.databind.annotation.JsonNaming;
+
+import java.util.List;
+
+// the next cursor is null once the last page is read
+@JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
+public record MoviePage(List<MovieDto> movies, String nextCursor) {
+}
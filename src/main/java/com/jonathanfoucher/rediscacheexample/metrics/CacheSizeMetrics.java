@@ -0,0 +1,88 @@
+package com.jonathanfoucher.rediscacheexample.metrics;
+
+import com.jonathanfoucher.rediscacheexample.caches.MovieCacheKeys;
+import com.jonathanfoucher.rediscacheexample.caches.RedisCircuitBreaker;
+import com.jonathanfoucher.rediscacheexample.configs.MovieCacheProperties;
+import com.jonathanfoucher.rediscacheexample.repositories.MovieCacheRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.core.env.Environment;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+// number of entries of the movies keyspace and of the all_movies aggregate, counted by a background thread once per
+// refresh interval, the keyspace with SCAN. the scrapes only read the last counts, which are not reported until the first
+// one is done
+@Component
+@Slf4j
+public class CacheSizeMetrics implements MeterBinder {
+    private final MovieCacheRepository movieCacheRepository;
+    private final RedisCircuitBreaker redisCircuitBreaker;
+    private final ScheduledExecutorService counter;
+
+    private volatile double keyspaceSize = Double.NaN;
+    private volatile double aggregateSize = Double.NaN;
+
+    static final String CACHE_SIZE_METRIC = "movie.cache.size";
+    private static final String MOVIE_CACHE_NAME = MovieCacheKeys.MOVIE_CACHE_NAME;
+    private static final String ALL_MOVIES_CACHE_NAME = "all_movies";
+
+    public CacheSizeMetrics(MovieCacheRepository movieCacheRepository, MovieCacheProperties properties,
+                            RedisCircuitBreaker redisCircuitBreaker, Environment environment) {
+        this.movieCacheRepository = movieCacheRepository;
+        this.redisCircuitBreaker = redisCircuitBreaker;
+        ThreadFactory threadFactory = Threading.VIRTUAL.isActive(environment)
+                ? Thread.ofVirtual().name("movie-cache-size").factory()
+                : Thread.ofPlatform().name("movie-cache-size").daemon(true).factory();
+        long refreshIntervalMillis = properties.getMetrics().getKeyspaceSizeRefreshInterval().toMillis();
+        this.counter = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        this.counter.scheduleWithFixedDelay(this::count, 0, refreshIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder(CACHE_SIZE_METRIC, this, metrics -> metrics.keyspaceSize)
+                .description("Number of entries in the cache")
+                .tag("cache", MOVIE_CACHE_NAME)
+                .register(registry);
+        Gauge.builder(CACHE_SIZE_METRIC, this, metrics -> metrics.aggregateSize)
+                .description("Number of entries in the cache")
+                .tag("cache", ALL_MOVIES_CACHE_NAME)
+                .register(registry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        counter.shutdownNow();
+    }
+
+    // skipped while redis is bypassed, the last counts being reported meanwhile. a SCAN of the whole keyspace takes many
+    // round trips rather than a single slow one, so only its failure is recorded by the circuit breaker
+    void count() {
+        if (!redisCircuitBreaker.tryAcquire()) {
+            return;
+        }
+
+        boolean failed = false;
+        try {
+            keyspaceSize = movieCacheRepository.countAll();
+            aggregateSize = movieCacheRepository.countInAggregate();
+        } catch (DataAccessException e) {
+            failed = true;
+            log.warn("Failed to count the entries of the {} cache", MOVIE_CACHE_NAME, e);
+        } catch (RuntimeException e) {
+            log.warn("Failed to count the entries of the {} cache", MOVIE_CACHE_NAME, e);
+        } finally {
+            redisCircuitBreaker.onResult(0, failed);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.jonathanfoucher.rediscacheexample.metrics;
+
+import com.jonathanfoucher.rediscacheexample.caches.MovieCacheKeys;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Measurement;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Statistic;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.search.Search;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.StreamSupport;
+
+import static com.jonathanfoucher.rediscacheexample.metrics.CacheSizeMetrics.CACHE_SIZE_METRIC;
+
+// summary of the cache metrics since startup, the same meters are available with their full distribution
+// through the metrics and prometheus endpoints. exposed under /actuator/caches-stats
+@Component
+@Endpoint(id = "cachestats")
+@RequiredArgsConstructor
+public class CachesStatsEndpoint {
+    private final MeterRegistry meterRegistry;
+
+    private static final String MOVIE_CACHE_NAME = MovieCacheKeys.MOVIE_CACHE_NAME;
+    private static final String ALL_MOVIES_CACHE_NAME = "all_movies";
+
+    @ReadOperation
+    public CachesStats cachesStats() {
+        Map<String, CacheStats> caches = new LinkedHashMap<>();
+        caches.put(MOVIE_CACHE_NAME, moviesStats());
+        caches.put(ALL_MOVIES_CACHE_NAME, allMoviesStats());
+
+        Map<String, DistributionStats> payloadSizes = new LinkedHashMap<>();
+        meterRegistry.find("movie.cache.payload.size").summaries()
+                .forEach(summary -> payloadSizes.put(summary.getId().getTag("operation"), distributionStats(summary)));
+        return new CachesStats(caches, payloadSizes);
+    }
+
+    private CacheStats moviesStats() {
+        long hits = count(meterRegistry.find("cache.gets").tags("cache", MOVIE_CACHE_NAME, "result", "hit"));
+        long misses = count(meterRegistry.find("cache.gets").tags("cache", MOVIE_CACHE_NAME, "result", "miss"));
+        Map<String, LatencyStats> latencies = new LinkedHashMap<>();
+        Timer load = meterRegistry.find("movie.cache.load").timer();
+        if (load != null) {
+            latencies.put("load", latencyStats(load));
+        }
+
+        return new CacheStats(
+                size(MOVIE_CACHE_NAME),
+                hits,
+                misses,
+                hits + misses > 0 ? (double) hits / (hits + misses) : null,
+                count(meterRegistry.find("cache.near.gets").tags("cache", MOVIE_CACHE_NAME, "result", "hit")),
+                count(meterRegistry.find("cache.puts").tags("cache", MOVIE_CACHE_NAME)),
+                count(meterRegistry.find("cache.removals").tags("cache", MOVIE_CACHE_NAME)),
+                latencies
+        );
+    }
+
+    private CacheStats allMoviesStats() {
+        Map<String, LatencyStats> latencies = new LinkedHashMap<>();
+        meterRegistry.find("movie.cache.aggregate").timers()
+                .forEach(timer -> latencies.put(timer.getId().getTag("operation"), latencyStats(timer)));
+        return new CacheStats(size(ALL_MOVIES_CACHE_NAME), null, null, null, null, null, null, latencies);
+    }
+
+    private Long size(String cacheName) {
+        return meterRegistry.find(CACHE_SIZE_METRIC).tags("cache", cacheName).gauges().stream()
+                .map(gauge -> gauge.value())
+                .filter(value -> !Double.isNaN(value))
+                .map(Double::longValue)
+                .findFirst()
+                .orElse(null);
+    }
+
+    // counters and function counters alike, summed over the other tags
+    private static long count(Search search) {
+        return (long) search.meters().stream()
+                .map(Meter::measure)
+                .flatMap(measurements -> StreamSupport.stream(measurements.spliterator(), false))
+                .filter(measurement -> measurement.getStatistic() == Statistic.COUNT)
+                .mapToDouble(Measurement::getValue)
+                .sum();
+    }
+
+    private static LatencyStats latencyStats(Timer timer) {
+        return new LatencyStats(timer.count(), timer.mean(TimeUnit.MILLISECONDS), timer.max(TimeUnit.MILLISECONDS));
+    }
+
+    private static DistributionStats distributionStats(DistributionSummary summary) {
+        return new DistributionStats(summary.count(), summary.mean(), summary.max());
+    }
+
+    public record CachesStats(Map<String, CacheStats> caches, Map<String, DistributionStats> payloadSizes) {
+    }
+
+    // null when it does not apply to the cache
+    public record CacheStats(Long size, Long hits, Long misses, Double hitRatio, Long nearHits, Long puts, Long removals,
+                             Map<String, LatencyStats> latencies) {
+    }
+
+    public record LatencyStats(long count, double meanMillis, double maxMillis) {
+    }
+
+    public record DistributionStats(long count, double mean, double max) {
+    }
+}
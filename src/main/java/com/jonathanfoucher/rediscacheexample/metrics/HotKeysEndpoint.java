@@ -0,0 +1,28 @@
+package com.jonathanfoucher.rediscacheexample.metrics;
+
+import com.jonathanfoucher.rediscacheexample.caches.HotKeyTracker;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+// the movie keys currently hot on this node, the most read first, with their estimated reads over the recent windows
+// and the hits served from memory since they became hot. exposed under /actuator/hot-keys
+@Component
+@ConditionalOnProperty(prefix = "movie-cache.hot-keys", name = "enabled", havingValue = "true")
+@Endpoint(id = "hotkeys")
+@RequiredArgsConstructor
+public class HotKeysEndpoint {
+    private final HotKeyTracker hotKeyTracker;
+
+    @ReadOperation
+    public HotKeys hotKeys() {
+        return new HotKeys(hotKeyTracker.hotKeys());
+    }
+
+    public record HotKeys(List<HotKeyTracker.HotKey> keys) {
+    }
+}
@@ -0,0 +1,36 @@
+package com.jonathanfoucher.rediscacheexample.metrics;
+
+import com.jonathanfoucher.rediscacheexample.caches.RedisCircuitBreaker;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.stereotype.Component;
+
+// state of the redis circuit breaker, listed as redisCircuitBreaker in the health groups. degraded while redis is bypassed
+// or tried again, the movies being served from memory and the backend, up otherwise
+@Component
+@RequiredArgsConstructor
+public class RedisCircuitBreakerHealthIndicator implements HealthIndicator {
+    private final RedisCircuitBreaker redisCircuitBreaker;
+
+    public static final Status DEGRADED = new Status("DEGRADED", "Redis is bypassed by the circuit breaker");
+
+    @Override
+    public Health health() {
+        if (!redisCircuitBreaker.isEnabled()) {
+            return Health.up()
+                    .withDetail("enabled", false)
+                    .build();
+        }
+
+        RedisCircuitBreaker.State state = redisCircuitBreaker.getState();
+        return Health.status(state == RedisCircuitBreaker.State.CLOSED ? Status.UP : DEGRADED)
+                .withDetail("enabled", true)
+                .withDetail("state", state)
+                .withDetail("failureRate", redisCircuitBreaker.getFailureRate())
+                .withDetail("slowCallRate", redisCircuitBreaker.getSlowCallRate())
+                .withDetail("bufferedCalls", redisCircuitBreaker.getBufferedCalls())
+                .build();
+    }
+}
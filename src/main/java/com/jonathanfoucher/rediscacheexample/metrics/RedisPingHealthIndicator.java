@@ -0,0 +1,40 @@
+package com.jonathanfoucher.rediscacheexample.metrics;
+
+import com.jonathanfoucher.rediscacheexample.caches.RedisCircuitBreaker;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.data.redis.RedisHealthIndicator;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.stereotype.Component;
+
+// ping of redis, listed as redis in the health groups in place of the one of spring boot. with the circuit breaker, a redis
+// that cannot be reached is degraded rather than down, the movies being served from memory and the backend, so that the
+// readiness group keeps the application in the load balancer. without it, the requests fail with redis and it stays down
+@Component("redisHealthIndicator")
+public class RedisPingHealthIndicator implements HealthIndicator {
+    private final HealthIndicator delegate;
+    private final RedisCircuitBreaker redisCircuitBreaker;
+
+    @Autowired
+    public RedisPingHealthIndicator(RedisConnectionFactory redisConnectionFactory, RedisCircuitBreaker redisCircuitBreaker) {
+        this(new RedisHealthIndicator(redisConnectionFactory), redisCircuitBreaker);
+    }
+
+    RedisPingHealthIndicator(HealthIndicator delegate, RedisCircuitBreaker redisCircuitBreaker) {
+        this.delegate = delegate;
+        this.redisCircuitBreaker = redisCircuitBreaker;
+    }
+
+    @Override
+    public Health health() {
+        Health health = delegate.health();
+        if (!Status.DOWN.equals(health.getStatus()) || !redisCircuitBreaker.isEnabled()) {
+            return health;
+        }
+        return Health.status(RedisCircuitBreakerHealthIndicator.DEGRADED)
+                .withDetails(health.getDetails())
+                .build();
+    }
+}
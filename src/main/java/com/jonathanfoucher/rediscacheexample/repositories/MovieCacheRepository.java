@@ -0,0 +1,610 @@
+package com.jonathanfoucher.rediscacheexample.repositories;
+
+import com.jonathanfoucher.rediscacheexample.caches.JitteredTimeToLive;
+import com.jonathanfoucher.rediscacheexample.caches.MovieCacheKeys;
+import com.jonathanfoucher.rediscacheexample.caches.MovieIndex;
+import com.jonathanfoucher.rediscacheexample.caches.NearCacheInvalidationBroker;
+import com.jonathanfoucher.rediscacheexample.caches.RedisShards;
+import com.jonathanfoucher.rediscacheexample.configs.MovieCacheProperties;
+import com.jonathanfoucher.rediscacheexample.data.dto.MovieCacheEntry;
+import com.jonathanfoucher.rediscacheexample.data.dto.MovieDto;
+import com.jonathanfoucher.rediscacheexample.data.dto.MoviePage;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.cache.CacheProperties;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.RedisClusterConnection;
+import org.springframework.data.redis.connection.RedisClusterNode;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisStringCommands.SetOption;
+import org.springframework.data.redis.connection.RedisZSetCommands;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.connection.zset.Tuple;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.core.ConvertingCursor;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.GenericToStringSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Repository;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+@Repository
+public class MovieCacheRepository {
+    private final RedisShards<RedisTemplate<String, MovieDto>> redisTemplates;
+    private final MovieCacheKeys movieCacheKeys;
+    private final MovieCacheProperties properties;
+    private final CacheProperties cacheProperties;
+    private final ObjectProvider<NearCacheInvalidationBroker> nearCacheInvalidationBroker;
+
+    private final Timer findAllInAggregateLatency;
+    private final Timer findPageInAggregateLatency;
+    private final Timer saveInAggregateLatency;
+    private final Timer removeFromAggregateLatency;
+    private final Timer clearAggregateLatency;
+
+    private static final String MOVIE_CACHE_NAME = MovieCacheKeys.MOVIE_CACHE_NAME;
+    private static final String MOVIE_KEY_PATTERN = MovieCacheKeys.MOVIE_KEY_PATTERN;
+    // kept out of the movies keyspace so that SCAN and cache clears never see the leases
+    private static final String MOVIE_LOAD_LEASE_KEY_PREFIX = "movie_load_leases::";
+    private static final String MOVIE_MEMORY_BUDGET_LEASE_KEY = "movie_memory_budget_lease";
+    private static final String MOVIE_ACCESS_STATS_KEY = "movie_access_stats";
+    private static final byte[] MOVIE_ACCESS_STATS_RAW_KEY = RedisSerializer.string().serialize(MOVIE_ACCESS_STATS_KEY);
+
+    // the hash tag keeps the keys on the same cluster slot and the same shard so that they can be used in the same script
+    private static final String ALL_MOVIES_KEY = "{all_movies}";
+    private static final byte[] ALL_MOVIES_RAW_KEY = RedisSerializer.string().serialize(ALL_MOVIES_KEY);
+    private static final String ALL_MOVIES_EXPIRATION_KEY = "{all_movies}:expiration";
+    private static final byte[] ALL_MOVIES_EXPIRATION_RAW_KEY = RedisSerializer.string().serialize(ALL_MOVIES_EXPIRATION_KEY);
+    private static final String ALL_MOVIES_INDEX_MEMBERS_KEY = "{all_movies}:index_members";
+
+    // the indexes come last, in the order of MovieIndex
+    private static final List<String> ALL_MOVIES_KEYS = Stream.concat(
+                    Stream.of(ALL_MOVIES_KEY, ALL_MOVIES_EXPIRATION_KEY, ALL_MOVIES_INDEX_MEMBERS_KEY),
+                    Arrays.stream(MovieIndex.values()).map(MovieIndex::key))
+            .toList();
+    private static final byte[][] ALL_MOVIES_RAW_KEYS = ALL_MOVIES_KEYS.stream()
+            .map(RedisSerializer.string()::serialize)
+            .toArray(byte[][]::new);
+
+    private static final RedisScript<List> FIND_MOVIES_PAGE_SCRIPT = RedisScript.of(new ClassPathResource("scripts/find_movies_page.lua"), List.class);
+    private static final RedisScript<Long> SAVE_MOVIES_IN_AGGREGATE_SCRIPT = RedisScript.of(new ClassPathResource("scripts/save_movies_in_aggregate.lua"), Long.class);
+    private static final RedisScript<Long> REMOVE_MOVIE_FROM_AGGREGATE_SCRIPT = RedisScript.of(new ClassPathResource("scripts/remove_movie_from_aggregate.lua"), Long.class);
+    private static final RedisScript<Long> RELEASE_LOAD_LEASE_SCRIPT = RedisScript.of(new ClassPathResource("scripts/release_load_lease.lua"), Long.class);
+    private static final RedisSerializer<Long> LONG_SERIALIZER = new GenericToStringSerializer<>(Long.class);
+
+    private static final String AGGREGATE_LATENCY_METRIC = "movie.cache.aggregate";
+
+    public MovieCacheRepository(RedisShards<RedisTemplate<String, MovieDto>> redisTemplates, MovieCacheProperties properties,
+                                CacheProperties cacheProperties, ObjectProvider<NearCacheInvalidationBroker> nearCacheInvalidationBroker,
+                                MeterRegistry meterRegistry) {
+        this.redisTemplates = redisTemplates;
+        this.movieCacheKeys = new MovieCacheKeys(properties.getSharding().getKeyBuckets());
+        this.properties = properties;
+        this.cacheProperties = cacheProperties;
+        this.nearCacheInvalidationBroker = nearCacheInvalidationBroker;
+        this.findAllInAggregateLatency = aggregateLatency("find_all", meterRegistry);
+        this.findPageInAggregateLatency = aggregateLatency("find_page", meterRegistry);
+        this.saveInAggregateLatency = aggregateLatency("save", meterRegistry);
+        this.removeFromAggregateLatency = aggregateLatency("remove", meterRegistry);
+        this.clearAggregateLatency = aggregateLatency("clear", meterRegistry);
+    }
+
+    // walks the movies keyspace with SCAN and fetches the values with one MGET per batch of keys,
+    // the returned stream holds server side cursors and must be closed once consumed.
+    // the nodes are walked one after the other, at the pace the stream is consumed
+    public Stream<MovieDto> streamAll() {
+        int batchSize = properties.getScanBatchSize();
+        ScanOptions options = ScanOptions.scanOptions()
+                .match(MOVIE_KEY_PATTERN)
+                .count(batchSize)
+                .build();
+
+        List<Runnable> resources = new ArrayList<>();
+        List<KeyScan> scans = openScans(options, resources);
+        return scans.stream()
+                .flatMap(scan -> StreamSupport.stream(new KeyBatchSpliterator(scan.keys(), batchSize), false)
+                        .flatMap(keys -> findAllByKeys(scan.redisTemplate(), keys).stream()))
+                .onClose(() -> resources.forEach(Runnable::run));
+    }
+
+    // number of keys in the movies keyspace, walks the whole keyspace with SCAN, the nodes one after the other
+    public long countAll() {
+        ScanOptions options = ScanOptions.scanOptions()
+                .match(MOVIE_KEY_PATTERN)
+                .count(properties.getScanBatchSize())
+                .build();
+
+        List<Runnable> resources = new ArrayList<>();
+        try {
+            return openScans(options, resources)
+                    .stream()
+                    .mapToLong(scan -> {
+                        long count = 0;
+                        while (scan.keys().hasNext()) {
+                            scan.keys().next();
+                            count++;
+                        }
+                        return count;
+                    })
+                    .sum();
+        } finally {
+            resources.forEach(Runnable::run);
+        }
+    }
+
+    // the movie entries by batches of keys, walking the keyspace with SCAN as streamAll does and reading the sizes and
+    // times to live of each batch in a single pipeline, then the sizes of their copies in the aggregate in another one.
+    // the entries expired since the SCAN are left out
+    public void scanEntries(Consumer<List<MovieCacheEntry>> batchConsumer) {
+        int batchSize = properties.getScanBatchSize();
+        ScanOptions options = ScanOptions.scanOptions()
+                .match(MOVIE_KEY_PATTERN)
+                .count(batchSize)
+                .build();
+
+        List<Runnable> resources = new ArrayList<>();
+        try {
+            for (KeyScan scan : openScans(options, resources)) {
+                StreamSupport.stream(new KeyBatchSpliterator(scan.keys(), batchSize), false)
+                        .map(keys -> findEntriesByKeys(scan.redisTemplate(), keys))
+                        .forEach(batchConsumer);
+            }
+        } finally {
+            resources.forEach(Runnable::run);
+        }
+    }
+
+    // one UNLINK per shard, the number of keys deleted is returned
+    public long deleteAllByKeys(Collection<String> keys) {
+        Map<RedisTemplate<String, MovieDto>, List<String>> keysByShard = new LinkedHashMap<>();
+        for (String key : keys) {
+            keysByShard.computeIfAbsent(redisTemplates.forKey(key), shard -> new ArrayList<>())
+                    .add(key);
+        }
+
+        long count = 0;
+        for (Map.Entry<RedisTemplate<String, MovieDto>, List<String>> shardKeys : keysByShard.entrySet()) {
+            Long deleted = shardKeys.getKey().unlink(shardKeys.getValue());
+            count += deleted != null ? deleted : 0;
+        }
+        return count;
+    }
+
+    public MovieDto findById(Long id) {
+        String key = movieKey(id);
+        return redisTemplates.forKey(key).opsForValue().get(key);
+    }
+
+    // SET NX with TTL, the lease expires by itself if its holder dies while loading
+    public boolean acquireLoadLease(Long id, String token, Duration timeToLive) {
+        return acquireLease(loadLeaseKey(id), token, timeToLive);
+    }
+
+    // same lease, held by the node checking the memory budget until it expires
+    public boolean acquireMemoryBudgetLease(String token, Duration timeToLive) {
+        return acquireLease(MOVIE_MEMORY_BUDGET_LEASE_KEY, token, timeToLive);
+    }
+
+    // only deletes the lease if it is still held with the given token
+    public void releaseLoadLease(Long id, String token) {
+        String leaseKey = loadLeaseKey(id);
+        redisTemplates.forKey(leaseKey).execute(RELEASE_LOAD_LEASE_SCRIPT, RedisSerializer.string(), LONG_SERIALIZER,
+                List.of(leaseKey), token);
+    }
+
+    // one MGET per shard and hash tag over the cache entries of the given ids, so a single one without sharding,
+    // missing entries are left out of the result
+    public Map<Long, MovieDto> findAllByIds(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        Map<MultiGetGroup, List<Long>> idsByGroup = new LinkedHashMap<>();
+        for (Long id : ids) {
+            String key = movieKey(id);
+            idsByGroup.computeIfAbsent(new MultiGetGroup(redisTemplates.forKey(key), MovieCacheKeys.hashTag(key)), group -> new ArrayList<>())
+                    .add(id);
+        }
+
+        Map<Long, MovieDto> moviesById = new HashMap<>();
+        idsByGroup.forEach((group, groupIds) -> {
+            List<MovieDto> movies = group.redisTemplate().opsForValue().multiGet(groupIds.stream()
+                    .map(this::movieKey)
+                    .toList());
+            if (movies == null) {
+                return;
+            }
+            for (int i = 0; i < groupIds.size(); i++) {
+                MovieDto movie = movies.get(i);
+                if (movie != null) {
+                    moviesById.put(groupIds.get(i), movie);
+                }
+            }
+        });
+
+        // in the order of the given ids
+        Map<Long, MovieDto> orderedMoviesById = new LinkedHashMap<>();
+        for (Long id : ids) {
+            MovieDto movie = moviesById.get(id);
+            if (movie != null) {
+                orderedMoviesById.put(id, movie);
+            }
+        }
+        return orderedMoviesById;
+    }
+
+    // pipelined SET with TTL of the cache entries, one pipeline per shard, the writes bypass the cache abstraction
+    // so the near caches are invalidated here
+    public void saveAll(Collection<MovieDto> movies) {
+        if (movies.isEmpty()) {
+            return;
+        }
+
+        JitteredTimeToLive timeToLive = movieTimeToLive();
+        Map<RedisTemplate<String, MovieDto>, List<MovieDto>> moviesByShard = new LinkedHashMap<>();
+        for (MovieDto movie : movies) {
+            moviesByShard.computeIfAbsent(redisTemplates.forKey(movieKey(movie.getId())), shard -> new ArrayList<>())
+                    .add(movie);
+        }
+
+        moviesByShard.forEach((redisTemplate, shardMovies) -> {
+            List<byte[]> keys = new ArrayList<>(shardMovies.size());
+            List<byte[]> values = new ArrayList<>(shardMovies.size());
+            List<Expiration> expirations = new ArrayList<>(shardMovies.size());
+            for (MovieDto movie : shardMovies) {
+                keys.add(serializeKey(redisTemplate, movieKey(movie.getId())));
+                values.add(serializeValue(redisTemplate, movie));
+                expirations.add(timeToLive != null ? Expiration.from(timeToLive.forKey(movie.getId())) : Expiration.persistent());
+            }
+
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (int i = 0; i < keys.size(); i++) {
+                    connection.stringCommands().set(keys.get(i), values.get(i), expirations.get(i), SetOption.upsert());
+                }
+                return null;
+            });
+        });
+
+        NearCacheInvalidationBroker broker = nearCacheInvalidationBroker.getIfAvailable();
+        if (broker != null) {
+            broker.invalidate(MOVIE_CACHE_NAME, movies.stream()
+                    .map(movie -> String.valueOf(movie.getId()))
+                    .toList());
+        }
+    }
+
+    // the aggregate of the cached movies in the order of their ids, read one page of scan batch size movies per round trip
+    // so that each script call stays short, the expired movies met on the way are pruned
+    public List<MovieDto> findAllInAggregate() {
+        return findAllInAggregateLatency.record(() -> {
+            List<MovieDto> movies = new ArrayList<>();
+            String cursor = null;
+            do {
+                MoviePage page = findPageInAggregate(MovieIndex.ID, null, cursor, false, properties.getScanBatchSize());
+                movies.addAll(page.movies());
+                cursor = page.nextCursor();
+            } while (cursor != null);
+            return movies;
+        });
+    }
+
+    // one page of the aggregate in the order of the index, from the movie after the cursor on. a single round trip
+    // whatever the size of the aggregate, expired entries met on the way are pruned.
+    // with a prefix, only the movies whose sort key starts with it are read
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public MoviePage findPageInAggregate(MovieIndex index, String prefix, String cursor, boolean descending, int size) {
+        byte[] min = MovieIndex.min(prefix);
+        byte[] max = MovieIndex.max(prefix);
+        if (cursor != null) {
+            byte[] after = MovieIndex.after(Base64.getUrlDecoder().decode(cursor));
+            if (descending) {
+                max = after;
+            } else {
+                min = after;
+            }
+        }
+
+        // list results of a script are deserialized element by element, the first one is not a movie
+        RedisTemplate<String, MovieDto> redisTemplate = aggregateRedisTemplate();
+        RedisSerializer<MovieDto> valueSerializer = (RedisSerializer<MovieDto>) redisTemplate.getHashValueSerializer();
+        RedisSerializer bytesSerializer = RedisSerializer.byteArray();
+        Object[] args = {
+                serializeField(System.currentTimeMillis()),
+                RedisSerializer.string().serialize(index.key()),
+                min,
+                max,
+                serializeField((long) size),
+                serializeField(descending ? 1L : 0L)
+        };
+        List<byte[]> result = findPageInAggregateLatency.record(() -> redisTemplate.execute(FIND_MOVIES_PAGE_SCRIPT,
+                RedisSerializer.byteArray(), bytesSerializer, ALL_MOVIES_KEYS, args));
+        if (result == null || result.isEmpty()) {
+            return new MoviePage(Collections.emptyList(), null);
+        }
+
+        List<MovieDto> movies = result.subList(1, result.size())
+                .stream()
+                .map(valueSerializer::deserialize)
+                .toList();
+        byte[] last = result.getFirst();
+        return new MoviePage(movies, last.length > 0 ? Base64.getUrlEncoder().withoutPadding().encodeToString(last) : null);
+    }
+
+    // number of movies in the aggregate, including the expired ones not pruned yet
+    public long countInAggregate() {
+        Long count = aggregateRedisTemplate().opsForHash().size(ALL_MOVIES_KEY);
+        return count != null ? count : 0;
+    }
+
+    // the ids of the movies in the aggregate, walked with ZSCAN over their expirations rather than over the movies
+    // themselves. the expired ones not pruned yet are included
+    public void scanIdsInAggregate(Consumer<Long> idConsumer) {
+        ScanOptions options = ScanOptions.scanOptions()
+                .count(properties.getScanBatchSize())
+                .build();
+        aggregateRedisTemplate().execute((RedisCallback<Void>) connection -> {
+            try (Cursor<Tuple> cursor = connection.zSetCommands().zScan(ALL_MOVIES_EXPIRATION_RAW_KEY, options)) {
+                cursor.forEachRemaining(tuple -> idConsumer.accept(LONG_SERIALIZER.deserialize(tuple.getValue())));
+            }
+            return null;
+        });
+    }
+
+    // each movie expires from the aggregate with its entry, as saveAll writes it
+    // the entry of the movie is written through the cache, whose adaptive time to live then moves the expiration of the
+    // movie in the aggregate with expireInAggregate
+    public void saveInAggregate(MovieDto movie) {
+        saveAllInAggregate(List.of(movie));
+    }
+
+    // the expiration of a movie already in the aggregate is set to the time to live its entry was written with,
+    // a movie not in the aggregate is left out of it
+    public void expireInAggregate(Long id, Duration timeToLive) {
+        double expiration = System.currentTimeMillis() + timeToLive.toMillis();
+        aggregateRedisTemplate().execute((RedisCallback<Boolean>) connection -> connection.zSetCommands()
+                .zAdd(ALL_MOVIES_EXPIRATION_RAW_KEY, expiration, serializeField(id), RedisZSetCommands.ZAddArgs.ifExists()));
+    }
+
+    public void saveAllInAggregate(Collection<MovieDto> movies) {
+        if (movies.isEmpty()) {
+            return;
+        }
+
+        RedisTemplate<String, MovieDto> redisTemplate = aggregateRedisTemplate();
+        JitteredTimeToLive timeToLive = movieTimeToLive();
+        long now = System.currentTimeMillis();
+        MovieIndex[] indexes = MovieIndex.values();
+        List<byte[]> args = new ArrayList<>((3 + indexes.length) * movies.size());
+        for (MovieDto movie : movies) {
+            String expiration = timeToLive != null
+                    ? String.valueOf(now + timeToLive.forKey(movie.getId()).toMillis())
+                    : "+inf";
+            args.add(serializeField(movie.getId()));
+            args.add(RedisSerializer.string().serialize(expiration));
+            args.add(serializeValue(redisTemplate, movie));
+            for (MovieIndex index : indexes) {
+                args.add(index.member(movie));
+            }
+        }
+
+        saveInAggregateLatency.record(() -> redisTemplate.execute(SAVE_MOVIES_IN_AGGREGATE_SCRIPT, RedisSerializer.byteArray(),
+                LONG_SERIALIZER, ALL_MOVIES_KEYS, args.toArray()));
+    }
+
+    public void removeFromAggregate(Long id) {
+        removeAllFromAggregate(List.of(id));
+    }
+
+    // the number of movies removed
+    public long removeAllFromAggregate(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+
+        Object[] args = ids.stream()
+                .map(MovieCacheRepository::serializeField)
+                .toArray();
+        Long removed = removeFromAggregateLatency.record(() -> aggregateRedisTemplate().execute(REMOVE_MOVIE_FROM_AGGREGATE_SCRIPT,
+                RedisSerializer.byteArray(), LONG_SERIALIZER, ALL_MOVIES_KEYS, args));
+        return removed != null ? removed : 0;
+    }
+
+    public void clearAggregate() {
+        clearAggregateLatency.record(() -> aggregateRedisTemplate().execute((RedisCallback<Long>) connection -> connection.keyCommands()
+                .unlink(ALL_MOVIES_RAW_KEYS)));
+    }
+
+    private static Timer aggregateLatency(String operation, MeterRegistry meterRegistry) {
+        return Timer.builder(AGGREGATE_LATENCY_METRIC)
+                .description("Time spent on the all_movies aggregate")
+                .tag("operation", operation)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    // pipelined ZINCRBY of the read counts, the least read movies beyond the maximum size are dropped on the way
+    public void incrementAccessCounts(Map<Long, Long> countsById, int maximumSize) {
+        if (countsById.isEmpty()) {
+            return;
+        }
+
+        redisTemplates.forKey(MOVIE_ACCESS_STATS_KEY).executePipelined((RedisCallback<Object>) connection -> {
+            countsById.forEach((id, count) -> connection.zSetCommands().zIncrBy(MOVIE_ACCESS_STATS_RAW_KEY, count, serializeField(id)));
+            connection.zSetCommands().zRemRange(MOVIE_ACCESS_STATS_RAW_KEY, 0, -maximumSize - 1L);
+            return null;
+        });
+    }
+
+    // ids of the most read movies, the most read first
+    public List<Long> findMostAccessedIds(int count) {
+        if (count <= 0) {
+            return Collections.emptyList();
+        }
+
+        Set<byte[]> ids = redisTemplates.forKey(MOVIE_ACCESS_STATS_KEY).execute((RedisCallback<Set<byte[]>>) connection -> connection
+                .zSetCommands()
+                .zRevRange(MOVIE_ACCESS_STATS_RAW_KEY, 0, count - 1L));
+        if (ids == null) {
+            return Collections.emptyList();
+        }
+        return ids.stream()
+                .map(LONG_SERIALIZER::deserialize)
+                .toList();
+    }
+
+    private RedisTemplate<String, MovieDto> aggregateRedisTemplate() {
+        return redisTemplates.forKey(ALL_MOVIES_KEY);
+    }
+
+    private String movieKey(Long id) {
+        return movieCacheKeys.key(id);
+    }
+
+    // the time to live the cache gives the movie entries, null when they do not expire
+    private JitteredTimeToLive movieTimeToLive() {
+        Duration timeToLive = properties.timeToLive(MOVIE_CACHE_NAME, cacheProperties.getRedis().getTimeToLive());
+        return timeToLive != null ? new JitteredTimeToLive(timeToLive, properties.getTimeToLiveJitter()) : null;
+    }
+
+    private boolean acquireLease(String leaseKey, String token, Duration timeToLive) {
+        RedisTemplate<String, MovieDto> redisTemplate = redisTemplates.forKey(leaseKey);
+        byte[] key = serializeKey(redisTemplate, leaseKey);
+        byte[] value = RedisSerializer.string().serialize(token);
+        Boolean acquired = redisTemplate.execute((RedisCallback<Boolean>) connection -> connection.stringCommands()
+                .set(key, value, Expiration.from(timeToLive), SetOption.ifAbsent()));
+        return Boolean.TRUE.equals(acquired);
+    }
+
+    private static String loadLeaseKey(Long id) {
+        return MOVIE_LOAD_LEASE_KEY_PREFIX + id;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static byte[] serializeKey(RedisTemplate<String, MovieDto> redisTemplate, String key) {
+        return ((RedisSerializer<String>) redisTemplate.getKeySerializer()).serialize(key);
+    }
+
+    private static byte[] serializeField(Long id) {
+        return RedisSerializer.string().serialize(String.valueOf(id));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static byte[] serializeValue(RedisTemplate<String, MovieDto> redisTemplate, MovieDto movie) {
+        return ((RedisSerializer<MovieDto>) redisTemplate.getValueSerializer()).serialize(movie);
+    }
+
+    // one cursor per shard, or per master of a cluster since the cluster wide SCAN of the client visits them one by one.
+    // the cursors are released by the returned resources
+    private List<KeyScan> openScans(ScanOptions options, List<Runnable> resources) {
+        List<KeyScan> scans = new ArrayList<>();
+        for (RedisTemplate<String, MovieDto> redisTemplate : redisTemplates.all()) {
+            RedisConnectionFactory connectionFactory = redisTemplate.getConnectionFactory();
+            if (connectionFactory instanceof LettuceConnectionFactory lettuceConnectionFactory && lettuceConnectionFactory.isClusterAware()) {
+                RedisClusterConnection connection = lettuceConnectionFactory.getClusterConnection();
+                for (RedisClusterNode node : connection.clusterGetNodes()) {
+                    if (node.isMaster()) {
+                        Cursor<String> cursor = new ConvertingCursor<>(connection.scan(node, options), RedisSerializer.string()::deserialize);
+                        resources.add(cursor::close);
+                        scans.add(new KeyScan(redisTemplate, cursor));
+                    }
+                }
+                resources.add(connection::close);
+            } else {
+                Cursor<String> cursor = redisTemplate.scan(options);
+                resources.add(cursor::close);
+                scans.add(new KeyScan(redisTemplate, cursor));
+            }
+        }
+        return scans;
+    }
+
+    private List<MovieDto> findAllByKeys(RedisTemplate<String, MovieDto> redisTemplate, List<String> keys) {
+        List<MovieDto> movies = redisTemplate.opsForValue().multiGet(keys);
+        if (movies == null) {
+            return Collections.emptyList();
+        }
+        // entries can expire between the SCAN and the MGET
+        return movies.stream()
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    private List<MovieCacheEntry> findEntriesByKeys(RedisTemplate<String, MovieDto> redisTemplate, List<String> keys) {
+        List<byte[]> rawKeys = keys.stream()
+                .map(key -> serializeKey(redisTemplate, key))
+                .toList();
+        List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (byte[] rawKey : rawKeys) {
+                connection.stringCommands().strLen(rawKey);
+                connection.keyCommands().pTtl(rawKey);
+            }
+            return null;
+        });
+        // HSTRLEN is 0 for the movies missing from the aggregate
+        List<Long> ids = keys.stream()
+                .map(MovieCacheKeys::id)
+                .toList();
+        List<Object> aggregateSizes = aggregateRedisTemplate().executePipelined((RedisCallback<Object>) connection -> {
+            for (Long id : ids) {
+                connection.hashCommands().hStrLen(ALL_MOVIES_RAW_KEY, serializeField(id));
+            }
+            return null;
+        });
+
+        long now = System.currentTimeMillis();
+        List<MovieCacheEntry> entries = new ArrayList<>(keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            Long valueSize = (Long) results.get(2 * i);
+            Long timeToLive = (Long) results.get(2 * i + 1);
+            // -2 once expired, -1 without expiration
+            if (valueSize == null || timeToLive == null || timeToLive == -2) {
+                continue;
+            }
+            Long aggregateSize = (Long) aggregateSizes.get(i);
+            long size = rawKeys.get(i).length + valueSize + (aggregateSize != null ? aggregateSize : 0);
+            entries.add(new MovieCacheEntry(ids.get(i), keys.get(i), size, timeToLive >= 0 ? now + timeToLive : Long.MAX_VALUE));
+        }
+        return entries;
+    }
+
+    private record KeyScan(RedisTemplate<String, MovieDto> redisTemplate, Iterator<String> keys) {
+    }
+
+    private record MultiGetGroup(RedisTemplate<String, MovieDto> redisTemplate, String hashTag) {
+    }
+
+    private static class KeyBatchSpliterator extends Spliterators.AbstractSpliterator<List<String>> {
+        private final Iterator<String> keys;
+        private final int batchSize;
+
+        KeyBatchSpliterator(Iterator<String> keys, int batchSize) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            this.keys = keys;
+            this.batchSize = batchSize;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super List<String>> action) {
+            if (!keys.hasNext()) {
+                return false;
+            }
+
+            List<String> batch = new ArrayList<>(batchSize);
+            while (keys.hasNext() && batch.size() < batchSize) {
+                batch.add(keys.next());
+            }
+            action.accept(batch);
+            return true;
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package com.jonathanfoucher.rediscacheexample.repositories;
+
+import com.jonathanfoucher.rediscacheexample.caches.JitteredTimeToLive;
+import com.jonathanfoucher.rediscacheexample.caches.MovieCacheKeys;
+import com.jonathanfoucher.rediscacheexample.caches.MovieIndex;
+import com.jonathanfoucher.rediscacheexample.caches.RedisShards;
+import com.jonathanfoucher.rediscacheexample.configs.MovieCacheProperties;
+import com.jonathanfoucher.rediscacheexample.data.dto.MovieDto;
+import com.jonathanfoucher.rediscacheexample.data.dto.MoviePage;
+import org.springframework.boot.autoconfigure.cache.CacheProperties;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.serializer.GenericToStringSerializer;
+import org.springframework.data.redis.serializer.RedisElementReader;
+import org.springframework.data.redis.serializer.RedisElementWriter;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.*;
+import java.util.stream.Stream;
+
+// non-blocking counterpart of MovieCacheRepository, it reads and writes the same keys in the same format
+// so that both stacks share the cache. its writes do not go through the cache writers of the blocking stack: the entries
+// and the aggregate are both given the time to live of the cache, without the adaptive time to live, and redis is called
+// without the circuit breaker
+@Repository
+public class ReactiveMovieCacheRepository {
+    private final RedisShards<ReactiveRedisTemplate<String, MovieDto>> reactiveRedisTemplates;
+    private final MovieCacheKeys movieCacheKeys;
+    private final MovieCacheProperties properties;
+    private final CacheProperties cacheProperties;
+
+    private static final String MOVIE_CACHE_NAME = MovieCacheKeys.MOVIE_CACHE_NAME;
+    private static final String MOVIE_KEY_PATTERN = MovieCacheKeys.MOVIE_KEY_PATTERN;
+
+    private static final String ALL_MOVIES_KEY = "{all_movies}";
+    private static final String ALL_MOVIES_EXPIRATION_KEY = "{all_movies}:expiration";
+    private static final String ALL_MOVIES_INDEX_MEMBERS_KEY = "{all_movies}:index_members";
+    private static final List<String> ALL_MOVIES_KEYS = Stream.concat(
+                    Stream.of(ALL_MOVIES_KEY, ALL_MOVIES_EXPIRATION_KEY, ALL_MOVIES_INDEX_MEMBERS_KEY),
+                    Arrays.stream(MovieIndex.values()).map(MovieIndex::key))
+            .toList();
+
+    private static final RedisScript<List> FIND_MOVIES_PAGE_SCRIPT = RedisScript.of(new ClassPathResource("scripts/find_movies_page.lua"), List.class);
+    private static final RedisScript<Long> SAVE_MOVIES_IN_AGGREGATE_SCRIPT = RedisScript.of(new ClassPathResource("scripts/save_movies_in_aggregate.lua"), Long.class);
+    private static final RedisScript<Long> REMOVE_MOVIE_FROM_AGGREGATE_SCRIPT = RedisScript.of(new ClassPathResource("scripts/remove_movie_from_aggregate.lua"), Long.class);
+    private static final RedisElementWriter<byte[]> BYTES_WRITER = RedisElementWriter.from(RedisSerializer.byteArray());
+    private static final RedisElementReader<byte[]> BYTES_READER = RedisElementReader.from(RedisSerializer.byteArray());
+    private static final RedisElementReader<Long> LONG_READER = RedisElementReader.from(new GenericToStringSerializer<>(Long.class));
+
+    public ReactiveMovieCacheRepository(RedisShards<ReactiveRedisTemplate<String, MovieDto>> reactiveRedisTemplates,
+                                        MovieCacheProperties properties, CacheProperties cacheProperties) {
+        this.reactiveRedisTemplates = reactiveRedisTemplates;
+        this.movieCacheKeys = new MovieCacheKeys(properties.getSharding().getKeyBuckets());
+        this.properties = properties;
+        this.cacheProperties = cacheProperties;
+    }
+
+    // empty when the movie is not cached, an empty optional when it is cached as missing by a negative entry,
+    // which the value serializer would read as a null
+    public Mono<Optional<MovieDto>> findById(Long id) {
+        String key = movieKey(id);
+        ReactiveRedisTemplate<String, MovieDto> reactiveRedisTemplate = reactiveRedisTemplates.forKey(key);
+        RedisSerializationContext<String, MovieDto> serializationContext = reactiveRedisTemplate.getSerializationContext();
+        ByteBuffer rawKey = serializationContext.getKeySerializationPair().write(key);
+        return reactiveRedisTemplate.execute(connection -> connection.stringCommands().get(rawKey))
+                .next()
+                .map(value -> value.hasRemaining()
+                        ? Optional.of(serializationContext.getValueSerializationPair().read(value))
+                        : Optional.empty());
+    }
+
+    // SCAN over the movies keyspace with one MGET per batch of keys, the next batch is only requested on demand.
+    // the shards are scanned concurrently and their movies merged as they come
+    public Flux<MovieDto> findAll() {
+        int batchSize = properties.getScanBatchSize();
+        ScanOptions options = ScanOptions.scanOptions()
+                .match(MOVIE_KEY_PATTERN)
+                .count(batchSize)
+                .build();
+
+        return Flux.fromIterable(reactiveRedisTemplates.all())
+                .flatMap(reactiveRedisTemplate -> reactiveRedisTemplate.scan(options)
+                        .buffer(batchSize)
+                        .concatMap(keys -> reactiveRedisTemplate.opsForValue().multiGet(keys)))
+                // entries can expire between the SCAN and the MGET
+                .flatMapIterable(movies -> movies.stream()
+                        .filter(Objects::nonNull)
+                        .toList());
+    }
+
+    // one MGET per shard and hash tag over the cache entries of the given ids, so a single one without sharding,
+    // missing entries are left out of the result
+    public Mono<Map<Long, MovieDto>> findAllByIds(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return Mono.just(Collections.emptyMap());
+        }
+
+        Map<MultiGetGroup, List<Long>> idsByGroup = new LinkedHashMap<>();
+        for (Long id : ids) {
+            String key = movieKey(id);
+            idsByGroup.computeIfAbsent(new MultiGetGroup(reactiveRedisTemplates.forKey(key), MovieCacheKeys.hashTag(key)),
+                            group -> new ArrayList<>())
+                    .add(id);
+        }
+
+        return Flux.fromIterable(idsByGroup.entrySet())
+                .flatMap(group -> group.getKey().reactiveRedisTemplate().opsForValue()
+                        .multiGet(group.getValue().stream()
+                                .map(this::movieKey)
+                                .toList())
+                        .map(movies -> {
+                            List<Long> groupIds = group.getValue();
+                            Map<Long, MovieDto> moviesById = new HashMap<>();
+                            for (int i = 0; i < groupIds.size(); i++) {
+                                MovieDto movie = movies.get(i);
+                                if (movie != null) {
+                                    moviesById.put(groupIds.get(i), movie);
+                                }
+                            }
+                            return moviesById;
+                        }))
+                .collect(HashMap<Long, MovieDto>::new, Map::putAll)
+                // in the order of the given ids
+                .map(moviesById -> {
+                    Map<Long, MovieDto> orderedMoviesById = new LinkedHashMap<>();
+                    for (Long id : ids) {
+                        MovieDto movie = moviesById.get(id);
+                        if (movie != null) {
+                            orderedMoviesById.put(id, movie);
+                        }
+                    }
+                    return orderedMoviesById;
+                });
+    }
+
+    public Mono<Void> save(MovieDto movie) {
+        String key = movieKey(movie.getId());
+        ReactiveRedisTemplate<String, MovieDto> reactiveRedisTemplate = reactiveRedisTemplates.forKey(key);
+        JitteredTimeToLive timeToLive = movieTimeToLive();
+        Mono<Boolean> set = timeToLive != null
+                ? reactiveRedisTemplate.opsForValue().set(key, movie, timeToLive.forKey(movie.getId()))
+                : reactiveRedisTemplate.opsForValue().set(key, movie);
+        return set.then();
+    }
+
+    // same negative entry as the one the blocking stack writes for a null, an empty value with its own time to live
+    public Mono<Void> saveMissing(Long id) {
+        String key = movieKey(id);
+        ReactiveRedisTemplate<String, MovieDto> reactiveRedisTemplate = reactiveRedisTemplates.forKey(key);
+        ByteBuffer rawKey = reactiveRedisTemplate.getSerializationContext().getKeySerializationPair().write(key);
+        Expiration expiration = Expiration.from(properties.getNegativeCache().getTimeToLive());
+        return reactiveRedisTemplate.execute(connection -> connection.stringCommands()
+                        .set(rawKey, ByteBuffer.allocate(0), expiration, RedisStringCommands.SetOption.upsert()))
+                .then();
+    }
+
+    // the commands are sent without waiting for the previous replies, which pipelines them on the shared connection
+    public Mono<Void> saveAll(Collection<MovieDto> movies) {
+        return Flux.fromIterable(movies)
+                .flatMap(this::save)
+                .then();
+    }
+
+    public Mono<Void> delete(Long id) {
+        String key = movieKey(id);
+        return reactiveRedisTemplates.forKey(key).unlink(key)
+                .then();
+    }
+
+    public Mono<Void> deleteAll() {
+        ScanOptions options = ScanOptions.scanOptions()
+                .match(MOVIE_KEY_PATTERN)
+                .count(properties.getScanBatchSize())
+                .build();
+
+        return Flux.fromIterable(reactiveRedisTemplates.all())
+                .flatMap(reactiveRedisTemplate -> reactiveRedisTemplate.scan(options)
+                        .buffer(properties.getScanBatchSize())
+                        .concatMap(keys -> reactiveRedisTemplate.unlink(keys.toArray(String[]::new))))
+                .then();
+    }
+
+    // same as MovieCacheRepository.findAllInAggregate, the next page is only requested once the previous one is read
+    public Flux<MovieDto> findAllInAggregate() {
+        int size = properties.getScanBatchSize();
+        return findPageInAggregate(MovieIndex.ID, null, null, false, size)
+                .expand(page -> page.nextCursor() != null
+                        ? findPageInAggregate(MovieIndex.ID, null, page.nextCursor(), false, size)
+                        : Mono.empty())
+                .concatMapIterable(MoviePage::movies);
+    }
+
+    // same page as MovieCacheRepository.findPageInAggregate, the last member read comes first in the script result
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public Mono<MoviePage> findPageInAggregate(MovieIndex index, String prefix, String cursor, boolean descending, int size) {
+        byte[] min = MovieIndex.min(prefix);
+        byte[] max = MovieIndex.max(prefix);
+        if (cursor != null) {
+            byte[] after = MovieIndex.after(Base64.getUrlDecoder().decode(cursor));
+            if (descending) {
+                max = after;
+            } else {
+                min = after;
+            }
+        }
+
+        ReactiveRedisTemplate<String, MovieDto> reactiveRedisTemplate = aggregateReactiveRedisTemplate();
+        RedisElementReader valueReader = reactiveRedisTemplate.getSerializationContext().getHashValueSerializationPair().getReader();
+        List<byte[]> args = List.of(
+                serializeField(System.currentTimeMillis()),
+                RedisSerializer.string().serialize(index.key()),
+                min,
+                max,
+                serializeField((long) size),
+                serializeField(descending ? 1L : 0L));
+        Flux<List<byte[]>> elements = reactiveRedisTemplate.execute((RedisScript) FIND_MOVIES_PAGE_SCRIPT, ALL_MOVIES_KEYS, args, BYTES_WRITER, BYTES_READER);
+        return elements.single()
+                .map(result -> {
+                    if (result.isEmpty()) {
+                        return new MoviePage(Collections.emptyList(), null);
+                    }
+                    List<MovieDto> movies = result.subList(1, result.size())
+                            .stream()
+                            .map(bytes -> (MovieDto) valueReader.read(ByteBuffer.wrap(bytes)))
+                            .toList();
+                    byte[] last = result.getFirst();
+                    return new MoviePage(movies, last.length > 0 ? Base64.getUrlEncoder().withoutPadding().encodeToString(last) : null);
+                });
+    }
+
+    // each movie expires from the aggregate with its entry, as save writes it
+    public Mono<Void> saveAllInAggregate(Collection<MovieDto> movies) {
+        if (movies.isEmpty()) {
+            return Mono.empty();
+        }
+
+        JitteredTimeToLive timeToLive = movieTimeToLive();
+        long now = System.currentTimeMillis();
+        MovieIndex[] indexes = MovieIndex.values();
+        List<byte[]> args = new ArrayList<>((3 + indexes.length) * movies.size());
+        for (MovieDto movie : movies) {
+            String expiration = timeToLive != null ? String.valueOf(now + timeToLive.forKey(movie.getId()).toMillis()) : "+inf";
+            args.add(serializeField(movie.getId()));
+            args.add(RedisSerializer.string().serialize(expiration));
+            args.add(serializeValue(movie));
+            for (MovieIndex index : indexes) {
+                args.add(index.member(movie));
+            }
+        }
+
+        return aggregateReactiveRedisTemplate().execute(SAVE_MOVIES_IN_AGGREGATE_SCRIPT, ALL_MOVIES_KEYS, args, BYTES_WRITER, LONG_READER)
+                .then();
+    }
+
+    public Mono<Void> saveInAggregate(MovieDto movie) {
+        return saveAllInAggregate(List.of(movie));
+    }
+
+    public Mono<Void> removeFromAggregate(Long id) {
+        return aggregateReactiveRedisTemplate().execute(REMOVE_MOVIE_FROM_AGGREGATE_SCRIPT, ALL_MOVIES_KEYS, List.of(serializeField(id)),
+                        BYTES_WRITER, LONG_READER)
+                .then();
+    }
+
+    public Mono<Void> clearAggregate() {
+        return aggregateReactiveRedisTemplate().unlink(ALL_MOVIES_KEYS.toArray(String[]::new))
+                .then();
+    }
+
+    private ReactiveRedisTemplate<String, MovieDto> aggregateReactiveRedisTemplate() {
+        return reactiveRedisTemplates.forKey(ALL_MOVIES_KEY);
+    }
+
+    private String movieKey(Long id) {
+        return movieCacheKeys.key(id);
+    }
+
+    // the time to live the cache gives the movie entries, null when they do not expire
+    private JitteredTimeToLive movieTimeToLive() {
+        Duration timeToLive = properties.timeToLive(MOVIE_CACHE_NAME, cacheProperties.getRedis().getTimeToLive());
+        return timeToLive != null ? new JitteredTimeToLive(timeToLive, properties.getTimeToLiveJitter()) : null;
+    }
+
+    private static byte[] serializeField(Long id) {
+        return RedisSerializer.string().serialize(String.valueOf(id));
+    }
+
+    private byte[] serializeValue(MovieDto movie) {
+        ByteBuffer buffer = aggregateReactiveRedisTemplate().getSerializationContext().getValueSerializationPair().write(movie);
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private record MultiGetGroup(ReactiveRedisTemplate<String, MovieDto> reactiveRedisTemplate, String hashTag) {
+    }
+}
@@ -0,0 +1,41 @@
+package com.jonathanfoucher.rediscacheexample.serializers;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+// the native state of a codec takes longer to allocate and to clear than a small value to compress, so the states are
+// reused. they are not thread safe and a thread local would keep one per virtual thread, hence a bounded pool:
+// a state is created when none is idle and released when the pool is full
+class CodecContextPool<T> {
+    private final Supplier<T> factory;
+    private final Consumer<T> reset;
+    private final Consumer<T> release;
+    private final BlockingQueue<T> idle;
+
+    CodecContextPool(Supplier<T> factory, Consumer<T> reset, Consumer<T> release) {
+        this.factory = factory;
+        this.reset = reset;
+        this.release = release;
+        this.idle = new ArrayBlockingQueue<>(Runtime.getRuntime().availableProcessors() * 2);
+    }
+
+    T borrow() {
+        T context = idle.poll();
+        return context != null ? context : factory.get();
+    }
+
+    // the context is only given back once reset, a failed reset releases it
+    void giveBack(T context) {
+        try {
+            reset.accept(context);
+        } catch (RuntimeException e) {
+            release.accept(context);
+            return;
+        }
+        if (!idle.offer(context)) {
+            release.accept(context);
+        }
+    }
+}
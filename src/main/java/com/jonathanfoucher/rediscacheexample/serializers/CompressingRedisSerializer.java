@@ -0,0 +1,135 @@
+package com.jonathanfoucher.rediscacheexample.serializers;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// compresses the serialized values of at least the threshold size, as the codec header, the original length on 4 bytes
+// and the compressed bytes. the values which do not shrink are kept as they are, so are the smaller ones, and both kinds
+// are told apart by their first byte: the values of every given codec are read back whichever one is writing, which
+// allows to switch codecs or to turn the compression off without flushing the cache
+public class CompressingRedisSerializer<T> implements RedisSerializer<T> {
+    private final RedisSerializer<T> delegate;
+    private final CompressionCodec codec;
+    private final int threshold;
+    private final Map<Byte, CodecMetrics> codecs = new HashMap<>();
+
+    private static final int HEADER_SIZE = 1 + Integer.BYTES;
+    // largest value redis accepts
+    private static final int MAX_LENGTH = 512 * 1024 * 1024;
+
+    private static final String RATIO_METRIC = "movie.cache.compression.ratio";
+    private static final String TIME_METRIC = "movie.cache.compression.time";
+    private static final String SKIPPED_METRIC = "movie.cache.compression.skipped";
+
+    // without a codec nothing is compressed, the compressed values are still read
+    public CompressingRedisSerializer(RedisSerializer<T> delegate, CompressionCodec codec, int threshold,
+                                      Collection<CompressionCodec> readableCodecs, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.codec = codec;
+        this.threshold = threshold;
+        for (CompressionCodec readableCodec : readableCodecs) {
+            codecs.put(readableCodec.header(), new CodecMetrics(readableCodec, meterRegistry));
+        }
+        if (codec != null) {
+            codecs.put(codec.header(), new CodecMetrics(codec, meterRegistry));
+        }
+    }
+
+    @Override
+    public byte[] serialize(T value) throws SerializationException {
+        byte[] bytes = delegate.serialize(value);
+        if (codec == null || bytes == null || bytes.length < threshold) {
+            return bytes;
+        }
+
+        CodecMetrics metrics = codecs.get(codec.header());
+        long start = System.nanoTime();
+        byte[] compressed = codec.compress(bytes);
+        metrics.compressionTime.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        metrics.ratio.record((double) bytes.length / (HEADER_SIZE + compressed.length));
+        if (HEADER_SIZE + compressed.length >= bytes.length) {
+            metrics.skipped.increment();
+            return bytes;
+        }
+
+        return ByteBuffer.allocate(HEADER_SIZE + compressed.length)
+                .put(codec.header())
+                .putInt(bytes.length)
+                .put(compressed)
+                .array();
+    }
+
+    @Override
+    public T deserialize(byte[] bytes) throws SerializationException {
+        CodecMetrics metrics = bytes != null && bytes.length > 0 ? codecs.get(bytes[0]) : null;
+        if (metrics == null) {
+            return delegate.deserialize(bytes);
+        }
+        if (bytes.length < HEADER_SIZE) {
+            throw new SerializationException("Truncated compressed value");
+        }
+
+        int length = ByteBuffer.wrap(bytes, 1, Integer.BYTES).getInt();
+        if (length < 0 || length > MAX_LENGTH) {
+            throw new SerializationException("Invalid length of compressed value: " + length);
+        }
+        byte[] decompressed = new byte[length];
+        long start = System.nanoTime();
+        metrics.codec.decompress(bytes, HEADER_SIZE, bytes.length - HEADER_SIZE, decompressed);
+        metrics.decompressionTime.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return delegate.deserialize(decompressed);
+    }
+
+    @Override
+    public boolean canSerialize(Class<?> type) {
+        return delegate.canSerialize(type);
+    }
+
+    @Override
+    public Class<?> getTargetType() {
+        return delegate.getTargetType();
+    }
+
+    // the codecs only compute, so the time spent in them is CPU time. it is measured around their calls since
+    // the per thread CPU clock is not available on virtual threads
+    private static class CodecMetrics {
+        private final CompressionCodec codec;
+        private final DistributionSummary ratio;
+        private final Timer compressionTime;
+        private final Timer decompressionTime;
+        private final Counter skipped;
+
+        private CodecMetrics(CompressionCodec codec, MeterRegistry meterRegistry) {
+            this.codec = codec;
+            this.ratio = DistributionSummary.builder(RATIO_METRIC)
+                    .description("Size of the values before compression over their size after")
+                    .tag("codec", codec.name())
+                    .register(meterRegistry);
+            this.compressionTime = time(codec, "compress", meterRegistry);
+            this.decompressionTime = time(codec, "decompress", meterRegistry);
+            this.skipped = Counter.builder(SKIPPED_METRIC)
+                    .description("Values over the compression threshold written uncompressed since they did not shrink")
+                    .tag("codec", codec.name())
+                    .register(meterRegistry);
+        }
+
+        private static Timer time(CompressionCodec codec, String operation, MeterRegistry meterRegistry) {
+            return Timer.builder(TIME_METRIC)
+                    .description("CPU time spent compressing or decompressing the cached values")
+                    .tag("codec", codec.name())
+                    .tag("operation", operation)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.jonathanfoucher.rediscacheexample.serializers;
+
+// compression algorithm of the CompressingRedisSerializer, the header tags the values it compressed
+// and must not collide with the first byte of the uncompressed formats nor with the other codecs
+public interface CompressionCodec {
+    byte header();
+
+    // used as the codec tag of the compression metrics
+    String name();
+
+    byte[] compress(byte[] bytes);
+
+    // the target is sized to the original length, which is stored along with the compressed bytes
+    void decompress(byte[] source, int offset, int length, byte[] target);
+}
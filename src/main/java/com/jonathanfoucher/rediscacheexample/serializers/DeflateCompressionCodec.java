@@ -0,0 +1,71 @@
+package com.jonathanfoucher.rediscacheexample.serializers;
+
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.ByteArrayOutputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// zlib from the JDK, no dependency but slower than zstd for a similar ratio
+public class DeflateCompressionCodec implements CompressionCodec {
+    private final CodecContextPool<Deflater> deflaters;
+    private final CodecContextPool<Inflater> inflaters;
+
+    static final byte HEADER = (byte) 0xC1;
+
+    public DeflateCompressionCodec(int level) {
+        this.deflaters = new CodecContextPool<>(() -> new Deflater(level), Deflater::reset, Deflater::end);
+        this.inflaters = new CodecContextPool<>(Inflater::new, Inflater::reset, Inflater::end);
+    }
+
+    @Override
+    public byte header() {
+        return HEADER;
+    }
+
+    @Override
+    public String name() {
+        return "deflate";
+    }
+
+    @Override
+    public byte[] compress(byte[] bytes) {
+        Deflater deflater = deflaters.borrow();
+        try {
+            deflater.setInput(bytes);
+            deflater.finish();
+            ByteArrayOutputStream output = new ByteArrayOutputStream(bytes.length / 2 + 16);
+            byte[] buffer = new byte[Math.min(Math.max(bytes.length, 64), 8192)];
+            while (!deflater.finished()) {
+                output.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return output.toByteArray();
+        } finally {
+            deflaters.giveBack(deflater);
+        }
+    }
+
+    @Override
+    public void decompress(byte[] source, int offset, int length, byte[] target) {
+        Inflater inflater = inflaters.borrow();
+        try {
+            inflater.setInput(source, offset, length);
+            int position = 0;
+            while (position < target.length && !inflater.finished()) {
+                int inflated = inflater.inflate(target, position, target.length - position);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                position += inflated;
+            }
+            if (position != target.length || !inflater.finished()) {
+                throw new SerializationException("Truncated deflate value");
+            }
+        } catch (DataFormatException e) {
+            throw new SerializationException("Malformed deflate value", e);
+        } finally {
+            inflaters.giveBack(inflater);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.jonathanfoucher.rediscacheexample.serializers;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+// records the size of the payloads written to and read from Redis, which drives the memory footprint
+// of the cache and the network cost of each call
+public class MeteredRedisSerializer<T> implements RedisSerializer<T> {
+    private final RedisSerializer<T> delegate;
+    private final DistributionSummary writtenPayloads;
+    private final DistributionSummary readPayloads;
+
+    private static final String PAYLOAD_SIZE_METRIC = "movie.cache.payload.size";
+
+    public MeteredRedisSerializer(RedisSerializer<T> delegate, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.writtenPayloads = payloadSize("write", meterRegistry);
+        this.readPayloads = payloadSize("read", meterRegistry);
+    }
+
+    @Override
+    public byte[] serialize(T value) throws SerializationException {
+        byte[] bytes = delegate.serialize(value);
+        if (bytes != null) {
+            writtenPayloads.record(bytes.length);
+        }
+        return bytes;
+    }
+
+    @Override
+    public T deserialize(byte[] bytes) throws SerializationException {
+        if (bytes != null) {
+            readPayloads.record(bytes.length);
+        }
+        return delegate.deserialize(bytes);
+    }
+
+    @Override
+    public boolean canSerialize(Class<?> type) {
+        return delegate.canSerialize(type);
+    }
+
+    @Override
+    public Class<?> getTargetType() {
+        return delegate.getTargetType();
+    }
+
+    private static DistributionSummary payloadSize(String operation, MeterRegistry meterRegistry) {
+        return DistributionSummary.builder(PAYLOAD_SIZE_METRIC)
+                .description("Size of the cached values sent to or received from Redis")
+                .baseUnit("bytes")
+                .tag("operation", operation)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+}
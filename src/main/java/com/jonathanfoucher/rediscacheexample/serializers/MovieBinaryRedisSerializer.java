@@ -0,0 +1,128 @@
+package com.jonathanfoucher.rediscacheexample.serializers;
+
+import com.jonathanfoucher.rediscacheexample.data.dto.MovieDto;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+// compact encoding of MovieDto values: a format tag, a presence bitmask, then a zigzag varint id,
+// a varint length prefixed UTF-8 title and a zigzag varint epoch day.
+// other values, as well as the entries written before the switch, go through the JDK serialization
+public class MovieBinaryRedisSerializer implements RedisSerializer<Object> {
+    private final JdkSerializationRedisSerializer fallbackSerializer = new JdkSerializationRedisSerializer();
+
+    static final byte MOVIE_V1 = 0x01;
+    // first byte of the java serialization stream magic number 0xACED
+    static final byte JDK_SERIALIZATION = (byte) 0xAC;
+
+    private static final int ID_FLAG = 1;
+    private static final int TITLE_FLAG = 1 << 1;
+    private static final int RELEASE_DATE_FLAG = 1 << 2;
+
+    private static final int MAX_VARLONG_SIZE = 10;
+    private static final int MAX_VARINT_SIZE = 5;
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (value instanceof MovieDto movie) {
+            return serializeMovie(movie);
+        }
+        return fallbackSerializer.serialize(value);
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+
+        return switch (bytes[0]) {
+            case MOVIE_V1 -> deserializeMovie(bytes);
+            case JDK_SERIALIZATION -> fallbackSerializer.deserialize(bytes);
+            default -> throw new SerializationException(String.format("Unknown value format: 0x%02x", bytes[0]));
+        };
+    }
+
+    private static byte[] serializeMovie(MovieDto movie) {
+        byte[] title = movie.getTitle() != null ? movie.getTitle().getBytes(UTF_8) : null;
+        int flags = (movie.getId() != null ? ID_FLAG : 0)
+                | (title != null ? TITLE_FLAG : 0)
+                | (movie.getReleaseDate() != null ? RELEASE_DATE_FLAG : 0);
+
+        byte[] buffer = new byte[2 + MAX_VARLONG_SIZE + MAX_VARINT_SIZE + (title != null ? title.length : 0) + MAX_VARLONG_SIZE];
+        buffer[0] = MOVIE_V1;
+        buffer[1] = (byte) flags;
+        int position = 2;
+        if (movie.getId() != null) {
+            position = writeVarLong(buffer, position, zigZagEncode(movie.getId()));
+        }
+        if (title != null) {
+            position = writeVarLong(buffer, position, title.length);
+            System.arraycopy(title, 0, buffer, position, title.length);
+            position += title.length;
+        }
+        if (movie.getReleaseDate() != null) {
+            position = writeVarLong(buffer, position, zigZagEncode(movie.getReleaseDate().toEpochDay()));
+        }
+        return Arrays.copyOf(buffer, position);
+    }
+
+    private static MovieDto deserializeMovie(byte[] bytes) {
+        try {
+            int flags = bytes[1];
+            int[] position = {2};
+            MovieDto movie = new MovieDto();
+            if ((flags & ID_FLAG) != 0) {
+                movie.setId(zigZagDecode(readVarLong(bytes, position)));
+            }
+            if ((flags & TITLE_FLAG) != 0) {
+                int length = (int) readVarLong(bytes, position);
+                movie.setTitle(new String(bytes, position[0], length, UTF_8));
+                position[0] += length;
+            }
+            if ((flags & RELEASE_DATE_FLAG) != 0) {
+                movie.setReleaseDate(LocalDate.ofEpochDay(zigZagDecode(readVarLong(bytes, position))));
+            }
+            return movie;
+        } catch (IndexOutOfBoundsException e) {
+            throw new SerializationException("Truncated movie value", e);
+        }
+    }
+
+    private static int writeVarLong(byte[] buffer, int position, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+        return position;
+    }
+
+    private static long readVarLong(byte[] bytes, int[] position) {
+        long value = 0;
+        int shift = 0;
+        byte current;
+        do {
+            if (shift >= 64) {
+                throw new SerializationException("Malformed varint in movie value");
+            }
+            current = bytes[position[0]++];
+            value |= (long) (current & 0x7F) << shift;
+            shift += 7;
+        } while ((current & 0x80) != 0);
+        return value;
+    }
+
+    private static long zigZagEncode(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long zigZagDecode(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,55 @@
+package com.jonathanfoucher.rediscacheexample.serializers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.jonathanfoucher.rediscacheexample.data.dto.MovieDto;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.IOException;
+
+// MovieDto values written as the JSON the web layer renders them to, with its object mapper, so that a cached movie
+// can be sent as it is read from redis. a JSON object starts with a brace, which tells it apart from the other formats:
+// other values, as well as the entries written before the switch, go through the binary serializer
+public class MovieJsonRedisSerializer implements RedisSerializer<Object> {
+    private final MovieBinaryRedisSerializer fallbackSerializer = new MovieBinaryRedisSerializer();
+    private final ObjectWriter writer;
+    private final ObjectReader reader;
+
+    static final byte JSON_OBJECT = '{';
+
+    public MovieJsonRedisSerializer(ObjectMapper objectMapper) {
+        this.writer = objectMapper.writerFor(MovieDto.class);
+        this.reader = objectMapper.readerFor(MovieDto.class);
+    }
+
+    // whether the value is a movie as rendered by the web layer, as opposed to a compressed value or another format
+    public static boolean isRendered(byte[] bytes) {
+        return bytes != null && bytes.length > 0 && bytes[0] == JSON_OBJECT;
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (!(value instanceof MovieDto movie)) {
+            return fallbackSerializer.serialize(value);
+        }
+        try {
+            return writer.writeValueAsBytes(movie);
+        } catch (IOException e) {
+            throw new SerializationException("Could not write movie as JSON", e);
+        }
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (!isRendered(bytes)) {
+            return fallbackSerializer.deserialize(bytes);
+        }
+        try {
+            return reader.readValue(bytes);
+        } catch (IOException e) {
+            throw new SerializationException("Could not read movie from JSON", e);
+        }
+    }
+}
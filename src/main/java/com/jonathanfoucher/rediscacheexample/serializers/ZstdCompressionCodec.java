@@ -0,0 +1,63 @@
+package com.jonathanfoucher.rediscacheexample.serializers;
+
+import com.github.luben.zstd.ZstdCompressCtx;
+import com.github.luben.zstd.ZstdDecompressCtx;
+import com.github.luben.zstd.ZstdException;
+import org.springframework.data.redis.serializer.SerializationException;
+
+// zstd through its JNI binding, a better ratio than deflate at a fraction of its CPU time at the low levels
+public class ZstdCompressionCodec implements CompressionCodec {
+    private final CodecContextPool<ZstdCompressCtx> compressors;
+    private final CodecContextPool<ZstdDecompressCtx> decompressors;
+
+    static final byte HEADER = (byte) 0xC2;
+
+    public ZstdCompressionCodec(int level) {
+        // a reset clears the parameters as well, so the level is set again
+        this.compressors = new CodecContextPool<>(() -> new ZstdCompressCtx().setLevel(level),
+                context -> {
+                    context.reset();
+                    context.setLevel(level);
+                },
+                ZstdCompressCtx::close);
+        this.decompressors = new CodecContextPool<>(ZstdDecompressCtx::new,
+                ZstdDecompressCtx::reset, ZstdDecompressCtx::close);
+    }
+
+    @Override
+    public byte header() {
+        return HEADER;
+    }
+
+    @Override
+    public String name() {
+        return "zstd";
+    }
+
+    @Override
+    public byte[] compress(byte[] bytes) {
+        ZstdCompressCtx context = compressors.borrow();
+        try {
+            return context.compress(bytes);
+        } catch (ZstdException e) {
+            throw new SerializationException("Cannot compress value with zstd", e);
+        } finally {
+            compressors.giveBack(context);
+        }
+    }
+
+    @Override
+    public void decompress(byte[] source, int offset, int length, byte[] target) {
+        ZstdDecompressCtx context = decompressors.borrow();
+        try {
+            int size = context.decompressByteArray(target, 0, target.length, source, offset, length);
+            if (size != target.length) {
+                throw new SerializationException("Truncated zstd value");
+            }
+        } catch (ZstdException e) {
+            throw new SerializationException("Malformed zstd value", e);
+        } finally {
+            decompressors.giveBack(context);
+        }
+    }
+}
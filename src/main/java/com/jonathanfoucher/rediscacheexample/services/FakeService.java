@@ -1,18 +1,107 @@
 package com.jonathanfoucher.rediscacheexample.services;
 
+import com.jonathanfoucher.rediscacheexample.configs.MovieCacheProperties;
 import com.jonathanfoucher.rediscacheexample.data.dto.MovieDto;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.dao.TransientDataAccessResourceException;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
 
 @Service
 public class FakeService {
+    // the catalogue holds the movies from 1 to MAX_ID, the other ids do not exist
+    public static final long MAX_ID = 1_000_000;
+
+    private final MovieCacheProperties.FakeBackend properties;
+    private final Timer calls;
+    private final Timer failedCalls;
+
+    private static final String CALLS_METRIC = "movie.backend.calls";
+    // z-score of the 99th percentile of the standard normal distribution
+    private static final double P99_Z_SCORE = 2.326;
+
+    public FakeService(MovieCacheProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties.getFakeBackend();
+        this.calls = calls("success", meterRegistry);
+        this.failedCalls = calls("failure", meterRegistry);
+    }
+
     // simulate retrieving data
     public MovieDto findById(Long id) {
+        long start = System.nanoTime();
+        simulateCall(start);
+        MovieDto movie = find(id);
+        calls.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return movie;
+    }
+
+    // simulate retrieving data in bulk, with a single query
+    public List<MovieDto> findAllByIds(Collection<Long> ids) {
+        long start = System.nanoTime();
+        simulateCall(start);
+        List<MovieDto> movies = ids.stream()
+                .map(FakeService::find)
+                .toList();
+        calls.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return movies;
+    }
+
+    // simulate walking the ids of the whole catalogue
+    public LongStream findAllIds() {
+        return LongStream.rangeClosed(1, MAX_ID);
+    }
+
+    // the latency of the simulated backend, a failed call takes it too
+    Duration sampleLatency() {
+        Duration median = properties.getLatencyMedian();
+        Duration p99 = properties.getLatencyP99();
+        if (median.isZero() || p99.compareTo(median) <= 0) {
+            return median;
+        }
+        double sigma = Math.log((double) p99.toNanos() / median.toNanos()) / P99_Z_SCORE;
+        double gaussian = ThreadLocalRandom.current().nextGaussian();
+        return Duration.ofNanos((long) (median.toNanos() * Math.exp(sigma * gaussian)));
+    }
+
+    private void simulateCall(long start) {
+        Duration latency = sampleLatency();
+        if (latency.isPositive()) {
+            try {
+                Thread.sleep(latency);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (ThreadLocalRandom.current().nextDouble() < properties.getErrorRate()) {
+            failedCalls.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            throw new TransientDataAccessResourceException("Simulated backend failure");
+        }
+    }
+
+    private static MovieDto find(Long id) {
+        if (id == null || id < 1 || id > MAX_ID) {
+            return null;
+        }
         MovieDto movie = new MovieDto();
         movie.setId(id);
         movie.setTitle("Title");
         movie.setReleaseDate(LocalDate.of(2020, 1, 1));
         return movie;
     }
+
+    private static Timer calls(String outcome, MeterRegistry meterRegistry) {
+        return Timer.builder(CALLS_METRIC)
+                .description("Calls to the backend, including the simulated latency")
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
 }
@@ -0,0 +1,86 @@
+package com.jonathanfoucher.rediscacheexample.services;
+
+import com.jonathanfoucher.rediscacheexample.configs.MovieCacheProperties;
+import com.jonathanfoucher.rediscacheexample.repositories.MovieCacheRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+// counts the movie reads, cache hits included, and adds the counts to redis at every flush interval so that the
+// warm-up of the next starts knows the hot movies. these are only stats: the counts of the last interval are lost
+// if the node dies, as well as the few reads counted while their movie is being flushed
+@Component
+@Slf4j
+public class MovieAccessStats {
+    private final MovieCacheRepository movieCacheRepository;
+    private final MovieCacheProperties.AccessStats properties;
+    private final ConcurrentMap<Long, LongAdder> countsById = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flusher;
+
+    public MovieAccessStats(MovieCacheRepository movieCacheRepository, MovieCacheProperties properties, Environment environment) {
+        this.movieCacheRepository = movieCacheRepository;
+        this.properties = properties.getAccessStats();
+        if (this.properties.isEnabled()) {
+            ThreadFactory threadFactory = Threading.VIRTUAL.isActive(environment)
+                    ? Thread.ofVirtual().name("movie-access-stats").factory()
+                    : Thread.ofPlatform().name("movie-access-stats").daemon(true).factory();
+            long flushIntervalMillis = this.properties.getFlushInterval().toMillis();
+            this.flusher = Executors.newSingleThreadScheduledExecutor(threadFactory);
+            this.flusher.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this.flusher = null;
+        }
+    }
+
+    public void record(Long id) {
+        if (properties.isEnabled()) {
+            countsById.computeIfAbsent(id, key -> new LongAdder())
+                    .increment();
+        }
+    }
+
+    public void record(Collection<Long> ids) {
+        ids.forEach(this::record);
+    }
+
+    // the most read movies first, as of the last flush of every node
+    public List<Long> findMostAccessedIds(int count) {
+        return movieCacheRepository.findMostAccessedIds(count);
+    }
+
+    public void flush() {
+        if (countsById.isEmpty()) {
+            return;
+        }
+
+        Map<Long, Long> counts = new HashMap<>();
+        for (Long id : countsById.keySet()) {
+            LongAdder count = countsById.remove(id);
+            if (count != null) {
+                counts.put(id, count.sum());
+            }
+        }
+
+        try {
+            movieCacheRepository.incrementAccessCounts(counts, properties.getMaximumSize());
+        } catch (RuntimeException e) {
+            log.warn("Failed to flush the access stats of {} movies", counts.size(), e);
+        }
+    }
+
+    // on the context close rather than the bean destruction, by then the redis connections are already stopped
+    @EventListener(ContextClosedEvent.class)
+    public void shutdown() {
+        if (flusher != null) {
+            flusher.shutdownNow();
+            flush();
+        }
+    }
+}
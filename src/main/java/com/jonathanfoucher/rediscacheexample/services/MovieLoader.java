@@ -0,0 +1,188 @@
+package com.jonathanfoucher.rediscacheexample.services;
+
+import com.jonathanfoucher.rediscacheexample.configs.MovieCacheProperties;
+import com.jonathanfoucher.rediscacheexample.data.dto.MovieDto;
+import com.jonathanfoucher.rediscacheexample.repositories.MovieCacheRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+// deduplicates the loads of the movies missing from the cache: concurrent misses and refreshes on the same id wait
+// for the load already in flight on this node, and with the load lease enabled for the one running on another node
+@Component
+@Slf4j
+public class MovieLoader {
+    private final MovieCacheRepository movieCacheRepository;
+    private final MovieCacheProperties properties;
+    private final ConcurrentMap<Long, InFlightLoad> inFlightLoads = new ConcurrentHashMap<>();
+
+    private final Counter loads;
+    private final Counter localCoalescedLoads;
+    private final Counter remoteCoalescedLoads;
+    private final Timer loadLatency;
+
+    private static final String LOADS_METRIC = "movie.cache.loads";
+    private static final String COALESCED_LOADS_METRIC = "movie.cache.loads.coalesced";
+    private static final String LOAD_LATENCY_METRIC = "movie.cache.load";
+
+    public MovieLoader(MovieCacheRepository movieCacheRepository, MovieCacheProperties properties, MeterRegistry meterRegistry) {
+        this.movieCacheRepository = movieCacheRepository;
+        this.properties = properties;
+        this.loads = Counter.builder(LOADS_METRIC)
+                .description("Movies loaded from the backing store")
+                .register(meterRegistry);
+        this.localCoalescedLoads = Counter.builder(COALESCED_LOADS_METRIC)
+                .description("Cache misses served by a load already in flight")
+                .tag("scope", "local")
+                .register(meterRegistry);
+        this.remoteCoalescedLoads = Counter.builder(COALESCED_LOADS_METRIC)
+                .description("Cache misses served by a load already in flight")
+                .tag("scope", "remote")
+                .register(meterRegistry);
+        this.loadLatency = Timer.builder(LOAD_LATENCY_METRIC)
+                .description("Time spent loading a movie from the backing store")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    public MovieDto load(Long id, Function<Long, MovieDto> loader) {
+        return coalesce(id, false, () -> properties.getLoadLease().isEnabled() ? loadWithLease(id, loader) : doLoad(id, loader));
+    }
+
+    // reloads a movie still in cache, returns null without loading it when another node holds its load lease
+    public MovieDto refresh(Long id, Function<Long, MovieDto> loader) {
+        return coalesce(id, true, () -> properties.getLoadLease().isEnabled() ? refreshWithLease(id, loader) : doLoad(id, loader));
+    }
+
+    private MovieDto coalesce(Long id, boolean refresh, Supplier<MovieDto> loader) {
+        InFlightLoad load = new InFlightLoad(new CompletableFuture<>(), refresh);
+        InFlightLoad inFlightLoad;
+        while ((inFlightLoad = inFlightLoads.putIfAbsent(id, load)) != null) {
+            localCoalescedLoads.increment();
+            MovieDto movie = join(inFlightLoad.result());
+            // the null of a refresh denied the lease does not mean the movie is missing, a load then runs its own
+            if (movie != null || refresh || !inFlightLoad.refresh()) {
+                return movie;
+            }
+        }
+
+        // removed before it completes, so that the loads going on after a refresh do not join it again
+        try {
+            MovieDto movie = loader.get();
+            inFlightLoads.remove(id, load);
+            load.result().complete(movie);
+            return movie;
+        } catch (RuntimeException | Error e) {
+            inFlightLoads.remove(id, load);
+            load.result().completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private MovieDto loadWithLease(Long id, Function<Long, MovieDto> loader) {
+        MovieCacheProperties.LoadLease loadLease = properties.getLoadLease();
+        String token = UUID.randomUUID().toString();
+        long deadline = System.nanoTime() + loadLease.getTimeToLive().toNanos();
+
+        while (!movieCacheRepository.acquireLoadLease(id, token, loadLease.getTimeToLive())) {
+            MovieDto movie = movieCacheRepository.findById(id);
+            if (movie != null) {
+                remoteCoalescedLoads.increment();
+                return movie;
+            }
+            // the lease holder is too slow or gone, stop waiting for it
+            if (System.nanoTime() >= deadline || !sleep(loadLease.getPollInterval())) {
+                log.warn("Load lease of movie {} not released in time, loading it anyway", id);
+                return doLoad(id, loader);
+            }
+        }
+
+        try {
+            // the previous holder wrote the movie to the cache before releasing the lease
+            MovieDto movie = movieCacheRepository.findById(id);
+            if (movie != null) {
+                remoteCoalescedLoads.increment();
+                return movie;
+            }
+            movie = doLoad(id, loader);
+            // the caller only caches it once the lease is released, the nodes waiting for it would then miss it and
+            // load it again
+            saveBeforeRelease(movie);
+            return movie;
+        } finally {
+            movieCacheRepository.releaseLoadLease(id, token);
+        }
+    }
+
+    private MovieDto refreshWithLease(Long id, Function<Long, MovieDto> loader) {
+        MovieCacheProperties.LoadLease loadLease = properties.getLoadLease();
+        String token = UUID.randomUUID().toString();
+        // the cached value is still there, so there is nothing to wait for
+        if (!movieCacheRepository.acquireLoadLease(id, token, loadLease.getTimeToLive())) {
+            return null;
+        }
+
+        try {
+            return doLoad(id, loader);
+        } finally {
+            movieCacheRepository.releaseLoadLease(id, token);
+        }
+    }
+
+    private void saveBeforeRelease(MovieDto movie) {
+        if (movie == null) {
+            return;
+        }
+        try {
+            movieCacheRepository.saveAll(List.of(movie));
+        } catch (RuntimeException e) {
+            // the caller caches the movie anyway
+            log.warn("Failed to cache movie {} before releasing its load lease", movie.getId(), e);
+        }
+    }
+
+    private MovieDto doLoad(Long id, Function<Long, MovieDto> loader) {
+        loads.increment();
+        return loadLatency.record(() -> loader.apply(id));
+    }
+
+    private record InFlightLoad(CompletableFuture<MovieDto> result, boolean refresh) {
+    }
+
+    private static MovieDto join(CompletableFuture<MovieDto> load) {
+        try {
+            return load.join();
+        } catch (CompletionException e) {
+            // rethrow what the loader threw rather than its wrapper
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private static boolean sleep(Duration duration) {
+        try {
+            Thread.sleep(duration);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.jonathanfoucher.rediscacheexample.services;
+
+import com.jonathanfoucher.rediscacheexample.caches.MovieCacheKeys;
+import com.jonathanfoucher.rediscacheexample.configs.MovieCacheProperties;
+import com.jonathanfoucher.rediscacheexample.data.dto.MovieCacheEntry;
+import com.jonathanfoucher.rediscacheexample.repositories.MovieCacheRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// keeps the movies keyspace under its memory budget: a first SCAN sums the size of the entries by minute of expiration,
+// and when over budget a second one deletes the entries expiring before the minute where enough of them add up to the
+// excess. the copies of the values in the all_movies aggregate are counted with their entry and removed along with it.
+// with the adaptive time to live, the movies expiring first are the ones read the least when written
+@Component
+@Slf4j
+public class MovieMemoryBudget {
+    private final MovieCacheRepository movieCacheRepository;
+    private final MovieCacheProperties.MemoryBudget properties;
+    private final ScheduledExecutorService checker;
+    private final String token = UUID.randomUUID().toString();
+    private final AtomicLong size = new AtomicLong();
+    private final Counter evictions;
+
+    private static final String MOVIE_CACHE_NAME = MovieCacheKeys.MOVIE_CACHE_NAME;
+    private static final long EXPIRATION_BUCKET_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    public MovieMemoryBudget(MovieCacheRepository movieCacheRepository, MovieCacheProperties properties, MeterRegistry meterRegistry,
+                             Environment environment) {
+        this.movieCacheRepository = movieCacheRepository;
+        this.properties = properties.getMemoryBudget();
+        Gauge.builder("movie.cache.memory.size", size, AtomicLong::get)
+                .description("Size of the keys and values of the cache and of their copies in the aggregate at the last memory budget check")
+                .baseUnit("bytes")
+                .tag("cache", MOVIE_CACHE_NAME)
+                .register(meterRegistry);
+        this.evictions = Counter.builder("movie.cache.memory.evictions")
+                .description("Entries deleted to keep the cache under its memory budget")
+                .tag("cache", MOVIE_CACHE_NAME)
+                .register(meterRegistry);
+        if (this.properties.isEnabled()) {
+            ThreadFactory threadFactory = Threading.VIRTUAL.isActive(environment)
+                    ? Thread.ofVirtual().name("movie-memory-budget").factory()
+                    : Thread.ofPlatform().name("movie-memory-budget").daemon(true).factory();
+            long checkIntervalMillis = this.properties.getCheckInterval().toMillis();
+            this.checker = Executors.newSingleThreadScheduledExecutor(threadFactory);
+            this.checker.scheduleWithFixedDelay(this::checkSafely, checkIntervalMillis, checkIntervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this.checker = null;
+        }
+    }
+
+    // the number of entries deleted, none when another node holds the check of this interval
+    public long check() {
+        if (!movieCacheRepository.acquireMemoryBudgetLease(token, properties.getCheckInterval())) {
+            return 0;
+        }
+
+        TreeMap<Long, Long> sizeByExpiration = new TreeMap<>();
+        AtomicLong totalSize = new AtomicLong();
+        movieCacheRepository.scanEntries(entries -> {
+            for (MovieCacheEntry entry : entries) {
+                totalSize.addAndGet(entry.size());
+                sizeByExpiration.merge(entry.expiresAt() / EXPIRATION_BUCKET_MILLIS, entry.size(), Long::sum);
+            }
+        });
+        size.set(totalSize.get());
+        long excess = totalSize.get() - properties.getMaximumSize().toBytes();
+        if (excess <= 0) {
+            return 0;
+        }
+
+        long expiresBefore = expiresBefore(sizeByExpiration, excess);
+        AtomicLong deleted = new AtomicLong();
+        movieCacheRepository.scanEntries(entries -> {
+            List<MovieCacheEntry> expiringEntries = entries.stream()
+                    .filter(entry -> entry.expiresAt() < expiresBefore)
+                    .toList();
+            if (!expiringEntries.isEmpty()) {
+                deleted.addAndGet(movieCacheRepository.deleteAllByKeys(expiringEntries.stream()
+                        .map(MovieCacheEntry::key)
+                        .toList()));
+                movieCacheRepository.removeAllFromAggregate(expiringEntries.stream()
+                        .map(MovieCacheEntry::id)
+                        .toList());
+            }
+        });
+        evictions.increment(deleted.get());
+        log.info("Deleted {} entries from {} cache, {} bytes over its memory budget", deleted.get(), MOVIE_CACHE_NAME, excess);
+        return deleted.get();
+    }
+
+    // on the context close rather than the bean destruction, by then the redis connections are already stopped
+    @EventListener(ContextClosedEvent.class)
+    public void shutdown() {
+        if (checker != null) {
+            checker.shutdownNow();
+        }
+    }
+
+    // the end of the minute of expiration where the entries expiring first add up to the excess
+    private static long expiresBefore(TreeMap<Long, Long> sizeByExpiration, long excess) {
+        long freed = 0;
+        long bucket = Long.MAX_VALUE / EXPIRATION_BUCKET_MILLIS;
+        for (Map.Entry<Long, Long> bucketSize : sizeByExpiration.entrySet()) {
+            freed += bucketSize.getValue();
+            bucket = bucketSize.getKey();
+            if (freed >= excess) {
+                break;
+            }
+        }
+        return bucket < Long.MAX_VALUE / EXPIRATION_BUCKET_MILLIS ? (bucket + 1) * EXPIRATION_BUCKET_MILLIS : Long.MAX_VALUE;
+    }
+
+    private void checkSafely() {
+        try {
+            check();
+        } catch (RuntimeException e) {
+            log.warn("Failed to check the memory budget of {} cache", MOVIE_CACHE_NAME, e);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.jonathanfoucher.rediscacheexample.services;
+
+import com.jonathanfoucher.rediscacheexample.caches.BloomFilter;
+import com.jonathanfoucher.rediscacheexample.caches.CacheEntryWritten;
+import com.jonathanfoucher.rediscacheexample.caches.MovieCacheKeys;
+import com.jonathanfoucher.rediscacheexample.caches.NearCacheInvalidation;
+import com.jonathanfoucher.rediscacheexample.caches.NearCacheInvalidationBroker;
+import com.jonathanfoucher.rediscacheexample.configs.MovieCacheProperties;
+import com.jonathanfoucher.rediscacheexample.repositories.MovieCacheRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+// lookups of the movies which do not exist, their null results are cached with the negative cache time to live
+// and, with the bloom filter enabled, the ids it does not know are reported missing without a backend call. they are
+// still looked up in the cache, where another node may have written them since the filter was last built.
+// every id is reported as possibly existing until the first build of the filter is done. the filter is built from the ids
+// of the backend and of the aggregate, which holds the movies written to the cache that the backend may not know
+@Component
+@Slf4j
+public class MovieNegativeCache {
+    private final FakeService fakeService;
+    private final MovieCacheRepository movieCacheRepository;
+    private final MovieCacheProperties.NegativeCache properties;
+    private final ScheduledExecutorService rebuilder;
+    private final Counter rejections;
+    private volatile BloomFilter knownIds;
+    // also fed with the ids written while it is built, which the backend may not have returned
+    private volatile BloomFilter nextKnownIds;
+
+    private static final String REJECTIONS_METRIC = "movie.cache.bloom.rejections";
+
+    public MovieNegativeCache(FakeService fakeService, MovieCacheRepository movieCacheRepository, MovieCacheProperties properties,
+                              ObjectProvider<NearCacheInvalidationBroker> nearCacheInvalidationBroker,
+                              MeterRegistry meterRegistry, Environment environment) {
+        this.fakeService = fakeService;
+        this.movieCacheRepository = movieCacheRepository;
+        this.properties = properties.getNegativeCache();
+        this.rejections = Counter.builder(REJECTIONS_METRIC)
+                .description("Movie lookups rejected by the bloom filter of the known ids")
+                .register(meterRegistry);
+
+        if (this.properties.getBloomFilter().isEnabled()) {
+            ThreadFactory threadFactory = Threading.VIRTUAL.isActive(environment)
+                    ? Thread.ofVirtual().name("movie-bloom-filter").factory()
+                    : Thread.ofPlatform().name("movie-bloom-filter").daemon(true).factory();
+            long rebuildIntervalMillis = this.properties.getBloomFilter().getRebuildInterval().toMillis();
+            this.rebuilder = Executors.newSingleThreadScheduledExecutor(threadFactory);
+            this.rebuilder.scheduleWithFixedDelay(this::rebuild, 0, rebuildIntervalMillis, TimeUnit.MILLISECONDS);
+            // the movies written on the other nodes
+            nearCacheInvalidationBroker.ifAvailable(broker -> broker.addListener(this::onInvalidation));
+        } else {
+            this.rebuilder = null;
+        }
+    }
+
+    // whether the null results are cached
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    // false only if the id is not in the backend, true if it might be
+    public boolean mightExist(Long id) {
+        BloomFilter filter = knownIds;
+        return filter == null || id == null || filter.mightContain(id);
+    }
+
+    // same as !mightExist, counted as a rejected lookup
+    public boolean isUnknown(Long id) {
+        if (mightExist(id)) {
+            return false;
+        }
+        rejections.increment();
+        return true;
+    }
+
+    // the filter being built is read first: once it is gone, it has already replaced the known ids
+    public void add(Long id) {
+        BloomFilter nextFilter = nextKnownIds;
+        if (nextFilter != null) {
+            nextFilter.put(id);
+        }
+        BloomFilter filter = knownIds;
+        if (filter != null) {
+            filter.put(id);
+        }
+    }
+
+    public void addAll(Collection<Long> ids) {
+        ids.forEach(this::add);
+    }
+
+    public void rebuild() {
+        MovieCacheProperties.BloomFilter bloomFilter = properties.getBloomFilter();
+        try {
+            long start = System.nanoTime();
+            BloomFilter filter = new BloomFilter(bloomFilter.getExpectedInsertions(), bloomFilter.getFalsePositiveProbability());
+            nextKnownIds = filter;
+            fakeService.findAllIds()
+                    .forEach(filter::put);
+            // the movies added to the cache by any node, the ones the backend does not hold included
+            movieCacheRepository.scanIdsInAggregate(filter::put);
+            knownIds = filter;
+            log.info("Bloom filter of the known movie ids built in {} ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (RuntimeException e) {
+            log.warn("Failed to build the bloom filter of the known movie ids", e);
+        } finally {
+            nextKnownIds = null;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (rebuilder != null) {
+            rebuilder.shutdownNow();
+        }
+    }
+
+    // every movie written through the cache, whichever the path it was loaded or added by
+    @EventListener
+    public void onEntryWritten(CacheEntryWritten event) {
+        if (MovieCacheKeys.MOVIE_CACHE_NAME.equals(event.cacheName())) {
+            add(MovieCacheKeys.id(event.key()));
+        }
+    }
+
+    private void onInvalidation(NearCacheInvalidation invalidation) {
+        if (!MovieCacheKeys.MOVIE_CACHE_NAME.equals(invalidation.cacheName()) || invalidation.keys() == null) {
+            return;
+        }
+        for (String key : invalidation.keys()) {
+            try {
+                add(Long.valueOf(key));
+            } catch (NumberFormatException e) {
+                log.debug("Ignoring the invalidation of movie key {}", key);
+            }
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.jonathanfoucher.rediscacheexample.services;
+
+import com.jonathanfoucher.rediscacheexample.caches.CacheRefreshRequest;
+import com.jonathanfoucher.rediscacheexample.caches.MovieCacheKeys;
+import com.jonathanfoucher.rediscacheexample.configs.MovieCacheProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+import java.util.concurrent.*;
+
+// runs the refreshes asked by the movies cache on a bounded executor, a refresh that does not fit in the queue
+// is dropped and the entry is simply loaded again once expired
+@Component
+@Slf4j
+public class MovieRefresher {
+    private final MovieService movieService;
+    private final ThreadPoolExecutor executor;
+    private final Set<Long> pendingRefreshes = ConcurrentHashMap.newKeySet();
+
+    private final Counter scheduledRefreshes;
+    private final Counter rejectedRefreshes;
+
+    private static final String MOVIE_CACHE_NAME = MovieCacheKeys.MOVIE_CACHE_NAME;
+    private static final String REFRESHES_METRIC = "movie.cache.refreshes";
+
+    public MovieRefresher(MovieService movieService, MovieCacheProperties properties, MeterRegistry meterRegistry,
+                          Environment environment) {
+        this.movieService = movieService;
+        MovieCacheProperties.RefreshAhead refreshAhead = properties.getRefreshAhead();
+        // with virtual threads the pool still bounds the number of concurrent refreshes
+        ThreadFactory threadFactory = Threading.VIRTUAL.isActive(environment)
+                ? Thread.ofVirtual().name("movie-refresh-", 0).factory()
+                : Thread.ofPlatform().name("movie-refresh-", 0).daemon(true).factory();
+        this.executor = new ThreadPoolExecutor(refreshAhead.getThreads(), refreshAhead.getThreads(), 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(refreshAhead.getQueueCapacity()), threadFactory);
+        this.scheduledRefreshes = Counter.builder(REFRESHES_METRIC)
+                .description("Refreshes of movies close to their expiration")
+                .tag("outcome", "scheduled")
+                .register(meterRegistry);
+        this.rejectedRefreshes = Counter.builder(REFRESHES_METRIC)
+                .description("Refreshes of movies close to their expiration")
+                .tag("outcome", "rejected")
+                .register(meterRegistry);
+    }
+
+    @EventListener
+    public void onRefreshRequest(CacheRefreshRequest request) {
+        if (!MOVIE_CACHE_NAME.equals(request.cacheName())) {
+            return;
+        }
+
+        Long id = Long.valueOf(request.key());
+        // the hits following the first one are likely to ask for the same refresh
+        if (!pendingRefreshes.add(id)) {
+            return;
+        }
+
+        try {
+            executor.execute(() -> refresh(id));
+            scheduledRefreshes.increment();
+        } catch (RejectedExecutionException e) {
+            pendingRefreshes.remove(id);
+            rejectedRefreshes.increment();
+            log.debug("Refresh queue full, skipping refresh of movie {}", id);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void refresh(Long id) {
+        try {
+            movieService.refreshById(id);
+        } catch (RuntimeException e) {
+            log.warn("Failed to refresh movie {}", id, e);
+        } finally {
+            pendingRefreshes.remove(id);
+        }
+    }
+}
@@ -1,71 +1,215 @@
 package com.jonathanfoucher.rediscacheexample.services;
 
+import com.jonathanfoucher.rediscacheexample.caches.CacheTimeToLiveAdapted;
+import com.jonathanfoucher.rediscacheexample.caches.MovieCacheKeys;
+import com.jonathanfoucher.rediscacheexample.caches.MovieIndex;
+import com.jonathanfoucher.rediscacheexample.caches.NearCache;
+import com.jonathanfoucher.rediscacheexample.caches.RedisCircuitBreaker;
+import com.jonathanfoucher.rediscacheexample.configs.MovieCacheProperties;
 import com.jonathanfoucher.rediscacheexample.data.dto.MovieDto;
+import com.jonathanfoucher.rediscacheexample.data.dto.MoviePage;
+import com.jonathanfoucher.rediscacheexample.repositories.MovieCacheRepository;
+import com.jonathanfoucher.rediscacheexample.serializers.MovieJsonRedisSerializer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.cache.Cache;
-import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.CachePut;
+import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.Cacheable;
-import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.cache.RedisCache;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.util.ByteUtils;
 import org.springframework.stereotype.Service;
 
-import java.util.List;
+import java.util.*;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class MovieService {
-    private final CacheManager cacheManager;
-    private final RedisTemplate<String, MovieDto> redisTemplate;
+    private final MovieCacheRepository movieCacheRepository;
     private final FakeService fakeService;
+    private final MovieLoader movieLoader;
+    private final MovieNegativeCache movieNegativeCache;
+    private final CacheManager cacheManager;
+    private final MovieCacheProperties movieCacheProperties;
+    private final RedisCircuitBreaker redisCircuitBreaker;
 
-    private static final String MOVIE_CACHE_NAME = "movies";
+    private static final String MOVIE_CACHE_NAME = MovieCacheKeys.MOVIE_CACHE_NAME;
     private static final String ALL_MOVIES_CACHE_NAME = "all_movies";
+    private static final int MAX_PAGE_SIZE = 1000;
 
-    @Cacheable(value = ALL_MOVIES_CACHE_NAME, unless = "#result == null or #result.isEmpty()", key = "#root.methodName")
+    // the listings fail at once while redis is bypassed, the aggregate having no copy in memory
     public List<MovieDto> findAllCached() {
         log.info("Get all cached movies");
-        return redisTemplate.keys(MOVIE_CACHE_NAME + ":*")
-                .stream()
-                .map(key -> redisTemplate.opsForValue().get(key))
-                .toList();
+        return redisCircuitBreaker.callOrFail(movieCacheRepository::findAllInAggregate);
+    }
+
+    // one page of the cached movies in the order of the index, the title prefix filter reads the title index
+    public MoviePage findPageCached(MovieIndex index, boolean descending, String titlePrefix, String cursor, int size) {
+        checkPageRequest(index, titlePrefix, size);
+        log.info("Get a page of {} cached movies by {}", size, index);
+        return redisCircuitBreaker.callOrFail(() -> movieCacheRepository.findPageInAggregate(index, titlePrefix, cursor, descending,
+                size));
+    }
+
+    public Stream<MovieDto> streamAllCached() {
+        log.info("Stream all cached movies");
+        return movieCacheRepository.streamAll();
     }
 
-    @Cacheable(value = MOVIE_CACHE_NAME, unless = "#result == null")
+    // ids unknown to the bloom filter are read from the cache, which another node may have filled, but skip the backend.
+    // the missing movies are cached as a null with the negative cache time to live when it is enabled, unknown ids aside
+    @Cacheable(value = MOVIE_CACHE_NAME,
+            unless = "#result == null && (!@movieNegativeCache.enabled || !@movieNegativeCache.mightExist(#id))")
     public MovieDto findById(Long id) {
-        clearFindAllMoviesCache();
-        log.info("Get movie by id: {}", id);
-        return fakeService.findById(id);
+        if (movieNegativeCache.isUnknown(id)) {
+            log.info("Movie {} is unknown", id);
+            return null;
+        }
+        // concurrent misses on the same id share a single load
+        return movieLoader.load(id, this::loadById);
+    }
+
+    // the cached movie as rendered json with the json serialization only, null otherwise and the caller goes through findById
+    public byte[] findRenderedById(Long id) {
+        if (movieCacheProperties.getSerialization() != MovieCacheProperties.SerializationFormat.JSON) {
+            return null;
+        }
+        Cache movieCache = cacheManager.getCache(MOVIE_CACHE_NAME);
+        if (movieCache instanceof NearCache nearCache) {
+            if (nearCache.isHeldLocally(id)) {
+                return null;
+            }
+            movieCache = nearCache.getDelegate();
+        }
+        if (!(movieCache instanceof RedisCache cache)) {
+            return null;
+        }
+        // through the cache writer, so that the hit is counted and refreshed ahead like the ones of findById
+        byte[] value = cache.getNativeCache().get(MOVIE_CACHE_NAME, cacheKey(cache, id));
+        return MovieJsonRedisSerializer.isRendered(value) ? value : null;
+    }
+
+    // reloads a movie close to its expiration, the cached value is served until the new one is written
+    @CachePut(value = MOVIE_CACHE_NAME, key = "#id", unless = "#result == null")
+    public MovieDto refreshById(Long id) {
+        log.info("Refresh entry {} of {} cache", id, MOVIE_CACHE_NAME);
+        return movieLoader.refresh(id, this::loadById);
+    }
+
+    // cache hits are resolved with one MGET, misses are loaded in bulk and written back in one pipeline.
+    // while redis is bypassed, all the movies are loaded from the backend and not written back
+    public List<MovieDto> findByIds(Collection<Long> ids) {
+        Set<Long> distinctIds = new LinkedHashSet<>(ids);
+        log.info("Get {} movies by ids", distinctIds.size());
+        Map<Long, MovieDto> moviesById = new HashMap<>(redisCircuitBreaker.call(() -> movieCacheRepository.findAllByIds(distinctIds),
+                Map::of));
+
+        // as in findById, the ids unknown to the bloom filter are read from the cache but not loaded
+        List<Long> missingIds = distinctIds.stream()
+                .filter(id -> !moviesById.containsKey(id) && !movieNegativeCache.isUnknown(id))
+                .toList();
+        if (!missingIds.isEmpty()) {
+            log.info("Load {} movies missing from {} cache", missingIds.size(), MOVIE_CACHE_NAME);
+            List<MovieDto> loadedMovies = fakeService.findAllByIds(missingIds)
+                    .stream()
+                    .filter(Objects::nonNull)
+                    .toList();
+            redisCircuitBreaker.run(() -> saveAll(loadedMovies));
+            loadedMovies.forEach(movie -> moviesById.put(movie.getId(), movie));
+        }
+
+        return distinctIds.stream()
+                .map(moviesById::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    public void addMoviesToCache(List<MovieDto> movies) {
+        log.info("Adding {} movies to {} cache", movies.size(), MOVIE_CACHE_NAME);
+        saveAll(movies);
     }
 
     @CachePut(value = MOVIE_CACHE_NAME, key = "#result.id")
     public MovieDto addMovieToCache(MovieDto movie) {
-        clearFindAllMoviesCache();
+        addToFindAllMoviesCache(movie);
         log.info("Adding movie {} to {} cache", movie, MOVIE_CACHE_NAME);
         return movie;
     }
 
-    @CacheEvict(value = MOVIE_CACHE_NAME, allEntries = true)
+    // the entries are evicted first, from memory as well, so that the eviction fails at once while redis is bypassed
+    @CacheEvict(value = MOVIE_CACHE_NAME, allEntries = true, beforeInvocation = true)
     public void clearCache() {
-        clearFindAllMoviesCache();
+        log.info("Clear all entries for {} cache", ALL_MOVIES_CACHE_NAME);
+        redisCircuitBreaker.runOrFail(movieCacheRepository::clearAggregate);
         log.info("Clean all entries for {} cache", MOVIE_CACHE_NAME);
     }
 
-    @CacheEvict(value = MOVIE_CACHE_NAME)
+    @CacheEvict(value = MOVIE_CACHE_NAME, beforeInvocation = true)
     public void cleanCacheById(Long id) {
-        clearFindAllMoviesCache();
+        log.info("Remove entry {} from {} cache", id, ALL_MOVIES_CACHE_NAME);
+        redisCircuitBreaker.runOrFail(() -> movieCacheRepository.removeFromAggregate(id));
         log.info("Clean entry {} for {} cache", id, MOVIE_CACHE_NAME);
     }
 
-    private void clearFindAllMoviesCache() {
-        log.info("Clear all entries for {} cache", ALL_MOVIES_CACHE_NAME);
-        Cache cache = cacheManager.getCache(ALL_MOVIES_CACHE_NAME);
-        if (cache != null) {
-            cache.clear();
-        } else {
-            log.error("Cache {} not found", ALL_MOVIES_CACHE_NAME);
+    // the movie is written to the aggregate before its entry, the adaptive time to live of which it then follows
+    @EventListener
+    public void onTimeToLiveAdapted(CacheTimeToLiveAdapted event) {
+        if (!MOVIE_CACHE_NAME.equals(event.cacheName())) {
+            return;
+        }
+        Long id = MovieCacheKeys.id(event.key());
+        redisCircuitBreaker.run(() -> movieCacheRepository.expireInAggregate(id, event.timeToLive()));
+    }
+
+    private void saveAll(List<MovieDto> movies) {
+        if (movies.isEmpty()) {
+            return;
+        }
+        movieCacheRepository.saveAll(movies);
+        movieNegativeCache.addAll(movies.stream()
+                .map(MovieDto::getId)
+                .toList());
+        log.info("Add {} entries to {} cache", movies.size(), ALL_MOVIES_CACHE_NAME);
+        movieCacheRepository.saveAllInAggregate(movies);
+    }
+
+    // the key the redis cache stores the movie at, with its key conversion and prefix
+    private static byte[] cacheKey(RedisCache cache, Long id) {
+        RedisCacheConfiguration configuration = cache.getCacheConfiguration();
+        String key = configuration.getConversionService().convert(id, String.class);
+        if (configuration.usePrefix()) {
+            key = configuration.getKeyPrefixFor(cache.getName()) + key;
         }
+        return ByteUtils.getBytes(configuration.getKeySerializationPair().write(key));
+    }
+
+    private static void checkPageRequest(MovieIndex index, String titlePrefix, int size) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Page size must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        if (titlePrefix != null && index != MovieIndex.TITLE) {
+            throw new IllegalArgumentException("Title prefix filter requires the title sort");
+        }
+    }
+
+    private MovieDto loadById(Long id) {
+        log.info("Get movie by id: {}", id);
+        MovieDto movie = fakeService.findById(id);
+        if (movie != null) {
+            addToFindAllMoviesCache(movie);
+        }
+        return movie;
+    }
+
+    // skipped while redis is bypassed, the movie is then only listed once written again
+    private void addToFindAllMoviesCache(MovieDto movie) {
+        movieNegativeCache.add(movie.getId());
+        log.info("Add entry {} to {} cache", movie.getId(), ALL_MOVIES_CACHE_NAME);
+        redisCircuitBreaker.run(() -> movieCacheRepository.saveInAggregate(movie));
     }
 }
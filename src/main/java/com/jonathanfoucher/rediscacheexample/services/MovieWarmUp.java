@@ -0,0 +1,138 @@
+package com.jonathanfoucher.rediscacheexample.services;
+
+import com.jonathanfoucher.rediscacheexample.configs.MovieCacheProperties;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// loads the hot movies into the cache once the application is ready. spring boot only switches the readiness state
+// to ACCEPTING_TRAFFIC once the ready event listeners are done, so the readiness probe keeps refusing traffic until
+// the warm-up is over or has timed out. the batches go through MovieService.findByIds: the movies already cached
+// are skipped and the missing ones are loaded in bulk and written back with pipelined puts
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class MovieWarmUp {
+    private final MovieService movieService;
+    private final MovieAccessStats movieAccessStats;
+    private final MovieCacheProperties properties;
+    private final Environment environment;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (properties.getWarmUp().isEnabled()) {
+            warmUp();
+        }
+    }
+
+    // returns the number of movies in the cache after the warm-up, out of the hot ones
+    public int warmUp() {
+        MovieCacheProperties.WarmUp warmUp = properties.getWarmUp();
+        long start = System.nanoTime();
+
+        List<Long> ids;
+        try {
+            ids = findHotIds();
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to read the hot movie ids, skipping warm-up", e);
+            return 0;
+        }
+        if (ids.isEmpty()) {
+            log.info("No hot movies to warm up");
+            return 0;
+        }
+
+        log.info("Warming up {} movies", ids.size());
+        ThreadFactory threadFactory = Threading.VIRTUAL.isActive(environment)
+                ? Thread.ofVirtual().name("movie-warm-up-", 0).factory()
+                : Thread.ofPlatform().name("movie-warm-up-", 0).daemon(true).factory();
+        ExecutorService executor = Executors.newFixedThreadPool(warmUp.getParallelism(), threadFactory);
+        // each batch is given a start slot, after the movies of the batches before it at the configured rate,
+        // so that the batches start in the order of the hot ids whichever thread runs them
+        long nanosPerMovie = warmUp.getMoviesPerSecond() > 0 ? TimeUnit.SECONDS.toNanos(1) / warmUp.getMoviesPerSecond() : 0;
+        AtomicInteger warmedUp = new AtomicInteger();
+        for (int from = 0; from < ids.size(); from += warmUp.getBatchSize()) {
+            List<Long> batch = ids.subList(from, Math.min(from + warmUp.getBatchSize(), ids.size()));
+            long slot = start + from * nanosPerMovie;
+            executor.execute(() -> {
+                if (!awaitSlot(slot)) {
+                    return;
+                }
+                try {
+                    warmedUp.addAndGet(movieService.findByIds(batch).size());
+                } catch (RuntimeException e) {
+                    log.warn("Failed to warm up a batch of {} movies", batch.size(), e);
+                }
+            });
+        }
+
+        executor.shutdown();
+        boolean done = awaitTermination(executor, warmUp.getTimeout());
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+        if (done) {
+            log.info("Warmed up {} of {} movies in {} ms", warmedUp.get(), ids.size(), elapsed.toMillis());
+        } else {
+            executor.shutdownNow();
+            log.warn("Warm-up timed out after {} ms, {} of {} movies warmed up", elapsed.toMillis(), warmedUp.get(), ids.size());
+        }
+        return warmedUp.get();
+    }
+
+    List<Long> findHotIds() throws IOException {
+        MovieCacheProperties.WarmUp warmUp = properties.getWarmUp();
+        Set<Long> ids = new LinkedHashSet<>();
+        Resource hotIdsFile = warmUp.getHotIdsFile();
+        if (hotIdsFile != null) {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(hotIdsFile.getInputStream(), StandardCharsets.UTF_8))) {
+                reader.lines()
+                        .map(String::strip)
+                        .filter(line -> !line.isEmpty() && !line.startsWith("#"))
+                        .map(Long::valueOf)
+                        .forEach(ids::add);
+            }
+        }
+        if (properties.getAccessStats().isEnabled() && ids.size() < warmUp.getMaximumMovies()) {
+            ids.addAll(movieAccessStats.findMostAccessedIds(warmUp.getMaximumMovies() - ids.size()));
+        }
+        return ids.stream()
+                .limit(warmUp.getMaximumMovies())
+                .toList();
+    }
+
+    // a sleep may end a little early, the batch waits until its slot is actually reached
+    private static boolean awaitSlot(long slot) {
+        try {
+            long delay;
+            while ((delay = slot - System.nanoTime()) > 0) {
+                Thread.sleep(Duration.ofNanos(delay));
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static boolean awaitTermination(ExecutorService executor, Duration timeout) {
+        try {
+            return executor.awaitTermination(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
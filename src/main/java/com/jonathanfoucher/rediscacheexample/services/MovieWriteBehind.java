@@ -0,0 +1,215 @@
+package com.jonathanfoucher.rediscacheexample.services;
+
+import com.jonathanfoucher.rediscacheexample.configs.MovieCacheProperties;
+import com.jonathanfoucher.rediscacheexample.data.dto.MovieDto;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// write-behind of the movies posted one by one. they are buffered by id, so that the posts of a movie between two
+// flushes are written once, and a single thread writes them in batches through the pipelined bulk write.
+// a full buffer pushes back on the posts, which wait for room up to the enqueue timeout and are then rejected
+@Component
+@Slf4j
+public class MovieWriteBehind {
+    private final MovieService movieService;
+    private final MovieCacheProperties.WriteBehind properties;
+    private final Map<Long, MovieDto> pendingMovies = new LinkedHashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition batchReady = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final Thread flusher;
+    private boolean closed;
+
+    private final Counter queuedPosts;
+    private final Counter coalescedPosts;
+    private final Counter rejectedPosts;
+    private final Timer flushLatency;
+    private final Timer failedFlushLatency;
+
+    private static final Duration SHUTDOWN_TIMEOUT = Duration.ofSeconds(30);
+
+    private static final String POSTS_METRIC = "movie.cache.write.posts";
+    private static final String QUEUE_METRIC = "movie.cache.write.queue.size";
+    private static final String FLUSH_METRIC = "movie.cache.write.flush";
+
+    public MovieWriteBehind(MovieService movieService, MovieCacheProperties properties, MeterRegistry meterRegistry,
+                            Environment environment) {
+        this.movieService = movieService;
+        this.properties = properties.getWriteBehind();
+        this.queuedPosts = posts("queued", meterRegistry);
+        this.coalescedPosts = posts("coalesced", meterRegistry);
+        this.rejectedPosts = posts("rejected", meterRegistry);
+        this.flushLatency = flushLatency("success", meterRegistry);
+        this.failedFlushLatency = flushLatency("failure", meterRegistry);
+        Gauge.builder(QUEUE_METRIC, this, MovieWriteBehind::queueSize)
+                .description("Movies waiting to be written by the write-behind")
+                .register(meterRegistry);
+
+        if (this.properties.isEnabled()) {
+            ThreadFactory threadFactory = Threading.VIRTUAL.isActive(environment)
+                    ? Thread.ofVirtual().name("movie-write-behind").factory()
+                    : Thread.ofPlatform().name("movie-write-behind").daemon(true).factory();
+            this.flusher = threadFactory.newThread(this::run);
+            this.flusher.start();
+        } else {
+            this.flusher = null;
+        }
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    // false when the movie could not be queued within the enqueue timeout, or once shut down.
+    // a movie already queued is replaced in place, which needs no room
+    public boolean submit(MovieDto movie) {
+        long remaining = properties.getEnqueueTimeout().toNanos();
+        lock.lock();
+        try {
+            if (!closed && pendingMovies.containsKey(movie.getId())) {
+                pendingMovies.put(movie.getId(), movie);
+                coalescedPosts.increment();
+                return true;
+            }
+            while (!closed && pendingMovies.size() >= properties.getQueueCapacity()) {
+                if (remaining <= 0) {
+                    break;
+                }
+                remaining = notFull.awaitNanos(remaining);
+            }
+            if (closed || pendingMovies.size() >= properties.getQueueCapacity()) {
+                rejectedPosts.increment();
+                return false;
+            }
+
+            pendingMovies.put(movie.getId(), movie);
+            queuedPosts.increment();
+            if (pendingMovies.size() >= properties.getBatchSize()) {
+                batchReady.signal();
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            rejectedPosts.increment();
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // on the context close rather than the bean destruction, by then the redis connections are already stopped.
+    // the posts are rejected from now on and the buffered movies are written before returning
+    @EventListener(ContextClosedEvent.class)
+    public void shutdown() {
+        if (flusher == null) {
+            return;
+        }
+
+        lock.lock();
+        try {
+            closed = true;
+            batchReady.signal();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            if (!flusher.join(SHUTDOWN_TIMEOUT)) {
+                log.warn("Write-behind still flushing after {}, {} movies left", SHUTDOWN_TIMEOUT, queueSize());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        while (true) {
+            List<MovieDto> batch;
+            lock.lock();
+            try {
+                long remaining = properties.getFlushInterval().toNanos();
+                while (!closed && pendingMovies.size() < properties.getBatchSize() && remaining > 0) {
+                    remaining = batchReady.awaitNanos(remaining);
+                }
+                if (pendingMovies.isEmpty()) {
+                    if (closed) {
+                        return;
+                    }
+                    continue;
+                }
+                batch = drain(properties.getBatchSize());
+                notFull.signalAll();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.warn("Write-behind interrupted, {} movies left", queueSize());
+                return;
+            } finally {
+                lock.unlock();
+            }
+            flush(batch);
+        }
+    }
+
+    // called with the lock held
+    private List<MovieDto> drain(int count) {
+        List<MovieDto> batch = new ArrayList<>(Math.min(count, pendingMovies.size()));
+        Iterator<MovieDto> iterator = pendingMovies.values().iterator();
+        while (iterator.hasNext() && batch.size() < count) {
+            batch.add(iterator.next());
+            iterator.remove();
+        }
+        return batch;
+    }
+
+    // the cache is not the source of truth, a batch which fails to be written is dropped
+    private void flush(List<MovieDto> batch) {
+        long start = System.nanoTime();
+        try {
+            movieService.addMoviesToCache(batch);
+            flushLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        } catch (RuntimeException e) {
+            failedFlushLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            log.warn("Failed to write {} buffered movies", batch.size(), e);
+        }
+    }
+
+    private int queueSize() {
+        lock.lock();
+        try {
+            return pendingMovies.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static Counter posts(String outcome, MeterRegistry meterRegistry) {
+        return Counter.builder(POSTS_METRIC)
+                .description("Movies posted to the write-behind")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private static Timer flushLatency(String outcome, MeterRegistry meterRegistry) {
+        return Timer.builder(FLUSH_METRIC)
+                .description("Time spent writing a batch of buffered movies")
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+}
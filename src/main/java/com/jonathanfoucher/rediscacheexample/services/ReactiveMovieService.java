@@ -0,0 +1,187 @@
+package com.jonathanfoucher.rediscacheexample.services;
+
+import com.jonathanfoucher.rediscacheexample.caches.MovieCacheKeys;
+import com.jonathanfoucher.rediscacheexample.caches.MovieIndex;
+import com.jonathanfoucher.rediscacheexample.caches.NearCacheInvalidationBroker;
+import com.jonathanfoucher.rediscacheexample.data.dto.MovieDto;
+import com.jonathanfoucher.rediscacheexample.data.dto.MoviePage;
+import com.jonathanfoucher.rediscacheexample.repositories.ReactiveMovieCacheRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.*;
+
+// non-blocking counterpart of MovieService, the cache-aside logic of its caching annotations is written out
+// on top of the reactive repository since the caching annotations do not apply to reactive types here
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ReactiveMovieService {
+    private final ReactiveMovieCacheRepository movieCacheRepository;
+    private final FakeService fakeService;
+    private final MovieNegativeCache movieNegativeCache;
+    private final ObjectProvider<NearCacheInvalidationBroker> nearCacheInvalidationBroker;
+
+    private static final String MOVIE_CACHE_NAME = MovieCacheKeys.MOVIE_CACHE_NAME;
+    private static final String ALL_MOVIES_CACHE_NAME = "all_movies";
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    public Flux<MovieDto> findAllCached() {
+        log.info("Get all cached movies");
+        return movieCacheRepository.findAllInAggregate();
+    }
+
+    // same as MovieService.findPageCached, an invalid request is rejected before subscription
+    public Mono<MoviePage> findPageCached(MovieIndex index, boolean descending, String titlePrefix, String cursor, int size) {
+        checkPageRequest(index, titlePrefix, size);
+        log.info("Get a page of {} cached movies by {}", size, index);
+        return movieCacheRepository.findPageInAggregate(index, titlePrefix, cursor, descending, size);
+    }
+
+    public Flux<MovieDto> streamAllCached() {
+        log.info("Stream all cached movies");
+        return movieCacheRepository.findAll();
+    }
+
+    // same as MovieService.findById, the missing movies are cached as a negative entry when it is enabled
+    public Mono<MovieDto> findById(Long id) {
+        return movieCacheRepository.findById(id)
+                .switchIfEmpty(Mono.defer(() -> {
+                    if (movieNegativeCache.isUnknown(id)) {
+                        log.info("Movie {} is unknown", id);
+                        return Mono.empty();
+                    }
+                    return loadById(id).map(Optional::of);
+                }))
+                .flatMap(Mono::justOrEmpty);
+    }
+
+    public Flux<MovieDto> findByIds(Collection<Long> ids) {
+        Set<Long> distinctIds = new LinkedHashSet<>(ids);
+        log.info("Get {} movies by ids", distinctIds.size());
+        return movieCacheRepository.findAllByIds(distinctIds)
+                .flatMap(cachedMovies -> {
+                    List<Long> missingIds = distinctIds.stream()
+                            .filter(id -> !cachedMovies.containsKey(id) && !movieNegativeCache.isUnknown(id))
+                            .toList();
+                    if (missingIds.isEmpty()) {
+                        return Mono.just(cachedMovies);
+                    }
+
+                    log.info("Load {} movies missing from {} cache", missingIds.size(), MOVIE_CACHE_NAME);
+                    return findInDatabase(missingIds)
+                            .flatMap(loadedMovies -> saveAll(loadedMovies).then(Mono.fromSupplier(() -> {
+                                Map<Long, MovieDto> moviesById = new HashMap<>(cachedMovies);
+                                loadedMovies.forEach(movie -> moviesById.put(movie.getId(), movie));
+                                return moviesById;
+                            })));
+                })
+                .flatMapIterable(moviesById -> distinctIds.stream()
+                        .map(moviesById::get)
+                        .filter(Objects::nonNull)
+                        .toList());
+    }
+
+    public Mono<Void> addMoviesToCache(List<MovieDto> movies) {
+        log.info("Adding {} movies to {} cache", movies.size(), MOVIE_CACHE_NAME);
+        return saveAll(movies);
+    }
+
+    // same as @CachePut
+    public Mono<MovieDto> addMovieToCache(MovieDto movie) {
+        return addToFindAllMoviesCache(movie)
+                .then(Mono.fromRunnable(() -> log.info("Adding movie {} to {} cache", movie, MOVIE_CACHE_NAME)))
+                .then(movieCacheRepository.save(movie))
+                .then(invalidateNearCaches(List.of(String.valueOf(movie.getId()))))
+                .thenReturn(movie);
+    }
+
+    // same as @CacheEvict(allEntries = true)
+    public Mono<Void> clearCache() {
+        return Mono.fromRunnable(() -> log.info("Clear all entries for {} cache", ALL_MOVIES_CACHE_NAME))
+                .then(movieCacheRepository.clearAggregate())
+                .then(Mono.fromRunnable(() -> log.info("Clean all entries for {} cache", MOVIE_CACHE_NAME)))
+                .then(movieCacheRepository.deleteAll())
+                .then(invalidateNearCaches(null));
+    }
+
+    // same as @CacheEvict
+    public Mono<Void> cleanCacheById(Long id) {
+        return Mono.fromRunnable(() -> log.info("Remove entry {} from {} cache", id, ALL_MOVIES_CACHE_NAME))
+                .then(movieCacheRepository.removeFromAggregate(id))
+                .then(Mono.fromRunnable(() -> log.info("Clean entry {} for {} cache", id, MOVIE_CACHE_NAME)))
+                .then(movieCacheRepository.delete(id))
+                .then(invalidateNearCaches(List.of(String.valueOf(id))));
+    }
+
+    private static void checkPageRequest(MovieIndex index, String titlePrefix, int size) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Page size must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        if (titlePrefix != null && index != MovieIndex.TITLE) {
+            throw new IllegalArgumentException("Title prefix filter requires the title sort");
+        }
+    }
+
+    private Mono<MovieDto> loadById(Long id) {
+        // FakeService stands in for a blocking database
+        return Mono.fromCallable(() -> {
+                    log.info("Get movie by id: {}", id);
+                    return fakeService.findById(id);
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(movie -> addToFindAllMoviesCache(movie)
+                        .then(movieCacheRepository.save(movie))
+                        .then(invalidateNearCaches(List.of(String.valueOf(id))))
+                        .thenReturn(movie))
+                .switchIfEmpty(Mono.defer(() -> movieNegativeCache.isEnabled()
+                        ? movieCacheRepository.saveMissing(id).then(Mono.empty())
+                        : Mono.empty()));
+    }
+
+    private Mono<List<MovieDto>> findInDatabase(List<Long> ids) {
+        return Mono.fromCallable(() -> fakeService.findAllByIds(ids)
+                        .stream()
+                        .filter(Objects::nonNull)
+                        .toList())
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private Mono<Void> saveAll(List<MovieDto> movies) {
+        if (movies.isEmpty()) {
+            return Mono.empty();
+        }
+        movieNegativeCache.addAll(movies.stream()
+                .map(MovieDto::getId)
+                .toList());
+        return movieCacheRepository.saveAll(movies)
+                .then(invalidateNearCaches(movies.stream()
+                        .map(movie -> String.valueOf(movie.getId()))
+                        .toList()))
+                .then(Mono.fromRunnable(() -> log.info("Add {} entries to {} cache", movies.size(), ALL_MOVIES_CACHE_NAME)))
+                .then(movieCacheRepository.saveAllInAggregate(movies));
+    }
+
+    private Mono<Void> addToFindAllMoviesCache(MovieDto movie) {
+        return Mono.fromRunnable(() -> {
+                    movieNegativeCache.add(movie.getId());
+                    log.info("Add entry {} to {} cache", movie.getId(), ALL_MOVIES_CACHE_NAME);
+                })
+                .then(movieCacheRepository.saveInAggregate(movie));
+    }
+
+    // the near caches of the blocking stack keep their copy otherwise, the broker publishes with a blocking call
+    private Mono<Void> invalidateNearCaches(List<String> keys) {
+        NearCacheInvalidationBroker broker = nearCacheInvalidationBroker.getIfAvailable();
+        if (broker == null) {
+            return Mono.empty();
+        }
+        return Mono.<Void>fromRunnable(() -> broker.invalidate(MOVIE_CACHE_NAME, keys))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+}
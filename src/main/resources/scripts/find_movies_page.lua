@@ -0,0 +1,62 @@
+-- KEYS[1]: hash of the cached movies by id
+-- KEYS[2]: sorted set of the movie ids scored by expiration timestamp
+-- KEYS[3]: hash of the index members of the movies, by id and index key
+-- KEYS[4..n]: lexicographical indexes of the movies
+-- ARGV[1]: current timestamp in milliseconds
+-- ARGV[2]: key of the index to read
+-- ARGV[3], ARGV[4]: lexicographical range of the members to read, lower and upper bound
+-- ARGV[5]: page size
+-- ARGV[6]: 1 to read the index from the upper bound down
+-- returns the last member read, empty once the range is exhausted, followed by the serialized movies.
+-- the expired movies met on the way are pruned and the index is read further so that the page stays full
+local function remove(id)
+    for j = 4, #KEYS do
+        local field = id .. ':' .. KEYS[j]
+        local member = redis.call('HGET', KEYS[3], field)
+        if member then
+            redis.call('ZREM', KEYS[j], member)
+            redis.call('HDEL', KEYS[3], field)
+        end
+    end
+    redis.call('HDEL', KEYS[1], id)
+    redis.call('ZREM', KEYS[2], id)
+end
+
+local now = tonumber(ARGV[1])
+local min, max = ARGV[3], ARGV[4]
+local size = tonumber(ARGV[5])
+local reversed = ARGV[6] == '1'
+local movies = {}
+local last = ''
+while #movies < size do
+    local count = size - #movies
+    local members
+    if reversed then
+        members = redis.call('ZREVRANGEBYLEX', ARGV[2], max, min, 'LIMIT', 0, count)
+    else
+        members = redis.call('ZRANGEBYLEX', ARGV[2], min, max, 'LIMIT', 0, count)
+    end
+    for _, member in ipairs(members) do
+        local id = string.match(member, ':(%-?%d+)$')
+        local expiration = redis.call('ZSCORE', KEYS[2], id)
+        local movie = redis.call('HGET', KEYS[1], id)
+        -- without a time to live the movies expire at +inf
+        if expiration and (expiration == 'inf' or tonumber(expiration) > now) and movie then
+            movies[#movies + 1] = movie
+        else
+            remove(id)
+        end
+        last = member
+    end
+    if #members < count then
+        last = ''
+        break
+    end
+    if reversed then
+        max = '(' .. last
+    else
+        min = '(' .. last
+    end
+end
+table.insert(movies, 1, last)
+return movies
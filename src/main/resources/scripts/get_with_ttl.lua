@@ -0,0 +1,7 @@
+-- KEYS[1]: cache entry
+-- returns the value and its remaining time to live in milliseconds, an empty array when the entry is missing
+local value = redis.call('GET', KEYS[1])
+if not value then
+    return {}
+end
+return {value, redis.call('PTTL', KEYS[1])}
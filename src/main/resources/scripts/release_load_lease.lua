@@ -0,0 +1,6 @@
+-- KEYS[1]: load lease of a movie
+-- ARGV[1]: token of the lease holder
+if redis.call('GET', KEYS[1]) == ARGV[1] then
+    return redis.call('DEL', KEYS[1])
+end
+return 0
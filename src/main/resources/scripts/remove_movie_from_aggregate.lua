@@ -0,0 +1,19 @@
+-- KEYS[1]: hash of the cached movies by id
+-- KEYS[2]: sorted set of the movie ids scored by expiration timestamp
+-- KEYS[3]: hash of the index members of the movies, by id and index key
+-- KEYS[4..n]: lexicographical indexes of the movies
+-- ARGV[1..n]: movie ids
+local removed = 0
+for _, id in ipairs(ARGV) do
+    for j = 4, #KEYS do
+        local field = id .. ':' .. KEYS[j]
+        local member = redis.call('HGET', KEYS[3], field)
+        if member then
+            redis.call('ZREM', KEYS[j], member)
+            redis.call('HDEL', KEYS[3], field)
+        end
+    end
+    redis.call('ZREM', KEYS[2], id)
+    removed = removed + redis.call('HDEL', KEYS[1], id)
+end
+return removed
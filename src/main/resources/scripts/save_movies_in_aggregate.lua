@@ -0,0 +1,21 @@
+-- KEYS[1]: hash of the cached movies by id
+-- KEYS[2]: sorted set of the movie ids scored by expiration timestamp
+-- KEYS[3]: hash of the index members of the movies, by id and index key
+-- KEYS[4..n]: lexicographical indexes of the movies
+-- ARGV[1..n]: movie id, expiration timestamp in milliseconds, serialized movie and its member of each index
+local indexes = #KEYS - 3
+for i = 1, #ARGV, 3 + indexes do
+    local id = ARGV[i]
+    redis.call('HSET', KEYS[1], id, ARGV[i + 2])
+    redis.call('ZADD', KEYS[2], ARGV[i + 1], id)
+    for j = 1, indexes do
+        local field = id .. ':' .. KEYS[3 + j]
+        local previous = redis.call('HGET', KEYS[3], field)
+        if previous then
+            redis.call('ZREM', KEYS[3 + j], previous)
+        end
+        redis.call('ZADD', KEYS[3 + j], 0, ARGV[i + 2 + j])
+        redis.call('HSET', KEYS[3], field, ARGV[i + 2 + j])
+    end
+end
+return #ARGV / (3 + indexes)
@@ -0,0 +1,194 @@
+package com.jonathanfoucher.rediscacheexample.caches;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.redis.cache.CacheStatisticsCollector;
+import org.springframework.data.redis.cache.RedisCacheWriter;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AdaptiveTimeToLiveCacheWriterTest {
+    @Mock
+    private RedisCacheWriter delegate;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private static final String MOVIE_CACHE_NAME = "movies";
+    private static final String OTHER_CACHE_NAME = "others";
+    private static final byte[] KEY = "movies::15".getBytes(UTF_8);
+    private static final byte[] VALUE = "value".getBytes(UTF_8);
+    private static final Duration TIME_TO_LIVE = Duration.ofDays(1);
+    private static final Duration MIN_TIME_TO_LIVE = Duration.ofHours(1);
+    // 1 + hot reads times the minimum, so that a movie read n times gets 1 + n times the minimum
+    private static final Duration MAX_TIME_TO_LIVE = Duration.ofHours(100);
+    private static final long HOT_READS = 99;
+    private static final Duration WINDOW = Duration.ofHours(1);
+
+    private AdaptiveTimeToLiveCacheWriter cacheWriter;
+
+    @BeforeEach
+    void init() {
+        cacheWriter = new AdaptiveTimeToLiveCacheWriter(delegate, Set.of(MOVIE_CACHE_NAME), TIME_TO_LIVE, MIN_TIME_TO_LIVE,
+                MAX_TIME_TO_LIVE, HOT_READS, WINDOW, 1024, 4, eventPublisher);
+    }
+
+    @Test
+    void putNotRead() {
+        // WHEN
+        cacheWriter.put(MOVIE_CACHE_NAME, KEY, VALUE, TIME_TO_LIVE);
+
+        // THEN
+        verify(delegate, times(1)).put(MOVIE_CACHE_NAME, KEY, VALUE, MIN_TIME_TO_LIVE);
+    }
+
+    @Test
+    void putHot() {
+        // GIVEN
+        for (int i = 0; i < HOT_READS + 1; i++) {
+            cacheWriter.get(MOVIE_CACHE_NAME, KEY);
+        }
+
+        // WHEN
+        cacheWriter.put(MOVIE_CACHE_NAME, KEY, VALUE, TIME_TO_LIVE);
+
+        // THEN
+        verify(delegate, times(1)).put(MOVIE_CACHE_NAME, KEY, VALUE, MAX_TIME_TO_LIVE);
+
+        ArgumentCaptor<CacheTimeToLiveAdapted> capturedEvent = ArgumentCaptor.forClass(CacheTimeToLiveAdapted.class);
+        verify(eventPublisher, times(1)).publishEvent(capturedEvent.capture());
+        assertEquals(new CacheTimeToLiveAdapted(MOVIE_CACHE_NAME, "movies::15", MAX_TIME_TO_LIVE), capturedEvent.getValue());
+    }
+
+    @Test
+    void putReadSometimes() {
+        // GIVEN
+        for (int i = 0; i < 9; i++) {
+            cacheWriter.get(MOVIE_CACHE_NAME, KEY, TIME_TO_LIVE);
+        }
+
+        // WHEN
+        cacheWriter.put(MOVIE_CACHE_NAME, KEY, VALUE, TIME_TO_LIVE);
+
+        // THEN
+        verify(delegate, times(1)).put(MOVIE_CACHE_NAME, KEY, VALUE, Duration.ofHours(10));
+    }
+
+    @Test
+    void putWithJitter() {
+        // GIVEN
+        for (int i = 0; i < HOT_READS; i++) {
+            cacheWriter.retrieve(MOVIE_CACHE_NAME, KEY, TIME_TO_LIVE);
+        }
+
+        // WHEN
+        cacheWriter.put(MOVIE_CACHE_NAME, KEY, VALUE, TIME_TO_LIVE.dividedBy(2));
+
+        // THEN
+        verify(delegate, times(1)).put(MOVIE_CACHE_NAME, KEY, VALUE, MAX_TIME_TO_LIVE.dividedBy(2));
+    }
+
+    @Test
+    void putWithoutTimeToLive() {
+        // WHEN
+        cacheWriter.put(MOVIE_CACHE_NAME, KEY, VALUE, Duration.ZERO);
+
+        // THEN
+        verify(delegate, times(1)).put(MOVIE_CACHE_NAME, KEY, VALUE, Duration.ZERO);
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    void putInOtherCache() {
+        // WHEN
+        cacheWriter.put(OTHER_CACHE_NAME, KEY, VALUE, TIME_TO_LIVE);
+
+        // THEN
+        verify(delegate, times(1)).put(OTHER_CACHE_NAME, KEY, VALUE, TIME_TO_LIVE);
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    void storeAfterDecay() {
+        // GIVEN
+        for (int i = 0; i < HOT_READS; i++) {
+            cacheWriter.get(MOVIE_CACHE_NAME, KEY);
+        }
+        when(delegate.store(MOVIE_CACHE_NAME, KEY, VALUE, Duration.ofHours(50)))
+                .thenReturn(CompletableFuture.completedFuture(null));
+
+        // WHEN
+        // 99 reads are halved to 49
+        cacheWriter.decay();
+        cacheWriter.store(MOVIE_CACHE_NAME, KEY, VALUE, TIME_TO_LIVE).join();
+
+        // THEN
+        verify(delegate, times(1)).store(MOVIE_CACHE_NAME, KEY, VALUE, Duration.ofHours(50));
+    }
+
+    @Test
+    void getWithValueLoader() {
+        // WHEN
+        cacheWriter.get(MOVIE_CACHE_NAME, KEY, () -> VALUE, TIME_TO_LIVE, false);
+
+        // THEN
+        // the read is counted before the value is loaded
+        verify(delegate, times(1)).get(eq(MOVIE_CACHE_NAME), eq(KEY), any(), eq(Duration.ofHours(2)), eq(false));
+    }
+
+    @Test
+    void putIfAbsentWithStatistics() {
+        // GIVEN
+        CacheStatisticsCollector statistics = mock(CacheStatisticsCollector.class);
+        RedisCacheWriter delegateWithStatistics = mock(RedisCacheWriter.class);
+        when(delegate.withStatisticsCollector(statistics)).thenReturn(delegateWithStatistics);
+        for (int i = 0; i < HOT_READS; i++) {
+            cacheWriter.get(MOVIE_CACHE_NAME, KEY);
+        }
+
+        // WHEN
+        // the reads are shared with the writer collecting the statistics
+        cacheWriter.withStatisticsCollector(statistics).putIfAbsent(MOVIE_CACHE_NAME, KEY, VALUE, TIME_TO_LIVE);
+
+        // THEN
+        verify(delegateWithStatistics, times(1)).putIfAbsent(MOVIE_CACHE_NAME, KEY, VALUE, MAX_TIME_TO_LIVE);
+        verify(eventPublisher, times(1)).publishEvent(new CacheTimeToLiveAdapted(MOVIE_CACHE_NAME, "movies::15", MAX_TIME_TO_LIVE));
+    }
+
+    @Test
+    void putIfAbsentAlreadyPresent() {
+        // GIVEN
+        when(delegate.putIfAbsent(MOVIE_CACHE_NAME, KEY, VALUE, MIN_TIME_TO_LIVE))
+                .thenReturn(VALUE);
+
+        // WHEN
+        byte[] result = cacheWriter.putIfAbsent(MOVIE_CACHE_NAME, KEY, VALUE, TIME_TO_LIVE);
+
+        // THEN
+        // the entry already there keeps its time to live
+        assertArrayEquals(VALUE, result);
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    void invalidSettings() {
+        // WHEN / THEN
+        assertThrows(IllegalArgumentException.class, () -> new AdaptiveTimeToLiveCacheWriter(delegate, Set.of(MOVIE_CACHE_NAME),
+                TIME_TO_LIVE, Duration.ZERO, MAX_TIME_TO_LIVE, HOT_READS, WINDOW, 1024, 4, eventPublisher));
+        assertThrows(IllegalArgumentException.class, () -> new AdaptiveTimeToLiveCacheWriter(delegate, Set.of(MOVIE_CACHE_NAME),
+                TIME_TO_LIVE, MAX_TIME_TO_LIVE, MIN_TIME_TO_LIVE, HOT_READS, WINDOW, 1024, 4, eventPublisher));
+        assertThrows(IllegalArgumentException.class, () -> new AdaptiveTimeToLiveCacheWriter(delegate, Set.of(MOVIE_CACHE_NAME),
+                TIME_TO_LIVE, MIN_TIME_TO_LIVE, MAX_TIME_TO_LIVE, 0, WINDOW, 1024, 4, eventPublisher));
+    }
+}
@@ -0,0 +1,73 @@
+package com.jonathanfoucher.rediscacheexample.caches;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BloomFilterTest {
+    private static final int EXPECTED_INSERTIONS = 100_000;
+    private static final double FALSE_POSITIVE_PROBABILITY = 0.01;
+
+    @Test
+    void mightContain() {
+        // GIVEN
+        BloomFilter bloomFilter = new BloomFilter(EXPECTED_INSERTIONS, FALSE_POSITIVE_PROBABILITY);
+
+        // WHEN
+        for (long id = 1; id <= EXPECTED_INSERTIONS; id++) {
+            bloomFilter.put(id);
+        }
+
+        // THEN
+        for (long id = 1; id <= EXPECTED_INSERTIONS; id++) {
+            assertTrue(bloomFilter.mightContain(id));
+        }
+    }
+
+    @Test
+    void falsePositiveProbability() {
+        // GIVEN
+        BloomFilter bloomFilter = new BloomFilter(EXPECTED_INSERTIONS, FALSE_POSITIVE_PROBABILITY);
+        for (long id = 1; id <= EXPECTED_INSERTIONS; id++) {
+            bloomFilter.put(id);
+        }
+
+        // WHEN
+        int falsePositives = 0;
+        for (long id = -1; id >= -EXPECTED_INSERTIONS; id--) {
+            if (bloomFilter.mightContain(id)) {
+                falsePositives++;
+            }
+        }
+
+        // THEN
+        assertTrue(falsePositives < EXPECTED_INSERTIONS * FALSE_POSITIVE_PROBABILITY * 1.5, "False positives: " + falsePositives);
+    }
+
+    @Test
+    void sizing() {
+        // WHEN
+        BloomFilter bloomFilter = new BloomFilter(1_000_000, 0.01);
+
+        // THEN
+        // about 9.6 bits and 7 hashes per id
+        assertEquals(9_585_088, bloomFilter.bitCount());
+        assertEquals(7, bloomFilter.hashCount());
+    }
+
+    @Test
+    void emptyFilter() {
+        // GIVEN
+        BloomFilter bloomFilter = new BloomFilter(EXPECTED_INSERTIONS, FALSE_POSITIVE_PROBABILITY);
+
+        // WHEN / THEN
+        assertFalse(bloomFilter.mightContain(15));
+    }
+
+    @Test
+    void invalidParameters() {
+        // WHEN / THEN
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(0, FALSE_POSITIVE_PROBABILITY));
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(EXPECTED_INSERTIONS, 1));
+    }
+}
@@ -0,0 +1,202 @@
+package com.jonathanfoucher.rediscacheexample.caches;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.cache.CacheStatisticsCollector;
+import org.springframework.data.redis.cache.RedisCacheWriter;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CircuitBreakerCacheWriterTest {
+    @Mock
+    private RedisCacheWriter delegate;
+
+    private static final String MOVIE_CACHE_NAME = "movies";
+    private static final String OTHER_CACHE_NAME = "others";
+    private static final byte[] KEY = "movies::15".getBytes(UTF_8);
+    private static final byte[] VALUE = "value".getBytes(UTF_8);
+    private static final Duration TIME_TO_LIVE = Duration.ofDays(1);
+
+    private RedisCircuitBreaker circuitBreaker;
+    private CircuitBreakerCacheWriter cacheWriter;
+
+    @BeforeEach
+    void init() {
+        // opened by a single failure
+        circuitBreaker = new RedisCircuitBreaker(true, 50, 50, Duration.ofMinutes(1), 1, 1, Duration.ofMinutes(1), 1);
+        cacheWriter = new CircuitBreakerCacheWriter(delegate, Set.of(MOVIE_CACHE_NAME), circuitBreaker, 100, Duration.ofMinutes(1));
+    }
+
+    @Test
+    void get() {
+        // GIVEN
+        when(delegate.get(MOVIE_CACHE_NAME, KEY, TIME_TO_LIVE))
+                .thenReturn(VALUE);
+
+        // WHEN
+        byte[] result = cacheWriter.get(MOVIE_CACHE_NAME, KEY, TIME_TO_LIVE);
+
+        // THEN
+        assertArrayEquals(VALUE, result);
+        assertEquals(RedisCircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    }
+
+    @Test
+    void getWhileRedisIsBypassed() {
+        // GIVEN
+        doThrow(new RedisConnectionFailureException("down"))
+                .when(delegate).put(MOVIE_CACHE_NAME, KEY, VALUE, TIME_TO_LIVE);
+        cacheWriter.put(MOVIE_CACHE_NAME, KEY, VALUE, TIME_TO_LIVE);
+
+        // WHEN
+        byte[] result = cacheWriter.get(MOVIE_CACHE_NAME, KEY);
+        byte[] otherResult = cacheWriter.get(OTHER_CACHE_NAME, KEY);
+
+        // THEN
+        // the failed write opened the breaker, the movie is read from memory
+        assertEquals(RedisCircuitBreaker.State.OPEN, circuitBreaker.getState());
+        assertArrayEquals(VALUE, result);
+        assertNull(otherResult);
+        verify(delegate, never()).get(any(), any());
+    }
+
+    @Test
+    void getFailed() {
+        // GIVEN
+        when(delegate.get(MOVIE_CACHE_NAME, KEY))
+                .thenThrow(new QueryTimeoutException("timeout"));
+
+        // WHEN
+        byte[] result = cacheWriter.get(MOVIE_CACHE_NAME, KEY);
+
+        // THEN
+        assertNull(result);
+        assertEquals(RedisCircuitBreaker.State.OPEN, circuitBreaker.getState());
+    }
+
+    @Test
+    void getWithValueLoaderFailed() {
+        // GIVEN
+        AtomicInteger loads = new AtomicInteger();
+        when(delegate.get(eq(MOVIE_CACHE_NAME), eq(KEY), any(), eq(TIME_TO_LIVE), eq(false)))
+                .thenAnswer(invocation -> {
+                    invocation.getArgument(2, Supplier.class).get();
+                    throw new RedisConnectionFailureException("down");
+                });
+
+        // WHEN
+        byte[] result = cacheWriter.get(MOVIE_CACHE_NAME, KEY, () -> {
+            loads.incrementAndGet();
+            return VALUE;
+        }, TIME_TO_LIVE, false);
+
+        // THEN
+        // the value loaded before the write failed is kept in memory rather than loaded again
+        assertArrayEquals(VALUE, result);
+        assertEquals(1, loads.get());
+        assertArrayEquals(VALUE, cacheWriter.get(MOVIE_CACHE_NAME, KEY));
+    }
+
+    @Test
+    void retrieveFailed() {
+        // GIVEN
+        when(delegate.retrieve(MOVIE_CACHE_NAME, KEY, TIME_TO_LIVE))
+                .thenReturn(CompletableFuture.failedFuture(new RedisConnectionFailureException("down")));
+
+        // WHEN
+        byte[] result = cacheWriter.retrieve(MOVIE_CACHE_NAME, KEY, TIME_TO_LIVE).join();
+
+        // THEN
+        assertNull(result);
+        assertEquals(RedisCircuitBreaker.State.OPEN, circuitBreaker.getState());
+    }
+
+    @Test
+    void storeWhileRedisIsBypassed() {
+        // GIVEN
+        when(delegate.get(MOVIE_CACHE_NAME, KEY))
+                .thenThrow(new RedisConnectionFailureException("down"));
+        cacheWriter.get(MOVIE_CACHE_NAME, KEY);
+
+        // WHEN
+        cacheWriter.store(MOVIE_CACHE_NAME, KEY, VALUE, TIME_TO_LIVE).join();
+
+        // THEN
+        verify(delegate, never()).store(any(), any(), any(), any());
+        assertArrayEquals(VALUE, cacheWriter.retrieve(MOVIE_CACHE_NAME, KEY, TIME_TO_LIVE).join());
+    }
+
+    @Test
+    void removeWhileRedisIsBypassed() {
+        // GIVEN
+        when(delegate.get(MOVIE_CACHE_NAME, KEY))
+                .thenThrow(new RedisConnectionFailureException("down"));
+        cacheWriter.get(MOVIE_CACHE_NAME, KEY);
+        cacheWriter.put(MOVIE_CACHE_NAME, KEY, VALUE, TIME_TO_LIVE);
+
+        // WHEN / THEN
+        // the entry kept in redis could not be removed, which fails at once
+        assertThrows(RedisConnectionFailureException.class, () -> cacheWriter.remove(MOVIE_CACHE_NAME, KEY));
+        assertNull(cacheWriter.get(MOVIE_CACHE_NAME, KEY));
+        verify(delegate, never()).remove(any(), any());
+    }
+
+    @Test
+    void cleanFailed() {
+        // GIVEN
+        byte[] pattern = "movies::*".getBytes(UTF_8);
+        doThrow(new RedisConnectionFailureException("down"))
+                .when(delegate).clean(MOVIE_CACHE_NAME, pattern);
+
+        // WHEN / THEN
+        assertThrows(RedisConnectionFailureException.class, () -> cacheWriter.clean(MOVIE_CACHE_NAME, pattern));
+        assertEquals(RedisCircuitBreaker.State.OPEN, circuitBreaker.getState());
+    }
+
+    @Test
+    void putIfAbsentWithStatistics() {
+        // GIVEN
+        CacheStatisticsCollector statistics = mock(CacheStatisticsCollector.class);
+        RedisCacheWriter delegateWithStatistics = mock(RedisCacheWriter.class);
+        when(delegate.withStatisticsCollector(statistics)).thenReturn(delegateWithStatistics);
+        when(delegateWithStatistics.putIfAbsent(MOVIE_CACHE_NAME, KEY, VALUE, TIME_TO_LIVE))
+                .thenThrow(new RedisConnectionFailureException("down"));
+        RedisCacheWriter writerWithStatistics = cacheWriter.withStatisticsCollector(statistics);
+
+        // WHEN
+        byte[] firstResult = writerWithStatistics.putIfAbsent(MOVIE_CACHE_NAME, KEY, VALUE, TIME_TO_LIVE);
+        byte[] secondResult = writerWithStatistics.putIfAbsent(MOVIE_CACHE_NAME, KEY, "other".getBytes(UTF_8), TIME_TO_LIVE);
+
+        // THEN
+        // the breaker and the values kept in memory are shared with the writer collecting the statistics
+        assertNull(firstResult);
+        assertArrayEquals(VALUE, secondResult);
+        assertArrayEquals(VALUE, cacheWriter.get(MOVIE_CACHE_NAME, KEY));
+    }
+
+    @Test
+    void getWithoutCircuitBreaker() {
+        // GIVEN
+        cacheWriter = new CircuitBreakerCacheWriter(delegate, Set.of(MOVIE_CACHE_NAME),
+                new RedisCircuitBreaker(false, 50, 50, Duration.ofMinutes(1), 1, 1, Duration.ofMinutes(1), 1), 100, Duration.ofMinutes(1));
+        when(delegate.get(MOVIE_CACHE_NAME, KEY))
+                .thenThrow(new RedisConnectionFailureException("down"));
+
+        // WHEN / THEN
+        assertThrows(RedisConnectionFailureException.class, () -> cacheWriter.get(MOVIE_CACHE_NAME, KEY));
+    }
+}
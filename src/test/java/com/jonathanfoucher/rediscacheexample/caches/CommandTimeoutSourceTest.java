@@ -0,0 +1,135 @@
+package com.jonathanfoucher.rediscacheexample.caches;
+
+import io.lettuce.core.ClientOptions;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisCommandTimeoutException;
+import io.lettuce.core.RedisURI;
+import io.lettuce.core.ScriptOutputType;
+import io.lettuce.core.TimeoutOptions;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.codec.StringCodec;
+import io.lettuce.core.output.StatusOutput;
+import io.lettuce.core.protocol.Command;
+import io.lettuce.core.protocol.CommandType;
+import io.lettuce.core.protocol.ProtocolKeyword;
+import io.lettuce.core.protocol.ProtocolVersion;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CommandTimeoutSourceTest {
+    private static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(5);
+
+    @Test
+    void getTimeout() {
+        // GIVEN
+        CommandTimeoutSource timeoutSource = new CommandTimeoutSource(
+                Map.of("get", Duration.ofMillis(50), "EVALSHA", Duration.ofSeconds(1)), DEFAULT_TIMEOUT);
+
+        // WHEN / THEN
+        assertEquals(Duration.ofMillis(50).toNanos(), timeoutSource.getTimeout(command(CommandType.GET)));
+        assertEquals(Duration.ofSeconds(1).toNanos(), timeoutSource.getTimeout(command(CommandType.EVALSHA)));
+        assertEquals(DEFAULT_TIMEOUT.toNanos(), timeoutSource.getTimeout(command(CommandType.MGET)));
+    }
+
+    @Test
+    void getTimeoutOfCustomCommand() {
+        // GIVEN
+        CommandTimeoutSource timeoutSource = new CommandTimeoutSource(Map.of("get", Duration.ofMillis(50)), DEFAULT_TIMEOUT);
+        ProtocolKeyword custom = new ProtocolKeyword() {
+            @Override
+            public byte[] getBytes() {
+                return name().getBytes(StandardCharsets.US_ASCII);
+            }
+
+            @Override
+            public String name() {
+                return "GET";
+            }
+        };
+
+        // WHEN / THEN
+        assertEquals(DEFAULT_TIMEOUT.toNanos(), timeoutSource.getTimeout(command(custom)));
+    }
+
+    @Test
+    void unknownCommand() {
+        // GIVEN
+        Map<String, Duration> timeouts = Map.of("fetch", Duration.ofMillis(50));
+
+        // WHEN / THEN
+        assertThrows(IllegalArgumentException.class, () -> new CommandTimeoutSource(timeouts, DEFAULT_TIMEOUT));
+    }
+
+    @Test
+    void evalshaTimesOut() throws IOException {
+        // GIVEN
+        // a server answering every command but EVALSHA, which falls back to the default timeout
+        Duration defaultTimeout = Duration.ofMillis(200);
+        CommandTimeoutSource timeoutSource = new CommandTimeoutSource(Map.of("get", Duration.ofMillis(50)), defaultTimeout);
+        try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            Thread.ofVirtual().start(() -> answerAllBut(server, "EVALSHA"));
+            RedisClient client = RedisClient.create(RedisURI.create(server.getInetAddress().getHostAddress(), server.getLocalPort()));
+            client.setOptions(ClientOptions.builder()
+                    .protocolVersion(ProtocolVersion.RESP2)
+                    .timeoutOptions(TimeoutOptions.builder()
+                            .timeoutSource(timeoutSource)
+                            .build())
+                    .build());
+
+            try (StatefulRedisConnection<String, String> connection = client.connect()) {
+                // WHEN
+                long start = System.nanoTime();
+                assertThrows(RedisCommandTimeoutException.class, () -> connection.sync().evalsha("sha", ScriptOutputType.VALUE));
+                Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+                // THEN
+                assertTrue(elapsed.compareTo(defaultTimeout) >= 0);
+                assertTrue(elapsed.compareTo(Duration.ofSeconds(5)) < 0);
+            } finally {
+                client.shutdown();
+            }
+        }
+    }
+
+    // answers +OK to the commands, +PONG to PING, and never answers the given one
+    private static void answerAllBut(ServerSocket server, String silentCommand) {
+        try (Socket socket = server.accept();
+             BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             OutputStream output = socket.getOutputStream()) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                // an array of bulk strings, each one a length line then the argument
+                List<String> arguments = new ArrayList<>();
+                for (int i = Integer.parseInt(line.substring(1)); i > 0; i--) {
+                    reader.readLine();
+                    arguments.add(reader.readLine());
+                }
+                String command = arguments.getFirst().toUpperCase();
+                if (!command.equals(silentCommand)) {
+                    output.write((command.equals("PING") ? "+PONG\r\n" : "+OK\r\n").getBytes(StandardCharsets.US_ASCII));
+                    output.flush();
+                }
+            }
+        } catch (IOException e) {
+            // the client is gone
+        }
+    }
+
+    private static Command<String, String, String> command(ProtocolKeyword type) {
+        return new Command<>(type, new StatusOutput<>(StringCodec.UTF8));
+    }
+}
@@ -0,0 +1,67 @@
+package com.jonathanfoucher.rediscacheexample.caches;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CountMinSketchTest {
+    private static final int WIDTH = 1024;
+    private static final int DEPTH = 4;
+
+    @Test
+    void estimate() {
+        // GIVEN
+        CountMinSketch sketch = new CountMinSketch(WIDTH, DEPTH);
+
+        // WHEN
+        for (long hash = 1; hash <= 10_000; hash++) {
+            sketch.add(hash);
+        }
+        for (int i = 0; i < 1000; i++) {
+            sketch.add(-1);
+        }
+
+        // THEN
+        long estimate = sketch.estimate(-1);
+        assertTrue(estimate >= 1000);
+        // each counter gets about 10 of the other hashes
+        assertTrue(estimate < 1100);
+        for (long hash = 1; hash <= 10_000; hash++) {
+            assertTrue(sketch.estimate(hash) >= 1);
+        }
+        assertEquals(0, new CountMinSketch(WIDTH, DEPTH).estimate(-1));
+    }
+
+    @Test
+    void add() {
+        // GIVEN
+        CountMinSketch sketch = new CountMinSketch(WIDTH, DEPTH);
+
+        // WHEN / THEN
+        assertEquals(1, sketch.add(15));
+        assertEquals(2, sketch.add(15));
+        assertEquals(2, sketch.estimate(15));
+    }
+
+    @Test
+    void halve() {
+        // GIVEN
+        CountMinSketch sketch = new CountMinSketch(WIDTH, DEPTH);
+        for (int i = 0; i < 101; i++) {
+            sketch.add(15);
+        }
+
+        // WHEN
+        sketch.halve();
+
+        // THEN
+        assertEquals(50, sketch.estimate(15));
+    }
+
+    @Test
+    void invalidSize() {
+        // WHEN / THEN
+        assertThrows(IllegalArgumentException.class, () -> new CountMinSketch(0, DEPTH));
+        assertThrows(IllegalArgumentException.class, () -> new CountMinSketch(WIDTH, 0));
+    }
+}
@@ -0,0 +1,196 @@
+package com.jonathanfoucher.rediscacheexample.caches;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.cache.CacheStatisticsCollector;
+import org.springframework.data.redis.cache.RedisCacheWriter;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class HotKeyCacheWriterTest {
+    @Mock
+    private RedisCacheWriter delegate;
+    @Mock
+    private CacheStatisticsCollector statistics;
+
+    private static final String MOVIE_CACHE_NAME = "movies";
+    private static final String OTHER_CACHE_NAME = "others";
+    private static final byte[] KEY = "movies::15".getBytes(UTF_8);
+    private static final byte[] VALUE = "value".getBytes(UTF_8);
+    private static final byte[] PATTERN = "movies::*".getBytes(UTF_8);
+    private static final Duration TIME_TO_LIVE = Duration.ofDays(1);
+
+    private HotKeyTracker tracker;
+    private HotKeyCacheWriter cacheWriter;
+
+    @BeforeEach
+    void init() {
+        // every key is hot from its first read
+        tracker = new HotKeyTracker(1, 1, 10, Duration.ofHours(1), 1024, 4);
+        cacheWriter = new HotKeyCacheWriter(delegate, Set.of(MOVIE_CACHE_NAME), tracker, Duration.ofMinutes(1), 10);
+    }
+
+    @Test
+    void get() {
+        // GIVEN
+        when(delegate.get(MOVIE_CACHE_NAME, KEY)).thenReturn(VALUE);
+
+        // WHEN
+        byte[] first = cacheWriter.get(MOVIE_CACHE_NAME, KEY);
+        byte[] second = cacheWriter.get(MOVIE_CACHE_NAME, KEY);
+
+        // THEN
+        assertArrayEquals(VALUE, first);
+        assertArrayEquals(VALUE, second);
+        verify(delegate, times(1)).get(MOVIE_CACHE_NAME, KEY);
+        assertEquals(List.of(new HotKeyTracker.HotKey("movies::15", 2, 1)), tracker.hotKeys());
+    }
+
+    @Test
+    void getColdKey() {
+        // GIVEN
+        tracker = new HotKeyTracker(1, 10, 10, Duration.ofHours(1), 1024, 4);
+        cacheWriter = new HotKeyCacheWriter(delegate, Set.of(MOVIE_CACHE_NAME), tracker, Duration.ofMinutes(1), 10);
+        when(delegate.get(MOVIE_CACHE_NAME, KEY)).thenReturn(VALUE);
+
+        // WHEN
+        cacheWriter.get(MOVIE_CACHE_NAME, KEY);
+        cacheWriter.get(MOVIE_CACHE_NAME, KEY);
+
+        // THEN
+        verify(delegate, times(2)).get(MOVIE_CACHE_NAME, KEY);
+        assertTrue(tracker.hotKeys().isEmpty());
+    }
+
+    @Test
+    void getMiss() {
+        // GIVEN
+        when(delegate.get(MOVIE_CACHE_NAME, KEY)).thenReturn(null);
+
+        // WHEN
+        cacheWriter.get(MOVIE_CACHE_NAME, KEY);
+        byte[] value = cacheWriter.get(MOVIE_CACHE_NAME, KEY);
+
+        // THEN
+        assertNull(value);
+        verify(delegate, times(2)).get(MOVIE_CACHE_NAME, KEY);
+    }
+
+    @Test
+    void getInOtherCache() {
+        // GIVEN
+        when(delegate.get(OTHER_CACHE_NAME, KEY)).thenReturn(VALUE);
+
+        // WHEN
+        cacheWriter.get(OTHER_CACHE_NAME, KEY);
+        cacheWriter.get(OTHER_CACHE_NAME, KEY);
+
+        // THEN
+        verify(delegate, times(2)).get(OTHER_CACHE_NAME, KEY);
+        assertTrue(tracker.hotKeys().isEmpty());
+    }
+
+    @Test
+    void getWithStatistics() {
+        // GIVEN
+        RedisCacheWriter delegateWithStatistics = mock(RedisCacheWriter.class);
+        when(delegate.withStatisticsCollector(statistics)).thenReturn(delegateWithStatistics);
+        when(delegateWithStatistics.get(MOVIE_CACHE_NAME, KEY, TIME_TO_LIVE)).thenReturn(VALUE);
+        RedisCacheWriter writerWithStatistics = cacheWriter.withStatisticsCollector(statistics);
+
+        // WHEN
+        writerWithStatistics.get(MOVIE_CACHE_NAME, KEY, TIME_TO_LIVE);
+        writerWithStatistics.get(MOVIE_CACHE_NAME, KEY, TIME_TO_LIVE);
+
+        // THEN
+        verify(delegateWithStatistics, times(1)).get(MOVIE_CACHE_NAME, KEY, TIME_TO_LIVE);
+        verify(statistics, times(1)).incGets(MOVIE_CACHE_NAME);
+        verify(statistics, times(1)).incHits(MOVIE_CACHE_NAME);
+    }
+
+    @Test
+    void retrieve() {
+        // GIVEN
+        when(delegate.retrieve(MOVIE_CACHE_NAME, KEY, TIME_TO_LIVE)).thenReturn(CompletableFuture.completedFuture(VALUE));
+
+        // WHEN
+        byte[] first = cacheWriter.retrieve(MOVIE_CACHE_NAME, KEY, TIME_TO_LIVE).join();
+        byte[] second = cacheWriter.retrieve(MOVIE_CACHE_NAME, KEY, TIME_TO_LIVE).join();
+
+        // THEN
+        assertArrayEquals(VALUE, first);
+        assertArrayEquals(VALUE, second);
+        verify(delegate, times(1)).retrieve(MOVIE_CACHE_NAME, KEY, TIME_TO_LIVE);
+    }
+
+    @Test
+    void put() {
+        // GIVEN
+        when(delegate.get(MOVIE_CACHE_NAME, KEY)).thenReturn(VALUE);
+        cacheWriter.get(MOVIE_CACHE_NAME, KEY);
+
+        // WHEN
+        cacheWriter.put(MOVIE_CACHE_NAME, KEY, VALUE, TIME_TO_LIVE);
+        cacheWriter.get(MOVIE_CACHE_NAME, KEY);
+
+        // THEN
+        verify(delegate, times(1)).put(MOVIE_CACHE_NAME, KEY, VALUE, TIME_TO_LIVE);
+        verify(delegate, times(2)).get(MOVIE_CACHE_NAME, KEY);
+    }
+
+    @Test
+    void store() {
+        // GIVEN
+        when(delegate.get(MOVIE_CACHE_NAME, KEY)).thenReturn(VALUE);
+        when(delegate.store(MOVIE_CACHE_NAME, KEY, VALUE, TIME_TO_LIVE)).thenReturn(CompletableFuture.completedFuture(null));
+        cacheWriter.get(MOVIE_CACHE_NAME, KEY);
+
+        // WHEN
+        cacheWriter.store(MOVIE_CACHE_NAME, KEY, VALUE, TIME_TO_LIVE).join();
+        cacheWriter.get(MOVIE_CACHE_NAME, KEY);
+
+        // THEN
+        verify(delegate, times(2)).get(MOVIE_CACHE_NAME, KEY);
+    }
+
+    @Test
+    void remove() {
+        // GIVEN
+        when(delegate.get(MOVIE_CACHE_NAME, KEY)).thenReturn(VALUE);
+        cacheWriter.get(MOVIE_CACHE_NAME, KEY);
+
+        // WHEN
+        cacheWriter.remove(MOVIE_CACHE_NAME, KEY);
+        cacheWriter.get(MOVIE_CACHE_NAME, KEY);
+
+        // THEN
+        verify(delegate, times(1)).remove(MOVIE_CACHE_NAME, KEY);
+        verify(delegate, times(2)).get(MOVIE_CACHE_NAME, KEY);
+    }
+
+    @Test
+    void clean() {
+        // GIVEN
+        when(delegate.get(MOVIE_CACHE_NAME, KEY)).thenReturn(VALUE);
+        cacheWriter.get(MOVIE_CACHE_NAME, KEY);
+
+        // WHEN
+        cacheWriter.clean(MOVIE_CACHE_NAME, PATTERN);
+        cacheWriter.get(MOVIE_CACHE_NAME, KEY);
+
+        // THEN
+        verify(delegate, times(1)).clean(MOVIE_CACHE_NAME, PATTERN);
+        verify(delegate, times(2)).get(MOVIE_CACHE_NAME, KEY);
+    }
+}
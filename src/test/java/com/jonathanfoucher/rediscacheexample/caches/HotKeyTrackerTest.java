@@ -0,0 +1,125 @@
+package com.jonathanfoucher.rediscacheexample.caches;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.*;
+
+class HotKeyTrackerTest {
+    private static final Duration WINDOW = Duration.ofHours(1);
+    private static final int SKETCH_WIDTH = 1024;
+    private static final int SKETCH_DEPTH = 4;
+
+    @Test
+    void record() {
+        // GIVEN
+        HotKeyTracker tracker = new HotKeyTracker(1, 10, 5, WINDOW, SKETCH_WIDTH, SKETCH_DEPTH);
+
+        // WHEN
+        boolean hotBefore = false;
+        for (int i = 0; i < 9; i++) {
+            hotBefore |= tracker.record(key(15));
+        }
+        boolean hot = tracker.record(key(15));
+        for (long id = 100; id < 200; id++) {
+            tracker.record(key(id));
+        }
+        tracker.recordLocalHit(key(15));
+        tracker.recordLocalHit(key(16));
+
+        // THEN
+        assertFalse(hotBefore);
+        assertTrue(hot);
+        assertFalse(tracker.record(key(100)));
+        assertEquals(List.of(new HotKeyTracker.HotKey("movies::15", 10, 1)), tracker.hotKeys());
+    }
+
+    @Test
+    void recordSampled() {
+        // GIVEN
+        HotKeyTracker tracker = new HotKeyTracker(0.1, 100, 5, WINDOW, SKETCH_WIDTH, SKETCH_DEPTH);
+
+        // WHEN
+        for (int i = 0; i < 10_000; i++) {
+            tracker.record(key(15));
+        }
+
+        // THEN
+        List<HotKeyTracker.HotKey> hotKeys = tracker.hotKeys();
+        assertEquals(1, hotKeys.size());
+        assertEquals("movies::15", hotKeys.getFirst().key());
+        assertEquals(10_000, hotKeys.getFirst().estimatedReads(), 1_000);
+    }
+
+    @Test
+    void recordAboveMaximumSize() {
+        // GIVEN
+        HotKeyTracker tracker = new HotKeyTracker(1, 1, 2, WINDOW, SKETCH_WIDTH, SKETCH_DEPTH);
+        tracker.record(key(15));
+        tracker.record(key(16));
+        tracker.record(key(16));
+
+        // WHEN
+        // the least read key gives way once the new one is read more
+        boolean hotOnFirstRead = tracker.record(key(17));
+        boolean hotOnSecondRead = tracker.record(key(17));
+        tracker.record(key(17));
+
+        // THEN
+        assertFalse(hotOnFirstRead);
+        assertTrue(hotOnSecondRead);
+        assertEquals(List.of("movies::17", "movies::16"), tracker.hotKeys()
+                .stream()
+                .map(HotKeyTracker.HotKey::key)
+                .toList());
+    }
+
+    @Test
+    void decay() {
+        // GIVEN
+        HotKeyTracker tracker = new HotKeyTracker(1, 10, 5, WINDOW, SKETCH_WIDTH, SKETCH_DEPTH);
+        for (int i = 0; i < 20; i++) {
+            tracker.record(key(15));
+        }
+        for (int i = 0; i < 10; i++) {
+            tracker.record(key(16));
+        }
+
+        // WHEN
+        tracker.decay();
+
+        // THEN
+        assertEquals(List.of(new HotKeyTracker.HotKey("movies::15", 10, 0)), tracker.hotKeys());
+    }
+
+    @Test
+    void decayAtEndOfWindow() throws InterruptedException {
+        // GIVEN
+        HotKeyTracker tracker = new HotKeyTracker(1, 2, 5, Duration.ofMillis(50), SKETCH_WIDTH, SKETCH_DEPTH);
+        tracker.record(key(15));
+        tracker.record(key(15));
+
+        // WHEN
+        Thread.sleep(100);
+        boolean hot = tracker.record(key(16));
+
+        // THEN
+        assertFalse(hot);
+        assertTrue(tracker.hotKeys().isEmpty());
+    }
+
+    @Test
+    void invalidSettings() {
+        // WHEN / THEN
+        assertThrows(IllegalArgumentException.class, () -> new HotKeyTracker(0, 10, 5, WINDOW, SKETCH_WIDTH, SKETCH_DEPTH));
+        assertThrows(IllegalArgumentException.class, () -> new HotKeyTracker(1.5, 10, 5, WINDOW, SKETCH_WIDTH, SKETCH_DEPTH));
+        assertThrows(IllegalArgumentException.class, () -> new HotKeyTracker(1, 10, 0, WINDOW, SKETCH_WIDTH, SKETCH_DEPTH));
+    }
+
+    private static byte[] key(long id) {
+        return ("movies::" + id).getBytes(UTF_8);
+    }
+}
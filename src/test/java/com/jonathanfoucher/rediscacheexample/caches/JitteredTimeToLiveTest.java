@@ -0,0 +1,67 @@
+package com.jonathanfoucher.rediscacheexample.caches;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JitteredTimeToLiveTest {
+    private static final Duration TIME_TO_LIVE = Duration.ofDays(1);
+
+    @Test
+    void forKey() {
+        // GIVEN
+        Duration jitter = Duration.ofHours(2);
+        JitteredTimeToLive jitteredTimeToLive = new JitteredTimeToLive(TIME_TO_LIVE, jitter);
+
+        // WHEN / THEN
+        Set<Duration> results = new HashSet<>();
+        for (long id = 1; id <= 1000; id++) {
+            Duration result = jitteredTimeToLive.getTimeToLive(id, null);
+            assertTrue(result.compareTo(TIME_TO_LIVE.minus(jitter)) >= 0);
+            assertTrue(result.compareTo(TIME_TO_LIVE) <= 0);
+            results.add(result);
+        }
+        // consecutive ids are spread over the jitter
+        assertTrue(results.size() > 990);
+    }
+
+    @Test
+    void forKeyTwice() {
+        // GIVEN
+        JitteredTimeToLive jitteredTimeToLive = new JitteredTimeToLive(TIME_TO_LIVE, Duration.ofHours(2));
+
+        // WHEN
+        Duration result = jitteredTimeToLive.getTimeToLive(15L, "value");
+
+        // THEN
+        // the same for every write of the key, such as the copy of a movie in the aggregate
+        assertEquals(result, jitteredTimeToLive.forKey(15L));
+    }
+
+    @Test
+    void forKeyWithoutJitter() {
+        // GIVEN
+        JitteredTimeToLive jitteredTimeToLive = new JitteredTimeToLive(TIME_TO_LIVE, Duration.ZERO);
+
+        // WHEN
+        Duration result = jitteredTimeToLive.forKey(15L);
+
+        // THEN
+        assertEquals(TIME_TO_LIVE, result);
+    }
+
+    @Test
+    void forKeyWithJitterLongerThanTimeToLive() {
+        // GIVEN
+        JitteredTimeToLive jitteredTimeToLive = new JitteredTimeToLive(Duration.ofSeconds(1), Duration.ofMinutes(1));
+
+        // WHEN / THEN
+        for (long id = 1; id <= 1000; id++) {
+            assertTrue(jitteredTimeToLive.forKey(id).isPositive());
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.jonathanfoucher.rediscacheexample.caches;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MovieCacheKeysTest {
+    private static final Long ID = 15L;
+
+    @Test
+    void key() {
+        // GIVEN
+        MovieCacheKeys movieCacheKeys = new MovieCacheKeys(0);
+
+        // WHEN / THEN
+        assertEquals("movies::15", movieCacheKeys.key(ID));
+        assertEquals("15", movieCacheKeys.cacheKey(ID));
+    }
+
+    @Test
+    void keyWithBuckets() {
+        // GIVEN
+        MovieCacheKeys movieCacheKeys = new MovieCacheKeys(4);
+
+        // WHEN / THEN
+        assertEquals("movies::{3}15", movieCacheKeys.key(ID));
+        assertEquals("{3}15", movieCacheKeys.cacheKey(ID));
+        assertEquals("{1}-15", movieCacheKeys.cacheKey(-ID));
+    }
+
+    @Test
+    void hashTag() {
+        // WHEN / THEN
+        assertEquals("3", MovieCacheKeys.hashTag("movies::{3}15"));
+        assertEquals("all_movies", MovieCacheKeys.hashTag("{all_movies}:expiration"));
+        assertEquals("", MovieCacheKeys.hashTag("movies::15"));
+        assertEquals("", MovieCacheKeys.hashTag("movies::{}15"));
+    }
+
+    @Test
+    void stripHashTag() {
+        // WHEN / THEN
+        assertEquals("15", MovieCacheKeys.stripHashTag("{3}15"));
+        assertEquals("15", MovieCacheKeys.stripHashTag("15"));
+    }
+
+    @Test
+    void id() {
+        // WHEN / THEN
+        assertEquals(15L, MovieCacheKeys.id("movies::{3}15"));
+        assertEquals(15L, MovieCacheKeys.id("movies::15"));
+    }
+}
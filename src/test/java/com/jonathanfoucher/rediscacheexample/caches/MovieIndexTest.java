@@ -0,0 +1,89 @@
+package com.jonathanfoucher.rediscacheexample.caches;
+
+import com.jonathanfoucher.rediscacheexample.data.dto.MovieDto;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.*;
+
+class MovieIndexTest {
+    private static final Long ID = 15L;
+    private static final String TITLE = "Some movie";
+    private static final LocalDate RELEASE_DATE = LocalDate.of(2022, 7, 19);
+
+    @Test
+    void member() {
+        // GIVEN
+        MovieDto movie = initMovie(ID, TITLE, RELEASE_DATE);
+
+        // WHEN / THEN
+        assertEquals("\0" + "800000000000000f:15", new String(MovieIndex.ID.member(movie), UTF_8));
+        assertEquals("8000000000004af8\0" + "800000000000000f:15", new String(MovieIndex.RELEASE_DATE.member(movie), UTF_8));
+        assertEquals("some movie\0" + "800000000000000f:15", new String(MovieIndex.TITLE.member(movie), UTF_8));
+    }
+
+    @Test
+    void memberOrder() {
+        // GIVEN
+        MovieDto negative = initMovie(-1L, "b", RELEASE_DATE);
+        MovieDto small = initMovie(9L, "B", RELEASE_DATE.plusDays(1));
+        MovieDto large = initMovie(10L, "ba", RELEASE_DATE);
+        MovieDto undated = initMovie(20L, null, null);
+
+        // WHEN / THEN
+        assertOrdered(MovieIndex.ID, negative, small, large, undated);
+        assertOrdered(MovieIndex.RELEASE_DATE, undated, negative, large, small);
+        assertOrdered(MovieIndex.TITLE, undated, negative, small, large);
+    }
+
+    @Test
+    void prefixRange() {
+        // GIVEN
+        byte[] min = MovieIndex.min("So");
+        byte[] max = MovieIndex.max("So");
+
+        // WHEN / THEN
+        assertEquals("[so", new String(min, UTF_8));
+        assertEquals("(sp", new String(max, UTF_8));
+        assertEquals("-", new String(MovieIndex.min(null), UTF_8));
+        assertEquals("+", new String(MovieIndex.max(null), UTF_8));
+        assertEquals("+", new String(MovieIndex.max(""), UTF_8));
+
+        byte[] member = MovieIndex.TITLE.member(initMovie(ID, TITLE, RELEASE_DATE));
+        assertTrue(Arrays.compareUnsigned(member, Arrays.copyOfRange(max, 1, max.length)) < 0);
+        assertTrue(Arrays.compareUnsigned(member, Arrays.copyOfRange(min, 1, min.length)) > 0);
+    }
+
+    @Test
+    void after() {
+        // WHEN / THEN
+        assertEquals("(cursor", new String(MovieIndex.after("cursor".getBytes(UTF_8)), UTF_8));
+    }
+
+    @Test
+    void fromSortName() {
+        // WHEN / THEN
+        assertEquals(MovieIndex.ID, MovieIndex.fromSortName("id"));
+        assertEquals(MovieIndex.RELEASE_DATE, MovieIndex.fromSortName("releaseDate"));
+        assertEquals(MovieIndex.TITLE, MovieIndex.fromSortName("title"));
+        assertThrows(IllegalArgumentException.class, () -> MovieIndex.fromSortName("rating"));
+    }
+
+    private static void assertOrdered(MovieIndex index, MovieDto... movies) {
+        for (int i = 1; i < movies.length; i++) {
+            assertTrue(Arrays.compareUnsigned(index.member(movies[i - 1]), index.member(movies[i])) < 0,
+                    index + " " + movies[i - 1] + " " + movies[i]);
+        }
+    }
+
+    private static MovieDto initMovie(Long id, String title, LocalDate releaseDate) {
+        MovieDto movie = new MovieDto();
+        movie.setId(id);
+        movie.setTitle(title);
+        movie.setReleaseDate(releaseDate);
+        return movie;
+    }
+}
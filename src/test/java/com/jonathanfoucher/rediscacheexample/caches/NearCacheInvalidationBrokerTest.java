@@ -0,0 +1,116 @@
+package com.jonathanfoucher.rediscacheexample.caches;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class NearCacheInvalidationBrokerTest {
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final List<NearCacheInvalidation> receivedInvalidations = new ArrayList<>();
+    private NearCacheInvalidationBroker broker;
+
+    private static final String CHANNEL = "movie-cache:near-cache-invalidation";
+    private static final String MOVIE_CACHE_NAME = "movies";
+    private static final List<String> KEYS = List.of("15", "16");
+
+    @BeforeEach
+    void init() {
+        broker = new NearCacheInvalidationBroker(redisTemplate, objectMapper, CHANNEL, circuitBreaker(false));
+        broker.addListener(receivedInvalidations::add);
+    }
+
+    @Test
+    void publish() throws Exception {
+        // WHEN
+        broker.publish(MOVIE_CACHE_NAME, KEYS);
+
+        // THEN
+        ArgumentCaptor<String> capturedMessage = ArgumentCaptor.forClass(String.class);
+        verify(redisTemplate, times(1)).convertAndSend(eq(CHANNEL), capturedMessage.capture());
+
+        NearCacheInvalidation invalidation = objectMapper.readValue(capturedMessage.getValue(), NearCacheInvalidation.class);
+        assertNotNull(invalidation.origin());
+        assertEquals(MOVIE_CACHE_NAME, invalidation.cacheName());
+        assertEquals(KEYS, invalidation.keys());
+        assertTrue(receivedInvalidations.isEmpty());
+    }
+
+    @Test
+    void publishWhileRedisIsBypassed() {
+        // GIVEN
+        RedisCircuitBreaker circuitBreaker = circuitBreaker(true);
+        circuitBreaker.onResult(0, true);
+        broker = new NearCacheInvalidationBroker(redisTemplate, objectMapper, CHANNEL, circuitBreaker);
+
+        // WHEN
+        broker.publish(MOVIE_CACHE_NAME, KEYS);
+
+        // THEN
+        verify(redisTemplate, never()).convertAndSend(anyString(), anyString());
+    }
+
+    @Test
+    void invalidate() {
+        // WHEN
+        broker.invalidate(MOVIE_CACHE_NAME, KEYS);
+
+        // THEN
+        verify(redisTemplate, times(1)).convertAndSend(eq(CHANNEL), anyString());
+
+        assertEquals(1, receivedInvalidations.size());
+        assertEquals(MOVIE_CACHE_NAME, receivedInvalidations.getFirst().cacheName());
+        assertEquals(KEYS, receivedInvalidations.getFirst().keys());
+    }
+
+    @Test
+    void onMessageFromOtherNode() throws Exception {
+        // GIVEN
+        NearCacheInvalidation invalidation = new NearCacheInvalidation("other-node", MOVIE_CACHE_NAME, KEYS);
+        byte[] body = objectMapper.writeValueAsBytes(invalidation);
+
+        // WHEN
+        broker.onMessage(new DefaultMessage(CHANNEL.getBytes(UTF_8), body), null);
+
+        // THEN
+        assertEquals(1, receivedInvalidations.size());
+        assertEquals(invalidation, receivedInvalidations.getFirst());
+    }
+
+    @Test
+    void onMessageFromSameNode() {
+        // GIVEN
+        broker.publish(MOVIE_CACHE_NAME, KEYS);
+
+        ArgumentCaptor<String> capturedMessage = ArgumentCaptor.forClass(String.class);
+        verify(redisTemplate).convertAndSend(eq(CHANNEL), capturedMessage.capture());
+
+        // WHEN
+        broker.onMessage(new DefaultMessage(CHANNEL.getBytes(UTF_8), capturedMessage.getValue().getBytes(UTF_8)), null);
+
+        // THEN
+        assertTrue(receivedInvalidations.isEmpty());
+    }
+
+    // opened by a single failure
+    private static RedisCircuitBreaker circuitBreaker(boolean enabled) {
+        return new RedisCircuitBreaker(enabled, 50, 50, Duration.ofSeconds(1), 1, 1, Duration.ofMinutes(1), 1);
+    }
+}
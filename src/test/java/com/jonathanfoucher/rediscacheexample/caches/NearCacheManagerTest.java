@@ -0,0 +1,267 @@
+package com.jonathanfoucher.rediscacheexample.caches;
+
+import com.jonathanfoucher.rediscacheexample.data.dto.MovieDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.support.SimpleValueWrapper;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class NearCacheManagerTest {
+    @Mock
+    private CacheManager redisCacheManager;
+    @Mock
+    private Cache redisCache;
+    @Mock
+    private NearCacheInvalidationBroker broker;
+
+    private NearCacheManager nearCacheManager;
+    private Consumer<NearCacheInvalidation> invalidationListener;
+
+    private static final Long ID = 15L;
+    private static final String TITLE = "Some movie";
+    private static final LocalDate RELEASE_DATE = LocalDate.of(2022, 7, 19);
+
+    private static final String MOVIE_CACHE_NAME = "movies";
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void init() {
+        nearCacheManager = new NearCacheManager(redisCacheManager, 100, Duration.ofMinutes(1), broker);
+
+        ArgumentCaptor<Consumer<NearCacheInvalidation>> capturedListener = ArgumentCaptor.forClass(Consumer.class);
+        verify(broker, times(1)).addListener(capturedListener.capture());
+        invalidationListener = capturedListener.getValue();
+
+        when(redisCacheManager.getCache(MOVIE_CACHE_NAME))
+                .thenReturn(redisCache);
+        lenient().when(redisCache.getName())
+                .thenReturn(MOVIE_CACHE_NAME);
+    }
+
+    @Test
+    void getFromLocalCache() {
+        // GIVEN
+        MovieDto movie = initMovie();
+        Cache cache = nearCacheManager.getCache(MOVIE_CACHE_NAME);
+
+        when(redisCache.get(ID))
+                .thenReturn(new SimpleValueWrapper(movie));
+
+        // WHEN
+        Cache.ValueWrapper firstResult = cache.get(ID);
+        Cache.ValueWrapper secondResult = cache.get(ID);
+
+        // THEN
+        verify(redisCache, times(1)).get(ID);
+        verify(broker, never()).publish(anyString(), any());
+
+        assertNotNull(firstResult);
+        assertSame(movie, firstResult.get());
+        assertNotNull(secondResult);
+        assertSame(movie, secondResult.get());
+        assertSame(cache, nearCacheManager.getCache(MOVIE_CACHE_NAME));
+    }
+
+    @Test
+    void getNotInCache() {
+        // GIVEN
+        Cache cache = nearCacheManager.getCache(MOVIE_CACHE_NAME);
+
+        when(redisCache.get(ID))
+                .thenReturn(null);
+
+        // WHEN
+        Cache.ValueWrapper firstResult = cache.get(ID);
+        Cache.ValueWrapper secondResult = cache.get(ID);
+
+        // THEN
+        verify(redisCache, times(2)).get(ID);
+
+        assertNull(firstResult);
+        assertNull(secondResult);
+    }
+
+    @Test
+    void put() {
+        // GIVEN
+        MovieDto movie = initMovie();
+        Cache cache = nearCacheManager.getCache(MOVIE_CACHE_NAME);
+
+        // WHEN
+        cache.put(ID, movie);
+        MovieDto result = cache.get(ID, MovieDto.class);
+
+        // THEN
+        verify(redisCache, times(1)).put(ID, movie);
+        verify(redisCache, never()).get(ID);
+        verify(broker, times(1)).publish(MOVIE_CACHE_NAME, List.of(String.valueOf(ID)));
+
+        assertSame(movie, result);
+    }
+
+    @Test
+    void evict() {
+        // GIVEN
+        MovieDto movie = initMovie();
+        Cache cache = nearCacheManager.getCache(MOVIE_CACHE_NAME);
+        cache.put(ID, movie);
+
+        when(redisCache.get(ID))
+                .thenReturn(null);
+
+        // WHEN
+        cache.evict(ID);
+        Cache.ValueWrapper result = cache.get(ID);
+
+        // THEN
+        verify(redisCache, times(1)).evict(ID);
+        verify(redisCache, times(1)).get(ID);
+        verify(broker, times(2)).publish(MOVIE_CACHE_NAME, List.of(String.valueOf(ID)));
+
+        assertNull(result);
+    }
+
+    @Test
+    void clear() {
+        // GIVEN
+        MovieDto movie = initMovie();
+        Cache cache = nearCacheManager.getCache(MOVIE_CACHE_NAME);
+        cache.put(ID, movie);
+
+        when(redisCache.get(ID))
+                .thenReturn(null);
+
+        // WHEN
+        cache.clear();
+        Cache.ValueWrapper result = cache.get(ID);
+
+        // THEN
+        verify(redisCache, times(1)).clear();
+        verify(redisCache, times(1)).get(ID);
+        verify(broker, times(1)).publish(MOVIE_CACHE_NAME, null);
+
+        assertNull(result);
+    }
+
+    @Test
+    void invalidateFromRemoteNode() {
+        // GIVEN
+        MovieDto movie = initMovie();
+        Cache cache = nearCacheManager.getCache(MOVIE_CACHE_NAME);
+        cache.put(ID, movie);
+
+        when(redisCache.get(ID))
+                .thenReturn(null);
+
+        // WHEN
+        invalidationListener.accept(new NearCacheInvalidation("other-node", MOVIE_CACHE_NAME, List.of(String.valueOf(ID))));
+        Cache.ValueWrapper result = cache.get(ID);
+
+        // THEN
+        verify(redisCache, times(1)).get(ID);
+        verify(redisCache, never()).evict(ID);
+
+        assertNull(result);
+    }
+
+    @Test
+    void invalidateFromRemoteNodeDuringRead() {
+        // GIVEN
+        MovieDto staleMovie = initMovie();
+        MovieDto movie = initMovie();
+        movie.setTitle("Other movie");
+        Cache cache = nearCacheManager.getCache(MOVIE_CACHE_NAME);
+
+        // the other node writes the movie while the stale value is on its way back from redis
+        when(redisCache.get(ID))
+                .thenAnswer(invocation -> {
+                    invalidationListener.accept(new NearCacheInvalidation("other-node", MOVIE_CACHE_NAME, List.of(String.valueOf(ID))));
+                    return new SimpleValueWrapper(staleMovie);
+                })
+                .thenReturn(new SimpleValueWrapper(movie));
+
+        // WHEN
+        Cache.ValueWrapper firstResult = cache.get(ID);
+        Cache.ValueWrapper secondResult = cache.get(ID);
+        Cache.ValueWrapper thirdResult = cache.get(ID);
+
+        // THEN
+        // the stale value is not kept locally, the next read goes to redis again
+        verify(redisCache, times(2)).get(ID);
+
+        assertNotNull(firstResult);
+        assertSame(staleMovie, firstResult.get());
+        assertNotNull(secondResult);
+        assertSame(movie, secondResult.get());
+        assertNotNull(thirdResult);
+        assertSame(movie, thirdResult.get());
+    }
+
+    @Test
+    void putDuringRead() {
+        // GIVEN
+        MovieDto staleMovie = initMovie();
+        MovieDto movie = initMovie();
+        movie.setTitle("Other movie");
+        Cache cache = nearCacheManager.getCache(MOVIE_CACHE_NAME);
+
+        when(redisCache.get(ID))
+                .thenAnswer(invocation -> {
+                    cache.put(ID, movie);
+                    return new SimpleValueWrapper(staleMovie);
+                });
+
+        // WHEN
+        cache.get(ID);
+        MovieDto result = cache.get(ID, MovieDto.class);
+
+        // THEN
+        // the value put meanwhile is not replaced by the one read before
+        verify(redisCache, times(1)).get(ID);
+
+        assertSame(movie, result);
+    }
+
+    @Test
+    void clearFromRemoteNode() {
+        // GIVEN
+        MovieDto movie = initMovie();
+        Cache cache = nearCacheManager.getCache(MOVIE_CACHE_NAME);
+        cache.put(ID, movie);
+
+        when(redisCache.get(ID))
+                .thenReturn(null);
+
+        // WHEN
+        invalidationListener.accept(new NearCacheInvalidation("other-node", MOVIE_CACHE_NAME, null));
+        Cache.ValueWrapper result = cache.get(ID);
+
+        // THEN
+        verify(redisCache, times(1)).get(ID);
+        verify(redisCache, never()).clear();
+
+        assertNull(result);
+    }
+
+    private MovieDto initMovie() {
+        MovieDto movie = new MovieDto();
+        movie.setId(ID);
+        movie.setTitle(TITLE);
+        movie.setReleaseDate(RELEASE_DATE);
+        return movie;
+    }
+}
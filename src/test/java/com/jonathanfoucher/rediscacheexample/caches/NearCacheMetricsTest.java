@@ -0,0 +1,76 @@
+package com.jonathanfoucher.rediscacheexample.caches;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+import org.springframework.data.redis.cache.CacheStatistics;
+import org.springframework.data.redis.cache.RedisCache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class NearCacheMetricsTest {
+    @Mock
+    private RedisCache delegate;
+    @Mock
+    private CacheStatistics statistics;
+    @Mock
+    private NearCacheInvalidationBroker broker;
+
+    private NearCache nearCache;
+    private SimpleMeterRegistry meterRegistry;
+
+    private static final String MOVIE_CACHE_NAME = "movies";
+    private static final Long ID = 15L;
+
+    @BeforeEach
+    void init() {
+        when(delegate.getName())
+                .thenReturn(MOVIE_CACHE_NAME);
+        when(delegate.getStatistics())
+                .thenReturn(statistics);
+        nearCache = new NearCache(delegate, Caffeine.newBuilder()
+                .recordStats()
+                .<String, Cache.ValueWrapper>build(), broker);
+        meterRegistry = new SimpleMeterRegistry();
+        new NearCacheMetrics(nearCache, Tags.empty()).bindTo(meterRegistry);
+    }
+
+    @Test
+    void bindTo() {
+        // GIVEN
+        when(delegate.get(ID))
+                .thenReturn(new SimpleValueWrapper("movie"));
+        when(statistics.getHits())
+                .thenReturn(1L);
+        when(statistics.getMisses())
+                .thenReturn(2L);
+        when(statistics.getPuts())
+                .thenReturn(3L);
+        when(statistics.getDeletes())
+                .thenReturn(4L);
+
+        // WHEN
+        nearCache.get(ID);
+        nearCache.get(ID);
+
+        // THEN
+        verify(delegate, times(1)).get(ID);
+
+        assertEquals(2, meterRegistry.get("cache.gets").tags("cache", MOVIE_CACHE_NAME, "result", "hit").functionCounter().count());
+        assertEquals(2, meterRegistry.get("cache.gets").tags("cache", MOVIE_CACHE_NAME, "result", "miss").functionCounter().count());
+        assertEquals(3, meterRegistry.get("cache.puts").tags("cache", MOVIE_CACHE_NAME).functionCounter().count());
+        assertEquals(4, meterRegistry.get("cache.removals").tags("cache", MOVIE_CACHE_NAME).functionCounter().count());
+        assertEquals(1, meterRegistry.get("cache.near.gets").tags("cache", MOVIE_CACHE_NAME, "result", "hit").functionCounter().count());
+        assertEquals(1, meterRegistry.get("cache.near.gets").tags("cache", MOVIE_CACHE_NAME, "result", "miss").functionCounter().count());
+        assertEquals(1, meterRegistry.get("cache.near.size").tags("cache", MOVIE_CACHE_NAME).gauge().value());
+    }
+}
@@ -0,0 +1,166 @@
+package com.jonathanfoucher.rediscacheexample.caches;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.redis.cache.RedisCacheWriter;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class NegativeCacheWriterTest {
+    @Mock
+    private RedisCacheWriter delegate;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private static final String MOVIE_CACHE_NAME = "movies";
+    private static final String OTHER_CACHE_NAME = "others";
+    private static final byte[] KEY = "movies::15".getBytes(UTF_8);
+    private static final byte[] VALUE = "value".getBytes(UTF_8);
+    private static final Duration TIME_TO_LIVE = Duration.ofDays(1);
+    private static final Duration NEGATIVE_TIME_TO_LIVE = Duration.ofMinutes(1);
+
+    private NegativeCacheWriter cacheWriter;
+
+    @BeforeEach
+    void init() {
+        cacheWriter = new NegativeCacheWriter(delegate, Set.of(MOVIE_CACHE_NAME), NEGATIVE_TIME_TO_LIVE, eventPublisher);
+    }
+
+    @Test
+    void putNull() {
+        // WHEN
+        cacheWriter.put(MOVIE_CACHE_NAME, KEY, NegativeCacheWriter.NULL_VALUE, TIME_TO_LIVE);
+
+        // THEN
+        verify(delegate, times(1)).put(MOVIE_CACHE_NAME, KEY, NegativeCacheWriter.NEGATIVE_VALUE, NEGATIVE_TIME_TO_LIVE);
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    void putNullWithoutTimeToLive() {
+        // GIVEN
+        cacheWriter = new NegativeCacheWriter(delegate, Set.of(MOVIE_CACHE_NAME), null, eventPublisher);
+
+        // WHEN
+        cacheWriter.put(MOVIE_CACHE_NAME, KEY, NegativeCacheWriter.NULL_VALUE, TIME_TO_LIVE);
+
+        // THEN
+        verify(delegate, never()).put(anyString(), any(), any(), any());
+    }
+
+    @Test
+    void putNullInOtherCache() {
+        // WHEN
+        cacheWriter.put(OTHER_CACHE_NAME, KEY, NegativeCacheWriter.NULL_VALUE, TIME_TO_LIVE);
+
+        // THEN
+        verify(delegate, times(1)).put(OTHER_CACHE_NAME, KEY, NegativeCacheWriter.NULL_VALUE, TIME_TO_LIVE);
+    }
+
+    @Test
+    void put() {
+        // WHEN
+        cacheWriter.put(MOVIE_CACHE_NAME, KEY, VALUE, TIME_TO_LIVE);
+
+        // THEN
+        verify(delegate, times(1)).put(MOVIE_CACHE_NAME, KEY, VALUE, TIME_TO_LIVE);
+        verify(eventPublisher, times(1)).publishEvent(new CacheEntryWritten(MOVIE_CACHE_NAME, "movies::15"));
+    }
+
+    @Test
+    void putInOtherCache() {
+        // WHEN
+        cacheWriter.put(OTHER_CACHE_NAME, KEY, VALUE, TIME_TO_LIVE);
+
+        // THEN
+        verify(delegate, times(1)).put(OTHER_CACHE_NAME, KEY, VALUE, TIME_TO_LIVE);
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    void storeNull() {
+        // GIVEN
+        when(delegate.store(MOVIE_CACHE_NAME, KEY, NegativeCacheWriter.NEGATIVE_VALUE, NEGATIVE_TIME_TO_LIVE))
+                .thenReturn(CompletableFuture.completedFuture(null));
+
+        // WHEN
+        cacheWriter.store(MOVIE_CACHE_NAME, KEY, NegativeCacheWriter.NULL_VALUE, TIME_TO_LIVE).join();
+
+        // THEN
+        verify(delegate, times(1)).store(MOVIE_CACHE_NAME, KEY, NegativeCacheWriter.NEGATIVE_VALUE, NEGATIVE_TIME_TO_LIVE);
+    }
+
+    @Test
+    void getNegativeEntry() {
+        // GIVEN
+        when(delegate.get(MOVIE_CACHE_NAME, KEY))
+                .thenReturn(NegativeCacheWriter.NEGATIVE_VALUE);
+
+        // WHEN
+        byte[] result = cacheWriter.get(MOVIE_CACHE_NAME, KEY);
+
+        // THEN
+        assertArrayEquals(NegativeCacheWriter.NULL_VALUE, result);
+    }
+
+    @Test
+    void get() {
+        // GIVEN
+        when(delegate.get(MOVIE_CACHE_NAME, KEY))
+                .thenReturn(VALUE);
+
+        // WHEN
+        byte[] result = cacheWriter.get(MOVIE_CACHE_NAME, KEY);
+
+        // THEN
+        assertArrayEquals(VALUE, result);
+    }
+
+    @Test
+    void getMissingEntry() {
+        // WHEN
+        byte[] result = cacheWriter.get(MOVIE_CACHE_NAME, KEY);
+
+        // THEN
+        verify(delegate, times(1)).get(MOVIE_CACHE_NAME, KEY);
+
+        assertNull(result);
+    }
+
+    @Test
+    void retrieveNegativeEntry() {
+        // GIVEN
+        when(delegate.retrieve(MOVIE_CACHE_NAME, KEY, TIME_TO_LIVE))
+                .thenReturn(CompletableFuture.completedFuture(NegativeCacheWriter.NEGATIVE_VALUE));
+
+        // WHEN
+        byte[] result = cacheWriter.retrieve(MOVIE_CACHE_NAME, KEY, TIME_TO_LIVE).join();
+
+        // THEN
+        assertArrayEquals(NegativeCacheWriter.NULL_VALUE, result);
+    }
+
+    @Test
+    void putIfAbsentNull() {
+        // GIVEN
+        when(delegate.putIfAbsent(MOVIE_CACHE_NAME, KEY, NegativeCacheWriter.NEGATIVE_VALUE, NEGATIVE_TIME_TO_LIVE))
+                .thenReturn(VALUE);
+
+        // WHEN
+        byte[] result = cacheWriter.putIfAbsent(MOVIE_CACHE_NAME, KEY, NegativeCacheWriter.NULL_VALUE, TIME_TO_LIVE);
+
+        // THEN
+        assertArrayEquals(VALUE, result);
+    }
+}
@@ -0,0 +1,199 @@
+package com.jonathanfoucher.rediscacheexample.caches;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.RedisConnectionFailureException;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RedisCircuitBreakerTest {
+    private static final long SLOW_CALL_NANOS = Duration.ofMillis(100).toNanos();
+    private static final Duration WAIT_DURATION = Duration.ofSeconds(10);
+
+    private final AtomicLong now = new AtomicLong();
+    private RedisCircuitBreaker circuitBreaker;
+
+    @BeforeEach
+    void init() {
+        circuitBreaker = circuitBreaker(true);
+    }
+
+    @Test
+    void call() {
+        // WHEN
+        String result = circuitBreaker.call(() -> "redis", () -> "fallback");
+
+        // THEN
+        assertEquals("redis", result);
+        assertEquals(RedisCircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        assertEquals(1, circuitBreaker.getBufferedCalls());
+    }
+
+    @Test
+    void callFailed() {
+        // WHEN
+        String result = circuitBreaker.call(() -> {
+            throw new RedisConnectionFailureException("down");
+        }, () -> "fallback");
+
+        // THEN
+        // under the minimum calls
+        assertEquals("fallback", result);
+        assertEquals(RedisCircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        assertEquals(0, circuitBreaker.getFailureRate());
+    }
+
+    @Test
+    void callWithOtherException() {
+        // WHEN / THEN
+        assertThrows(IllegalStateException.class, () -> circuitBreaker.call(() -> {
+            throw new IllegalStateException("not redis");
+        }, () -> "fallback"));
+        assertEquals(1, circuitBreaker.getBufferedCalls());
+    }
+
+    @Test
+    void callOrFailFailed() {
+        // WHEN / THEN
+        // the redis failure is thrown rather than answered by a fallback
+        assertThrows(RedisConnectionFailureException.class, () -> circuitBreaker.callOrFail(() -> {
+            throw new RedisConnectionFailureException("down");
+        }));
+        assertEquals(1, circuitBreaker.getBufferedCalls());
+    }
+
+    @Test
+    void callOrFailWhileOpen() {
+        // GIVEN
+        recordCalls(4, 0, true);
+
+        // WHEN / THEN
+        assertThrows(RedisConnectionFailureException.class, () -> circuitBreaker.callOrFail(() -> {
+            fail("redis is bypassed");
+            return null;
+        }));
+        assertEquals(RedisCircuitBreaker.State.OPEN, circuitBreaker.getState());
+    }
+
+    @Test
+    void openOnFailures() {
+        // GIVEN
+        recordCalls(2, 0, false);
+
+        // WHEN
+        recordCalls(2, 0, true);
+
+        // THEN
+        assertEquals(RedisCircuitBreaker.State.OPEN, circuitBreaker.getState());
+        assertEquals(50, circuitBreaker.getFailureRate());
+        assertEquals("fallback", circuitBreaker.call(() -> fail("redis is bypassed"), () -> "fallback"));
+    }
+
+    @Test
+    void openOnSlowCalls() {
+        // WHEN
+        recordCalls(1, 0, false);
+        recordCalls(3, SLOW_CALL_NANOS, false);
+
+        // THEN
+        assertEquals(RedisCircuitBreaker.State.OPEN, circuitBreaker.getState());
+        assertEquals(0, circuitBreaker.getFailureRate());
+        assertEquals(75, circuitBreaker.getSlowCallRate());
+    }
+
+    @Test
+    void slidingWindow() {
+        // GIVEN
+        // the first failure is pushed out of the window of 10 calls, with it 5 of them would have failed
+        recordCalls(3, 0, false);
+        recordCalls(1, 0, true);
+        recordCalls(6, 0, false);
+
+        // WHEN
+        recordCalls(4, 0, true);
+
+        // THEN
+        assertEquals(RedisCircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        assertEquals(10, circuitBreaker.getBufferedCalls());
+        assertEquals(40, circuitBreaker.getFailureRate());
+    }
+
+    @Test
+    void closeAfterTrialCalls() {
+        // GIVEN
+        recordCalls(4, 0, true);
+        now.addAndGet(WAIT_DURATION.toNanos());
+
+        // WHEN
+        assertTrue(circuitBreaker.tryAcquire());
+        assertTrue(circuitBreaker.tryAcquire());
+        boolean thirdTrial = circuitBreaker.tryAcquire();
+        circuitBreaker.onResult(0, false);
+        RedisCircuitBreaker.State stateAfterFirstTrial = circuitBreaker.getState();
+        circuitBreaker.onResult(0, false);
+
+        // THEN
+        assertFalse(thirdTrial);
+        assertEquals(RedisCircuitBreaker.State.HALF_OPEN, stateAfterFirstTrial);
+        assertEquals(RedisCircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        assertEquals(0, circuitBreaker.getBufferedCalls());
+    }
+
+    @Test
+    void openAgainAfterFailedTrialCall() {
+        // GIVEN
+        recordCalls(4, 0, true);
+        now.addAndGet(WAIT_DURATION.toNanos() - 1);
+        boolean beforeWaitDuration = circuitBreaker.tryAcquire();
+        now.incrementAndGet();
+
+        // WHEN
+        assertTrue(circuitBreaker.tryAcquire());
+        circuitBreaker.onResult(SLOW_CALL_NANOS, false);
+
+        // THEN
+        assertFalse(beforeWaitDuration);
+        assertEquals(RedisCircuitBreaker.State.OPEN, circuitBreaker.getState());
+        assertFalse(circuitBreaker.tryAcquire());
+    }
+
+    @Test
+    void disabled() {
+        // GIVEN
+        circuitBreaker = circuitBreaker(false);
+        recordCalls(4, 0, true);
+
+        // WHEN / THEN
+        assertEquals(RedisCircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        assertThrows(RedisConnectionFailureException.class, () -> circuitBreaker.call(() -> {
+            throw new RedisConnectionFailureException("down");
+        }, () -> "fallback"));
+    }
+
+    @Test
+    void invalidSettings() {
+        // WHEN / THEN
+        assertThrows(IllegalArgumentException.class, () -> new RedisCircuitBreaker(true, 0, 50, Duration.ofMillis(100), 10, 4,
+                WAIT_DURATION, 2));
+        assertThrows(IllegalArgumentException.class, () -> new RedisCircuitBreaker(true, 50, 50, Duration.ofMillis(100), 10, 11,
+                WAIT_DURATION, 2));
+        assertThrows(IllegalArgumentException.class, () -> new RedisCircuitBreaker(true, 50, 50, Duration.ofMillis(100), 10, 4,
+                WAIT_DURATION, 0));
+    }
+
+    private void recordCalls(int count, long durationNanos, boolean failed) {
+        for (int i = 0; i < count; i++) {
+            if (circuitBreaker.tryAcquire()) {
+                circuitBreaker.onResult(durationNanos, failed);
+            }
+        }
+    }
+
+    // window of 10 calls, judged from 4 of them, and 2 trial calls
+    private RedisCircuitBreaker circuitBreaker(boolean enabled) {
+        return new RedisCircuitBreaker(enabled, 50, 50, Duration.ofNanos(SLOW_CALL_NANOS), 10, 4, WAIT_DURATION, 2, now::get);
+    }
+}
@@ -0,0 +1,99 @@
+package com.jonathanfoucher.rediscacheexample.caches;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RedisShardsTest {
+    private static final Map<String, String> NODES = nodes("redis://node1:6379", "redis://node2:6379", "redis://node3:6379");
+    private static final int VIRTUAL_NODES = 160;
+
+    @Test
+    void forKey() {
+        // GIVEN
+        RedisShards<String> shards = RedisShards.of(NODES, VIRTUAL_NODES);
+
+        // WHEN
+        Map<String, Long> keysByNode = LongStream.range(0, 30_000)
+                .mapToObj(id -> shards.forKey("movies::" + id))
+                .collect(Collectors.groupingBy(node -> node, Collectors.counting()));
+
+        // THEN
+        assertEquals(NODES.keySet(), keysByNode.keySet());
+        keysByNode.values().forEach(count -> assertTrue(count > 7_000 && count < 13_000, "unbalanced node with " + count + " keys"));
+    }
+
+    @Test
+    void forKeyWithHashTag() {
+        // GIVEN
+        RedisShards<String> shards = RedisShards.of(NODES, VIRTUAL_NODES);
+
+        // WHEN / THEN
+        assertEquals(shards.forKey("{all_movies}"), shards.forKey("{all_movies}:expiration"));
+        assertEquals(shards.forKey("movies::{3}15"), shards.forKey("movies::{3}27"));
+    }
+
+    @Test
+    void forKeyAfterNodeRemoval() {
+        // GIVEN
+        RedisShards<String> shards = RedisShards.of(NODES, VIRTUAL_NODES);
+        Map<String, String> remainingNodes = new LinkedHashMap<>(NODES);
+        remainingNodes.remove("redis://node3:6379");
+        RedisShards<String> remainingShards = RedisShards.of(remainingNodes, VIRTUAL_NODES);
+
+        // WHEN / THEN
+        // only the keys of the removed node move
+        for (long id = 0; id < 10_000; id++) {
+            String node = shards.forKey("movies::" + id);
+            if (!node.equals("redis://node3:6379")) {
+                assertEquals(node, remainingShards.forKey("movies::" + id));
+            }
+        }
+    }
+
+    @Test
+    void map() {
+        // GIVEN
+        RedisShards<String> shards = RedisShards.of(NODES, VIRTUAL_NODES);
+
+        // WHEN
+        RedisShards<Integer> mappedShards = shards.map(String::length);
+
+        // THEN
+        assertTrue(mappedShards.isSharded());
+        assertEquals(3, mappedShards.all().size());
+        for (long id = 0; id < 1_000; id++) {
+            assertEquals(shards.forKey("movies::" + id).length(), mappedShards.forKey("movies::" + id));
+        }
+    }
+
+    @Test
+    void single() {
+        // GIVEN
+        RedisShards<String> shards = RedisShards.single("redis://node1:6379");
+
+        // WHEN / THEN
+        assertFalse(shards.isSharded());
+        assertEquals(List.of("redis://node1:6379"), List.copyOf(shards.all()));
+        assertEquals("redis://node1:6379", shards.forKey("movies::15"));
+    }
+
+    @Test
+    void ofWithoutNodes() {
+        // WHEN / THEN
+        Map<String, String> nodes = Collections.emptyMap();
+        assertThrows(IllegalArgumentException.class, () -> RedisShards.of(nodes, VIRTUAL_NODES));
+    }
+
+    private static Map<String, String> nodes(String... names) {
+        Map<String, String> nodes = new LinkedHashMap<>();
+        for (String name : names) {
+            nodes.put(name, name);
+        }
+        return nodes;
+    }
+}
@@ -0,0 +1,205 @@
+package com.jonathanfoucher.rediscacheexample.caches;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.redis.cache.CacheStatistics;
+import org.springframework.data.redis.cache.CacheStatisticsCollector;
+import org.springframework.data.redis.cache.RedisCacheWriter;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RefreshAheadCacheWriterTest {
+    @Mock
+    private RedisCacheWriter delegate;
+    @Mock
+    private RedisTemplate<byte[], byte[]> redisTemplate;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private static final String MOVIE_CACHE_NAME = "movies";
+    private static final String OTHER_CACHE_NAME = "others";
+    private static final byte[] KEY = "movies::15".getBytes(UTF_8);
+    private static final byte[] HASH_TAGGED_KEY = "movies::{3}15".getBytes(UTF_8);
+    private static final byte[] VALUE = "value".getBytes(UTF_8);
+    private static final Duration WINDOW = Duration.ofHours(1);
+
+    private RefreshAheadCacheWriter cacheWriter;
+
+    @BeforeEach
+    void init() {
+        cacheWriter = initCacheWriter(0);
+    }
+
+    @Test
+    void getOutsideOfRefreshWindow() {
+        // GIVEN
+        mockScriptResult(List.of(VALUE, WINDOW.toMillis() + 1));
+
+        // WHEN
+        byte[] result = cacheWriter.get(MOVIE_CACHE_NAME, KEY);
+
+        // THEN
+        verify(delegate, never()).get(anyString(), any(byte[].class));
+        verify(eventPublisher, never()).publishEvent(any(Object.class));
+
+        assertArrayEquals(VALUE, result);
+    }
+
+    @Test
+    void getWithinRefreshWindow() {
+        // GIVEN
+        mockScriptResult(List.of(VALUE, WINDOW.toMillis()));
+
+        // WHEN
+        byte[] result = cacheWriter.get(MOVIE_CACHE_NAME, KEY);
+
+        // THEN
+        verify(eventPublisher, times(1)).publishEvent(new CacheRefreshRequest(MOVIE_CACHE_NAME, "15"));
+
+        assertArrayEquals(VALUE, result);
+    }
+
+    @Test
+    void getWithinRefreshWindowWithHashTag() {
+        // GIVEN
+        mockScriptResult(HASH_TAGGED_KEY, List.of(VALUE, WINDOW.toMillis()));
+
+        // WHEN
+        byte[] result = cacheWriter.get(MOVIE_CACHE_NAME, HASH_TAGGED_KEY);
+
+        // THEN
+        verify(eventPublisher, times(1)).publishEvent(new CacheRefreshRequest(MOVIE_CACHE_NAME, "15"));
+
+        assertArrayEquals(VALUE, result);
+    }
+
+    @Test
+    void getNegativeEntryWithinRefreshWindow() {
+        // GIVEN
+        mockScriptResult(List.of(new byte[0], WINDOW.toMillis()));
+
+        // WHEN
+        byte[] result = cacheWriter.get(MOVIE_CACHE_NAME, KEY);
+
+        // THEN
+        verify(eventPublisher, never()).publishEvent(any(Object.class));
+
+        assertEquals(0, result.length);
+    }
+
+    @Test
+    void getWithoutExpiration() {
+        // GIVEN
+        mockScriptResult(List.of(VALUE, -1L));
+
+        // WHEN
+        byte[] result = cacheWriter.get(MOVIE_CACHE_NAME, KEY);
+
+        // THEN
+        verify(eventPublisher, never()).publishEvent(any(Object.class));
+
+        assertArrayEquals(VALUE, result);
+    }
+
+    @Test
+    void getMissingEntry() {
+        // GIVEN
+        mockScriptResult(List.of());
+
+        // WHEN
+        byte[] result = cacheWriter.get(MOVIE_CACHE_NAME, KEY);
+
+        // THEN
+        verify(eventPublisher, never()).publishEvent(any(Object.class));
+
+        assertNull(result);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void getFromOtherCache() {
+        // GIVEN
+        when(delegate.get(OTHER_CACHE_NAME, KEY))
+                .thenReturn(VALUE);
+
+        // WHEN
+        byte[] result = cacheWriter.get(OTHER_CACHE_NAME, KEY);
+
+        // THEN
+        verify(delegate, times(1)).get(OTHER_CACHE_NAME, KEY);
+        verify(redisTemplate, never()).execute(any(RedisScript.class), any(RedisSerializer.class), any(RedisSerializer.class), anyList());
+
+        assertArrayEquals(VALUE, result);
+    }
+
+    @Test
+    void shouldRefreshWithXFetch() {
+        // GIVEN
+        cacheWriter = initCacheWriter(1.0);
+
+        // WHEN / THEN
+        // an expired entry is always refreshed, one far from its expiration practically never
+        assertTrue(cacheWriter.shouldRefresh(0));
+        assertFalse(cacheWriter.shouldRefresh(WINDOW.multipliedBy(1000).toMillis()));
+    }
+
+    @Test
+    void getWithStatistics() {
+        // GIVEN
+        CacheStatisticsCollector statisticsCollector = CacheStatisticsCollector.create();
+        RedisCacheWriter statisticsCacheWriter = cacheWriter.withStatisticsCollector(statisticsCollector);
+
+        mockScriptResult(List.of(VALUE, WINDOW.toMillis() + 1));
+        statisticsCacheWriter.get(MOVIE_CACHE_NAME, KEY);
+        mockScriptResult(List.of());
+
+        // WHEN
+        statisticsCacheWriter.get(MOVIE_CACHE_NAME, KEY);
+
+        // THEN
+        verify(delegate, times(1)).withStatisticsCollector(statisticsCollector);
+
+        CacheStatistics statistics = statisticsCollector.getCacheStatistics(MOVIE_CACHE_NAME);
+        assertEquals(2, statistics.getGets());
+        assertEquals(1, statistics.getHits());
+        assertEquals(1, statistics.getMisses());
+    }
+
+    @Test
+    void put() {
+        // WHEN
+        cacheWriter.put(MOVIE_CACHE_NAME, KEY, VALUE, WINDOW);
+
+        // THEN
+        verify(delegate, times(1)).put(MOVIE_CACHE_NAME, KEY, VALUE, WINDOW);
+    }
+
+    private RefreshAheadCacheWriter initCacheWriter(double beta) {
+        return new RefreshAheadCacheWriter(delegate, RedisShards.single(redisTemplate), Set.of(MOVIE_CACHE_NAME), name -> name + "::",
+                WINDOW, beta, eventPublisher);
+    }
+
+    private void mockScriptResult(List<Object> result) {
+        mockScriptResult(KEY, result);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void mockScriptResult(byte[] key, List<Object> result) {
+        when(redisTemplate.execute(any(RedisScript.class), any(RedisSerializer.class), any(RedisSerializer.class), eq(List.of(key))))
+                .thenReturn(result);
+    }
+}
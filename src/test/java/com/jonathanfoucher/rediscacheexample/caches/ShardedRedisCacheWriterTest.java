@@ -0,0 +1,80 @@
+package com.jonathanfoucher.rediscacheexample.caches;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.cache.RedisCacheWriter;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ShardedRedisCacheWriterTest {
+    @Mock
+    private RedisCacheWriter shard1;
+    @Mock
+    private RedisCacheWriter shard2;
+
+    private static final String MOVIE_CACHE_NAME = "movies";
+    private static final byte[] KEY = "movies::15".getBytes(UTF_8);
+    private static final byte[] VALUE = "value".getBytes(UTF_8);
+    private static final byte[] PATTERN = "movies::*".getBytes(UTF_8);
+    private static final Duration TIME_TO_LIVE = Duration.ofDays(1);
+
+    private RedisShards<RedisCacheWriter> shards;
+    private ShardedRedisCacheWriter cacheWriter;
+
+    @BeforeEach
+    void init() {
+        Map<String, RedisCacheWriter> nodes = new LinkedHashMap<>();
+        nodes.put("redis://node1:6379", shard1);
+        nodes.put("redis://node2:6379", shard2);
+        shards = RedisShards.of(nodes, 160);
+        cacheWriter = new ShardedRedisCacheWriter(shards);
+    }
+
+    @Test
+    void get() {
+        // GIVEN
+        RedisCacheWriter shard = shards.forKey("movies::15");
+        when(shard.get(MOVIE_CACHE_NAME, KEY))
+                .thenReturn(VALUE);
+
+        // WHEN
+        byte[] result = cacheWriter.get(MOVIE_CACHE_NAME, KEY);
+
+        // THEN
+        verify(shard, times(1)).get(MOVIE_CACHE_NAME, KEY);
+        verify(shard == shard1 ? shard2 : shard1, never()).get(MOVIE_CACHE_NAME, KEY);
+
+        assertArrayEquals(VALUE, result);
+    }
+
+    @Test
+    void put() {
+        // WHEN
+        cacheWriter.put(MOVIE_CACHE_NAME, KEY, VALUE, TIME_TO_LIVE);
+
+        // THEN
+        RedisCacheWriter shard = shards.forKey("movies::15");
+        verify(shard, times(1)).put(MOVIE_CACHE_NAME, KEY, VALUE, TIME_TO_LIVE);
+        verify(shard == shard1 ? shard2 : shard1, never()).put(MOVIE_CACHE_NAME, KEY, VALUE, TIME_TO_LIVE);
+    }
+
+    @Test
+    void clean() {
+        // WHEN
+        cacheWriter.clean(MOVIE_CACHE_NAME, PATTERN);
+
+        // THEN
+        verify(shard1, times(1)).clean(MOVIE_CACHE_NAME, PATTERN);
+        verify(shard2, times(1)).clean(MOVIE_CACHE_NAME, PATTERN);
+    }
+}
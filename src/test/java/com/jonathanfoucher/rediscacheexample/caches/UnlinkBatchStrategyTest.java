@@ -0,0 +1,136 @@
+package com.jonathanfoucher.rediscacheexample.caches;
+
+import io.micrometer.core.instrument.LongTaskTimer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.connection.RedisClusterConnection;
+import org.springframework.data.redis.connection.RedisClusterNode;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisKeyCommands;
+import org.springframework.data.redis.connection.RedisNode;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ScanOptions;
+
+import java.util.Iterator;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UnlinkBatchStrategyTest {
+    @Mock
+    private RedisConnection connection;
+    @Mock
+    private RedisKeyCommands keyCommands;
+
+    private static final String MOVIE_CACHE_NAME = "movies";
+    private static final byte[] PATTERN = "movies::*".getBytes(UTF_8);
+    private static final byte[] KEY_1 = "movies::1".getBytes(UTF_8);
+    private static final byte[] KEY_2 = "movies::2".getBytes(UTF_8);
+    private static final byte[] KEY_3 = "movies::3".getBytes(UTF_8);
+
+    private MeterRegistry meterRegistry;
+    private UnlinkBatchStrategy batchStrategy;
+
+    @BeforeEach
+    void init() {
+        meterRegistry = new SimpleMeterRegistry();
+        batchStrategy = new UnlinkBatchStrategy(2, meterRegistry);
+    }
+
+    @Test
+    void cleanCache() {
+        // GIVEN
+        Cursor<byte[]> cursor = mockCursor(KEY_1, KEY_2, KEY_3);
+        when(connection.keyCommands()).thenReturn(keyCommands);
+        when(keyCommands.scan(any(ScanOptions.class))).thenReturn(cursor);
+        when(keyCommands.unlink(KEY_1, KEY_2)).thenReturn(2L);
+        // expired since the scan
+        when(keyCommands.unlink(KEY_3)).thenReturn(0L);
+
+        // WHEN
+        long count = batchStrategy.cleanCache(connection, MOVIE_CACHE_NAME, PATTERN);
+
+        // THEN
+        assertEquals(2, count);
+        verify(keyCommands, times(1)).unlink(KEY_1, KEY_2);
+        verify(keyCommands, times(1)).unlink(KEY_3);
+        verify(keyCommands, never()).keys(any());
+        verify(keyCommands, never()).del(any());
+        verify(cursor, times(1)).close();
+
+        assertEquals(2, meterRegistry.get("movie.cache.clear.keys").tag("cache", MOVIE_CACHE_NAME).counter().count());
+        LongTaskTimer clear = meterRegistry.get("movie.cache.clear").tag("cache", MOVIE_CACHE_NAME).longTaskTimer();
+        assertEquals(0, clear.activeTasks());
+    }
+
+    @Test
+    void cleanEmptyCache() {
+        // GIVEN
+        Cursor<byte[]> cursor = mockCursor();
+        when(connection.keyCommands()).thenReturn(keyCommands);
+        when(keyCommands.scan(any(ScanOptions.class))).thenReturn(cursor);
+
+        // WHEN
+        long count = batchStrategy.cleanCache(connection, MOVIE_CACHE_NAME, PATTERN);
+
+        // THEN
+        assertEquals(0, count);
+        verify(keyCommands, never()).unlink(any());
+    }
+
+    @Test
+    void cleanClusterCache() {
+        // GIVEN
+        RedisClusterConnection clusterConnection = mock(RedisClusterConnection.class);
+        RedisClusterNode master1 = clusterNode(7000, RedisNode.NodeType.MASTER);
+        RedisClusterNode master2 = clusterNode(7001, RedisNode.NodeType.MASTER);
+        RedisClusterNode replica = clusterNode(7002, RedisNode.NodeType.REPLICA);
+        Cursor<byte[]> cursor1 = mockCursor(KEY_1);
+        Cursor<byte[]> cursor2 = mockCursor(KEY_2, KEY_3);
+        when(clusterConnection.clusterGetNodes()).thenReturn(List.of(master1, master2, replica));
+        when(clusterConnection.scan(eq(master1), any(ScanOptions.class))).thenReturn(cursor1);
+        when(clusterConnection.scan(eq(master2), any(ScanOptions.class))).thenReturn(cursor2);
+        when(clusterConnection.keyCommands()).thenReturn(keyCommands);
+        when(keyCommands.unlink(KEY_1)).thenReturn(1L);
+        when(keyCommands.unlink(KEY_2, KEY_3)).thenReturn(2L);
+
+        // WHEN
+        long count = batchStrategy.cleanCache(clusterConnection, MOVIE_CACHE_NAME, PATTERN);
+
+        // THEN
+        assertEquals(3, count);
+        verify(clusterConnection, never()).scan(eq(replica), any(ScanOptions.class));
+        verify(cursor1, times(1)).close();
+        verify(cursor2, times(1)).close();
+    }
+
+    @Test
+    void invalidBatchSize() {
+        // WHEN / THEN
+        assertThrows(IllegalArgumentException.class, () -> new UnlinkBatchStrategy(0, meterRegistry));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Cursor<byte[]> mockCursor(byte[]... keys) {
+        Iterator<byte[]> iterator = List.of(keys).iterator();
+        Cursor<byte[]> cursor = mock(Cursor.class);
+        when(cursor.hasNext()).thenAnswer(invocation -> iterator.hasNext());
+        lenient().when(cursor.next()).thenAnswer(invocation -> iterator.next());
+        return cursor;
+    }
+
+    private static RedisClusterNode clusterNode(int port, RedisNode.NodeType type) {
+        return RedisClusterNode.newRedisClusterNode()
+                .listeningAt("localhost", port)
+                .promotedAs(type)
+                .build();
+    }
+}
@@ -3,40 +3,63 @@ package com.jonathanfoucher.rediscacheexample.controllers;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.json.JsonMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.jonathanfoucher.rediscacheexample.caches.MovieIndex;
 import com.jonathanfoucher.rediscacheexample.data.dto.MovieDto;
+import com.jonathanfoucher.rediscacheexample.data.dto.MoviePage;
+import com.jonathanfoucher.rediscacheexample.services.MovieAccessStats;
 import com.jonathanfoucher.rediscacheexample.services.MovieService;
+import com.jonathanfoucher.rediscacheexample.services.MovieWriteBehind;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.http.converter.ByteArrayHttpMessageConverter;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+import org.springframework.test.context.web.WebAppConfiguration;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.stream.Stream;
 
 import static java.util.Collections.emptyList;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.mockito.Mockito.*;
 import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.http.MediaType.APPLICATION_NDJSON;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
-@SpringJUnitConfig(MovieController.class)
+@SpringJUnitConfig({MovieController.class, JacksonAutoConfiguration.class})
+@WebAppConfiguration
 class MovieControllerTest {
     private MockMvc mockMvc;
     @Autowired
     private MovieController movieController;
+    @Autowired
+    private ObjectMapper contextObjectMapper;
     @MockitoBean
     private MovieService movieService;
+    @MockitoBean
+    private MovieAccessStats movieAccessStats;
+    @MockitoBean
+    private MovieWriteBehind movieWriteBehind;
 
     private static final String MOVIES_PATH = "/movies";
+    private static final String MOVIES_PAGE_PATH = "/movies/page";
     private static final String MOVIES_BY_ID_PATH = "/movies/{id}";
+    private static final String MOVIES_BATCH_GET_PATH = "/movies/batch-get";
+    private static final String MOVIES_BATCH_PATH = "/movies/batch";
     private static final String MOVIES_CACHE_PATH = "/movies/cache";
     private static final String MOVIES_CACHE_BY_ID_PATH = "/movies/{id}/cache";
 
@@ -55,7 +78,7 @@ class MovieControllerTest {
     @BeforeEach
     void initEach() {
         mockMvc = MockMvcBuilders.standaloneSetup(movieController)
-                .setMessageConverters(new MappingJackson2HttpMessageConverter())
+                .setMessageConverters(new ByteArrayHttpMessageConverter(), new MappingJackson2HttpMessageConverter())
                 .build();
     }
 
@@ -89,6 +112,83 @@ class MovieControllerTest {
         verify(movieService, times(1)).findAllCached();
     }
 
+    @Test
+    void findPageCached() throws Exception {
+        // GIVEN
+        MoviePage page = new MoviePage(List.of(initMovie()), "cursor");
+
+        when(movieService.findPageCached(MovieIndex.TITLE, false, "some", "previous", 50))
+                .thenReturn(page);
+
+        // WHEN / THEN
+        mockMvc.perform(get(MOVIES_PAGE_PATH)
+                        .param("titlePrefix", "some")
+                        .param("cursor", "previous")
+                        .param("size", "50"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(objectMapper.writeValueAsString(page)));
+
+        verify(movieService, times(1)).findPageCached(MovieIndex.TITLE, false, "some", "previous", 50);
+    }
+
+    @Test
+    void findPageCachedWithInvalidRequest() throws Exception {
+        // GIVEN
+        when(movieService.findPageCached(MovieIndex.ID, false, "some", null, 20))
+                .thenThrow(new IllegalArgumentException("Title prefix filter requires the title sort"));
+
+        // WHEN / THEN
+        mockMvc.perform(get(MOVIES_PAGE_PATH)
+                        .param("sort", "id")
+                        .param("titlePrefix", "some"))
+                .andExpect(status().isBadRequest());
+
+        verify(movieService, times(1)).findPageCached(MovieIndex.ID, false, "some", null, 20);
+    }
+
+    @Test
+    void streamAllCached() throws Exception {
+        // GIVEN
+        MovieDto movie1 = initMovie();
+        MovieDto movie2 = initMovie();
+        movie2.setId(ID + 1);
+
+        when(movieService.streamAllCached())
+                .thenReturn(Stream.of(movie1, movie2));
+
+        // WHEN / THEN
+        MvcResult mvcResult = mockMvc.perform(get(MOVIES_PATH).accept(APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(APPLICATION_NDJSON))
+                .andExpect(content().string(contextObjectMapper.writeValueAsString(movie1) + "\n"
+                        + contextObjectMapper.writeValueAsString(movie2) + "\n"));
+
+        verify(movieService, times(1)).streamAllCached();
+        verify(movieService, never()).findAllCached();
+    }
+
+    @Test
+    void streamAllCachedWithoutResult() throws Exception {
+        // GIVEN
+        when(movieService.streamAllCached())
+                .thenReturn(Stream.empty());
+
+        // WHEN / THEN
+        MvcResult mvcResult = mockMvc.perform(get(MOVIES_PATH).accept(APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andExpect(content().string(""));
+
+        verify(movieService, times(1)).streamAllCached();
+    }
+
     @Test
     void findById() throws Exception {
         // GIVEN
@@ -103,6 +203,26 @@ class MovieControllerTest {
                 .andExpect(content().string(objectMapper.writeValueAsString(movie)));
 
         verify(movieService, times(1)).findById(ID);
+        verify(movieAccessStats, times(1)).record(ID);
+    }
+
+    @Test
+    void findByIdRendered() throws Exception {
+        // GIVEN
+        byte[] renderedMovie = objectMapper.writeValueAsBytes(initMovie());
+
+        when(movieService.findRenderedById(ID))
+                .thenReturn(renderedMovie);
+
+        // WHEN / THEN
+        mockMvc.perform(get(MOVIES_BY_ID_PATH, ID))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(APPLICATION_JSON))
+                .andExpect(content().bytes(renderedMovie));
+
+        verify(movieService, times(1)).findRenderedById(ID);
+        verify(movieService, never()).findById(any());
+        verify(movieAccessStats, times(1)).record(ID);
     }
 
     @Test
@@ -139,6 +259,86 @@ class MovieControllerTest {
         assertEquals(RELEASE_DATE, result.getReleaseDate());
     }
 
+    @Test
+    void addMovieToCacheWithWriteBehind() throws Exception {
+        // GIVEN
+        MovieDto movie = initMovie();
+
+        when(movieWriteBehind.isEnabled())
+                .thenReturn(true);
+        when(movieWriteBehind.submit(any(MovieDto.class)))
+                .thenReturn(true);
+
+        // WHEN / THEN
+        mockMvc.perform(post(MOVIES_PATH).contentType(APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(movie)))
+                .andExpect(status().isAccepted());
+
+        ArgumentCaptor<MovieDto> capturedMovie = ArgumentCaptor.forClass(MovieDto.class);
+        verify(movieWriteBehind, times(1)).submit(capturedMovie.capture());
+        verify(movieService, never()).addMovieToCache(any());
+
+        assertEquals(ID, capturedMovie.getValue().getId());
+    }
+
+    @Test
+    void addMovieToCacheWithFullWriteBehindQueue() throws Exception {
+        // GIVEN
+        MovieDto movie = initMovie();
+
+        when(movieWriteBehind.isEnabled())
+                .thenReturn(true);
+        when(movieWriteBehind.submit(any(MovieDto.class)))
+                .thenReturn(false);
+
+        // WHEN / THEN
+        mockMvc.perform(post(MOVIES_PATH).contentType(APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(movie)))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "1"));
+
+        verify(movieService, never()).addMovieToCache(any());
+    }
+
+    @Test
+    void findByIds() throws Exception {
+        // GIVEN
+        MovieDto movie = initMovie();
+
+        when(movieService.findByIds(List.of(ID, ID + 1)))
+                .thenReturn(List.of(movie));
+
+        // WHEN / THEN
+        mockMvc.perform(post(MOVIES_BATCH_GET_PATH).contentType(APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(List.of(ID, ID + 1))))
+                .andExpect(status().isOk())
+                .andExpect(content().string(objectMapper.writeValueAsString(List.of(movie))));
+
+        verify(movieService, times(1)).findByIds(List.of(ID, ID + 1));
+        verify(movieAccessStats, times(1)).record(List.of(ID, ID + 1));
+    }
+
+    @Test
+    void addMoviesToCache() throws Exception {
+        // GIVEN
+        MovieDto movie = initMovie();
+
+        // WHEN / THEN
+        mockMvc.perform(post(MOVIES_BATCH_PATH).contentType(APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(List.of(movie))))
+                .andExpect(status().isOk());
+
+        ArgumentCaptor<List<MovieDto>> capturedMovies = ArgumentCaptor.captor();
+        verify(movieService, times(1)).addMoviesToCache(capturedMovies.capture());
+
+        List<MovieDto> results = capturedMovies.getValue();
+        assertNotNull(results);
+        assertEquals(1, results.size());
+        assertEquals(ID, results.getFirst().getId());
+        assertEquals(TITLE, results.getFirst().getTitle());
+        assertEquals(RELEASE_DATE, results.getFirst().getReleaseDate());
+    }
+
     @Test
     void clearCache() throws Exception {
         // WHEN / THEN
@@ -157,6 +357,29 @@ class MovieControllerTest {
         verify(movieService, times(1)).cleanCacheById(ID);
     }
 
+    @Test
+    void findAllCachedWhileRedisIsBypassed() throws Exception {
+        // GIVEN
+        when(movieService.findAllCached())
+                .thenThrow(new RedisConnectionFailureException("Redis is bypassed by the circuit breaker"));
+
+        // WHEN / THEN
+        mockMvc.perform(get(MOVIES_PATH))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "1"));
+    }
+
+    @Test
+    void cleanCacheByIdWhileRedisIsBypassed() throws Exception {
+        // GIVEN
+        doThrow(new RedisConnectionFailureException("Redis is bypassed by the circuit breaker"))
+                .when(movieService).cleanCacheById(ID);
+
+        // WHEN / THEN
+        mockMvc.perform(delete(MOVIES_CACHE_BY_ID_PATH, ID))
+                .andExpect(status().isServiceUnavailable());
+    }
+
     private MovieDto initMovie() {
         MovieDto movie = new MovieDto();
         movie.setId(ID);
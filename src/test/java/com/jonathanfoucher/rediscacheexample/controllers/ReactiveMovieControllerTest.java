@@ -0,0 +1,325 @@
+package com.jonathanfoucher.rediscacheexample.controllers;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.jonathanfoucher.rediscacheexample.caches.MovieIndex;
+import com.jonathanfoucher.rediscacheexample.data.dto.MovieDto;
+import com.jonathanfoucher.rediscacheexample.data.dto.MoviePage;
+import com.jonathanfoucher.rediscacheexample.services.MovieAccessStats;
+import com.jonathanfoucher.rediscacheexample.services.MovieWriteBehind;
+import com.jonathanfoucher.rediscacheexample.services.ReactiveMovieService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.Mockito.*;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.http.MediaType.APPLICATION_NDJSON;
+
+// the controller only registers in a reactive web application, so it is bound directly rather than through a context
+@ExtendWith(MockitoExtension.class)
+class ReactiveMovieControllerTest {
+    private WebTestClient webTestClient;
+    @Mock
+    private ReactiveMovieService movieService;
+    @Mock
+    private MovieAccessStats movieAccessStats;
+    @Mock
+    private MovieWriteBehind movieWriteBehind;
+
+    private static final String MOVIES_PATH = "/movies";
+    private static final String MOVIES_PAGE_PATH = "/movies/page";
+    private static final String MOVIES_BY_ID_PATH = "/movies/{id}";
+    private static final String MOVIES_BATCH_GET_PATH = "/movies/batch-get";
+    private static final String MOVIES_BATCH_PATH = "/movies/batch";
+    private static final String MOVIES_CACHE_PATH = "/movies/cache";
+    private static final String MOVIES_CACHE_BY_ID_PATH = "/movies/{id}/cache";
+
+    private static final Long ID = 15L;
+    private static final String TITLE = "Some movie";
+    private static final LocalDate RELEASE_DATE = LocalDate.of(2022, 7, 19);
+
+    private static final ObjectMapper objectMapper;
+
+    static {
+        objectMapper = JsonMapper.builder().
+                addModule(new JavaTimeModule())
+                .build();
+    }
+
+    @BeforeEach
+    void initEach() {
+        webTestClient = WebTestClient.bindToController(new ReactiveMovieController(movieService, movieAccessStats, movieWriteBehind))
+                .build();
+    }
+
+    @Test
+    void findAllCached() throws JsonProcessingException {
+        // GIVEN
+        MovieDto movie = initMovie();
+
+        when(movieService.findAllCached())
+                .thenReturn(Flux.just(movie));
+
+        // WHEN / THEN
+        webTestClient.get().uri(MOVIES_PATH)
+                .accept(APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .json(objectMapper.writeValueAsString(List.of(movie)));
+
+        verify(movieService, times(1)).findAllCached();
+        verify(movieService, never()).streamAllCached();
+    }
+
+    @Test
+    void findPageCached() throws JsonProcessingException {
+        // GIVEN
+        MoviePage page = new MoviePage(List.of(initMovie()), "cursor");
+
+        when(movieService.findPageCached(MovieIndex.RELEASE_DATE, true, null, null, 20))
+                .thenReturn(Mono.just(page));
+
+        // WHEN / THEN
+        webTestClient.get().uri(MOVIES_PAGE_PATH + "?sort=releaseDate&direction=desc")
+                .accept(APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .json(objectMapper.writeValueAsString(page));
+
+        verify(movieService, times(1)).findPageCached(MovieIndex.RELEASE_DATE, true, null, null, 20);
+    }
+
+    @Test
+    void findPageCachedWithUnknownSort() {
+        // WHEN / THEN
+        webTestClient.get().uri(MOVIES_PAGE_PATH + "?sort=rating")
+                .accept(APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isBadRequest();
+
+        verifyNoInteractions(movieService);
+    }
+
+    @Test
+    void streamAllCached() throws JsonProcessingException {
+        // GIVEN
+        MovieDto movie1 = initMovie();
+        MovieDto movie2 = initMovie();
+        movie2.setId(ID + 1);
+
+        when(movieService.streamAllCached())
+                .thenReturn(Flux.just(movie1, movie2));
+
+        // WHEN / THEN
+        webTestClient.get().uri(MOVIES_PATH)
+                .accept(APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(APPLICATION_NDJSON)
+                .expectBody(String.class)
+                .isEqualTo(objectMapper.writeValueAsString(movie1) + "\n"
+                        + objectMapper.writeValueAsString(movie2) + "\n");
+
+        verify(movieService, times(1)).streamAllCached();
+        verify(movieService, never()).findAllCached();
+    }
+
+    @Test
+    void findById() throws JsonProcessingException {
+        // GIVEN
+        MovieDto movie = initMovie();
+
+        when(movieService.findById(ID))
+                .thenReturn(Mono.just(movie));
+
+        // WHEN / THEN
+        webTestClient.get().uri(MOVIES_BY_ID_PATH, ID)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .json(objectMapper.writeValueAsString(movie));
+
+        verify(movieService, times(1)).findById(ID);
+        verify(movieAccessStats, times(1)).record(ID);
+    }
+
+    @Test
+    void findByIdWithoutResult() {
+        // GIVEN
+        when(movieService.findById(ID))
+                .thenReturn(Mono.empty());
+
+        // WHEN / THEN
+        webTestClient.get().uri(MOVIES_BY_ID_PATH, ID)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().isEmpty();
+
+        verify(movieService, times(1)).findById(ID);
+    }
+
+    @Test
+    void findByIds() throws JsonProcessingException {
+        // GIVEN
+        MovieDto movie = initMovie();
+
+        when(movieService.findByIds(List.of(ID)))
+                .thenReturn(Flux.just(movie));
+
+        // WHEN / THEN
+        webTestClient.post().uri(MOVIES_BATCH_GET_PATH)
+                .contentType(APPLICATION_JSON)
+                .bodyValue(List.of(ID))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .json(objectMapper.writeValueAsString(List.of(movie)));
+
+        verify(movieService, times(1)).findByIds(List.of(ID));
+        verify(movieAccessStats, times(1)).record(List.of(ID));
+    }
+
+    @Test
+    void addMovieToCache() {
+        // GIVEN
+        MovieDto movie = initMovie();
+
+        when(movieService.addMovieToCache(any()))
+                .thenReturn(Mono.just(movie));
+
+        // WHEN / THEN
+        webTestClient.post().uri(MOVIES_PATH)
+                .contentType(APPLICATION_JSON)
+                .bodyValue(movie)
+                .exchange()
+                .expectStatus().isOk();
+
+        ArgumentCaptor<MovieDto> capturedMovie = ArgumentCaptor.forClass(MovieDto.class);
+        verify(movieService, times(1)).addMovieToCache(capturedMovie.capture());
+        checkMovie(capturedMovie.getValue());
+    }
+
+    @Test
+    void addMovieToCacheWithWriteBehind() {
+        // GIVEN
+        MovieDto movie = initMovie();
+
+        when(movieWriteBehind.isEnabled())
+                .thenReturn(true);
+        when(movieWriteBehind.submit(any()))
+                .thenReturn(true);
+
+        // WHEN / THEN
+        webTestClient.post().uri(MOVIES_PATH)
+                .contentType(APPLICATION_JSON)
+                .bodyValue(movie)
+                .exchange()
+                .expectStatus().isAccepted();
+
+        ArgumentCaptor<MovieDto> capturedMovie = ArgumentCaptor.forClass(MovieDto.class);
+        verify(movieWriteBehind, times(1)).submit(capturedMovie.capture());
+        verify(movieService, never()).addMovieToCache(any());
+        checkMovie(capturedMovie.getValue());
+    }
+
+    @Test
+    void addMovieToCacheWithFullWriteBehindQueue() {
+        // GIVEN
+        when(movieWriteBehind.isEnabled())
+                .thenReturn(true);
+        when(movieWriteBehind.submit(any()))
+                .thenReturn(false);
+
+        // WHEN / THEN
+        webTestClient.post().uri(MOVIES_PATH)
+                .contentType(APPLICATION_JSON)
+                .bodyValue(initMovie())
+                .exchange()
+                .expectStatus().isEqualTo(429)
+                .expectHeader().valueEquals("Retry-After", "1");
+
+        verify(movieService, never()).addMovieToCache(any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void addMoviesToCache() {
+        // GIVEN
+        MovieDto movie = initMovie();
+
+        when(movieService.addMoviesToCache(any()))
+                .thenReturn(Mono.empty());
+
+        // WHEN / THEN
+        webTestClient.post().uri(MOVIES_BATCH_PATH)
+                .contentType(APPLICATION_JSON)
+                .bodyValue(List.of(movie))
+                .exchange()
+                .expectStatus().isOk();
+
+        ArgumentCaptor<List<MovieDto>> capturedMovies = ArgumentCaptor.forClass(List.class);
+        verify(movieService, times(1)).addMoviesToCache(capturedMovies.capture());
+
+        assertEquals(1, capturedMovies.getValue().size());
+        checkMovie(capturedMovies.getValue().getFirst());
+    }
+
+    @Test
+    void clearCache() {
+        // GIVEN
+        when(movieService.clearCache())
+                .thenReturn(Mono.empty());
+
+        // WHEN / THEN
+        webTestClient.delete().uri(MOVIES_CACHE_PATH)
+                .exchange()
+                .expectStatus().isOk();
+
+        verify(movieService, times(1)).clearCache();
+    }
+
+    @Test
+    void cleanCacheById() {
+        // GIVEN
+        when(movieService.cleanCacheById(ID))
+                .thenReturn(Mono.empty());
+
+        // WHEN / THEN
+        webTestClient.delete().uri(MOVIES_CACHE_BY_ID_PATH, ID)
+                .exchange()
+                .expectStatus().isOk();
+
+        verify(movieService, times(1)).cleanCacheById(ID);
+    }
+
+    private MovieDto initMovie() {
+        MovieDto movie = new MovieDto();
+        movie.setId(ID);
+        movie.setTitle(TITLE);
+        movie.setReleaseDate(RELEASE_DATE);
+        return movie;
+    }
+
+    private void checkMovie(MovieDto movie) {
+        assertNotNull(movie);
+        assertEquals(ID, movie.getId());
+        assertEquals(TITLE, movie.getTitle());
+        assertEquals(RELEASE_DATE, movie.getReleaseDate());
+    }
+}
@@ -0,0 +1,96 @@
+package com.jonathanfoucher.rediscacheexample.metrics;
+
+import com.jonathanfoucher.rediscacheexample.caches.RedisCircuitBreaker;
+import com.jonathanfoucher.rediscacheexample.configs.MovieCacheProperties;
+import com.jonathanfoucher.rediscacheexample.repositories.MovieCacheRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.*;
+
+// the counting thread runs once when the context starts, while the circuit breaker mock still denies the calls
+@SpringJUnitConfig({CacheSizeMetrics.class, MovieCacheProperties.class})
+class CacheSizeMetricsTest {
+    @Autowired
+    private CacheSizeMetrics cacheSizeMetrics;
+    @MockitoBean
+    private MovieCacheRepository movieCacheRepository;
+    @MockitoBean
+    private RedisCircuitBreaker redisCircuitBreaker;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void init() {
+        meterRegistry = new SimpleMeterRegistry();
+        cacheSizeMetrics.bindTo(meterRegistry);
+    }
+
+    @Test
+    void count() {
+        // GIVEN
+        when(redisCircuitBreaker.tryAcquire())
+                .thenReturn(true);
+        when(movieCacheRepository.countAll())
+                .thenReturn(3L);
+        when(movieCacheRepository.countInAggregate())
+                .thenReturn(5L);
+
+        // WHEN
+        cacheSizeMetrics.count();
+        double keyspaceSize = meterRegistry.get("movie.cache.size").tag("cache", "movies").gauge().value();
+        double aggregateSize = meterRegistry.get("movie.cache.size").tag("cache", "all_movies").gauge().value();
+
+        // THEN
+        // the scrapes read the last counts without calling redis
+        verify(movieCacheRepository, times(1)).countAll();
+        verify(movieCacheRepository, times(1)).countInAggregate();
+        verify(redisCircuitBreaker, times(1)).onResult(0, false);
+
+        assertEquals(3, keyspaceSize);
+        assertEquals(5, aggregateSize);
+    }
+
+    @Test
+    void countFailed() {
+        // GIVEN
+        when(redisCircuitBreaker.tryAcquire())
+                .thenReturn(true);
+        when(movieCacheRepository.countAll())
+                .thenReturn(3L)
+                .thenThrow(new RedisConnectionFailureException("Connection lost"));
+        when(movieCacheRepository.countInAggregate())
+                .thenReturn(5L);
+        cacheSizeMetrics.count();
+
+        // WHEN
+        cacheSizeMetrics.count();
+
+        // THEN
+        verify(redisCircuitBreaker, times(1)).onResult(0, true);
+
+        assertEquals(3, meterRegistry.get("movie.cache.size").tag("cache", "movies").gauge().value());
+        assertEquals(5, meterRegistry.get("movie.cache.size").tag("cache", "all_movies").gauge().value());
+    }
+
+    @Test
+    void countWhileRedisIsBypassed() {
+        // GIVEN
+        when(redisCircuitBreaker.tryAcquire())
+                .thenReturn(false);
+
+        // WHEN
+        cacheSizeMetrics.count();
+
+        // THEN
+        verify(movieCacheRepository, never()).countAll();
+        verify(movieCacheRepository, never()).countInAggregate();
+        verify(redisCircuitBreaker, never()).onResult(anyLong(), anyBoolean());
+    }
+}
@@ -0,0 +1,78 @@
+package com.jonathanfoucher.rediscacheexample.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CachesStatsEndpointTest {
+    private SimpleMeterRegistry meterRegistry;
+    private CachesStatsEndpoint endpoint;
+
+    @BeforeEach
+    void init() {
+        meterRegistry = new SimpleMeterRegistry();
+        endpoint = new CachesStatsEndpoint(meterRegistry);
+    }
+
+    @Test
+    void cachesStats() {
+        // GIVEN
+        Counter.builder("cache.gets").tags("cache", "movies", "result", "hit").register(meterRegistry).increment(3);
+        Counter.builder("cache.gets").tags("cache", "movies", "result", "miss").register(meterRegistry).increment(1);
+        Counter.builder("cache.near.gets").tags("cache", "movies", "result", "hit").register(meterRegistry).increment(2);
+        Counter.builder("cache.puts").tags("cache", "movies").register(meterRegistry).increment(1);
+        Gauge.builder("movie.cache.size", () -> 10).tag("cache", "movies").register(meterRegistry);
+        Gauge.builder("movie.cache.size", () -> 8).tag("cache", "all_movies").register(meterRegistry);
+        Timer.builder("movie.cache.load").register(meterRegistry).record(Duration.ofMillis(20));
+        Timer.builder("movie.cache.aggregate").tag("operation", "clear").register(meterRegistry).record(Duration.ofMillis(4));
+        DistributionSummary.builder("movie.cache.payload.size").tag("operation", "write").register(meterRegistry).record(40);
+
+        // WHEN
+        CachesStatsEndpoint.CachesStats result = endpoint.cachesStats();
+
+        // THEN
+        CachesStatsEndpoint.CacheStats movies = result.caches().get("movies");
+        assertNotNull(movies);
+        assertEquals(10, movies.size());
+        assertEquals(3, movies.hits());
+        assertEquals(1, movies.misses());
+        assertEquals(0.75, movies.hitRatio());
+        assertEquals(2, movies.nearHits());
+        assertEquals(1, movies.puts());
+        assertEquals(0, movies.removals());
+        assertEquals(1, movies.latencies().get("load").count());
+        assertEquals(20, movies.latencies().get("load").meanMillis());
+
+        CachesStatsEndpoint.CacheStats allMovies = result.caches().get("all_movies");
+        assertNotNull(allMovies);
+        assertEquals(8, allMovies.size());
+        assertNull(allMovies.hits());
+        assertNull(allMovies.hitRatio());
+        assertEquals(4, allMovies.latencies().get("clear").meanMillis());
+
+        assertEquals(1, result.payloadSizes().get("write").count());
+        assertEquals(40, result.payloadSizes().get("write").mean());
+    }
+
+    @Test
+    void cachesStatsWithoutActivity() {
+        // WHEN
+        CachesStatsEndpoint.CachesStats result = endpoint.cachesStats();
+
+        // THEN
+        CachesStatsEndpoint.CacheStats movies = result.caches().get("movies");
+        assertNull(movies.size());
+        assertEquals(0, movies.hits());
+        assertNull(movies.hitRatio());
+        assertTrue(movies.latencies().isEmpty());
+        assertTrue(result.payloadSizes().isEmpty());
+    }
+}
@@ -0,0 +1,61 @@
+package com.jonathanfoucher.rediscacheexample.metrics;
+
+import com.jonathanfoucher.rediscacheexample.caches.RedisCircuitBreaker;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.Status;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RedisCircuitBreakerHealthIndicatorTest {
+    @Test
+    void health() {
+        // GIVEN
+        RedisCircuitBreakerHealthIndicator healthIndicator = new RedisCircuitBreakerHealthIndicator(circuitBreaker(true));
+
+        // WHEN
+        Health health = healthIndicator.health();
+
+        // THEN
+        assertEquals(Status.UP, health.getStatus());
+        assertEquals(RedisCircuitBreaker.State.CLOSED, health.getDetails().get("state"));
+        assertEquals(0, health.getDetails().get("bufferedCalls"));
+    }
+
+    @Test
+    void healthWhileRedisIsBypassed() {
+        // GIVEN
+        RedisCircuitBreaker circuitBreaker = circuitBreaker(true);
+        circuitBreaker.onResult(0, true);
+        RedisCircuitBreakerHealthIndicator healthIndicator = new RedisCircuitBreakerHealthIndicator(circuitBreaker);
+
+        // WHEN
+        Health health = healthIndicator.health();
+
+        // THEN
+        assertEquals(RedisCircuitBreakerHealthIndicator.DEGRADED, health.getStatus());
+        assertEquals(RedisCircuitBreaker.State.OPEN, health.getDetails().get("state"));
+        assertEquals(100.0, health.getDetails().get("failureRate"));
+    }
+
+    @Test
+    void healthDisabled() {
+        // GIVEN
+        RedisCircuitBreakerHealthIndicator healthIndicator = new RedisCircuitBreakerHealthIndicator(circuitBreaker(false));
+
+        // WHEN
+        Health health = healthIndicator.health();
+
+        // THEN
+        assertEquals(Status.UP, health.getStatus());
+        assertEquals(false, health.getDetails().get("enabled"));
+        assertFalse(health.getDetails().containsKey("state"));
+    }
+
+    // opened by a single failure
+    private static RedisCircuitBreaker circuitBreaker(boolean enabled) {
+        return new RedisCircuitBreaker(enabled, 50, 50, Duration.ofSeconds(1), 1, 1, Duration.ofMinutes(1), 1);
+    }
+}
@@ -0,0 +1,61 @@
+package com.jonathanfoucher.rediscacheexample.metrics;
+
+import com.jonathanfoucher.rediscacheexample.caches.RedisCircuitBreaker;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.data.redis.RedisConnectionFailureException;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RedisPingHealthIndicatorTest {
+    private static final Health UP = Health.up()
+            .withDetail("version", "7.4.2")
+            .build();
+    private static final Health DOWN = Health.down(new RedisConnectionFailureException("down"))
+            .build();
+
+    @Test
+    void health() {
+        // GIVEN
+        RedisPingHealthIndicator healthIndicator = new RedisPingHealthIndicator(() -> UP, circuitBreaker(true));
+
+        // WHEN
+        Health health = healthIndicator.health();
+
+        // THEN
+        assertEquals(UP, health);
+    }
+
+    @Test
+    void healthWhileRedisIsDown() {
+        // GIVEN
+        RedisPingHealthIndicator healthIndicator = new RedisPingHealthIndicator(() -> DOWN, circuitBreaker(true));
+
+        // WHEN
+        Health health = healthIndicator.health();
+
+        // THEN
+        // the movies are still served while redis is bypassed
+        assertEquals(RedisCircuitBreakerHealthIndicator.DEGRADED, health.getStatus());
+        assertEquals(DOWN.getDetails(), health.getDetails());
+    }
+
+    @Test
+    void healthWhileRedisIsDownWithoutCircuitBreaker() {
+        // GIVEN
+        RedisPingHealthIndicator healthIndicator = new RedisPingHealthIndicator(() -> DOWN, circuitBreaker(false));
+
+        // WHEN
+        Health health = healthIndicator.health();
+
+        // THEN
+        assertEquals(Status.DOWN, health.getStatus());
+    }
+
+    private static RedisCircuitBreaker circuitBreaker(boolean enabled) {
+        return new RedisCircuitBreaker(enabled, 50, 50, Duration.ofSeconds(1), 1, 1, Duration.ofMinutes(1), 1);
+    }
+}
@@ -0,0 +1,931 @@
+package com.jonathanfoucher.rediscacheexample.repositories;
+
+import com.jonathanfoucher.rediscacheexample.caches.JitteredTimeToLive;
+import com.jonathanfoucher.rediscacheexample.caches.MovieIndex;
+import com.jonathanfoucher.rediscacheexample.caches.NearCacheInvalidationBroker;
+import com.jonathanfoucher.rediscacheexample.caches.RedisShards;
+import com.jonathanfoucher.rediscacheexample.configs.MovieCacheProperties;
+import com.jonathanfoucher.rediscacheexample.data.dto.MovieCacheEntry;
+import com.jonathanfoucher.rediscacheexample.data.dto.MovieDto;
+import com.jonathanfoucher.rediscacheexample.data.dto.MoviePage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.cache.CacheProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisHashCommands;
+import org.springframework.data.redis.connection.RedisKeyCommands;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.connection.RedisStringCommands.SetOption;
+import org.springframework.data.redis.connection.RedisZSetCommands;
+import org.springframework.data.redis.connection.zset.DefaultTuple;
+import org.springframework.data.redis.connection.zset.Tuple;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.stream.Stream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@SpringJUnitConfig({MovieCacheRepository.class, MovieCacheProperties.class, CacheProperties.class, SimpleMeterRegistry.class,
+        MovieCacheRepositoryTest.RedisShardsConfig.class})
+class MovieCacheRepositoryTest {
+    @Autowired
+    private MovieCacheRepository movieCacheRepository;
+    @Autowired
+    private MovieCacheProperties properties;
+    @Autowired
+    private CacheProperties cacheProperties;
+    @MockitoBean
+    private RedisTemplate<String, MovieDto> redisTemplate;
+    @MockitoBean
+    private ValueOperations<String, MovieDto> opsForValue;
+    @MockitoBean
+    private HashOperations<String, Object, Object> opsForHash;
+    @MockitoBean
+    private Cursor<String> cursor;
+    @MockitoBean
+    private RedisConnection connection;
+    @MockitoBean
+    private RedisHashCommands hashCommands;
+    @MockitoBean
+    private RedisZSetCommands zSetCommands;
+    @MockitoBean
+    private RedisKeyCommands keyCommands;
+    @MockitoBean
+    private RedisStringCommands stringCommands;
+    @MockitoBean
+    private NearCacheInvalidationBroker nearCacheInvalidationBroker;
+
+    private static final Long ID = 15L;
+    private static final String TITLE = "Some movie";
+    private static final LocalDate RELEASE_DATE = LocalDate.of(2022, 7, 19);
+
+    private static final String MOVIE_CACHE_NAME = "movies";
+    private static final String MOVIE_KEY_PATTERN = "movies::*";
+    private static final String ALL_MOVIES_KEY = "{all_movies}";
+    private static final String ALL_MOVIES_EXPIRATION_KEY = "{all_movies}:expiration";
+    private static final String ALL_MOVIES_INDEX_MEMBERS_KEY = "{all_movies}:index_members";
+    private static final List<String> ALL_MOVIES_KEYS = List.of(ALL_MOVIES_KEY, ALL_MOVIES_EXPIRATION_KEY, ALL_MOVIES_INDEX_MEMBERS_KEY,
+            "{all_movies}:by_id", "{all_movies}:by_release_date", "{all_movies}:by_title");
+    private static final String MOVIE_ACCESS_STATS_KEY = "movie_access_stats";
+    private static final Duration TIME_TO_LIVE = Duration.ofDays(1);
+
+    private static final JdkSerializationRedisSerializer valueSerializer = new JdkSerializationRedisSerializer();
+
+    @BeforeEach
+    void init() {
+        properties.setScanBatchSize(2);
+        properties.setTimeToLiveJitter(Duration.ZERO);
+        properties.getCacheTimeToLive().clear();
+        properties.getAdaptiveTimeToLive().setEnabled(false);
+        cacheProperties.getRedis().setTimeToLive(TIME_TO_LIVE);
+    }
+
+    @Test
+    void countAll() {
+        // GIVEN
+        when(redisTemplate.scan(any(ScanOptions.class)))
+                .thenReturn(cursor);
+        mockCursor("movies::15", "movies::16", "movies::17");
+
+        // WHEN
+        long result = movieCacheRepository.countAll();
+
+        // THEN
+        ArgumentCaptor<ScanOptions> capturedOptions = ArgumentCaptor.forClass(ScanOptions.class);
+        verify(redisTemplate, times(1)).scan(capturedOptions.capture());
+        verify(redisTemplate, never()).opsForValue();
+        verify(cursor, times(1)).close();
+
+        assertEquals(MOVIE_KEY_PATTERN, capturedOptions.getValue().getPattern());
+        assertEquals(3, result);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void scanEntries() {
+        // GIVEN
+        when(redisTemplate.scan(any(ScanOptions.class)))
+                .thenReturn(cursor);
+        mockCursor("movies::15", "movies::16", "movies::17");
+        when(redisTemplate.getKeySerializer())
+                .thenReturn((RedisSerializer) RedisSerializer.string());
+        // the second batch expired since the scan, each batch is followed by the sizes of the copies in the aggregate
+        when(redisTemplate.executePipelined(any(RedisCallback.class)))
+                .thenReturn(Arrays.asList(100L, 60_000L, 200L, -1L))
+                .thenReturn(Arrays.asList(90L, 0L))
+                .thenReturn(Arrays.asList(0L, -2L))
+                .thenReturn(List.of(0L));
+        mockConnection();
+
+        // WHEN
+        List<List<MovieCacheEntry>> batches = new ArrayList<>();
+        long before = System.currentTimeMillis();
+        movieCacheRepository.scanEntries(batches::add);
+        long after = System.currentTimeMillis();
+
+        // THEN
+        ArgumentCaptor<RedisCallback<Object>> capturedCallback = ArgumentCaptor.forClass(RedisCallback.class);
+        verify(redisTemplate, times(4)).executePipelined(capturedCallback.capture());
+        capturedCallback.getAllValues().get(0).doInRedis(connection);
+        capturedCallback.getAllValues().get(1).doInRedis(connection);
+        verify(stringCommands, times(1)).strLen(serialize("movies::15"));
+        verify(keyCommands, times(1)).pTtl(serialize("movies::15"));
+        verify(hashCommands, times(1)).hStrLen(serialize(ALL_MOVIES_KEY), serialize("15"));
+        verify(cursor, times(1)).close();
+
+        assertEquals(2, batches.size());
+        assertTrue(batches.get(1).isEmpty());
+        List<MovieCacheEntry> entries = batches.getFirst();
+        assertEquals(2, entries.size());
+        assertEquals(ID, entries.get(0).id());
+        assertEquals("movies::15", entries.get(0).key());
+        assertEquals(200, entries.get(0).size());
+        assertTrue(entries.get(0).expiresAt() >= before + 60_000);
+        assertTrue(entries.get(0).expiresAt() <= after + 60_000);
+        assertEquals(new MovieCacheEntry(ID + 1, "movies::16", 210, Long.MAX_VALUE), entries.get(1));
+    }
+
+    @Test
+    void deleteAllByKeys() {
+        // GIVEN
+        when(redisTemplate.unlink(List.of("movies::15", "movies::16")))
+                .thenReturn(1L);
+
+        // WHEN
+        long result = movieCacheRepository.deleteAllByKeys(List.of("movies::15", "movies::16"));
+
+        // THEN
+        assertEquals(1, result);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void scanIdsInAggregate() {
+        // GIVEN
+        Cursor<Tuple> expirations = mock(Cursor.class);
+        Iterator<Tuple> iterator = List.<Tuple>of(new DefaultTuple(serialize("15"), 1.0), new DefaultTuple(serialize("2000000"), 2.0))
+                .iterator();
+        doAnswer(invocation -> {
+            iterator.forEachRemaining(invocation.getArgument(0));
+            return null;
+        }).when(expirations).forEachRemaining(any());
+
+        when(redisTemplate.execute(any(RedisCallback.class)))
+                .thenAnswer(invocation -> ((RedisCallback<Object>) invocation.getArgument(0)).doInRedis(connection));
+        mockConnection();
+        when(zSetCommands.zScan(eq(serialize(ALL_MOVIES_EXPIRATION_KEY)), any(ScanOptions.class)))
+                .thenReturn(expirations);
+
+        // WHEN
+        List<Long> result = new ArrayList<>();
+        movieCacheRepository.scanIdsInAggregate(result::add);
+
+        // THEN
+        ArgumentCaptor<ScanOptions> capturedOptions = ArgumentCaptor.forClass(ScanOptions.class);
+        verify(zSetCommands, times(1)).zScan(any(byte[].class), capturedOptions.capture());
+        verify(expirations, times(1)).close();
+
+        assertEquals(2, capturedOptions.getValue().getCount());
+        assertEquals(List.of(ID, 2_000_000L), result);
+    }
+
+    @Test
+    void countInAggregate() {
+        // GIVEN
+        when(redisTemplate.opsForHash())
+                .thenReturn(opsForHash);
+        when(opsForHash.size("{all_movies}"))
+                .thenReturn(3L);
+
+        // WHEN
+        long result = movieCacheRepository.countInAggregate();
+
+        // THEN
+        verify(opsForHash, times(1)).size("{all_movies}");
+        assertEquals(3, result);
+    }
+
+    @Test
+    void streamAll() {
+        // GIVEN
+        MovieDto movie1 = initMovie(ID);
+        MovieDto movie2 = initMovie(ID + 1);
+        MovieDto movie3 = initMovie(ID + 2);
+
+        when(redisTemplate.scan(any(ScanOptions.class)))
+                .thenReturn(cursor);
+        mockCursor("movies::15", "movies::16", "movies::17");
+        when(redisTemplate.opsForValue())
+                .thenReturn(opsForValue);
+        when(opsForValue.multiGet(List.of("movies::15", "movies::16")))
+                .thenReturn(List.of(movie1, movie2));
+        when(opsForValue.multiGet(List.of("movies::17")))
+                .thenReturn(List.of(movie3));
+
+        // WHEN
+        List<MovieDto> results;
+        try (Stream<MovieDto> movies = movieCacheRepository.streamAll()) {
+            results = movies.toList();
+        }
+
+        // THEN
+        ArgumentCaptor<ScanOptions> capturedOptions = ArgumentCaptor.forClass(ScanOptions.class);
+        verify(redisTemplate, times(1)).scan(capturedOptions.capture());
+        verify(redisTemplate, never()).keys(anyString());
+        verify(opsForValue, times(2)).multiGet(anyList());
+        verify(cursor, times(1)).close();
+
+        ScanOptions options = capturedOptions.getValue();
+        assertEquals(MOVIE_KEY_PATTERN, options.getPattern());
+        assertEquals(2L, options.getCount());
+
+        assertNotNull(results);
+        assertEquals(3, results.size());
+        assertEquals(ID, results.get(0).getId());
+        assertEquals(ID + 1, results.get(1).getId());
+        assertEquals(ID + 2, results.get(2).getId());
+    }
+
+    @Test
+    void streamAllWithExpiredEntries() {
+        // GIVEN
+        MovieDto movie = initMovie(ID);
+
+        when(redisTemplate.scan(any(ScanOptions.class)))
+                .thenReturn(cursor);
+        mockCursor("movies::15", "movies::16");
+        when(redisTemplate.opsForValue())
+                .thenReturn(opsForValue);
+        when(opsForValue.multiGet(List.of("movies::15", "movies::16")))
+                .thenReturn(Arrays.asList(movie, null));
+
+        // WHEN
+        List<MovieDto> results;
+        try (Stream<MovieDto> movies = movieCacheRepository.streamAll()) {
+            results = movies.toList();
+        }
+
+        // THEN
+        verify(opsForValue, times(1)).multiGet(anyList());
+        verify(cursor, times(1)).close();
+
+        assertNotNull(results);
+        assertEquals(1, results.size());
+        checkMovie(results.getFirst());
+    }
+
+    @Test
+    void streamAllWithoutResult() {
+        // GIVEN
+        when(redisTemplate.scan(any(ScanOptions.class)))
+                .thenReturn(cursor);
+        mockCursor();
+
+        // WHEN
+        List<MovieDto> results;
+        try (Stream<MovieDto> movies = movieCacheRepository.streamAll()) {
+            results = movies.toList();
+        }
+
+        // THEN
+        verify(redisTemplate, never()).opsForValue();
+        verify(opsForValue, never()).multiGet(anyList());
+        verify(cursor, times(1)).close();
+
+        assertNotNull(results);
+        assertTrue(results.isEmpty());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void findAllInAggregate() {
+        // GIVEN
+        MovieDto movie = initMovie(ID);
+        MovieDto otherMovie = initMovie(ID + 1);
+        byte[] last = MovieIndex.ID.member(movie);
+
+        when(redisTemplate.getHashValueSerializer())
+                .thenReturn((RedisSerializer) valueSerializer);
+        when(redisTemplate.execute(any(RedisScript.class), any(RedisSerializer.class), any(RedisSerializer.class), anyList(), any(Object[].class)))
+                .thenReturn(List.of(last, valueSerializer.serialize(movie)), List.of(new byte[0], valueSerializer.serialize(otherMovie)));
+
+        // WHEN
+        List<MovieDto> results = movieCacheRepository.findAllInAggregate();
+
+        // THEN
+        // one page of scan batch size movies per round trip, in the order of the ids
+        ArgumentCaptor<Object[]> capturedArgs = ArgumentCaptor.forClass(Object[].class);
+        verify(redisTemplate, times(2)).execute(any(RedisScript.class), any(RedisSerializer.class), any(RedisSerializer.class),
+                eq(ALL_MOVIES_KEYS), capturedArgs.capture());
+        verify(redisTemplate, never()).scan(any(ScanOptions.class));
+
+        List<Object[]> args = capturedArgs.getAllValues();
+        assertArrayEquals(serialize(MovieIndex.ID.key()), (byte[]) args.get(0)[1]);
+        assertArrayEquals(serialize("-"), (byte[]) args.get(0)[2]);
+        assertArrayEquals(serialize("2"), (byte[]) args.get(0)[4]);
+        assertArrayEquals(MovieIndex.after(last), (byte[]) args.get(1)[2]);
+
+        assertNotNull(results);
+        assertEquals(2, results.size());
+        checkMovie(results.getFirst());
+        assertEquals(ID + 1, results.get(1).getId());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void findAllInAggregateWithoutResult() {
+        // GIVEN
+        when(redisTemplate.execute(any(RedisScript.class), any(RedisSerializer.class), any(), anyList(), any()))
+                .thenReturn(null);
+
+        // WHEN
+        List<MovieDto> results = movieCacheRepository.findAllInAggregate();
+
+        // THEN
+        assertNotNull(results);
+        assertTrue(results.isEmpty());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void findPageInAggregate() {
+        // GIVEN
+        MovieDto movie = initMovie(ID);
+        byte[] last = MovieIndex.TITLE.member(movie);
+
+        when(redisTemplate.getHashValueSerializer())
+                .thenReturn((RedisSerializer) valueSerializer);
+        when(redisTemplate.execute(any(RedisScript.class), any(RedisSerializer.class), any(RedisSerializer.class), anyList(), any(Object[].class)))
+                .thenReturn(List.of(last, valueSerializer.serialize(movie)));
+
+        // WHEN
+        MoviePage result = movieCacheRepository.findPageInAggregate(MovieIndex.TITLE, "some", null, false, 1);
+
+        // THEN
+        ArgumentCaptor<Object[]> capturedArgs = ArgumentCaptor.forClass(Object[].class);
+        verify(redisTemplate, times(1)).execute(any(RedisScript.class), eq(RedisSerializer.byteArray()), eq(RedisSerializer.byteArray()),
+                eq(ALL_MOVIES_KEYS), capturedArgs.capture());
+
+        Object[] args = capturedArgs.getValue();
+        assertEquals(6, args.length);
+        assertArrayEquals(serialize(MovieIndex.TITLE.key()), (byte[]) args[1]);
+        assertArrayEquals(serialize("[some"), (byte[]) args[2]);
+        assertArrayEquals(serialize("(somf"), (byte[]) args[3]);
+        assertArrayEquals(serialize("1"), (byte[]) args[4]);
+        assertArrayEquals(serialize("0"), (byte[]) args[5]);
+
+        assertNotNull(result);
+        assertEquals(1, result.movies().size());
+        checkMovie(result.movies().getFirst());
+        assertArrayEquals(last, Base64.getUrlDecoder().decode(result.nextCursor()));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void findPageInAggregateAfterCursorDescending() {
+        // GIVEN
+        byte[] cursor = MovieIndex.ID.member(initMovie(ID));
+
+        when(redisTemplate.getHashValueSerializer())
+                .thenReturn((RedisSerializer) valueSerializer);
+        when(redisTemplate.execute(any(RedisScript.class), any(RedisSerializer.class), any(RedisSerializer.class), anyList(), any(Object[].class)))
+                .thenReturn(List.of(new byte[0]));
+
+        // WHEN
+        MoviePage result = movieCacheRepository.findPageInAggregate(MovieIndex.ID, null,
+                Base64.getUrlEncoder().encodeToString(cursor), true, 20);
+
+        // THEN
+        ArgumentCaptor<Object[]> capturedArgs = ArgumentCaptor.forClass(Object[].class);
+        verify(redisTemplate, times(1)).execute(any(RedisScript.class), any(RedisSerializer.class), any(RedisSerializer.class),
+                eq(ALL_MOVIES_KEYS), capturedArgs.capture());
+
+        Object[] args = capturedArgs.getValue();
+        assertArrayEquals(serialize("-"), (byte[]) args[2]);
+        assertArrayEquals(MovieIndex.after(cursor), (byte[]) args[3]);
+        assertArrayEquals(serialize("1"), (byte[]) args[5]);
+
+        assertNotNull(result);
+        assertTrue(result.movies().isEmpty());
+        assertNull(result.nextCursor());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void saveInAggregate() {
+        // GIVEN
+        MovieDto movie = initMovie(ID);
+
+        when(redisTemplate.getValueSerializer())
+                .thenReturn((RedisSerializer) valueSerializer);
+
+        // WHEN
+        long before = System.currentTimeMillis();
+        movieCacheRepository.saveInAggregate(movie);
+        long after = System.currentTimeMillis();
+
+        // THEN
+        ArgumentCaptor<Object[]> capturedArgs = ArgumentCaptor.forClass(Object[].class);
+        verify(redisTemplate, times(1)).execute(any(RedisScript.class), eq(RedisSerializer.byteArray()), any(RedisSerializer.class),
+                eq(ALL_MOVIES_KEYS), capturedArgs.capture());
+
+        Object[] args = capturedArgs.getValue();
+        assertEquals(6, args.length);
+        assertArrayEquals(serialize(String.valueOf(ID)), (byte[]) args[0]);
+        long expiration = Long.parseLong(new String((byte[]) args[1], UTF_8));
+        assertTrue(expiration >= before + TIME_TO_LIVE.toMillis());
+        assertTrue(expiration <= after + TIME_TO_LIVE.toMillis());
+        checkMovie((MovieDto) valueSerializer.deserialize((byte[]) args[2]));
+        assertArrayEquals(MovieIndex.ID.member(movie), (byte[]) args[3]);
+        assertArrayEquals(MovieIndex.RELEASE_DATE.member(movie), (byte[]) args[4]);
+        assertArrayEquals(MovieIndex.TITLE.member(movie), (byte[]) args[5]);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void expireInAggregate() {
+        // GIVEN
+        Duration timeToLive = Duration.ofDays(7);
+
+        when(redisTemplate.execute(any(RedisCallback.class)))
+                .thenAnswer(invocation -> ((RedisCallback<Boolean>) invocation.getArgument(0)).doInRedis(connection));
+        mockConnection();
+
+        // WHEN
+        long before = System.currentTimeMillis();
+        movieCacheRepository.expireInAggregate(ID, timeToLive);
+        long after = System.currentTimeMillis();
+
+        // THEN
+        // only the movies already in the aggregate are given the time to live of their entry
+        ArgumentCaptor<Double> capturedExpiration = ArgumentCaptor.forClass(Double.class);
+        verify(zSetCommands, times(1)).zAdd(eq(serialize(ALL_MOVIES_EXPIRATION_KEY)), capturedExpiration.capture(),
+                eq(serialize(String.valueOf(ID))), eq(RedisZSetCommands.ZAddArgs.ifExists()));
+
+        double expiration = capturedExpiration.getValue();
+        assertTrue(expiration >= before + timeToLive.toMillis());
+        assertTrue(expiration <= after + timeToLive.toMillis());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void saveAllInAggregateWithTimeToLiveJitter() {
+        // GIVEN
+        Duration jitter = Duration.ofHours(2);
+        properties.setTimeToLiveJitter(jitter);
+        properties.getCacheTimeToLive().put(MOVIE_CACHE_NAME, Duration.ofHours(6));
+        JitteredTimeToLive movieTimeToLive = new JitteredTimeToLive(Duration.ofHours(6), jitter);
+
+        when(redisTemplate.getValueSerializer())
+                .thenReturn((RedisSerializer) valueSerializer);
+
+        // WHEN
+        long before = System.currentTimeMillis();
+        movieCacheRepository.saveAllInAggregate(List.of(initMovie(ID), initMovie(ID + 1)));
+        long after = System.currentTimeMillis();
+
+        // THEN
+        // each movie expires with the entry saveAll writes for it
+        ArgumentCaptor<Object[]> capturedArgs = ArgumentCaptor.forClass(Object[].class);
+        verify(redisTemplate, times(1)).execute(any(RedisScript.class), eq(RedisSerializer.byteArray()), any(RedisSerializer.class),
+                eq(ALL_MOVIES_KEYS), capturedArgs.capture());
+
+        Object[] args = capturedArgs.getValue();
+        long expiration = Long.parseLong(new String((byte[]) args[1], UTF_8));
+        assertTrue(expiration >= before + movieTimeToLive.forKey(ID).toMillis());
+        assertTrue(expiration <= after + movieTimeToLive.forKey(ID).toMillis());
+        long otherExpiration = Long.parseLong(new String((byte[]) args[7], UTF_8));
+        assertTrue(otherExpiration >= before + movieTimeToLive.forKey(ID + 1).toMillis());
+        assertTrue(otherExpiration <= after + movieTimeToLive.forKey(ID + 1).toMillis());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void saveAllInAggregateWithoutTimeToLive() {
+        // GIVEN
+        cacheProperties.getRedis().setTimeToLive(null);
+
+        when(redisTemplate.getValueSerializer())
+                .thenReturn((RedisSerializer) valueSerializer);
+
+        // WHEN
+        movieCacheRepository.saveAllInAggregate(List.of(initMovie(ID), initMovie(ID + 1)));
+
+        // THEN
+        ArgumentCaptor<Object[]> capturedArgs = ArgumentCaptor.forClass(Object[].class);
+        verify(redisTemplate, times(1)).execute(any(RedisScript.class), eq(RedisSerializer.byteArray()), any(RedisSerializer.class),
+                eq(ALL_MOVIES_KEYS), capturedArgs.capture());
+
+        Object[] args = capturedArgs.getValue();
+        assertEquals(12, args.length);
+        assertArrayEquals(serialize(String.valueOf(ID)), (byte[]) args[0]);
+        assertArrayEquals(serialize("+inf"), (byte[]) args[1]);
+        assertArrayEquals(serialize(String.valueOf(ID + 1)), (byte[]) args[6]);
+        assertArrayEquals(serialize("+inf"), (byte[]) args[7]);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void saveAllInAggregateWithoutMovies() {
+        // WHEN
+        movieCacheRepository.saveAllInAggregate(List.of());
+
+        // THEN
+        verify(redisTemplate, never()).execute(any(RedisScript.class), any(RedisSerializer.class), any(RedisSerializer.class), anyList(), any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void removeFromAggregate() {
+        // WHEN
+        movieCacheRepository.removeFromAggregate(ID);
+
+        // THEN
+        ArgumentCaptor<Object[]> capturedArgs = ArgumentCaptor.forClass(Object[].class);
+        verify(redisTemplate, times(1)).execute(any(RedisScript.class), eq(RedisSerializer.byteArray()), any(RedisSerializer.class),
+                eq(ALL_MOVIES_KEYS), capturedArgs.capture());
+
+        Object[] args = capturedArgs.getValue();
+        assertEquals(1, args.length);
+        assertArrayEquals(serialize(String.valueOf(ID)), (byte[]) args[0]);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void removeAllFromAggregate() {
+        // GIVEN
+        when(redisTemplate.execute(any(RedisScript.class), any(RedisSerializer.class), any(RedisSerializer.class), anyList(), any(), any()))
+                .thenReturn(2L);
+
+        // WHEN
+        long removed = movieCacheRepository.removeAllFromAggregate(List.of(ID, ID + 1));
+
+        // THEN
+        ArgumentCaptor<Object[]> capturedArgs = ArgumentCaptor.forClass(Object[].class);
+        verify(redisTemplate, times(1)).execute(any(RedisScript.class), eq(RedisSerializer.byteArray()), any(RedisSerializer.class),
+                eq(ALL_MOVIES_KEYS), capturedArgs.capture());
+
+        Object[] args = capturedArgs.getValue();
+        assertEquals(2, args.length);
+        assertArrayEquals(serialize(String.valueOf(ID)), (byte[]) args[0]);
+        assertArrayEquals(serialize(String.valueOf(ID + 1)), (byte[]) args[1]);
+        assertEquals(2, removed);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void removeAllFromAggregateWithoutIds() {
+        // WHEN
+        long removed = movieCacheRepository.removeAllFromAggregate(List.of());
+
+        // THEN
+        verify(redisTemplate, never()).execute(any(RedisScript.class), any(RedisSerializer.class), any(RedisSerializer.class), anyList(), any());
+        assertEquals(0, removed);
+    }
+
+    @Test
+    void findById() {
+        // GIVEN
+        when(redisTemplate.opsForValue())
+                .thenReturn(opsForValue);
+        when(opsForValue.get("movies::15"))
+                .thenReturn(initMovie(ID));
+
+        // WHEN
+        MovieDto result = movieCacheRepository.findById(ID);
+
+        // THEN
+        verify(opsForValue, times(1)).get("movies::15");
+
+        checkMovie(result);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void acquireLoadLease() {
+        // GIVEN
+        Duration leaseTime = Duration.ofSeconds(5);
+
+        when(redisTemplate.getKeySerializer())
+                .thenReturn((RedisSerializer) RedisSerializer.string());
+        when(redisTemplate.execute(any(RedisCallback.class)))
+                .thenAnswer(invocation -> ((RedisCallback<Boolean>) invocation.getArgument(0)).doInRedis(connection));
+        mockConnection();
+        when(stringCommands.set(serialize("movie_load_leases::15"), serialize("token"), Expiration.from(leaseTime), SetOption.ifAbsent()))
+                .thenReturn(true);
+
+        // WHEN
+        boolean result = movieCacheRepository.acquireLoadLease(ID, "token", leaseTime);
+
+        // THEN
+        verify(stringCommands, times(1)).set(any(byte[].class), any(byte[].class), any(Expiration.class), any(SetOption.class));
+
+        assertTrue(result);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void acquireLoadLeaseAlreadyHeld() {
+        // GIVEN
+        when(redisTemplate.getKeySerializer())
+                .thenReturn((RedisSerializer) RedisSerializer.string());
+        when(redisTemplate.execute(any(RedisCallback.class)))
+                .thenAnswer(invocation -> ((RedisCallback<Boolean>) invocation.getArgument(0)).doInRedis(connection));
+        mockConnection();
+        when(stringCommands.set(any(byte[].class), any(byte[].class), any(Expiration.class), any(SetOption.class)))
+                .thenReturn(false);
+
+        // WHEN
+        boolean result = movieCacheRepository.acquireLoadLease(ID, "token", Duration.ofSeconds(5));
+
+        // THEN
+        assertFalse(result);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void acquireMemoryBudgetLease() {
+        // GIVEN
+        Duration leaseTime = Duration.ofMinutes(5);
+
+        when(redisTemplate.getKeySerializer())
+                .thenReturn((RedisSerializer) RedisSerializer.string());
+        when(redisTemplate.execute(any(RedisCallback.class)))
+                .thenAnswer(invocation -> ((RedisCallback<Boolean>) invocation.getArgument(0)).doInRedis(connection));
+        mockConnection();
+        when(stringCommands.set(serialize("movie_memory_budget_lease"), serialize("token"), Expiration.from(leaseTime), SetOption.ifAbsent()))
+                .thenReturn(true);
+
+        // WHEN
+        boolean result = movieCacheRepository.acquireMemoryBudgetLease("token", leaseTime);
+
+        // THEN
+        assertTrue(result);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void releaseLoadLease() {
+        // WHEN
+        movieCacheRepository.releaseLoadLease(ID, "token");
+
+        // THEN
+        verify(redisTemplate, times(1)).execute(any(RedisScript.class), eq(RedisSerializer.string()), any(RedisSerializer.class),
+                eq(List.of("movie_load_leases::15")), eq("token"));
+    }
+
+    @Test
+    void findAllByIds() {
+        // GIVEN
+        MovieDto movie = initMovie(ID);
+
+        when(redisTemplate.opsForValue())
+                .thenReturn(opsForValue);
+        when(opsForValue.multiGet(List.of("movies::15", "movies::16")))
+                .thenReturn(Arrays.asList(movie, null));
+
+        // WHEN
+        Map<Long, MovieDto> results = movieCacheRepository.findAllByIds(List.of(ID, ID + 1));
+
+        // THEN
+        verify(opsForValue, times(1)).multiGet(anyList());
+        verify(opsForValue, never()).get(any());
+
+        assertNotNull(results);
+        assertEquals(1, results.size());
+        checkMovie(results.get(ID));
+    }
+
+    @Test
+    void findAllByIdsWithoutIds() {
+        // WHEN
+        Map<Long, MovieDto> results = movieCacheRepository.findAllByIds(List.of());
+
+        // THEN
+        verify(redisTemplate, never()).opsForValue();
+
+        assertNotNull(results);
+        assertTrue(results.isEmpty());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void saveAll() {
+        // GIVEN
+        MovieDto movie1 = initMovie(ID);
+        MovieDto movie2 = initMovie(ID + 1);
+
+        when(redisTemplate.getKeySerializer())
+                .thenReturn((RedisSerializer) RedisSerializer.string());
+        when(redisTemplate.getValueSerializer())
+                .thenReturn((RedisSerializer) valueSerializer);
+        mockConnection();
+
+        // WHEN
+        movieCacheRepository.saveAll(List.of(movie1, movie2));
+        executePipelinedCallback();
+
+        // THEN
+        ArgumentCaptor<byte[]> capturedValue = ArgumentCaptor.forClass(byte[].class);
+        verify(stringCommands, times(1)).set(eq(serialize("movies::15")), capturedValue.capture(),
+                eq(Expiration.from(TIME_TO_LIVE)), eq(SetOption.upsert()));
+        verify(stringCommands, times(1)).set(eq(serialize("movies::16")), any(byte[].class),
+                eq(Expiration.from(TIME_TO_LIVE)), eq(SetOption.upsert()));
+        verify(nearCacheInvalidationBroker, times(1)).invalidate(MOVIE_CACHE_NAME, List.of("15", "16"));
+
+        checkMovie((MovieDto) valueSerializer.deserialize(capturedValue.getValue()));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void saveAllWithTimeToLiveJitter() {
+        // GIVEN
+        Duration jitter = Duration.ofHours(2);
+        properties.setTimeToLiveJitter(jitter);
+
+        when(redisTemplate.getKeySerializer())
+                .thenReturn((RedisSerializer) RedisSerializer.string());
+        when(redisTemplate.getValueSerializer())
+                .thenReturn((RedisSerializer) valueSerializer);
+        mockConnection();
+
+        // WHEN
+        movieCacheRepository.saveAll(List.of(initMovie(ID), initMovie(ID + 1)));
+        executePipelinedCallback();
+
+        // THEN
+        ArgumentCaptor<Expiration> capturedExpiration = ArgumentCaptor.forClass(Expiration.class);
+        verify(stringCommands, times(2)).set(any(byte[].class), any(byte[].class), capturedExpiration.capture(), eq(SetOption.upsert()));
+
+        for (Expiration expiration : capturedExpiration.getAllValues()) {
+            assertTrue(expiration.getExpirationTimeInMilliseconds() >= TIME_TO_LIVE.minus(jitter).toMillis());
+            assertTrue(expiration.getExpirationTimeInMilliseconds() <= TIME_TO_LIVE.toMillis());
+        }
+        // the time to live the cache and the aggregate give the movie
+        assertEquals(Expiration.from(new JitteredTimeToLive(TIME_TO_LIVE, jitter).forKey(ID)), capturedExpiration.getAllValues().getFirst());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void saveAllWithCacheTimeToLive() {
+        // GIVEN
+        Duration timeToLive = Duration.ofHours(6);
+        properties.getCacheTimeToLive().put(MOVIE_CACHE_NAME, timeToLive);
+
+        when(redisTemplate.getKeySerializer())
+                .thenReturn((RedisSerializer) RedisSerializer.string());
+        when(redisTemplate.getValueSerializer())
+                .thenReturn((RedisSerializer) valueSerializer);
+        mockConnection();
+
+        // WHEN
+        movieCacheRepository.saveAll(List.of(initMovie(ID)));
+        executePipelinedCallback();
+
+        // THEN
+        verify(stringCommands, times(1)).set(eq(serialize("movies::15")), any(byte[].class),
+                eq(Expiration.from(timeToLive)), eq(SetOption.upsert()));
+    }
+
+    @Test
+    void saveAllWithoutMovies() {
+        // WHEN
+        movieCacheRepository.saveAll(List.of());
+
+        // THEN
+        verify(redisTemplate, never()).executePipelined(any(RedisCallback.class));
+        verify(nearCacheInvalidationBroker, never()).invalidate(anyString(), anyList());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void clearAggregate() {
+        // GIVEN
+        mockConnection();
+
+        // WHEN
+        movieCacheRepository.clearAggregate();
+
+        // THEN
+        ArgumentCaptor<RedisCallback<Long>> capturedCallback = ArgumentCaptor.forClass(RedisCallback.class);
+        verify(redisTemplate, times(1)).execute(capturedCallback.capture());
+        capturedCallback.getValue().doInRedis(connection);
+
+        verify(keyCommands, times(1)).unlink(ALL_MOVIES_KEYS.stream()
+                .map(MovieCacheRepositoryTest::serialize)
+                .toArray(byte[][]::new));
+    }
+
+    @Test
+    void incrementAccessCounts() {
+        // GIVEN
+        mockConnection();
+
+        // WHEN
+        movieCacheRepository.incrementAccessCounts(Map.of(ID, 2L), 1_000);
+        executePipelinedCallback();
+
+        // THEN
+        verify(zSetCommands, times(1)).zIncrBy(serialize(MOVIE_ACCESS_STATS_KEY), 2.0, serialize("15"));
+        verify(zSetCommands, times(1)).zRemRange(serialize(MOVIE_ACCESS_STATS_KEY), 0, -1_001);
+    }
+
+    @Test
+    void incrementAccessCountsWithoutCounts() {
+        // WHEN
+        movieCacheRepository.incrementAccessCounts(Map.of(), 1_000);
+
+        // THEN
+        verify(redisTemplate, never()).executePipelined(any(RedisCallback.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void findMostAccessedIds() {
+        // GIVEN
+        when(redisTemplate.execute(any(RedisCallback.class)))
+                .thenAnswer(invocation -> ((RedisCallback<Set<byte[]>>) invocation.getArgument(0)).doInRedis(connection));
+        mockConnection();
+        when(zSetCommands.zRevRange(serialize(MOVIE_ACCESS_STATS_KEY), 0, 1))
+                .thenReturn(new LinkedHashSet<>(List.of(serialize("16"), serialize("15"))));
+
+        // WHEN
+        List<Long> results = movieCacheRepository.findMostAccessedIds(2);
+
+        // THEN
+        assertEquals(List.of(ID + 1, ID), results);
+    }
+
+    private void mockConnection() {
+        when(connection.hashCommands())
+                .thenReturn(hashCommands);
+        when(connection.zSetCommands())
+                .thenReturn(zSetCommands);
+        when(connection.keyCommands())
+                .thenReturn(keyCommands);
+        when(connection.stringCommands())
+                .thenReturn(stringCommands);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void executePipelinedCallback() {
+        ArgumentCaptor<RedisCallback<Object>> capturedCallback = ArgumentCaptor.forClass(RedisCallback.class);
+        verify(redisTemplate, times(1)).executePipelined(capturedCallback.capture());
+        capturedCallback.getValue().doInRedis(connection);
+    }
+
+    private static byte[] serialize(String value) {
+        return value.getBytes(UTF_8);
+    }
+
+    private void mockCursor(String... keys) {
+        Iterator<String> iterator = List.of(keys).iterator();
+        when(cursor.hasNext())
+                .thenAnswer(invocation -> iterator.hasNext());
+        when(cursor.next())
+                .thenAnswer(invocation -> iterator.next());
+    }
+
+    private MovieDto initMovie(Long id) {
+        MovieDto movie = new MovieDto();
+        movie.setId(id);
+        movie.setTitle(TITLE);
+        movie.setReleaseDate(RELEASE_DATE);
+        return movie;
+    }
+
+    private void checkMovie(MovieDto movie) {
+        assertNotNull(movie);
+        assertEquals(ID, movie.getId());
+        assertEquals(TITLE, movie.getTitle());
+        assertEquals(RELEASE_DATE, movie.getReleaseDate());
+    }
+
+    static class RedisShardsConfig {
+        @Bean
+        RedisShards<RedisTemplate<String, MovieDto>> movieRedisTemplates(RedisTemplate<String, MovieDto> redisTemplate) {
+            return RedisShards.single(redisTemplate);
+        }
+    }
+}
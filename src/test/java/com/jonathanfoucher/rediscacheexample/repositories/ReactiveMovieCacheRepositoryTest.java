@@ -0,0 +1,239 @@
+package com.jonathanfoucher.rediscacheexample.repositories;
+
+import com.jonathanfoucher.rediscacheexample.caches.MovieIndex;
+import com.jonathanfoucher.rediscacheexample.caches.RedisShards;
+import com.jonathanfoucher.rediscacheexample.configs.MovieCacheProperties;
+import com.jonathanfoucher.rediscacheexample.data.dto.MovieDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.cache.CacheProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.redis.connection.ReactiveRedisConnection;
+import org.springframework.data.redis.connection.ReactiveStringCommands;
+import org.springframework.data.redis.connection.RedisStringCommands.SetOption;
+import org.springframework.data.redis.core.ReactiveRedisCallback;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.RedisElementReader;
+import org.springframework.data.redis.serializer.RedisElementWriter;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Base64;
+import java.util.List;
+import java.util.Optional;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@SpringJUnitConfig({ReactiveMovieCacheRepository.class, MovieCacheProperties.class, CacheProperties.class,
+        ReactiveMovieCacheRepositoryTest.RedisShardsConfig.class})
+class ReactiveMovieCacheRepositoryTest {
+    @Autowired
+    private ReactiveMovieCacheRepository movieCacheRepository;
+    @Autowired
+    private MovieCacheProperties properties;
+    @MockitoBean
+    private ReactiveRedisTemplate<String, MovieDto> reactiveRedisTemplate;
+    @MockitoBean
+    private ReactiveRedisConnection connection;
+    @MockitoBean
+    private ReactiveStringCommands stringCommands;
+
+    private static final Long ID = 15L;
+    private static final String TITLE = "Some movie";
+    private static final LocalDate RELEASE_DATE = LocalDate.of(2022, 7, 19);
+
+    private static final String MOVIE_KEY = "movies::15";
+    private static final List<String> ALL_MOVIES_KEYS = List.of("{all_movies}", "{all_movies}:expiration",
+            "{all_movies}:index_members", "{all_movies}:by_id", "{all_movies}:by_release_date", "{all_movies}:by_title");
+
+    private static final JdkSerializationRedisSerializer valueSerializer = new JdkSerializationRedisSerializer();
+    private static final RedisSerializationContext<String, Object> serializationContext = RedisSerializationContext
+            .<String, Object>newSerializationContext(valueSerializer)
+            .key(RedisSerializer.string())
+            .build();
+
+    @BeforeEach
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    void init() {
+        properties.getNegativeCache().setTimeToLive(Duration.ofMinutes(1));
+
+        when(reactiveRedisTemplate.getSerializationContext())
+                .thenReturn((RedisSerializationContext) serializationContext);
+        when(reactiveRedisTemplate.execute(any(ReactiveRedisCallback.class)))
+                .thenAnswer(invocation -> Flux.from(invocation.getArgument(0, ReactiveRedisCallback.class).doInRedis(connection)));
+        when(connection.stringCommands())
+                .thenReturn(stringCommands);
+    }
+
+    @Test
+    void findById() {
+        // GIVEN
+        when(stringCommands.get(ByteBuffer.wrap(serialize(MOVIE_KEY))))
+                .thenReturn(Mono.just(ByteBuffer.wrap(valueSerializer.serialize(initMovie()))));
+
+        // WHEN / THEN
+        StepVerifier.create(movieCacheRepository.findById(ID))
+                .assertNext(result -> checkMovie(result.orElseThrow()))
+                .verifyComplete();
+    }
+
+    @Test
+    void findByIdCachedAsMissing() {
+        // GIVEN
+        when(stringCommands.get(ByteBuffer.wrap(serialize(MOVIE_KEY))))
+                .thenReturn(Mono.just(ByteBuffer.allocate(0)));
+
+        // WHEN / THEN
+        // the negative entry is told apart from a missing one
+        StepVerifier.create(movieCacheRepository.findById(ID))
+                .expectNext(Optional.empty())
+                .verifyComplete();
+    }
+
+    @Test
+    void findByIdNotCached() {
+        // GIVEN
+        when(stringCommands.get(ByteBuffer.wrap(serialize(MOVIE_KEY))))
+                .thenReturn(Mono.empty());
+
+        // WHEN / THEN
+        StepVerifier.create(movieCacheRepository.findById(ID))
+                .verifyComplete();
+    }
+
+    @Test
+    void saveMissing() {
+        // GIVEN
+        when(stringCommands.set(any(ByteBuffer.class), any(ByteBuffer.class), any(Expiration.class), any(SetOption.class)))
+                .thenReturn(Mono.just(true));
+
+        // WHEN / THEN
+        StepVerifier.create(movieCacheRepository.saveMissing(ID))
+                .verifyComplete();
+
+        verify(stringCommands, times(1)).set(ByteBuffer.wrap(serialize(MOVIE_KEY)), ByteBuffer.allocate(0),
+                Expiration.from(Duration.ofMinutes(1)), SetOption.upsert());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void findAllInAggregate() {
+        // GIVEN
+        MovieDto movie = initMovie();
+        MovieDto otherMovie = initMovie();
+        otherMovie.setId(ID + 1);
+        byte[] last = MovieIndex.ID.member(movie);
+
+        when(reactiveRedisTemplate.execute(any(RedisScript.class), anyList(), anyList(), any(RedisElementWriter.class),
+                any(RedisElementReader.class)))
+                .thenReturn(Flux.just(List.of(last, valueSerializer.serialize(movie))),
+                        Flux.just(List.of(new byte[0], valueSerializer.serialize(otherMovie))));
+
+        // WHEN / THEN
+        StepVerifier.create(movieCacheRepository.findAllInAggregate())
+                .assertNext(this::checkMovie)
+                .assertNext(result -> assertEquals(ID + 1, result.getId()))
+                .verifyComplete();
+
+        // the second page starts after the last member of the first one
+        ArgumentCaptor<List<byte[]>> capturedArgs = ArgumentCaptor.forClass(List.class);
+        verify(reactiveRedisTemplate, times(2)).execute(any(RedisScript.class), eq(ALL_MOVIES_KEYS), capturedArgs.capture(),
+                any(RedisElementWriter.class), any(RedisElementReader.class));
+
+        List<List<byte[]>> args = capturedArgs.getAllValues();
+        assertArrayEquals(serialize(MovieIndex.ID.key()), args.get(0).get(1));
+        assertArrayEquals(MovieIndex.after(last), args.get(1).get(2));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void findPageInAggregate() {
+        // GIVEN
+        MovieDto movie = initMovie();
+        byte[] last = MovieIndex.TITLE.member(movie);
+
+        // the elements of the script reply are read as raw bytes, the movies being decoded afterward
+        when(reactiveRedisTemplate.execute(any(RedisScript.class), anyList(), anyList(), any(RedisElementWriter.class),
+                any(RedisElementReader.class)))
+                .thenReturn(Flux.just(List.of(last, valueSerializer.serialize(movie))));
+
+        // WHEN / THEN
+        StepVerifier.create(movieCacheRepository.findPageInAggregate(MovieIndex.TITLE, "some", null, false, 1))
+                .assertNext(result -> {
+                    assertEquals(1, result.movies().size());
+                    checkMovie(result.movies().getFirst());
+                    assertArrayEquals(last, Base64.getUrlDecoder().decode(result.nextCursor()));
+                })
+                .verifyComplete();
+
+        ArgumentCaptor<List<byte[]>> capturedArgs = ArgumentCaptor.forClass(List.class);
+        verify(reactiveRedisTemplate, times(1)).execute(any(RedisScript.class), eq(ALL_MOVIES_KEYS), capturedArgs.capture(),
+                any(RedisElementWriter.class), any(RedisElementReader.class));
+
+        List<byte[]> args = capturedArgs.getValue();
+        assertEquals(6, args.size());
+        assertArrayEquals(serialize(MovieIndex.TITLE.key()), args.get(1));
+        assertArrayEquals(serialize("[some"), args.get(2));
+        assertArrayEquals(serialize("(somf"), args.get(3));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void findPageInAggregateEmpty() {
+        // GIVEN
+        when(reactiveRedisTemplate.execute(any(RedisScript.class), anyList(), anyList(), any(RedisElementWriter.class),
+                any(RedisElementReader.class)))
+                .thenReturn(Flux.just(List.of(new byte[0])));
+
+        // WHEN / THEN
+        StepVerifier.create(movieCacheRepository.findPageInAggregate(MovieIndex.ID, null, null, false, 20))
+                .assertNext(result -> {
+                    assertTrue(result.movies().isEmpty());
+                    assertNull(result.nextCursor());
+                })
+                .verifyComplete();
+    }
+
+    private static byte[] serialize(String value) {
+        return value.getBytes(UTF_8);
+    }
+
+    private MovieDto initMovie() {
+        MovieDto movie = new MovieDto();
+        movie.setId(ID);
+        movie.setTitle(TITLE);
+        movie.setReleaseDate(RELEASE_DATE);
+        return movie;
+    }
+
+    private void checkMovie(MovieDto movie) {
+        assertNotNull(movie);
+        assertEquals(ID, movie.getId());
+        assertEquals(TITLE, movie.getTitle());
+        assertEquals(RELEASE_DATE, movie.getReleaseDate());
+    }
+
+    static class RedisShardsConfig {
+        @Bean
+        RedisShards<ReactiveRedisTemplate<String, MovieDto>> movieReactiveRedisTemplates(
+                ReactiveRedisTemplate<String, MovieDto> reactiveRedisTemplate) {
+            return RedisShards.single(reactiveRedisTemplate);
+        }
+    }
+}
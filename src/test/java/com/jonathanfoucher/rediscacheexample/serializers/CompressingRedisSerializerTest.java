@@ -0,0 +1,151 @@
+package com.jonathanfoucher.rediscacheexample.serializers;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompressingRedisSerializerTest {
+    private SimpleMeterRegistry meterRegistry;
+    private CompressionCodec zstd;
+    private CompressionCodec deflate;
+
+    private static final int THRESHOLD = 64;
+    private static final String SMALL_VALUE = "some value";
+    private static final String LARGE_VALUE = "the last movie of the war ".repeat(20);
+
+    @BeforeEach
+    void init() {
+        meterRegistry = new SimpleMeterRegistry();
+        zstd = new ZstdCompressionCodec(3);
+        deflate = new DeflateCompressionCodec(6);
+    }
+
+    @Test
+    void serializeLargeValue() {
+        // GIVEN
+        CompressingRedisSerializer<String> serializer = serializer(zstd);
+
+        // WHEN
+        byte[] bytes = serializer.serialize(LARGE_VALUE);
+        String result = serializer.deserialize(bytes);
+
+        // THEN
+        assertNotNull(bytes);
+        assertEquals(ZstdCompressionCodec.HEADER, bytes[0]);
+        assertTrue(bytes.length < LARGE_VALUE.length());
+        assertEquals(LARGE_VALUE, result);
+
+        assertEquals(1, meterRegistry.get("movie.cache.compression.ratio").tag("codec", "zstd").summary().count());
+        assertEquals(1, meterRegistry.get("movie.cache.compression.time").tag("codec", "zstd")
+                .tag("operation", "compress").timer().count());
+        assertEquals(1, meterRegistry.get("movie.cache.compression.time").tag("codec", "zstd")
+                .tag("operation", "decompress").timer().count());
+        assertEquals(0, meterRegistry.get("movie.cache.compression.skipped").tag("codec", "zstd").counter().count());
+    }
+
+    @Test
+    void serializeSmallValue() {
+        // GIVEN
+        CompressingRedisSerializer<String> serializer = serializer(zstd);
+
+        // WHEN
+        byte[] bytes = serializer.serialize(SMALL_VALUE);
+        String result = serializer.deserialize(bytes);
+
+        // THEN
+        assertArrayEquals(RedisSerializer.string().serialize(SMALL_VALUE), bytes);
+        assertEquals(SMALL_VALUE, result);
+        assertEquals(0, meterRegistry.get("movie.cache.compression.ratio").tag("codec", "zstd").summary().count());
+    }
+
+    @Test
+    void serializeIncompressibleValue() {
+        // GIVEN
+        CompressingRedisSerializer<byte[]> serializer = new CompressingRedisSerializer<>(RedisSerializer.byteArray(),
+                deflate, THRESHOLD, List.of(), meterRegistry);
+        byte[] value = new byte[256];
+        new Random(15).nextBytes(value);
+
+        // WHEN
+        byte[] bytes = serializer.serialize(value);
+
+        // THEN
+        assertArrayEquals(value, bytes);
+        assertEquals(1, meterRegistry.get("movie.cache.compression.skipped").tag("codec", "deflate").counter().count());
+    }
+
+    @Test
+    void deserializeValueOfAnotherCodec() {
+        // GIVEN
+        byte[] bytes = serializer(deflate).serialize(LARGE_VALUE);
+
+        // WHEN
+        String withZstd = serializer(zstd).deserialize(bytes);
+        String withoutCompression = serializer(null).deserialize(bytes);
+
+        // THEN
+        assertNotNull(bytes);
+        assertEquals(DeflateCompressionCodec.HEADER, bytes[0]);
+        assertEquals(LARGE_VALUE, withZstd);
+        assertEquals(LARGE_VALUE, withoutCompression);
+    }
+
+    @Test
+    void serializeWithoutCodec() {
+        // GIVEN
+        CompressingRedisSerializer<String> serializer = serializer(null);
+
+        // WHEN
+        byte[] bytes = serializer.serialize(LARGE_VALUE);
+
+        // THEN
+        assertArrayEquals(RedisSerializer.string().serialize(LARGE_VALUE), bytes);
+    }
+
+    @Test
+    void deserializeMissingValue() {
+        // GIVEN
+        CompressingRedisSerializer<byte[]> serializer = new CompressingRedisSerializer<>(RedisSerializer.byteArray(),
+                zstd, THRESHOLD, List.of(deflate), meterRegistry);
+
+        // WHEN
+        byte[] missing = serializer.deserialize(null);
+        byte[] empty = serializer.deserialize(new byte[0]);
+
+        // THEN
+        assertNull(missing);
+        assertArrayEquals(new byte[0], empty);
+    }
+
+    @Test
+    void deserializeTruncatedValue() {
+        // GIVEN
+        CompressingRedisSerializer<String> serializer = serializer(zstd);
+        byte[] zstdBytes = serializer.serialize(LARGE_VALUE);
+        byte[] deflateBytes = serializer(deflate).serialize(LARGE_VALUE);
+
+        // WHEN - THEN
+        assertNotNull(zstdBytes);
+        assertNotNull(deflateBytes);
+        assertThrows(SerializationException.class, () -> serializer.deserialize(Arrays.copyOf(zstdBytes, 3)));
+        assertThrows(SerializationException.class, () -> serializer.deserialize(Arrays.copyOf(zstdBytes, zstdBytes.length - 4)));
+        assertThrows(SerializationException.class, () -> serializer.deserialize(Arrays.copyOf(deflateBytes, deflateBytes.length - 4)));
+
+        // the pooled contexts are still usable after a failure
+        assertEquals(LARGE_VALUE, serializer.deserialize(zstdBytes));
+        assertEquals(LARGE_VALUE, serializer.deserialize(deflateBytes));
+    }
+
+    private CompressingRedisSerializer<String> serializer(CompressionCodec codec) {
+        return new CompressingRedisSerializer<>(RedisSerializer.string(), codec, THRESHOLD, List.of(zstd, deflate),
+                meterRegistry);
+    }
+}
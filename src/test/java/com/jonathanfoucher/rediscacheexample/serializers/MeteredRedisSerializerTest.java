@@ -0,0 +1,51 @@
+package com.jonathanfoucher.rediscacheexample.serializers;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MeteredRedisSerializerTest {
+    private SimpleMeterRegistry meterRegistry;
+    private MeteredRedisSerializer<String> serializer;
+
+    private static final String VALUE = "some value";
+
+    @BeforeEach
+    void init() {
+        meterRegistry = new SimpleMeterRegistry();
+        serializer = new MeteredRedisSerializer<>(RedisSerializer.string(), meterRegistry);
+    }
+
+    @Test
+    void serializeAndDeserialize() {
+        // WHEN
+        byte[] bytes = serializer.serialize(VALUE);
+        String result = serializer.deserialize(bytes);
+
+        // THEN
+        assertNotNull(bytes);
+        assertEquals(VALUE, result);
+
+        DistributionSummary written = meterRegistry.get("movie.cache.payload.size").tag("operation", "write").summary();
+        assertEquals(1, written.count());
+        assertEquals(VALUE.length(), written.totalAmount());
+
+        DistributionSummary read = meterRegistry.get("movie.cache.payload.size").tag("operation", "read").summary();
+        assertEquals(1, read.count());
+        assertEquals(VALUE.length(), read.totalAmount());
+    }
+
+    @Test
+    void deserializeMissingValue() {
+        // WHEN
+        String result = serializer.deserialize(null);
+
+        // THEN
+        assertNull(result);
+        assertEquals(0, meterRegistry.get("movie.cache.payload.size").tag("operation", "read").summary().count());
+    }
+}
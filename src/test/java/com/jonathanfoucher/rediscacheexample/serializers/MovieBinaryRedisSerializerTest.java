@@ -0,0 +1,144 @@
+package com.jonathanfoucher.rediscacheexample.serializers;
+
+import com.jonathanfoucher.rediscacheexample.data.dto.MovieDto;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.support.NullValue;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MovieBinaryRedisSerializerTest {
+    private final MovieBinaryRedisSerializer serializer = new MovieBinaryRedisSerializer();
+    private final JdkSerializationRedisSerializer jdkSerializer = new JdkSerializationRedisSerializer();
+
+    private static final Long ID = 15L;
+    private static final String TITLE = "Some movie";
+    private static final LocalDate RELEASE_DATE = LocalDate.of(2022, 7, 19);
+
+    @Test
+    void serializeAndDeserialize() {
+        // GIVEN
+        MovieDto movie = initMovie();
+
+        // WHEN
+        byte[] bytes = serializer.serialize(movie);
+        Object result = serializer.deserialize(bytes);
+
+        // THEN
+        assertNotNull(bytes);
+        assertEquals(MovieBinaryRedisSerializer.MOVIE_V1, bytes[0]);
+        assertTrue(bytes.length < jdkSerializer.serialize(movie).length / 5);
+
+        MovieDto resultMovie = assertInstanceOf(MovieDto.class, result);
+        assertEquals(ID, resultMovie.getId());
+        assertEquals(TITLE, resultMovie.getTitle());
+        assertEquals(RELEASE_DATE, resultMovie.getReleaseDate());
+    }
+
+    @Test
+    void serializeAndDeserializeWithExtremeValues() {
+        // GIVEN
+        MovieDto movie = new MovieDto();
+        movie.setId(Long.MIN_VALUE);
+        movie.setTitle("Le fabuleux destin d'Amélie Poulain 🎬");
+        movie.setReleaseDate(LocalDate.MAX);
+
+        MovieDto otherMovie = new MovieDto();
+        otherMovie.setId(Long.MAX_VALUE);
+        otherMovie.setTitle("");
+        otherMovie.setReleaseDate(LocalDate.MIN);
+
+        for (MovieDto expected : List.of(movie, otherMovie)) {
+            // WHEN
+            MovieDto result = (MovieDto) serializer.deserialize(serializer.serialize(expected));
+
+            // THEN
+            assertNotNull(result);
+            assertEquals(expected.getId(), result.getId());
+            assertEquals(expected.getTitle(), result.getTitle());
+            assertEquals(expected.getReleaseDate(), result.getReleaseDate());
+        }
+    }
+
+    @Test
+    void serializeAndDeserializeWithNullFields() {
+        // GIVEN
+        MovieDto movie = new MovieDto();
+
+        // WHEN
+        byte[] bytes = serializer.serialize(movie);
+        MovieDto result = (MovieDto) serializer.deserialize(bytes);
+
+        // THEN
+        assertEquals(2, bytes.length);
+        assertNotNull(result);
+        assertNull(result.getId());
+        assertNull(result.getTitle());
+        assertNull(result.getReleaseDate());
+    }
+
+    @Test
+    void deserializeJdkSerializedMovie() {
+        // GIVEN
+        byte[] bytes = jdkSerializer.serialize(initMovie());
+
+        // WHEN
+        Object result = serializer.deserialize(bytes);
+
+        // THEN
+        MovieDto resultMovie = assertInstanceOf(MovieDto.class, result);
+        assertEquals(ID, resultMovie.getId());
+        assertEquals(TITLE, resultMovie.getTitle());
+        assertEquals(RELEASE_DATE, resultMovie.getReleaseDate());
+    }
+
+    @Test
+    void serializeOtherValue() {
+        // WHEN
+        byte[] bytes = serializer.serialize(NullValue.INSTANCE);
+        Object result = serializer.deserialize(bytes);
+
+        // THEN
+        assertNotNull(bytes);
+        assertEquals(MovieBinaryRedisSerializer.JDK_SERIALIZATION, bytes[0]);
+        assertSame(NullValue.INSTANCE, result);
+    }
+
+    @Test
+    void deserializeEmptyValue() {
+        // WHEN / THEN
+        assertNull(serializer.deserialize(null));
+        assertNull(serializer.deserialize(new byte[0]));
+    }
+
+    @Test
+    void deserializeUnknownFormat() {
+        // WHEN / THEN
+        SerializationException exception = assertThrows(SerializationException.class,
+                () -> serializer.deserialize(new byte[]{0x7F, 0x00}));
+        assertEquals("Unknown value format: 0x7f", exception.getMessage());
+    }
+
+    @Test
+    void deserializeTruncatedMovie() {
+        // GIVEN
+        byte[] bytes = serializer.serialize(initMovie());
+        byte[] truncatedBytes = Arrays.copyOf(bytes, bytes.length - 3);
+
+        // WHEN / THEN
+        assertThrows(SerializationException.class, () -> serializer.deserialize(truncatedBytes));
+    }
+
+    private MovieDto initMovie() {
+        MovieDto movie = new MovieDto();
+        movie.setId(ID);
+        movie.setTitle(TITLE);
+        movie.setReleaseDate(RELEASE_DATE);
+        return movie;
+    }
+}
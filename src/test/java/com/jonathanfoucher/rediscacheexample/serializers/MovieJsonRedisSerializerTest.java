@@ -0,0 +1,95 @@
+package com.jonathanfoucher.rediscacheexample.serializers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.jonathanfoucher.rediscacheexample.data.dto.MovieDto;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.support.NullValue;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MovieJsonRedisSerializerTest {
+    private static final ObjectMapper objectMapper = JsonMapper.builder()
+            .addModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+
+    private final MovieJsonRedisSerializer serializer = new MovieJsonRedisSerializer(objectMapper);
+
+    private static final Long ID = 15L;
+    private static final String TITLE = "Some movie";
+    private static final LocalDate RELEASE_DATE = LocalDate.of(2022, 7, 19);
+
+    @Test
+    void serializeAndDeserialize() throws Exception {
+        // GIVEN
+        MovieDto movie = initMovie();
+
+        // WHEN
+        byte[] bytes = serializer.serialize(movie);
+        Object result = serializer.deserialize(bytes);
+
+        // THEN
+        assertArrayEquals(objectMapper.writeValueAsBytes(movie), bytes);
+        assertEquals("{\"id\":15,\"title\":\"Some movie\",\"release_date\":\"2022-07-19\"}", new String(bytes, StandardCharsets.UTF_8));
+        assertTrue(MovieJsonRedisSerializer.isRendered(bytes));
+
+        MovieDto resultMovie = assertInstanceOf(MovieDto.class, result);
+        assertEquals(ID, resultMovie.getId());
+        assertEquals(TITLE, resultMovie.getTitle());
+        assertEquals(RELEASE_DATE, resultMovie.getReleaseDate());
+    }
+
+    @Test
+    void deserializeOtherFormats() {
+        // GIVEN
+        MovieDto movie = initMovie();
+        byte[] binary = new MovieBinaryRedisSerializer().serialize(movie);
+        byte[] jdk = new JdkSerializationRedisSerializer().serialize(movie);
+
+        // WHEN / THEN
+        for (byte[] bytes : new byte[][]{binary, jdk}) {
+            assertFalse(MovieJsonRedisSerializer.isRendered(bytes));
+            MovieDto result = assertInstanceOf(MovieDto.class, serializer.deserialize(bytes));
+            assertEquals(ID, result.getId());
+            assertEquals(TITLE, result.getTitle());
+            assertEquals(RELEASE_DATE, result.getReleaseDate());
+        }
+        assertNull(serializer.deserialize(new byte[0]));
+        assertNull(serializer.deserialize(null));
+    }
+
+    @Test
+    void serializeOtherValues() {
+        // WHEN
+        byte[] bytes = serializer.serialize(NullValue.INSTANCE);
+
+        // THEN
+        assertFalse(MovieJsonRedisSerializer.isRendered(bytes));
+        assertSame(NullValue.INSTANCE, serializer.deserialize(bytes));
+    }
+
+    @Test
+    void deserializeMalformedJson() {
+        // GIVEN
+        byte[] bytes = "{\"id\":15,\"title\":".getBytes(StandardCharsets.UTF_8);
+
+        // WHEN / THEN
+        assertThrows(SerializationException.class, () -> serializer.deserialize(bytes));
+    }
+
+    private MovieDto initMovie() {
+        MovieDto movie = new MovieDto();
+        movie.setId(ID);
+        movie.setTitle(TITLE);
+        movie.setReleaseDate(RELEASE_DATE);
+        return movie;
+    }
+}
@@ -0,0 +1,84 @@
+package com.jonathanfoucher.rediscacheexample.services;
+
+import com.jonathanfoucher.rediscacheexample.configs.MovieCacheProperties;
+import com.jonathanfoucher.rediscacheexample.data.dto.MovieDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.TransientDataAccessResourceException;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FakeServiceTest {
+    private MovieCacheProperties properties;
+    private SimpleMeterRegistry meterRegistry;
+
+    private static final Long ID = 15L;
+
+    @BeforeEach
+    void init() {
+        properties = new MovieCacheProperties();
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void findById() {
+        // GIVEN
+        FakeService fakeService = new FakeService(properties, meterRegistry);
+
+        // WHEN
+        MovieDto result = fakeService.findById(ID);
+
+        // THEN
+        assertNotNull(result);
+        assertEquals(ID, result.getId());
+        assertNull(fakeService.findById(FakeService.MAX_ID + 1));
+        assertEquals(2, meterRegistry.get("movie.backend.calls").tag("outcome", "success").timer().count());
+    }
+
+    @Test
+    void findAllByIdsWithFailures() {
+        // GIVEN
+        properties.getFakeBackend().setErrorRate(1);
+        FakeService fakeService = new FakeService(properties, meterRegistry);
+        List<Long> ids = List.of(ID, ID + 1);
+
+        // WHEN / THEN
+        assertThrows(TransientDataAccessResourceException.class, () -> fakeService.findAllByIds(ids));
+        assertEquals(1, meterRegistry.get("movie.backend.calls").tag("outcome", "failure").timer().count());
+    }
+
+    @Test
+    void sampleLatency() {
+        // GIVEN
+        properties.getFakeBackend().setLatencyMedian(Duration.ofMillis(10));
+        properties.getFakeBackend().setLatencyP99(Duration.ofMillis(100));
+        FakeService fakeService = new FakeService(properties, meterRegistry);
+
+        // WHEN
+        long[] latencies = IntStream.range(0, 100_000)
+                .mapToLong(i -> fakeService.sampleLatency().toNanos())
+                .sorted()
+                .toArray();
+
+        // THEN
+        assertEquals(10_000_000, latencies[50_000], 500_000);
+        assertEquals(100_000_000, latencies[99_000], 10_000_000);
+        assertTrue(Arrays.stream(latencies).allMatch(latency -> latency > 0));
+    }
+
+    @Test
+    void sampleLatencyWithoutSpread() {
+        // GIVEN
+        properties.getFakeBackend().setLatencyMedian(Duration.ofMillis(10));
+        FakeService fakeService = new FakeService(properties, meterRegistry);
+
+        // WHEN / THEN
+        assertEquals(Duration.ofMillis(10), fakeService.sampleLatency());
+    }
+}
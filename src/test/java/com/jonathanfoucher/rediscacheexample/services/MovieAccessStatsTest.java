@@ -0,0 +1,86 @@
+package com.jonathanfoucher.rediscacheexample.services;
+
+import com.jonathanfoucher.rediscacheexample.configs.MovieCacheProperties;
+import com.jonathanfoucher.rediscacheexample.repositories.MovieCacheRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.*;
+
+@SpringJUnitConfig({MovieAccessStats.class, MovieCacheProperties.class})
+class MovieAccessStatsTest {
+    @Autowired
+    private MovieAccessStats movieAccessStats;
+    @Autowired
+    private MovieCacheProperties properties;
+    @MockitoBean
+    private MovieCacheRepository movieCacheRepository;
+
+    private static final Long ID = 15L;
+    private static final int MAXIMUM_SIZE = 1_000;
+
+    @BeforeEach
+    void init() {
+        properties.getAccessStats().setEnabled(true);
+        properties.getAccessStats().setMaximumSize(MAXIMUM_SIZE);
+    }
+
+    @Test
+    void flush() {
+        // GIVEN
+        movieAccessStats.record(ID);
+        movieAccessStats.record(List.of(ID, ID + 1));
+
+        // WHEN
+        movieAccessStats.flush();
+        movieAccessStats.flush();
+
+        // THEN
+        // the second flush has nothing left to send
+        verify(movieCacheRepository, times(1)).incrementAccessCounts(anyMap(), anyInt());
+        verify(movieCacheRepository, times(1)).incrementAccessCounts(Map.of(ID, 2L, ID + 1, 1L), MAXIMUM_SIZE);
+    }
+
+    @Test
+    void flushWhenDisabled() {
+        // GIVEN
+        properties.getAccessStats().setEnabled(false);
+        movieAccessStats.record(ID);
+
+        // WHEN
+        movieAccessStats.flush();
+
+        // THEN
+        verify(movieCacheRepository, never()).incrementAccessCounts(anyMap(), anyInt());
+    }
+
+    @Test
+    void flushWithFailure() {
+        // GIVEN
+        movieAccessStats.record(ID);
+        doThrow(new RedisConnectionFailureException("Redis unavailable"))
+                .when(movieCacheRepository).incrementAccessCounts(anyMap(), anyInt());
+
+        // WHEN / THEN
+        assertDoesNotThrow(() -> movieAccessStats.flush());
+    }
+
+    @Test
+    void findMostAccessedIds() {
+        // GIVEN
+        when(movieCacheRepository.findMostAccessedIds(2))
+                .thenReturn(List.of(ID + 1, ID));
+
+        // WHEN / THEN
+        assertEquals(List.of(ID + 1, ID), movieAccessStats.findMostAccessedIds(2));
+    }
+}
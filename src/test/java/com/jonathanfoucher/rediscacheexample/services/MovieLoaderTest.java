@@ -0,0 +1,403 @@
+package com.jonathanfoucher.rediscacheexample.services;
+
+import com.jonathanfoucher.rediscacheexample.configs.MovieCacheProperties;
+import com.jonathanfoucher.rediscacheexample.data.dto.MovieDto;
+import com.jonathanfoucher.rediscacheexample.repositories.MovieCacheRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+// the counters are registered once per context
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+@SpringJUnitConfig({MovieLoader.class, MovieCacheProperties.class, SimpleMeterRegistry.class})
+class MovieLoaderTest {
+    @Autowired
+    private MovieLoader movieLoader;
+    @Autowired
+    private MovieCacheProperties properties;
+    @Autowired
+    private MeterRegistry meterRegistry;
+    @MockitoBean
+    private MovieCacheRepository movieCacheRepository;
+
+    private static final Long ID = 15L;
+    private static final String TITLE = "Some movie";
+    private static final LocalDate RELEASE_DATE = LocalDate.of(2022, 7, 19);
+
+    @BeforeEach
+    void initEach() {
+        properties.getLoadLease().setEnabled(false);
+        properties.getLoadLease().setTimeToLive(Duration.ofSeconds(5));
+        properties.getLoadLease().setPollInterval(Duration.ofMillis(10));
+    }
+
+    @Test
+    void load() {
+        // GIVEN
+        MovieDto movie = initMovie();
+
+        // WHEN
+        MovieDto result = movieLoader.load(ID, id -> movie);
+
+        // THEN
+        verify(movieCacheRepository, never()).acquireLoadLease(anyLong(), anyString(), any());
+
+        assertSame(movie, result);
+        assertEquals(1, counter("movie.cache.loads"));
+    }
+
+    @Test
+    void loadWithConcurrentMisses() throws Exception {
+        // GIVEN
+        MovieDto movie = initMovie();
+        AtomicInteger loaderCalls = new AtomicInteger();
+        CountDownLatch loadStarted = new CountDownLatch(1);
+        CountDownLatch loadReleased = new CountDownLatch(1);
+        Function<Long, MovieDto> loader = id -> {
+            loaderCalls.incrementAndGet();
+            loadStarted.countDown();
+            await(loadReleased);
+            return movie;
+        };
+
+        // WHEN
+        CompletableFuture<MovieDto> firstResult = CompletableFuture.supplyAsync(() -> movieLoader.load(ID, loader));
+        assertTrue(loadStarted.await(5, TimeUnit.SECONDS));
+        CompletableFuture<MovieDto> secondResult = CompletableFuture.supplyAsync(() -> movieLoader.load(ID, loader));
+        waitForCoalescedLoads("local");
+        loadReleased.countDown();
+
+        // THEN
+        assertSame(movie, firstResult.get(5, TimeUnit.SECONDS));
+        assertSame(movie, secondResult.get(5, TimeUnit.SECONDS));
+        assertEquals(1, loaderCalls.get());
+        assertEquals(1, counter("movie.cache.loads"));
+        assertEquals(1, coalescedLoads("local"));
+    }
+
+    @Test
+    void loadWithConcurrentFailure() throws Exception {
+        // GIVEN
+        CountDownLatch loadStarted = new CountDownLatch(1);
+        CountDownLatch loadReleased = new CountDownLatch(1);
+        Function<Long, MovieDto> loader = id -> {
+            loadStarted.countDown();
+            await(loadReleased);
+            throw new IllegalStateException("Database unavailable");
+        };
+
+        // WHEN
+        CompletableFuture<MovieDto> firstResult = CompletableFuture.supplyAsync(() -> movieLoader.load(ID, loader));
+        assertTrue(loadStarted.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Throwable> secondResult = CompletableFuture.supplyAsync(() ->
+                assertThrows(IllegalStateException.class, () -> movieLoader.load(ID, loader)));
+        waitForCoalescedLoads("local");
+        loadReleased.countDown();
+
+        // THEN
+        assertEquals("Database unavailable", secondResult.get(5, TimeUnit.SECONDS).getMessage());
+        assertTrue(firstResult.handle((result, e) -> e).get(5, TimeUnit.SECONDS).getCause() instanceof IllegalStateException);
+
+        // the failed load is not kept around
+        MovieDto movie = initMovie();
+        assertSame(movie, movieLoader.load(ID, id -> movie));
+    }
+
+    @Test
+    void loadWithLease() {
+        // GIVEN
+        properties.getLoadLease().setEnabled(true);
+        MovieDto movie = initMovie();
+
+        when(movieCacheRepository.acquireLoadLease(eq(ID), anyString(), eq(Duration.ofSeconds(5))))
+                .thenReturn(true);
+
+        // WHEN
+        MovieDto result = movieLoader.load(ID, id -> movie);
+
+        // THEN
+        ArgumentCaptor<String> capturedToken = ArgumentCaptor.forClass(String.class);
+        verify(movieCacheRepository, times(1)).acquireLoadLease(eq(ID), capturedToken.capture(), any());
+        verify(movieCacheRepository, times(1)).findById(ID);
+        verify(movieCacheRepository, times(1)).releaseLoadLease(ID, capturedToken.getValue());
+        // cached before the lease is released
+        InOrder inOrder = inOrder(movieCacheRepository);
+        inOrder.verify(movieCacheRepository).saveAll(List.of(movie));
+        inOrder.verify(movieCacheRepository).releaseLoadLease(ID, capturedToken.getValue());
+
+        assertSame(movie, result);
+        assertEquals(1, counter("movie.cache.loads"));
+    }
+
+    @Test
+    void loadWithLeaseReleasedByAnotherNode() {
+        // GIVEN
+        properties.getLoadLease().setEnabled(true);
+        MovieDto movie = initMovie();
+        Map<Long, MovieDto> cache = new ConcurrentHashMap<>();
+        AtomicInteger loaderCalls = new AtomicInteger();
+        Function<Long, MovieDto> loader = id -> {
+            loaderCalls.incrementAndGet();
+            return movie;
+        };
+
+        // a single lease shared by the nodes, backed by an in memory cache
+        AtomicBoolean leaseHeld = new AtomicBoolean();
+        when(movieCacheRepository.acquireLoadLease(eq(ID), anyString(), any()))
+                .thenAnswer(invocation -> leaseHeld.compareAndSet(false, true));
+        doAnswer(invocation -> {
+            leaseHeld.set(false);
+            return null;
+        }).when(movieCacheRepository).releaseLoadLease(eq(ID), anyString());
+        when(movieCacheRepository.findById(ID))
+                .thenAnswer(invocation -> cache.get(ID));
+        doAnswer(invocation -> {
+            invocation.<List<MovieDto>>getArgument(0).forEach(cachedMovie -> cache.put(cachedMovie.getId(), cachedMovie));
+            return null;
+        }).when(movieCacheRepository).saveAll(anyCollection());
+
+        // WHEN
+        // the holder released the lease, its caller has not cached the movie yet
+        MovieDto holderResult = movieLoader.load(ID, loader);
+        MovieDto waiterResult = movieLoader.load(ID, id -> fail("The movie should not be loaded"));
+
+        // THEN
+        assertSame(movie, holderResult);
+        assertSame(movie, waiterResult);
+        assertEquals(1, loaderCalls.get());
+        assertEquals(1, coalescedLoads("remote"));
+    }
+
+    @Test
+    void loadWithLeaseAndSaveFailed() {
+        // GIVEN
+        properties.getLoadLease().setEnabled(true);
+        MovieDto movie = initMovie();
+
+        when(movieCacheRepository.acquireLoadLease(eq(ID), anyString(), any()))
+                .thenReturn(true);
+        doThrow(new RedisConnectionFailureException("down"))
+                .when(movieCacheRepository).saveAll(anyCollection());
+
+        // WHEN
+        MovieDto result = movieLoader.load(ID, id -> movie);
+
+        // THEN
+        verify(movieCacheRepository, times(1)).releaseLoadLease(eq(ID), anyString());
+
+        assertSame(movie, result);
+    }
+
+    @Test
+    void loadWithLeaseHeldByAnotherNode() {
+        // GIVEN
+        properties.getLoadLease().setEnabled(true);
+        MovieDto movie = initMovie();
+
+        when(movieCacheRepository.acquireLoadLease(eq(ID), anyString(), any()))
+                .thenReturn(false);
+        when(movieCacheRepository.findById(ID))
+                .thenReturn(null, movie);
+
+        // WHEN
+        MovieDto result = movieLoader.load(ID, id -> fail("The movie should not be loaded"));
+
+        // THEN
+        verify(movieCacheRepository, times(2)).acquireLoadLease(eq(ID), anyString(), any());
+        verify(movieCacheRepository, times(2)).findById(ID);
+        verify(movieCacheRepository, never()).releaseLoadLease(anyLong(), anyString());
+
+        assertSame(movie, result);
+        assertEquals(0, counter("movie.cache.loads"));
+        assertEquals(1, coalescedLoads("remote"));
+    }
+
+    @Test
+    void loadWithLeaseNeverReleased() {
+        // GIVEN
+        properties.getLoadLease().setEnabled(true);
+        properties.getLoadLease().setTimeToLive(Duration.ofMillis(50));
+        MovieDto movie = initMovie();
+
+        when(movieCacheRepository.acquireLoadLease(eq(ID), anyString(), any()))
+                .thenReturn(false);
+
+        // WHEN
+        MovieDto result = movieLoader.load(ID, id -> movie);
+
+        // THEN
+        verify(movieCacheRepository, never()).releaseLoadLease(anyLong(), anyString());
+
+        assertSame(movie, result);
+        assertEquals(1, counter("movie.cache.loads"));
+    }
+
+    @Test
+    void loadWithLeaseAndMovieCachedMeanwhile() {
+        // GIVEN
+        properties.getLoadLease().setEnabled(true);
+        MovieDto movie = initMovie();
+
+        when(movieCacheRepository.acquireLoadLease(eq(ID), anyString(), any()))
+                .thenReturn(true);
+        when(movieCacheRepository.findById(ID))
+                .thenReturn(movie);
+
+        // WHEN
+        MovieDto result = movieLoader.load(ID, id -> fail("The movie should not be loaded"));
+
+        // THEN
+        verify(movieCacheRepository, times(1)).releaseLoadLease(eq(ID), anyString());
+        verify(movieCacheRepository, never()).saveAll(anyCollection());
+
+        assertSame(movie, result);
+        assertEquals(1, coalescedLoads("remote"));
+    }
+
+    @Test
+    void refresh() {
+        // GIVEN
+        MovieDto movie = initMovie();
+
+        // WHEN
+        MovieDto result = movieLoader.refresh(ID, id -> movie);
+
+        // THEN
+        verify(movieCacheRepository, never()).acquireLoadLease(anyLong(), anyString(), any());
+        verify(movieCacheRepository, never()).findById(anyLong());
+
+        assertSame(movie, result);
+        assertEquals(1, counter("movie.cache.loads"));
+    }
+
+    @Test
+    void refreshWithLease() {
+        // GIVEN
+        properties.getLoadLease().setEnabled(true);
+        MovieDto movie = initMovie();
+
+        when(movieCacheRepository.acquireLoadLease(eq(ID), anyString(), any()))
+                .thenReturn(true);
+
+        // WHEN
+        MovieDto result = movieLoader.refresh(ID, id -> movie);
+
+        // THEN
+        verify(movieCacheRepository, never()).findById(anyLong());
+        verify(movieCacheRepository, times(1)).releaseLoadLease(eq(ID), anyString());
+
+        assertSame(movie, result);
+        assertEquals(1, counter("movie.cache.loads"));
+    }
+
+    @Test
+    void loadDuringRefreshWithLeaseHeldByAnotherNode() throws Exception {
+        // GIVEN
+        properties.getLoadLease().setEnabled(true);
+        MovieDto movie = initMovie();
+        AtomicInteger leaseRequests = new AtomicInteger();
+        CountDownLatch refreshStarted = new CountDownLatch(1);
+        CountDownLatch refreshReleased = new CountDownLatch(1);
+
+        // the refresh is denied the lease, the load then gets it
+        when(movieCacheRepository.acquireLoadLease(eq(ID), anyString(), any()))
+                .thenAnswer(invocation -> {
+                    if (leaseRequests.incrementAndGet() > 1) {
+                        return true;
+                    }
+                    refreshStarted.countDown();
+                    await(refreshReleased);
+                    return false;
+                });
+
+        // WHEN
+        CompletableFuture<MovieDto> refreshResult = CompletableFuture.supplyAsync(() ->
+                movieLoader.refresh(ID, id -> fail("The movie should not be refreshed")));
+        assertTrue(refreshStarted.await(5, TimeUnit.SECONDS));
+        CompletableFuture<MovieDto> loadResult = CompletableFuture.supplyAsync(() -> movieLoader.load(ID, id -> movie));
+        waitForCoalescedLoads("local");
+        refreshReleased.countDown();
+
+        // THEN
+        // the movie exists, the load does not take the null of the refresh for a missing movie
+        assertNull(refreshResult.get(5, TimeUnit.SECONDS));
+        assertSame(movie, loadResult.get(5, TimeUnit.SECONDS));
+        assertEquals(2, leaseRequests.get());
+        assertEquals(1, counter("movie.cache.loads"));
+    }
+
+    @Test
+    void refreshWithLeaseHeldByAnotherNode() {
+        // GIVEN
+        properties.getLoadLease().setEnabled(true);
+
+        when(movieCacheRepository.acquireLoadLease(eq(ID), anyString(), any()))
+                .thenReturn(false);
+
+        // WHEN
+        MovieDto result = movieLoader.refresh(ID, id -> fail("The movie should not be loaded"));
+
+        // THEN
+        verify(movieCacheRepository, times(1)).acquireLoadLease(eq(ID), anyString(), any());
+        verify(movieCacheRepository, never()).findById(anyLong());
+        verify(movieCacheRepository, never()).releaseLoadLease(anyLong(), anyString());
+
+        assertNull(result);
+        assertEquals(0, counter("movie.cache.loads"));
+    }
+
+    private double counter(String name) {
+        return meterRegistry.counter(name).count();
+    }
+
+    private double coalescedLoads(String scope) {
+        return meterRegistry.counter("movie.cache.loads.coalesced", "scope", scope).count();
+    }
+
+    private void waitForCoalescedLoads(String scope) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (coalescedLoads(scope) < 1 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private MovieDto initMovie() {
+        MovieDto movie = new MovieDto();
+        movie.setId(ID);
+        movie.setTitle(TITLE);
+        movie.setReleaseDate(RELEASE_DATE);
+        return movie;
+    }
+}
@@ -0,0 +1,134 @@
+package com.jonathanfoucher.rediscacheexample.services;
+
+import com.jonathanfoucher.rediscacheexample.configs.MovieCacheProperties;
+import com.jonathanfoucher.rediscacheexample.data.dto.MovieCacheEntry;
+import com.jonathanfoucher.rediscacheexample.repositories.MovieCacheRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.*;
+
+@SpringJUnitConfig({MovieMemoryBudget.class, MovieCacheProperties.class, SimpleMeterRegistry.class})
+class MovieMemoryBudgetTest {
+    @Autowired
+    private MovieMemoryBudget movieMemoryBudget;
+    @Autowired
+    private MovieCacheProperties properties;
+    @Autowired
+    private MeterRegistry meterRegistry;
+    @MockitoBean
+    private MovieCacheRepository movieCacheRepository;
+
+    private static final Duration CHECK_INTERVAL = Duration.ofMinutes(5);
+    private static final long MINUTE = Duration.ofMinutes(1).toMillis();
+    // at the start of a minute, so that the expirations below fall in the minutes they are written in
+    private static final long NOW = System.currentTimeMillis() / MINUTE * MINUTE;
+
+    @BeforeEach
+    void init() {
+        properties.getMemoryBudget().setMaximumSize(DataSize.ofBytes(1_000));
+        properties.getMemoryBudget().setCheckInterval(CHECK_INTERVAL);
+        when(movieCacheRepository.acquireMemoryBudgetLease(anyString(), eq(CHECK_INTERVAL)))
+                .thenReturn(true);
+    }
+
+    @Test
+    void check() {
+        // GIVEN
+        // the entries expiring within the next two minutes add up to more than the 500 bytes over budget
+        mockEntries(
+                List.of(new MovieCacheEntry(15L, "movies::15", 400, NOW + 10 * MINUTE),
+                        new MovieCacheEntry(16L, "movies::16", 300, NOW + 2 * MINUTE)),
+                List.of(new MovieCacheEntry(17L, "movies::17", 300, NOW + MINUTE),
+                        new MovieCacheEntry(18L, "movies::18", 300, NOW + 2 * MINUTE + 1),
+                        new MovieCacheEntry(19L, "movies::19", 200, Long.MAX_VALUE)));
+        when(movieCacheRepository.deleteAllByKeys(anyList()))
+                .thenAnswer(invocation -> (long) invocation.getArgument(0, List.class).size());
+
+        // WHEN
+        long deleted = movieMemoryBudget.check();
+
+        // THEN
+        verify(movieCacheRepository, times(2)).scanEntries(any());
+        verify(movieCacheRepository, times(1)).deleteAllByKeys(List.of("movies::16"));
+        verify(movieCacheRepository, times(1)).deleteAllByKeys(List.of("movies::17", "movies::18"));
+        verify(movieCacheRepository, times(2)).deleteAllByKeys(anyList());
+        // along with their copies in the aggregate
+        verify(movieCacheRepository, times(1)).removeAllFromAggregate(List.of(16L));
+        verify(movieCacheRepository, times(1)).removeAllFromAggregate(List.of(17L, 18L));
+
+        assertEquals(3, deleted);
+        assertEquals(1_500, meterRegistry.get("movie.cache.memory.size").gauge().value());
+        assertEquals(3, meterRegistry.get("movie.cache.memory.evictions").counter().count());
+    }
+
+    @Test
+    void checkUnderBudget() {
+        // GIVEN
+        mockEntries(List.of(new MovieCacheEntry(15L, "movies::15", 400, NOW + MINUTE),
+                new MovieCacheEntry(16L, "movies::16", 600, NOW + MINUTE)));
+
+        // WHEN
+        long deleted = movieMemoryBudget.check();
+
+        // THEN
+        verify(movieCacheRepository, times(1)).scanEntries(any());
+        verify(movieCacheRepository, never()).deleteAllByKeys(anyList());
+
+        assertEquals(0, deleted);
+    }
+
+    @Test
+    void checkWithoutExpiration() {
+        // GIVEN
+        mockEntries(List.of(new MovieCacheEntry(15L, "movies::15", 1_500, Long.MAX_VALUE)));
+
+        // WHEN
+        long deleted = movieMemoryBudget.check();
+
+        // THEN
+        // the entries which do not expire are never deleted
+        verify(movieCacheRepository, never()).deleteAllByKeys(anyList());
+        verify(movieCacheRepository, never()).removeAllFromAggregate(anyList());
+
+        assertEquals(0, deleted);
+    }
+
+    @Test
+    void checkByAnotherNode() {
+        // GIVEN
+        when(movieCacheRepository.acquireMemoryBudgetLease(anyString(), eq(CHECK_INTERVAL)))
+                .thenReturn(false);
+
+        // WHEN
+        long deleted = movieMemoryBudget.check();
+
+        // THEN
+        verify(movieCacheRepository, never()).scanEntries(any());
+
+        assertEquals(0, deleted);
+    }
+
+    @SafeVarargs
+    @SuppressWarnings("unchecked")
+    private void mockEntries(List<MovieCacheEntry>... batches) {
+        doAnswer(invocation -> {
+            Consumer<List<MovieCacheEntry>> consumer = invocation.getArgument(0);
+            for (List<MovieCacheEntry> batch : batches) {
+                consumer.accept(batch);
+            }
+            return null;
+        }).when(movieCacheRepository).scanEntries(any(Consumer.class));
+    }
+}
@@ -0,0 +1,65 @@
+package com.jonathanfoucher.rediscacheexample.services;
+
+import com.jonathanfoucher.rediscacheexample.caches.CacheRefreshRequest;
+import com.jonathanfoucher.rediscacheexample.configs.MovieCacheProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+
+import java.time.Duration;
+
+import static org.awaitility.Awaitility.await;
+import static org.mockito.Mockito.*;
+
+@SpringJUnitConfig({MovieRefresher.class, MovieCacheProperties.class, SimpleMeterRegistry.class})
+class MovieRefresherTest {
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    @MockitoBean
+    private MovieService movieService;
+
+    private static final Long ID = 15L;
+    // the refreshes asked by the other tests may still be running, each test refreshes its own id
+    private static final Long OTHER_ID = 16L;
+    private static final Long FAILING_ID = 17L;
+
+    @Test
+    void onRefreshRequest() {
+        // WHEN
+        eventPublisher.publishEvent(new CacheRefreshRequest("movies", String.valueOf(ID)));
+
+        // THEN
+        verify(movieService, timeout(5000).times(1)).refreshById(ID);
+    }
+
+    @Test
+    void onRefreshRequestWithFailure() {
+        // GIVEN
+        when(movieService.refreshById(FAILING_ID))
+                .thenThrow(new IllegalStateException("Database unavailable"))
+                .thenReturn(null);
+
+        // WHEN
+        eventPublisher.publishEvent(new CacheRefreshRequest("movies", String.valueOf(FAILING_ID)));
+        verify(movieService, timeout(5000).times(1)).refreshById(FAILING_ID);
+
+        // THEN
+        // the failed refresh does not prevent the next ones, once it has released the id
+        await().atMost(Duration.ofSeconds(5)).untilAsserted(() -> {
+            eventPublisher.publishEvent(new CacheRefreshRequest("movies", String.valueOf(FAILING_ID)));
+            verify(movieService, atLeast(2)).refreshById(FAILING_ID);
+        });
+    }
+
+    @Test
+    void onRefreshRequestForOtherCache() {
+        // WHEN
+        eventPublisher.publishEvent(new CacheRefreshRequest("others", String.valueOf(OTHER_ID)));
+
+        // THEN
+        verify(movieService, after(100).never()).refreshById(OTHER_ID);
+    }
+}
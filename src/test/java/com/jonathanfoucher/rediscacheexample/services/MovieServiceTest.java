@@ -4,7 +4,19 @@ import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.Logger;
 import ch.qos.logback.classic.spi.ILoggingEvent;
 import ch.qos.logback.core.read.ListAppender;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.jonathanfoucher.rediscacheexample.caches.CacheEntryWritten;
+import com.jonathanfoucher.rediscacheexample.caches.CacheTimeToLiveAdapted;
+import com.jonathanfoucher.rediscacheexample.caches.MovieIndex;
+import com.jonathanfoucher.rediscacheexample.caches.NearCache;
+import com.jonathanfoucher.rediscacheexample.caches.NearCacheInvalidationBroker;
+import com.jonathanfoucher.rediscacheexample.caches.RedisCircuitBreaker;
+import com.jonathanfoucher.rediscacheexample.configs.MovieCacheProperties;
 import com.jonathanfoucher.rediscacheexample.data.dto.MovieDto;
+import com.jonathanfoucher.rediscacheexample.data.dto.MoviePage;
+import com.jonathanfoucher.rediscacheexample.repositories.MovieCacheRepository;
+import com.jonathanfoucher.rediscacheexample.serializers.MovieBinaryRedisSerializer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -14,34 +26,46 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cache.Cache;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
-import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.cache.RedisCache;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.cache.RedisCacheWriter;
+import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
 
+import java.time.Duration;
 import java.time.LocalDate;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Collections.emptyList;
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.AdditionalMatchers.aryEq;
 import static org.mockito.Mockito.*;
 
 @EnableCaching
-@SpringJUnitConfig({MovieService.class})
+@SpringJUnitConfig({MovieService.class, MovieLoader.class, MovieNegativeCache.class, MovieCacheProperties.class, SimpleMeterRegistry.class})
 class MovieServiceTest {
     @Autowired
     private MovieService movieService;
+    @Autowired
+    private MovieNegativeCache movieNegativeCache;
+    @Autowired
+    private MovieCacheProperties movieCacheProperties;
     @MockitoBean
-    private RedisTemplate<String, MovieDto> redisTemplate;
+    private MovieCacheRepository movieCacheRepository;
     @MockitoBean
     private FakeService fakeService;
-
-    @MockitoBean
-    private Cache allMoviesCache;
-    @MockitoBean
-    private Cache.ValueWrapper allMoviesValueWrapper;
     @MockitoBean
-    private ValueOperations<String, MovieDto> opsForValue;
+    private RedisCircuitBreaker redisCircuitBreaker;
 
     @MockitoBean
     private CacheManager cacheManager;
@@ -54,18 +78,32 @@ class MovieServiceTest {
     private static final ListAppender<ILoggingEvent> listAppender = new ListAppender<>();
 
     private static final Long ID = 15L;
+    private static final Long ADDED_ID = FakeService.MAX_ID + 1;
     private static final String TITLE = "Some movie";
     private static final LocalDate RELEASE_DATE = LocalDate.of(2022, 7, 19);
 
     private static final String MOVIE_CACHE_NAME = "movies";
     private static final String ALL_MOVIES_CACHE_NAME = "all_movies";
-    private static final String ALL_MOVIES_KEY = "findAllCached";
 
     @BeforeEach
     void init() {
         listAppender.list.clear();
         listAppender.start();
         log.addAppender(listAppender);
+
+        // redis is called as without the circuit breaker
+        when(redisCircuitBreaker.call(any(), any()))
+                .thenAnswer(invocation -> invocation.getArgument(0, Supplier.class).get());
+        doAnswer(invocation -> {
+            invocation.getArgument(0, Runnable.class).run();
+            return null;
+        }).when(redisCircuitBreaker).run(any());
+        when(redisCircuitBreaker.callOrFail(any()))
+                .thenAnswer(invocation -> invocation.getArgument(0, Supplier.class).get());
+        doAnswer(invocation -> {
+            invocation.getArgument(0, Runnable.class).run();
+            return null;
+        }).when(redisCircuitBreaker).runOrFail(any());
     }
 
     @AfterEach
@@ -75,28 +113,20 @@ class MovieServiceTest {
     }
 
     @Test
-    void findAllCachedInCache() {
+    void findAllCached() {
         // GIVEN
         MovieDto movie = initMovie();
 
-        when(cacheManager.getCache(ALL_MOVIES_CACHE_NAME))
-                .thenReturn(allMoviesCache);
-        when(allMoviesCache.get(ALL_MOVIES_KEY))
-                .thenReturn(allMoviesValueWrapper);
-        when(allMoviesValueWrapper.get())
+        when(movieCacheRepository.findAllInAggregate())
                 .thenReturn(List.of(movie));
 
         // WHEN
         List<MovieDto> results = movieService.findAllCached();
 
         // THEN
-        verify(cacheManager, times(1)).getCache(ALL_MOVIES_CACHE_NAME);
-        verify(allMoviesCache, times(1)).get(ALL_MOVIES_KEY);
-        verify(allMoviesValueWrapper, times(1)).get();
-        verify(redisTemplate, never()).keys(anyString());
-        verify(redisTemplate, never()).opsForValue();
-        verify(opsForValue, never()).get(anyString());
-        verify(allMoviesCache, never()).put(anyString(), any(List.class));
+        verify(movieCacheRepository, times(1)).findAllInAggregate();
+        verify(movieCacheRepository, never()).streamAll();
+        verify(cacheManager, never()).getCache(anyString());
 
         assertNotNull(results);
         assertEquals(1, results.size());
@@ -105,37 +135,88 @@ class MovieServiceTest {
         checkMovie(result);
 
         List<ILoggingEvent> logsList = listAppender.list;
-        assertEquals(0, logsList.size());
+        assertEquals(1, logsList.size());
+        assertNotNull(logsList.getFirst());
+        assertEquals(Level.INFO, logsList.getFirst().getLevel());
+        assertEquals("Get all cached movies", logsList.getFirst().getFormattedMessage());
+    }
+
+    @Test
+    void findAllCachedWithoutResult() {
+        // GIVEN
+        when(movieCacheRepository.findAllInAggregate())
+                .thenReturn(emptyList());
+
+        // WHEN
+        List<MovieDto> results = movieService.findAllCached();
+
+        // THEN
+        verify(movieCacheRepository, times(1)).findAllInAggregate();
+
+        assertNotNull(results);
+        assertTrue(results.isEmpty());
+    }
+
+    @Test
+    void findPageCached() {
+        // GIVEN
+        MoviePage page = new MoviePage(List.of(initMovie()), "cursor");
+
+        when(movieCacheRepository.findPageInAggregate(MovieIndex.TITLE, "some", null, true, 10))
+                .thenReturn(page);
+
+        // WHEN
+        MoviePage result = movieService.findPageCached(MovieIndex.TITLE, true, "some", null, 10);
+
+        // THEN
+        verify(movieCacheRepository, times(1)).findPageInAggregate(MovieIndex.TITLE, "some", null, true, 10);
+        verify(movieCacheRepository, never()).findAllInAggregate();
+
+        assertEquals(page, result);
+
+        List<ILoggingEvent> logsList = listAppender.list;
+        assertEquals(1, logsList.size());
+        assertEquals("Get a page of 10 cached movies by TITLE", logsList.getFirst().getFormattedMessage());
+    }
+
+    @Test
+    void findAllCachedWhileRedisIsBypassed() {
+        // GIVEN
+        doThrow(new RedisConnectionFailureException("Redis is bypassed by the circuit breaker"))
+                .when(redisCircuitBreaker).callOrFail(any());
+
+        // WHEN / THEN
+        assertThrows(RedisConnectionFailureException.class, () -> movieService.findAllCached());
+        verify(movieCacheRepository, never()).findAllInAggregate();
     }
 
     @Test
-    void findAllCachedNotInCache() {
+    void findPageCachedWithInvalidRequest() {
+        // WHEN / THEN
+        assertThrows(IllegalArgumentException.class, () -> movieService.findPageCached(MovieIndex.ID, false, "some", null, 10));
+        assertThrows(IllegalArgumentException.class, () -> movieService.findPageCached(MovieIndex.ID, false, null, null, 0));
+        assertThrows(IllegalArgumentException.class, () -> movieService.findPageCached(MovieIndex.ID, false, null, null, 1001));
+
+        verifyNoInteractions(movieCacheRepository);
+    }
+
+    @Test
+    void streamAllCached() {
         // GIVEN
         MovieDto movie = initMovie();
 
-        when(cacheManager.getCache(ALL_MOVIES_CACHE_NAME))
-                .thenReturn(allMoviesCache);
-        when(allMoviesCache.get(ALL_MOVIES_KEY))
-                .thenReturn(null);
-        when(redisTemplate.keys(MOVIE_CACHE_NAME + ":*"))
-                .thenReturn(Set.of(String.valueOf(ID)));
-        when(redisTemplate.opsForValue())
-                .thenReturn(opsForValue);
-        when(opsForValue.get(String.valueOf(ID)))
-                .thenReturn(movie);
+        when(movieCacheRepository.streamAll())
+                .thenReturn(Stream.of(movie));
 
         // WHEN
-        List<MovieDto> results = movieService.findAllCached();
+        List<MovieDto> results;
+        try (Stream<MovieDto> movies = movieService.streamAllCached()) {
+            results = movies.toList();
+        }
 
         // THEN
-        ArgumentCaptor<List<MovieDto>> capturedMovies = ArgumentCaptor.forClass(List.class);
-        verify(cacheManager, times(1)).getCache(ALL_MOVIES_CACHE_NAME);
-        verify(allMoviesCache, times(1)).get(ALL_MOVIES_KEY);
-        verify(allMoviesValueWrapper, never()).get();
-        verify(redisTemplate, times(1)).keys(MOVIE_CACHE_NAME + ":*");
-        verify(redisTemplate, times(1)).opsForValue();
-        verify(opsForValue, times(1)).get(String.valueOf(ID));
-        verify(allMoviesCache, times(1)).put(eq(ALL_MOVIES_KEY), capturedMovies.capture());
+        verify(movieCacheRepository, times(1)).streamAll();
+        verify(movieCacheRepository, never()).findAllInAggregate();
 
         assertNotNull(results);
         assertEquals(1, results.size());
@@ -143,18 +224,11 @@ class MovieServiceTest {
         MovieDto result = results.getFirst();
         checkMovie(result);
 
-        List<MovieDto> cachedMovies = capturedMovies.getValue();
-        assertNotNull(cachedMovies);
-        assertEquals(1, cachedMovies.size());
-
-        MovieDto cachedMovie = cachedMovies.getFirst();
-        checkMovie(cachedMovie);
-
         List<ILoggingEvent> logsList = listAppender.list;
         assertEquals(1, logsList.size());
         assertNotNull(logsList.getFirst());
         assertEquals(Level.INFO, logsList.getFirst().getLevel());
-        assertEquals("Get all cached movies", logsList.getFirst().getFormattedMessage());
+        assertEquals("Stream all cached movies", logsList.getFirst().getFormattedMessage());
     }
 
     @Test
@@ -177,7 +251,7 @@ class MovieServiceTest {
         verify(movieCache, times(1)).get(ID);
         verify(movieValueWrapper, times(1)).get();
         verify(movieCache, never()).put(anyString(), any(MovieDto.class));
-        verify(allMoviesCache, never()).clear();
+        verify(movieCacheRepository, never()).saveInAggregate(any());
         verify(fakeService, never()).findById(any());
 
         checkMovie(result);
@@ -186,6 +260,104 @@ class MovieServiceTest {
         assertEquals(0, logsList.size());
     }
 
+    @Test
+    @DirtiesContext
+    void findRenderedById() {
+        // GIVEN
+        movieCacheProperties.setSerialization(MovieCacheProperties.SerializationFormat.JSON);
+        byte[] renderedMovie = "{\"id\":15,\"title\":\"Some movie\",\"release_date\":\"2022-07-19\"}".getBytes(UTF_8);
+        RedisCacheWriter cacheWriter = mock(RedisCacheWriter.class);
+        RedisCache redisCache = initRedisCache(cacheWriter);
+
+        when(cacheManager.getCache(MOVIE_CACHE_NAME))
+                .thenReturn(redisCache);
+        when(cacheWriter.get(eq(MOVIE_CACHE_NAME), aryEq("movies::15".getBytes(UTF_8))))
+                .thenReturn(renderedMovie);
+
+        // WHEN
+        byte[] result = movieService.findRenderedById(ID);
+
+        // THEN
+        assertArrayEquals(renderedMovie, result);
+        verify(fakeService, never()).findById(any());
+    }
+
+    @Test
+    @DirtiesContext
+    void findRenderedByIdNotRendered() {
+        // GIVEN
+        movieCacheProperties.setSerialization(MovieCacheProperties.SerializationFormat.JSON);
+        RedisCacheWriter cacheWriter = mock(RedisCacheWriter.class);
+        RedisCache redisCache = initRedisCache(cacheWriter);
+
+        when(cacheManager.getCache(MOVIE_CACHE_NAME))
+                .thenReturn(redisCache);
+        when(cacheWriter.get(eq(MOVIE_CACHE_NAME), aryEq("movies::15".getBytes(UTF_8))))
+                .thenReturn(new MovieBinaryRedisSerializer().serialize(initMovie()));
+
+        // WHEN
+        byte[] result = movieService.findRenderedById(ID);
+
+        // THEN
+        assertNull(result);
+        assertNull(movieService.findRenderedById(ID + 1));
+    }
+
+    @Test
+    @DirtiesContext
+    void findRenderedByIdThroughNearCache() {
+        // GIVEN
+        movieCacheProperties.setSerialization(MovieCacheProperties.SerializationFormat.JSON);
+        byte[] renderedMovie = "{\"id\":15,\"title\":\"Some movie\",\"release_date\":\"2022-07-19\"}".getBytes(UTF_8);
+        RedisCacheWriter cacheWriter = mock(RedisCacheWriter.class);
+        NearCache nearCache = new NearCache(initRedisCache(cacheWriter), Caffeine.newBuilder().build(),
+                mock(NearCacheInvalidationBroker.class));
+
+        when(cacheManager.getCache(MOVIE_CACHE_NAME))
+                .thenReturn(nearCache);
+        when(cacheWriter.get(eq(MOVIE_CACHE_NAME), aryEq("movies::15".getBytes(UTF_8))))
+                .thenReturn(renderedMovie);
+
+        // WHEN
+        byte[] result = movieService.findRenderedById(ID);
+
+        // THEN
+        assertArrayEquals(renderedMovie, result);
+        assertFalse(nearCache.isHeldLocally(ID));
+    }
+
+    @Test
+    @DirtiesContext
+    void findRenderedByIdHeldByNearCache() {
+        // GIVEN
+        movieCacheProperties.setSerialization(MovieCacheProperties.SerializationFormat.JSON);
+        RedisCacheWriter cacheWriter = mock(RedisCacheWriter.class);
+        NearCache nearCache = new NearCache(initRedisCache(cacheWriter), Caffeine.newBuilder().build(),
+                mock(NearCacheInvalidationBroker.class));
+        nearCache.put(ID, initMovie());
+
+        when(cacheManager.getCache(MOVIE_CACHE_NAME))
+                .thenReturn(nearCache);
+
+        // WHEN
+        byte[] result = movieService.findRenderedById(ID);
+
+        // THEN
+        // served from memory by findById
+        assertNull(result);
+        verifyNoInteractions(cacheWriter);
+    }
+
+    @Test
+    void findRenderedByIdWithOtherSerialization() {
+        // WHEN
+        byte[] result = movieService.findRenderedById(ID);
+
+        // THEN
+        assertNull(result);
+        verify(cacheManager, never()).getCache(any());
+    }
+
     @Test
     void findByIdNotInCache() {
         // GIVEN
@@ -196,9 +368,6 @@ class MovieServiceTest {
         when(movieCache.get(ID))
                 .thenReturn(null);
 
-        when(cacheManager.getCache(ALL_MOVIES_CACHE_NAME))
-                .thenReturn(allMoviesCache);
-
         when(fakeService.findById(ID))
                 .thenReturn(movie);
 
@@ -208,10 +377,12 @@ class MovieServiceTest {
         // THEN
         ArgumentCaptor<MovieDto> capturedMovie = ArgumentCaptor.forClass(MovieDto.class);
         verify(cacheManager, times(1)).getCache(MOVIE_CACHE_NAME);
+        verify(cacheManager, never()).getCache(ALL_MOVIES_CACHE_NAME);
         verify(movieCache, times(1)).get(ID);
         verify(movieValueWrapper, never()).get();
         verify(movieCache, times(1)).put(eq(ID), capturedMovie.capture());
-        verify(allMoviesCache, times(1)).clear();
+        verify(movieCacheRepository, times(1)).saveInAggregate(movie);
+        verify(movieCacheRepository, never()).clearAggregate();
         verify(fakeService, times(1)).findById(ID);
 
         checkMovie(result);
@@ -224,11 +395,11 @@ class MovieServiceTest {
 
         assertNotNull(logsList.get(0));
         assertEquals(Level.INFO, logsList.get(0).getLevel());
-        assertEquals(String.format("Clear all entries for %s cache", ALL_MOVIES_CACHE_NAME), logsList.get(0).getFormattedMessage());
+        assertEquals(String.format("Get movie by id: %s", ID), logsList.get(0).getFormattedMessage());
 
         assertNotNull(logsList.get(1));
         assertEquals(Level.INFO, logsList.get(1).getLevel());
-        assertEquals(String.format("Get movie by id: %s", ID), logsList.get(1).getFormattedMessage());
+        assertEquals(String.format("Add entry %s to %s cache", ID, ALL_MOVIES_CACHE_NAME), logsList.get(1).getFormattedMessage());
     }
 
     @Test
@@ -239,9 +410,6 @@ class MovieServiceTest {
         when(movieCache.get(ID))
                 .thenReturn(null);
 
-        when(cacheManager.getCache(ALL_MOVIES_CACHE_NAME))
-                .thenReturn(allMoviesCache);
-
         when(fakeService.findById(ID))
                 .thenReturn(null);
 
@@ -253,33 +421,171 @@ class MovieServiceTest {
         verify(movieCache, times(1)).get(ID);
         verify(movieValueWrapper, never()).get();
         verify(movieCache, never()).put(anyString(), any(MovieDto.class));
-        verify(allMoviesCache, times(1)).clear();
+        verify(movieCacheRepository, never()).saveInAggregate(any());
+        verify(movieCacheRepository, never()).clearAggregate();
         verify(fakeService, times(1)).findById(ID);
 
         assertNull(result);
 
         List<ILoggingEvent> logsList = listAppender.list;
-        assertEquals(2, logsList.size());
+        assertEquals(1, logsList.size());
 
-        assertNotNull(logsList.get(0));
-        assertEquals(Level.INFO, logsList.get(0).getLevel());
-        assertEquals(String.format("Clear all entries for %s cache", ALL_MOVIES_CACHE_NAME), logsList.get(0).getFormattedMessage());
+        assertNotNull(logsList.getFirst());
+        assertEquals(Level.INFO, logsList.getFirst().getLevel());
+        assertEquals(String.format("Get movie by id: %s", ID), logsList.getFirst().getFormattedMessage());
+    }
 
-        assertNotNull(logsList.get(1));
-        assertEquals(Level.INFO, logsList.get(1).getLevel());
-        assertEquals(String.format("Get movie by id: %s", ID), logsList.get(1).getFormattedMessage());
+    @Test
+    @DirtiesContext
+    void findByIdNotInCacheWithNegativeCache() {
+        // GIVEN
+        movieCacheProperties.getNegativeCache().setEnabled(true);
+
+        when(cacheManager.getCache(MOVIE_CACHE_NAME))
+                .thenReturn(movieCache);
+        when(movieCache.get(ID))
+                .thenReturn(null);
+
+        when(fakeService.findById(ID))
+                .thenReturn(null);
+
+        // WHEN
+        MovieDto result = movieService.findById(ID);
+
+        // THEN
+        verify(fakeService, times(1)).findById(ID);
+        verify(movieCache, times(1)).put(ID, null);
+        verify(movieCacheRepository, never()).saveInAggregate(any());
+
+        assertNull(result);
     }
 
     @Test
-    void addMovieToCache() {
+    @DirtiesContext
+    void findByIdUnknown() {
+        // GIVEN
+        when(fakeService.findAllIds())
+                .thenReturn(LongStream.of(ID));
+        movieNegativeCache.rebuild();
+
+        when(cacheManager.getCache(MOVIE_CACHE_NAME))
+                .thenReturn(movieCache);
+
+        // WHEN
+        MovieDto result = movieService.findById(ID + 1);
+
+        // THEN
+        // read from the cache, but neither loaded nor cached as missing
+        verify(movieCache, times(1)).get(ID + 1);
+        verify(movieCache, never()).put(any(), any());
+        verify(fakeService, never()).findById(any());
+
+        assertNull(result);
+
+        List<ILoggingEvent> logsList = listAppender.list;
+        assertEquals(1, logsList.size());
+        assertEquals(String.format("Movie %s is unknown", ID + 1), logsList.getFirst().getFormattedMessage());
+    }
+
+    @Test
+    @DirtiesContext
+    void findByIdUnknownWrittenByAnotherNode() {
         // GIVEN
         MovieDto movie = initMovie();
+        movie.setId(ADDED_ID);
+
+        when(fakeService.findAllIds())
+                .thenReturn(LongStream.of(ID));
+        movieNegativeCache.rebuild();
 
+        // added to the cache by another node since the filter was built
         when(cacheManager.getCache(MOVIE_CACHE_NAME))
                 .thenReturn(movieCache);
+        when(movieCache.get(ADDED_ID))
+                .thenReturn(movieValueWrapper);
+        when(movieValueWrapper.get())
+                .thenReturn(movie);
 
-        when(cacheManager.getCache(ALL_MOVIES_CACHE_NAME))
-                .thenReturn(allMoviesCache);
+        // WHEN
+        MovieDto result = movieService.findById(ADDED_ID);
+
+        // THEN
+        verify(movieCache, times(1)).get(ADDED_ID);
+        verify(fakeService, never()).findById(any());
+
+        assertSame(movie, result);
+    }
+
+    @Test
+    @DirtiesContext
+    void findByIdWrittenThroughCache() {
+        // GIVEN
+        MovieDto movie = initMovie();
+        movie.setId(ID + 1);
+
+        when(fakeService.findAllIds())
+                .thenReturn(LongStream.of(ID));
+        movieNegativeCache.rebuild();
+
+        when(cacheManager.getCache(MOVIE_CACHE_NAME))
+                .thenReturn(movieCache);
+        when(fakeService.findById(ID + 1))
+                .thenReturn(movie);
+
+        // written through the cache, whatever the path, after the filter was built
+        movieNegativeCache.onEntryWritten(new CacheEntryWritten(MOVIE_CACHE_NAME, "movies::" + (ID + 1)));
+
+        // WHEN
+        MovieDto result = movieService.findById(ID + 1);
+
+        // THEN
+        // once expired from the cache, the movie is loaded again rather than reported unknown
+        verify(fakeService, times(1)).findById(ID + 1);
+
+        assertSame(movie, result);
+    }
+
+    @Test
+    @DirtiesContext
+    void findByIdAddedOutsideBackend() {
+        // GIVEN
+        MovieDto movie = initMovie();
+        movie.setId(ADDED_ID);
+
+        when(fakeService.findAllIds())
+                .thenReturn(LongStream.of(ID));
+        doAnswer(invocation -> {
+            invocation.<Consumer<Long>>getArgument(0).accept(ADDED_ID);
+            return null;
+        }).when(movieCacheRepository).scanIdsInAggregate(any());
+        when(cacheManager.getCache(MOVIE_CACHE_NAME))
+                .thenReturn(movieCache);
+        when(movieCache.get(ADDED_ID))
+                .thenReturn(movieValueWrapper);
+        when(movieValueWrapper.get())
+                .thenReturn(movie);
+
+        movieService.addMovieToCache(movie);
+        // built again from the backend, which does not hold the added movie, and from the aggregate
+        movieNegativeCache.rebuild();
+
+        // WHEN
+        MovieDto result = movieService.findById(ADDED_ID);
+
+        // THEN
+        verify(movieCache, times(1)).get(ADDED_ID);
+        verify(fakeService, never()).findById(any());
+
+        assertSame(movie, result);
+    }
+
+    @Test
+    void addMovieToCache() {
+        // GIVEN
+        MovieDto movie = initMovie();
+
+        when(cacheManager.getCache(MOVIE_CACHE_NAME))
+                .thenReturn(movieCache);
 
         // WHEN
         MovieDto result = movieService.addMovieToCache(movie);
@@ -288,7 +594,8 @@ class MovieServiceTest {
         ArgumentCaptor<MovieDto> capturedMovie = ArgumentCaptor.forClass(MovieDto.class);
         verify(cacheManager, times(1)).getCache(MOVIE_CACHE_NAME);
         verify(movieCache, times(1)).put(eq(ID), capturedMovie.capture());
-        verify(allMoviesCache, times(1)).clear();
+        verify(movieCacheRepository, times(1)).saveInAggregate(movie);
+        verify(movieCacheRepository, never()).clearAggregate();
 
         checkMovie(result);
 
@@ -300,7 +607,7 @@ class MovieServiceTest {
 
         assertNotNull(logsList.get(0));
         assertEquals(Level.INFO, logsList.get(0).getLevel());
-        assertEquals(String.format("Clear all entries for %s cache", ALL_MOVIES_CACHE_NAME), logsList.get(0).getFormattedMessage());
+        assertEquals(String.format("Add entry %s to %s cache", ID, ALL_MOVIES_CACHE_NAME), logsList.get(0).getFormattedMessage());
 
         assertNotNull(logsList.get(1));
         assertEquals(Level.INFO, logsList.get(1).getLevel());
@@ -308,21 +615,193 @@ class MovieServiceTest {
     }
 
     @Test
-    void clearCache() {
+    void onTimeToLiveAdapted() {
+        // WHEN
+        movieService.onTimeToLiveAdapted(new CacheTimeToLiveAdapted(MOVIE_CACHE_NAME, "movies::{15}15", Duration.ofDays(7)));
+        movieService.onTimeToLiveAdapted(new CacheTimeToLiveAdapted("others", "others::16", Duration.ofDays(7)));
+
+        // THEN
+        verify(movieCacheRepository, times(1)).expireInAggregate(ID, Duration.ofDays(7));
+        verify(movieCacheRepository, times(1)).expireInAggregate(any(), any());
+    }
+
+    @Test
+    void refreshById() {
         // GIVEN
+        MovieDto movie = initMovie();
+
         when(cacheManager.getCache(MOVIE_CACHE_NAME))
                 .thenReturn(movieCache);
+        when(fakeService.findById(ID))
+                .thenReturn(movie);
+
+        // WHEN
+        MovieDto result = movieService.refreshById(ID);
+
+        // THEN
+        verify(movieCache, never()).get(any());
+        verify(fakeService, times(1)).findById(ID);
+        verify(movieCache, times(1)).put(ID, movie);
+        verify(movieCacheRepository, times(1)).saveInAggregate(movie);
+
+        checkMovie(result);
+
+        List<ILoggingEvent> logsList = listAppender.list;
+        assertEquals(3, logsList.size());
+        assertEquals(String.format("Refresh entry %s of %s cache", ID, MOVIE_CACHE_NAME), logsList.get(0).getFormattedMessage());
+        assertEquals(String.format("Get movie by id: %s", ID), logsList.get(1).getFormattedMessage());
+        assertEquals(String.format("Add entry %s to %s cache", ID, ALL_MOVIES_CACHE_NAME), logsList.get(2).getFormattedMessage());
+    }
+
+    @Test
+    void refreshByIdWithNullResult() {
+        // GIVEN
+        when(cacheManager.getCache(MOVIE_CACHE_NAME))
+                .thenReturn(movieCache);
+        when(fakeService.findById(ID))
+                .thenReturn(null);
+
+        // WHEN
+        MovieDto result = movieService.refreshById(ID);
+
+        // THEN
+        verify(movieCache, never()).put(any(), any());
+        verify(movieCacheRepository, never()).saveInAggregate(any());
+
+        assertNull(result);
+    }
+
+    @Test
+    void findByIds() {
+        // GIVEN
+        MovieDto movie1 = initMovie();
+        MovieDto movie2 = initMovie();
+        movie2.setId(ID + 1);
+
+        when(movieCacheRepository.findAllByIds(Set.of(ID, ID + 1)))
+                .thenReturn(Map.of(ID + 1, movie2));
+        when(fakeService.findAllByIds(List.of(ID)))
+                .thenReturn(List.of(movie1));
+
+        // WHEN
+        List<MovieDto> results = movieService.findByIds(List.of(ID, ID + 1, ID));
+
+        // THEN
+        verify(movieCacheRepository, times(1)).findAllByIds(Set.of(ID, ID + 1));
+        verify(fakeService, times(1)).findAllByIds(List.of(ID));
+        verify(fakeService, never()).findById(any());
+        verify(movieCacheRepository, times(1)).saveAll(List.of(movie1));
+        verify(movieCacheRepository, times(1)).saveAllInAggregate(List.of(movie1));
+        verify(cacheManager, never()).getCache(anyString());
+
+        assertNotNull(results);
+        assertEquals(2, results.size());
+        assertSame(movie1, results.get(0));
+        assertSame(movie2, results.get(1));
+
+        List<ILoggingEvent> logsList = listAppender.list;
+        assertEquals(3, logsList.size());
+        assertEquals("Get 2 movies by ids", logsList.get(0).getFormattedMessage());
+        assertEquals(String.format("Load 1 movies missing from %s cache", MOVIE_CACHE_NAME), logsList.get(1).getFormattedMessage());
+        assertEquals(String.format("Add 1 entries to %s cache", ALL_MOVIES_CACHE_NAME), logsList.get(2).getFormattedMessage());
+    }
+
+    @Test
+    void findByIdsWhileRedisIsBypassed() {
+        // GIVEN
+        MovieDto movie = initMovie();
 
-        when(cacheManager.getCache(ALL_MOVIES_CACHE_NAME))
-                .thenReturn(allMoviesCache);
+        doAnswer(invocation -> invocation.getArgument(1, Supplier.class).get())
+                .when(redisCircuitBreaker).call(any(), any());
+        doNothing().when(redisCircuitBreaker).run(any());
+        when(fakeService.findAllByIds(List.of(ID)))
+                .thenReturn(List.of(movie));
+
+        // WHEN
+        List<MovieDto> results = movieService.findByIds(List.of(ID));
+
+        // THEN
+        verify(movieCacheRepository, never()).findAllByIds(any());
+        verify(fakeService, times(1)).findAllByIds(List.of(ID));
+        verify(movieCacheRepository, never()).saveAll(any());
+        verify(movieCacheRepository, never()).saveAllInAggregate(any());
+
+        assertEquals(List.of(movie), results);
+    }
+
+    @Test
+    void findByIdsAllInCache() {
+        // GIVEN
+        MovieDto movie = initMovie();
+
+        when(movieCacheRepository.findAllByIds(Set.of(ID)))
+                .thenReturn(Map.of(ID, movie));
+
+        // WHEN
+        List<MovieDto> results = movieService.findByIds(List.of(ID));
+
+        // THEN
+        verify(movieCacheRepository, times(1)).findAllByIds(Set.of(ID));
+        verify(fakeService, never()).findAllByIds(any());
+        verify(movieCacheRepository, never()).saveAll(any());
+        verify(movieCacheRepository, never()).saveAllInAggregate(any());
+
+        assertNotNull(results);
+        assertEquals(1, results.size());
+        checkMovie(results.getFirst());
+    }
+
+    @Test
+    void findByIdsWithMissingMovie() {
+        // GIVEN
+        when(movieCacheRepository.findAllByIds(Set.of(ID)))
+                .thenReturn(Map.of());
+        when(fakeService.findAllByIds(List.of(ID)))
+                .thenReturn(Collections.singletonList(null));
+
+        // WHEN
+        List<MovieDto> results = movieService.findByIds(List.of(ID));
+
+        // THEN
+        verify(movieCacheRepository, never()).saveAll(any());
+        verify(movieCacheRepository, never()).saveAllInAggregate(any());
+
+        assertNotNull(results);
+        assertTrue(results.isEmpty());
+    }
+
+    @Test
+    void addMoviesToCache() {
+        // GIVEN
+        MovieDto movie = initMovie();
+
+        // WHEN
+        movieService.addMoviesToCache(List.of(movie));
+
+        // THEN
+        verify(movieCacheRepository, times(1)).saveAll(List.of(movie));
+        verify(movieCacheRepository, times(1)).saveAllInAggregate(List.of(movie));
+        verify(cacheManager, never()).getCache(anyString());
+
+        List<ILoggingEvent> logsList = listAppender.list;
+        assertEquals(2, logsList.size());
+        assertEquals(String.format("Adding 1 movies to %s cache", MOVIE_CACHE_NAME), logsList.get(0).getFormattedMessage());
+        assertEquals(String.format("Add 1 entries to %s cache", ALL_MOVIES_CACHE_NAME), logsList.get(1).getFormattedMessage());
+    }
+
+    @Test
+    void clearCache() {
+        // GIVEN
+        when(cacheManager.getCache(MOVIE_CACHE_NAME))
+                .thenReturn(movieCache);
 
         // WHEN
         movieService.clearCache();
 
         // THEN
         verify(cacheManager, times(1)).getCache(MOVIE_CACHE_NAME);
-        verify(movieCache, times(1)).clear();
-        verify(allMoviesCache, times(1)).clear();
+        verify(movieCache, times(1)).invalidate();
+        verify(movieCacheRepository, times(1)).clearAggregate();
 
         List<ILoggingEvent> logsList = listAppender.list;
         assertEquals(2, logsList.size());
@@ -342,29 +821,52 @@ class MovieServiceTest {
         when(cacheManager.getCache(MOVIE_CACHE_NAME))
                 .thenReturn(movieCache);
 
-        when(cacheManager.getCache(ALL_MOVIES_CACHE_NAME))
-                .thenReturn(allMoviesCache);
-
         // WHEN
         movieService.cleanCacheById(ID);
 
         // THEN
         verify(cacheManager, times(1)).getCache(MOVIE_CACHE_NAME);
-        verify(movieCache, times(1)).evict(ID);
-        verify(allMoviesCache, times(1)).clear();
+        verify(movieCache, times(1)).evictIfPresent(ID);
+        verify(movieCacheRepository, times(1)).removeFromAggregate(ID);
+        verify(movieCacheRepository, never()).clearAggregate();
 
         List<ILoggingEvent> logsList = listAppender.list;
         assertEquals(2, logsList.size());
 
         assertNotNull(logsList.get(0));
         assertEquals(Level.INFO, logsList.get(0).getLevel());
-        assertEquals(String.format("Clear all entries for %s cache", ALL_MOVIES_CACHE_NAME), logsList.get(0).getFormattedMessage());
+        assertEquals(String.format("Remove entry %s from %s cache", ID, ALL_MOVIES_CACHE_NAME), logsList.get(0).getFormattedMessage());
 
         assertNotNull(logsList.get(1));
         assertEquals(Level.INFO, logsList.get(1).getLevel());
         assertEquals(String.format("Clean entry %s for %s cache", ID, MOVIE_CACHE_NAME), logsList.get(1).getFormattedMessage());
     }
 
+    @Test
+    void clearCacheByIdWhileRedisIsBypassed() {
+        // GIVEN
+        when(cacheManager.getCache(MOVIE_CACHE_NAME))
+                .thenReturn(movieCache);
+        when(movieCache.evictIfPresent(ID))
+                .thenThrow(new RedisConnectionFailureException("Redis is bypassed by the circuit breaker"));
+
+        // WHEN / THEN
+        // the entry is evicted before the aggregate is touched
+        assertThrows(RedisConnectionFailureException.class, () -> movieService.cleanCacheById(ID));
+        verify(movieCacheRepository, never()).removeFromAggregate(any());
+    }
+
+    private static RedisCache initRedisCache(RedisCacheWriter cacheWriter) {
+        RedisCache redisCache = mock(RedisCache.class);
+        when(redisCache.getName())
+                .thenReturn(MOVIE_CACHE_NAME);
+        when(redisCache.getCacheConfiguration())
+                .thenReturn(RedisCacheConfiguration.defaultCacheConfig());
+        when(redisCache.getNativeCache())
+                .thenReturn(cacheWriter);
+        return redisCache;
+    }
+
     private MovieDto initMovie() {
         MovieDto movie = new MovieDto();
         movie.setId(ID);
@@ -0,0 +1,146 @@
+package com.jonathanfoucher.rediscacheexample.services;
+
+import com.jonathanfoucher.rediscacheexample.configs.MovieCacheProperties;
+import com.jonathanfoucher.rediscacheexample.data.dto.MovieDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+
+import java.time.Duration;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.*;
+
+@SpringJUnitConfig({MovieWarmUp.class, MovieCacheProperties.class})
+class MovieWarmUpTest {
+    @Autowired
+    private MovieWarmUp movieWarmUp;
+    @Autowired
+    private MovieCacheProperties properties;
+    @MockitoBean
+    private MovieService movieService;
+    @MockitoBean
+    private MovieAccessStats movieAccessStats;
+
+    private static final Long ID = 15L;
+
+    @BeforeEach
+    void init() {
+        MovieCacheProperties.WarmUp warmUp = properties.getWarmUp();
+        warmUp.setHotIdsFile(new ByteArrayResource("# hot movies\n15\n16\n\n17\n15\n".getBytes(UTF_8)));
+        warmUp.setMaximumMovies(10);
+        warmUp.setBatchSize(2);
+        warmUp.setParallelism(2);
+        warmUp.setMoviesPerSecond(0);
+        warmUp.setTimeout(Duration.ofSeconds(5));
+        properties.getAccessStats().setEnabled(false);
+    }
+
+    @Test
+    void warmUp() {
+        // GIVEN
+        when(movieService.findByIds(List.of(ID, ID + 1)))
+                .thenReturn(List.of(initMovie(ID), initMovie(ID + 1)));
+        when(movieService.findByIds(List.of(ID + 2)))
+                .thenReturn(List.of(initMovie(ID + 2)));
+
+        // WHEN
+        int result = movieWarmUp.warmUp();
+
+        // THEN
+        verify(movieService, times(2)).findByIds(anyList());
+        verify(movieAccessStats, never()).findMostAccessedIds(anyInt());
+
+        assertEquals(3, result);
+    }
+
+    @Test
+    void findHotIdsWithAccessStats() throws Exception {
+        // GIVEN
+        properties.getAccessStats().setEnabled(true);
+        properties.getWarmUp().setMaximumMovies(5);
+
+        when(movieAccessStats.findMostAccessedIds(2))
+                .thenReturn(List.of(ID + 3, ID));
+
+        // WHEN
+        List<Long> results = movieWarmUp.findHotIds();
+
+        // THEN
+        assertEquals(List.of(ID, ID + 1, ID + 2, ID + 3), results);
+    }
+
+    @Test
+    void findHotIdsWithMaximumMovies() throws Exception {
+        // GIVEN
+        properties.getWarmUp().setMaximumMovies(2);
+
+        // WHEN
+        List<Long> results = movieWarmUp.findHotIds();
+
+        // THEN
+        assertEquals(List.of(ID, ID + 1), results);
+    }
+
+    @Test
+    void warmUpWithoutHotIds() {
+        // GIVEN
+        properties.getWarmUp().setHotIdsFile(null);
+
+        // WHEN
+        int result = movieWarmUp.warmUp();
+
+        // THEN
+        verify(movieService, never()).findByIds(anyList());
+
+        assertEquals(0, result);
+    }
+
+    @Test
+    void warmUpWithTimeout() {
+        // GIVEN
+        properties.getWarmUp().setTimeout(Duration.ofMillis(100));
+
+        when(movieService.findByIds(anyList()))
+                .thenAnswer(invocation -> {
+                    Thread.sleep(Duration.ofSeconds(10));
+                    return List.of();
+                });
+
+        // WHEN
+        long start = System.nanoTime();
+        int result = movieWarmUp.warmUp();
+
+        // THEN
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).compareTo(Duration.ofSeconds(5)) < 0);
+        assertEquals(0, result);
+    }
+
+    @Test
+    void warmUpWithRateLimit() {
+        // GIVEN
+        // 3 movies at 10 per second, the last batch starts 200 ms after the first one
+        properties.getWarmUp().setMoviesPerSecond(10);
+
+        // WHEN
+        long start = System.nanoTime();
+        movieWarmUp.warmUp();
+
+        // THEN
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).compareTo(Duration.ofMillis(200)) >= 0);
+        verify(movieService, times(2)).findByIds(anyList());
+    }
+
+    private MovieDto initMovie(Long id) {
+        MovieDto movie = new MovieDto();
+        movie.setId(id);
+        movie.setTitle("Some movie");
+        return movie;
+    }
+}
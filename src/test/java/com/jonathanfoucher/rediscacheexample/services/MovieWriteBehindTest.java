@@ -0,0 +1,207 @@
+package com.jonathanfoucher.rediscacheexample.services;
+
+import com.jonathanfoucher.rediscacheexample.configs.MovieCacheProperties;
+import com.jonathanfoucher.rediscacheexample.data.dto.MovieDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+// the write-behind starts its flusher on construction, so it is built by each test once configured
+@ExtendWith(MockitoExtension.class)
+class MovieWriteBehindTest {
+    @Mock
+    private MovieService movieService;
+    private MovieCacheProperties properties;
+    private SimpleMeterRegistry meterRegistry;
+    private MovieWriteBehind movieWriteBehind;
+
+    private static final Long ID = 15L;
+
+    @BeforeEach
+    void init() {
+        properties = new MovieCacheProperties();
+        properties.getWriteBehind().setEnabled(true);
+        properties.getWriteBehind().setBatchSize(2);
+        properties.getWriteBehind().setFlushInterval(Duration.ofMinutes(1));
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    void reset() {
+        if (movieWriteBehind != null) {
+            movieWriteBehind.shutdown();
+        }
+    }
+
+    @Test
+    void submitFullBatch() {
+        // GIVEN
+        movieWriteBehind = initWriteBehind();
+        MovieDto movie1 = initMovie(ID, "first");
+        MovieDto movie2 = initMovie(ID + 1, "second");
+
+        // WHEN
+        boolean queued1 = movieWriteBehind.submit(movie1);
+        boolean queued2 = movieWriteBehind.submit(movie2);
+
+        // THEN
+        assertTrue(queued1);
+        assertTrue(queued2);
+        // long before the flush interval
+        verify(movieService, timeout(1_000).times(1)).addMoviesToCache(List.of(movie1, movie2));
+        assertEquals(2, meterRegistry.get("movie.cache.write.posts").tag("outcome", "queued").counter().count());
+    }
+
+    @Test
+    void submitWithFlushInterval() {
+        // GIVEN
+        properties.getWriteBehind().setFlushInterval(Duration.ofMillis(50));
+        movieWriteBehind = initWriteBehind();
+        MovieDto movie = initMovie(ID, "first");
+
+        // WHEN
+        movieWriteBehind.submit(movie);
+
+        // THEN
+        verify(movieService, timeout(1_000).times(1)).addMoviesToCache(List.of(movie));
+        // the flush is timed once the write returned, waited for by the shutdown
+        movieWriteBehind.shutdown();
+        assertEquals(1, meterRegistry.get("movie.cache.write.flush").tag("outcome", "success").timer().count());
+        assertEquals(0.0, meterRegistry.get("movie.cache.write.queue.size").gauge().value());
+    }
+
+    @Test
+    void submitSameMovie() {
+        // GIVEN
+        properties.getWriteBehind().setBatchSize(10);
+        movieWriteBehind = initWriteBehind();
+        MovieDto movie1 = initMovie(ID, "first");
+        MovieDto movie2 = initMovie(ID + 1, "second");
+        MovieDto updatedMovie1 = initMovie(ID, "updated");
+
+        // WHEN
+        movieWriteBehind.submit(movie1);
+        movieWriteBehind.submit(movie2);
+        movieWriteBehind.submit(updatedMovie1);
+        double queueSize = meterRegistry.get("movie.cache.write.queue.size").gauge().value();
+        movieWriteBehind.shutdown();
+
+        // THEN
+        assertEquals(2.0, queueSize);
+        verify(movieService, times(1)).addMoviesToCache(List.of(updatedMovie1, movie2));
+        assertEquals(1, meterRegistry.get("movie.cache.write.posts").tag("outcome", "coalesced").counter().count());
+    }
+
+    @Test
+    void submitWithFullQueue() {
+        // GIVEN
+        properties.getWriteBehind().setQueueCapacity(1);
+        movieWriteBehind = initWriteBehind();
+        MovieDto movie1 = initMovie(ID, "first");
+        MovieDto movie2 = initMovie(ID + 1, "second");
+
+        // WHEN
+        boolean queued1 = movieWriteBehind.submit(movie1);
+        boolean queued2 = movieWriteBehind.submit(movie2);
+        boolean queuedAgain1 = movieWriteBehind.submit(movie1);
+
+        // THEN
+        assertTrue(queued1);
+        assertFalse(queued2);
+        // replacing a queued movie needs no room
+        assertTrue(queuedAgain1);
+        assertEquals(1, meterRegistry.get("movie.cache.write.posts").tag("outcome", "rejected").counter().count());
+        verifyNoInteractions(movieService);
+    }
+
+    @Test
+    void submitWithFullQueueAndEnqueueTimeout() {
+        // GIVEN
+        properties.getWriteBehind().setQueueCapacity(1);
+        properties.getWriteBehind().setFlushInterval(Duration.ofMillis(50));
+        properties.getWriteBehind().setEnqueueTimeout(Duration.ofSeconds(5));
+        movieWriteBehind = initWriteBehind();
+        MovieDto movie1 = initMovie(ID, "first");
+        MovieDto movie2 = initMovie(ID + 1, "second");
+
+        // WHEN
+        boolean queued1 = movieWriteBehind.submit(movie1);
+        boolean queued2 = movieWriteBehind.submit(movie2);
+
+        // THEN
+        // the second post waits for the first flush
+        assertTrue(queued1);
+        assertTrue(queued2);
+        verify(movieService, timeout(1_000).times(1)).addMoviesToCache(List.of(movie1));
+        verify(movieService, timeout(1_000).times(1)).addMoviesToCache(List.of(movie2));
+    }
+
+    @Test
+    void shutdown() {
+        // GIVEN
+        properties.getWriteBehind().setBatchSize(10);
+        movieWriteBehind = initWriteBehind();
+        MovieDto movie = initMovie(ID, "first");
+        movieWriteBehind.submit(movie);
+
+        // WHEN
+        movieWriteBehind.shutdown();
+        boolean queued = movieWriteBehind.submit(initMovie(ID + 1, "second"));
+
+        // THEN
+        verify(movieService, times(1)).addMoviesToCache(List.of(movie));
+        assertFalse(queued);
+    }
+
+    @Test
+    void shutdownWithFailure() {
+        // GIVEN
+        movieWriteBehind = initWriteBehind();
+        doThrow(new RedisConnectionFailureException("Redis unavailable"))
+                .when(movieService).addMoviesToCache(anyList());
+        movieWriteBehind.submit(initMovie(ID, "first"));
+
+        // WHEN
+        assertDoesNotThrow(() -> movieWriteBehind.shutdown());
+
+        // THEN
+        assertEquals(1, meterRegistry.get("movie.cache.write.flush").tag("outcome", "failure").timer().count());
+    }
+
+    @Test
+    void disabled() {
+        // GIVEN
+        properties.getWriteBehind().setEnabled(false);
+
+        // WHEN
+        movieWriteBehind = initWriteBehind();
+
+        // THEN
+        assertFalse(movieWriteBehind.isEnabled());
+        assertDoesNotThrow(() -> movieWriteBehind.shutdown());
+    }
+
+    private MovieWriteBehind initWriteBehind() {
+        return new MovieWriteBehind(movieService, properties, meterRegistry, new MockEnvironment());
+    }
+
+    private static MovieDto initMovie(Long id, String title) {
+        MovieDto movie = new MovieDto();
+        movie.setId(id);
+        movie.setTitle(title);
+        return movie;
+    }
+}
@@ -0,0 +1,343 @@
+package com.jonathanfoucher.rediscacheexample.services;
+
+import com.jonathanfoucher.rediscacheexample.caches.MovieIndex;
+import com.jonathanfoucher.rediscacheexample.caches.NearCacheInvalidationBroker;
+import com.jonathanfoucher.rediscacheexample.data.dto.MovieDto;
+import com.jonathanfoucher.rediscacheexample.data.dto.MoviePage;
+import com.jonathanfoucher.rediscacheexample.repositories.ReactiveMovieCacheRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.Mockito.*;
+
+@SpringJUnitConfig(ReactiveMovieService.class)
+class ReactiveMovieServiceTest {
+    @Autowired
+    private ReactiveMovieService movieService;
+    @MockitoBean
+    private ReactiveMovieCacheRepository movieCacheRepository;
+    @MockitoBean
+    private FakeService fakeService;
+    @MockitoBean
+    private MovieNegativeCache movieNegativeCache;
+    @MockitoBean
+    private NearCacheInvalidationBroker nearCacheInvalidationBroker;
+
+    private static final Long ID = 15L;
+    private static final String TITLE = "Some movie";
+    private static final LocalDate RELEASE_DATE = LocalDate.of(2022, 7, 19);
+
+    private static final String MOVIE_CACHE_NAME = "movies";
+
+    @Test
+    void findAllCached() {
+        // GIVEN
+        MovieDto movie = initMovie();
+
+        when(movieCacheRepository.findAllInAggregate())
+                .thenReturn(Flux.just(movie));
+
+        // WHEN / THEN
+        StepVerifier.create(movieService.findAllCached())
+                .assertNext(this::checkMovie)
+                .verifyComplete();
+
+        verify(movieCacheRepository, times(1)).findAllInAggregate();
+        verify(movieCacheRepository, never()).findAll();
+    }
+
+    @Test
+    void findPageCached() {
+        // GIVEN
+        MoviePage page = new MoviePage(List.of(initMovie()), null);
+
+        when(movieCacheRepository.findPageInAggregate(MovieIndex.RELEASE_DATE, null, "cursor", false, 20))
+                .thenReturn(Mono.just(page));
+
+        // WHEN / THEN
+        StepVerifier.create(movieService.findPageCached(MovieIndex.RELEASE_DATE, false, null, "cursor", 20))
+                .expectNext(page)
+                .verifyComplete();
+
+        verify(movieCacheRepository, times(1)).findPageInAggregate(MovieIndex.RELEASE_DATE, null, "cursor", false, 20);
+    }
+
+    @Test
+    void streamAllCached() {
+        // GIVEN
+        MovieDto movie = initMovie();
+
+        when(movieCacheRepository.findAll())
+                .thenReturn(Flux.just(movie));
+
+        // WHEN / THEN
+        StepVerifier.create(movieService.streamAllCached())
+                .assertNext(this::checkMovie)
+                .verifyComplete();
+
+        verify(movieCacheRepository, times(1)).findAll();
+        verify(movieCacheRepository, never()).findAllInAggregate();
+    }
+
+    @Test
+    void findByIdWithCachedValue() {
+        // GIVEN
+        MovieDto movie = initMovie();
+
+        when(movieCacheRepository.findById(ID))
+                .thenReturn(Mono.just(Optional.of(movie)));
+
+        // WHEN / THEN
+        StepVerifier.create(movieService.findById(ID))
+                .assertNext(this::checkMovie)
+                .verifyComplete();
+
+        verify(movieCacheRepository, times(1)).findById(ID);
+        verify(fakeService, never()).findById(any());
+        verify(movieCacheRepository, never()).save(any());
+        verify(movieCacheRepository, never()).saveInAggregate(any());
+    }
+
+    @Test
+    void findByIdWithoutCachedValue() {
+        // GIVEN
+        MovieDto movie = initMovie();
+
+        when(movieCacheRepository.findById(ID))
+                .thenReturn(Mono.empty());
+        when(fakeService.findById(ID))
+                .thenReturn(movie);
+        when(movieCacheRepository.saveInAggregate(movie))
+                .thenReturn(Mono.empty());
+        when(movieCacheRepository.save(movie))
+                .thenReturn(Mono.empty());
+
+        // WHEN / THEN
+        StepVerifier.create(movieService.findById(ID))
+                .assertNext(this::checkMovie)
+                .verifyComplete();
+
+        verify(movieCacheRepository, times(1)).findById(ID);
+        verify(fakeService, times(1)).findById(ID);
+        verify(movieCacheRepository, times(1)).saveInAggregate(movie);
+        verify(movieCacheRepository, times(1)).save(movie);
+        verify(nearCacheInvalidationBroker, times(1)).invalidate(MOVIE_CACHE_NAME, List.of(String.valueOf(ID)));
+    }
+
+    @Test
+    void findByIdWithoutResult() {
+        // GIVEN
+        when(movieCacheRepository.findById(ID))
+                .thenReturn(Mono.empty());
+        when(fakeService.findById(ID))
+                .thenReturn(null);
+
+        // WHEN / THEN
+        StepVerifier.create(movieService.findById(ID))
+                .verifyComplete();
+
+        verify(fakeService, times(1)).findById(ID);
+        verify(movieCacheRepository, never()).save(any());
+        verify(movieCacheRepository, never()).saveInAggregate(any());
+        verify(movieCacheRepository, never()).saveMissing(any());
+    }
+
+    @Test
+    void findByIdWithoutResultAndNegativeCache() {
+        // GIVEN
+        when(movieNegativeCache.isEnabled())
+                .thenReturn(true);
+        when(movieCacheRepository.findById(ID))
+                .thenReturn(Mono.empty());
+        when(fakeService.findById(ID))
+                .thenReturn(null);
+        when(movieCacheRepository.saveMissing(ID))
+                .thenReturn(Mono.empty());
+
+        // WHEN / THEN
+        StepVerifier.create(movieService.findById(ID))
+                .verifyComplete();
+
+        verify(fakeService, times(1)).findById(ID);
+        verify(movieCacheRepository, times(1)).saveMissing(ID);
+        verify(movieCacheRepository, never()).save(any());
+    }
+
+    @Test
+    void findByIdCachedAsMissing() {
+        // GIVEN
+        when(movieCacheRepository.findById(ID))
+                .thenReturn(Mono.just(Optional.empty()));
+
+        // WHEN / THEN
+        StepVerifier.create(movieService.findById(ID))
+                .verifyComplete();
+
+        verify(movieCacheRepository, times(1)).findById(ID);
+        verify(fakeService, never()).findById(any());
+        verify(movieCacheRepository, never()).saveMissing(any());
+    }
+
+    @Test
+    void findByIdUnknown() {
+        // GIVEN
+        when(movieNegativeCache.isUnknown(ID))
+                .thenReturn(true);
+        when(movieCacheRepository.findById(ID))
+                .thenReturn(Mono.empty());
+
+        // WHEN / THEN
+        StepVerifier.create(movieService.findById(ID))
+                .verifyComplete();
+
+        // still read from the cache, which another node may have filled
+        verify(movieCacheRepository, times(1)).findById(ID);
+        verify(fakeService, never()).findById(any());
+        verify(movieCacheRepository, never()).saveMissing(any());
+    }
+
+    @Test
+    void findByIdsWithMissingValues() {
+        // GIVEN
+        MovieDto cachedMovie = initMovie();
+        MovieDto loadedMovie = initMovie();
+        loadedMovie.setId(ID + 1);
+
+        when(movieCacheRepository.findAllByIds(Set.of(ID, ID + 1)))
+                .thenReturn(Mono.just(Map.of(ID, cachedMovie)));
+        when(fakeService.findAllByIds(List.of(ID + 1)))
+                .thenReturn(List.of(loadedMovie));
+        when(movieCacheRepository.saveAll(List.of(loadedMovie)))
+                .thenReturn(Mono.empty());
+        when(movieCacheRepository.saveAllInAggregate(List.of(loadedMovie)))
+                .thenReturn(Mono.empty());
+
+        // WHEN / THEN
+        StepVerifier.create(movieService.findByIds(List.of(ID, ID + 1, ID)))
+                .assertNext(this::checkMovie)
+                .assertNext(movie -> assertEquals(ID + 1, movie.getId()))
+                .verifyComplete();
+
+        verify(fakeService, times(1)).findAllByIds(List.of(ID + 1));
+        verify(movieCacheRepository, times(1)).saveAll(List.of(loadedMovie));
+        verify(movieCacheRepository, times(1)).saveAllInAggregate(List.of(loadedMovie));
+    }
+
+    @Test
+    void findByIdsWithAllCachedValues() {
+        // GIVEN
+        MovieDto movie = initMovie();
+
+        when(movieCacheRepository.findAllByIds(Set.of(ID)))
+                .thenReturn(Mono.just(Map.of(ID, movie)));
+
+        // WHEN / THEN
+        StepVerifier.create(movieService.findByIds(List.of(ID)))
+                .assertNext(this::checkMovie)
+                .verifyComplete();
+
+        verify(fakeService, never()).findAllByIds(any());
+        verify(movieCacheRepository, never()).saveAll(any());
+    }
+
+    @Test
+    void addMovieToCache() {
+        // GIVEN
+        MovieDto movie = initMovie();
+
+        when(movieCacheRepository.saveInAggregate(movie))
+                .thenReturn(Mono.empty());
+        when(movieCacheRepository.save(movie))
+                .thenReturn(Mono.empty());
+
+        // WHEN / THEN
+        StepVerifier.create(movieService.addMovieToCache(movie))
+                .assertNext(this::checkMovie)
+                .verifyComplete();
+
+        verify(movieCacheRepository, times(1)).saveInAggregate(movie);
+        verify(movieCacheRepository, times(1)).save(movie);
+        verify(nearCacheInvalidationBroker, times(1)).invalidate(MOVIE_CACHE_NAME, List.of(String.valueOf(ID)));
+    }
+
+    @Test
+    void addMoviesToCache() {
+        // GIVEN
+        MovieDto movie = initMovie();
+
+        when(movieCacheRepository.saveAll(List.of(movie)))
+                .thenReturn(Mono.empty());
+        when(movieCacheRepository.saveAllInAggregate(List.of(movie)))
+                .thenReturn(Mono.empty());
+
+        // WHEN / THEN
+        StepVerifier.create(movieService.addMoviesToCache(List.of(movie)))
+                .verifyComplete();
+
+        verify(movieCacheRepository, times(1)).saveAll(List.of(movie));
+        verify(movieCacheRepository, times(1)).saveAllInAggregate(List.of(movie));
+        verify(nearCacheInvalidationBroker, times(1)).invalidate(MOVIE_CACHE_NAME, List.of(String.valueOf(ID)));
+    }
+
+    @Test
+    void clearCache() {
+        // GIVEN
+        when(movieCacheRepository.clearAggregate())
+                .thenReturn(Mono.empty());
+        when(movieCacheRepository.deleteAll())
+                .thenReturn(Mono.empty());
+
+        // WHEN / THEN
+        StepVerifier.create(movieService.clearCache())
+                .verifyComplete();
+
+        verify(movieCacheRepository, times(1)).clearAggregate();
+        verify(movieCacheRepository, times(1)).deleteAll();
+        verify(nearCacheInvalidationBroker, times(1)).invalidate(MOVIE_CACHE_NAME, null);
+    }
+
+    @Test
+    void cleanCacheById() {
+        // GIVEN
+        when(movieCacheRepository.removeFromAggregate(ID))
+                .thenReturn(Mono.empty());
+        when(movieCacheRepository.delete(ID))
+                .thenReturn(Mono.empty());
+
+        // WHEN / THEN
+        StepVerifier.create(movieService.cleanCacheById(ID))
+                .verifyComplete();
+
+        verify(movieCacheRepository, times(1)).removeFromAggregate(ID);
+        verify(movieCacheRepository, times(1)).delete(ID);
+        verify(nearCacheInvalidationBroker, times(1)).invalidate(MOVIE_CACHE_NAME, List.of(String.valueOf(ID)));
+    }
+
+    private MovieDto initMovie() {
+        MovieDto movie = new MovieDto();
+        movie.setId(ID);
+        movie.setTitle(TITLE);
+        movie.setReleaseDate(RELEASE_DATE);
+        return movie;
+    }
+
+    private void checkMovie(MovieDto movie) {
+        assertNotNull(movie);
+        assertEquals(ID, movie.getId());
+        assertEquals(TITLE, movie.getTitle());
+        assertEquals(RELEASE_DATE, movie.getReleaseDate());
+    }
+}